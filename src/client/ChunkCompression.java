@@ -0,0 +1,103 @@
+package client;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflates the chunks of a compressed transfer while that pays off. The first chunk is compressed as a sample; a
+ * chunk that does not shrink enough, like that of a file that is compressed already, is sent as it is, and so are
+ * the chunks after it until compression is tried again. One instance is used by one stream at a time.
+ */
+public class ChunkCompression {
+
+    public static final String DEFLATE = "deflate";
+    // a chunk has to shrink to this share of its length to be sent compressed
+    private static final double MAX_RATIO = 0.9;
+    // chunks sent as they are after one that did not shrink enough, before compression is tried again
+    private static final int RAW_CHUNKS_AFTER_MISS = 16;
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final Inflater inflater = new Inflater();
+    private byte[] buffer = new byte[0];
+    private int rawChunks;
+
+    /**
+     * Compresses a chunk into {@link #buffer()}, unless this would not shrink it enough.
+     *
+     * @return the length of the compressed chunk, or -1 if the chunk is sent as it is.
+     */
+    public int deflate(byte[] data, int length) {
+        if (rawChunks > 0) {
+            rawChunks--;
+            return -1;
+        }
+        int limit = (int) (length * MAX_RATIO);
+        buffer(limit + 1);
+        deflater.reset();
+        deflater.setInput(data, 0, length);
+        deflater.finish();
+        // one byte more than allowed tells a chunk that did not shrink enough from one that just fit
+        int compressed = deflater.deflate(buffer, 0, limit + 1);
+        if (!deflater.finished() || compressed > limit) {
+            rawChunks = RAW_CHUNKS_AFTER_MISS;
+            return -1;
+        }
+        return compressed;
+    }
+
+    /**
+     * @return the buffer the last chunk was compressed into.
+     */
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * @return the buffer for compressed chunks, with room for at least the given length.
+     */
+    public byte[] buffer(int length) {
+        if (buffer.length < length) {
+            buffer = new byte[length];
+        }
+        return buffer;
+    }
+
+    /**
+     * Decompresses a chunk that has to be exactly {@code length} bytes long.
+     */
+    public void inflate(byte[] compressed, int compressedLength, byte[] data, int length) throws IOException {
+        inflater.reset();
+        inflater.setInput(compressed, 0, compressedLength);
+        try {
+            int inflated = 0;
+            byte[] beyond = new byte[1];
+            while (!inflater.finished()) {
+                // once the chunk is full, any byte more makes it too long
+                int n = inflated < length ? inflater.inflate(data, inflated, length - inflated) : inflater.inflate(beyond);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                if (n > 0 && inflated == length) {
+                    inflated++;
+                    break;
+                }
+                inflated += n;
+            }
+            if (inflated != length || !inflater.finished()) {
+                throw new IOException("A compressed chunk does not have its length of " + length + " bytes");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("A compressed chunk is corrupt: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Frees the native memory of the compressor.
+     */
+    public void end() {
+        deflater.end();
+        inflater.end();
+    }
+}
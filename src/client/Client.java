@@ -5,16 +5,20 @@ import shared.utility.model.Message;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import shared.messages.*;
 import shared.utility.Command;
+import shared.utility.ConnectionExecutors;
+import shared.utility.FileDigest;
 import shared.utility.GameMoves;
 import shared.utility.MessageHandler;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 
 import java.io.*;
 import java.net.Socket;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
 
 
@@ -28,23 +32,58 @@ public class Client {
     private final static String HOST = "127.0.0.1";
     private final static int PORT = 1337;
     private final static int FILE_TRANSFER_PORT = 1338;
-    private final ObjectMapper mapper = new ObjectMapper();
+    private final static int DEFAULT_TRANSFER_STREAMS = 4;
+    private final MessageCodecs codecs = MessageCodecs.shared();
     private final MessageHandler messageHandler = new MessageHandler();
     private boolean running = true;
     private boolean isLoggedIn = false;
 
     private final Map<Command, Consumer<String>> commands = new HashMap<>();
     private String checksum = "";
+    private String checksumAlgorithm;
     private String fileName = "";
+    private long fileSize;
     private String filePath = "";
+    // parallel connections proposed by the sender of the file offered last
+    private Integer proposedStreams;
+    private final ExecutorService transferExecutor;
+    private final FileChecksums checksums = new FileChecksums();
+    // the most parallel connections this client uses for one file transfer
+    private final int transferStreams;
+    // how this client computes the checksums of files it sends, see FileChecksums
+    private final String sendChecksumAlgorithm;
+    // whether this client asks for or agrees to compressed file transfers, see ChunkCompression
+    private final boolean compress;
+    // compression proposed by the sender of the file offered last
+    private String proposedCompression;
+    // the logged-in users, kept up to date with the changes the server sends on every user list request
+    private final UserDirectory userDirectory = new UserDirectory();
 
 
     public static void main(String[] args) {
-        Client client = new Client();
+        int transferStreams = DEFAULT_TRANSFER_STREAMS;
+        for (String arg : args) {
+            if (arg.startsWith("--transfer-streams=")) {
+                transferStreams = Math.max(1, Integer.parseInt(arg.substring("--transfer-streams=".length())));
+            }
+        }
+        String checksumAlgorithm = Arrays.asList(args).contains("--tree-checksum")
+                ? FileDigest.SHA_256_TREE
+                : FileDigest.SHA_256;
+        Client client = new Client(Arrays.asList(args).contains("--virtual-threads"), transferStreams, checksumAlgorithm,
+                !Arrays.asList(args).contains("--no-compression"));
         client.start();
     }
 
     public Client() {
+        this(false, DEFAULT_TRANSFER_STREAMS, FileDigest.SHA_256, true);
+    }
+
+    public Client(boolean useVirtualThreads, int transferStreams, String sendChecksumAlgorithm, boolean compress) {
+        this.transferStreams = transferStreams;
+        this.sendChecksumAlgorithm = sendChecksumAlgorithm;
+        this.compress = compress;
+        transferExecutor = ConnectionExecutors.newExecutor(useVirtualThreads);
         try {
             socket = new Socket(HOST, PORT);
 
@@ -67,30 +106,34 @@ public class Client {
 
     private void putCommandsForMessagesFromServerIntoMap() {
         this.commands.put(Command.PING, new PingHandler(serverWriter));
-        this.commands.put(Command.BROADCAST_RESP, new BroadcastRespHandler(mapper));
-        this.commands.put(Command.JOINED, new JoinedHandler(mapper));
-        this.commands.put(Command.LEFT, new LeftHandler(mapper));
+        this.commands.put(Command.BROADCAST_RESP, new BroadcastRespHandler(codecs));
+        this.commands.put(Command.JOINED, new JoinedHandler(codecs));
+        this.commands.put(Command.LEFT, new LeftHandler(codecs));
         this.commands.put(Command.UNKNOWN_COMMAND, new UnknownCommandHandler());
-        this.commands.put(Command.BYE_RESP, new ByeRespHandler(mapper, this::close));
-        this.commands.put(Command.READY, new ReadyMesHandler(mapper, this::close));
-        this.commands.put(Command.ENTER_RESP, new EnterRespHandler(mapper));
-        this.commands.put(Command.HANGUP, new HangupHandler(mapper, this::close));
-        this.commands.put(Command.PONG_ERROR, new PongErrorHandler(mapper));
-        this.commands.put(Command.BROADCAST, new BroadcastHandler(mapper));
+        this.commands.put(Command.BYE_RESP, new ByeRespHandler(codecs, this::close));
+        this.commands.put(Command.READY, new ReadyMesHandler(codecs, this::close));
+        this.commands.put(Command.ENTER_RESP, new EnterRespHandler(codecs));
+        this.commands.put(Command.HANGUP, new HangupHandler(codecs, this::close));
+        this.commands.put(Command.PONG_ERROR, new PongErrorHandler(codecs));
+        this.commands.put(Command.BROADCAST, new BroadcastHandler(codecs));
         this.commands.put(Command.PARSE_ERROR, new ParseErrorHandler());
-        this.commands.put(Command.USER_LIST_RESP, new UserListRespHandler(mapper));
-        this.commands.put(Command.PRIVATE_MSG, new PrivateMessageHandler(mapper));
-        this.commands.put(Command.PRIVATE_MSG_RESP, new PrivateMsgRespHandler(mapper));
-        this.commands.put(Command.GAME_START_RESP, new GameStartRespHandler(mapper));
-        this.commands.put(Command.GAME_INVITATION, new GameInviteHandler(mapper));
-        this.commands.put(Command.GAME_NOTIFICATION, new GameNotificationHandler(mapper));
-        this.commands.put(Command.GAME_MOVE_RESP, new GameMoveRespHandler(mapper));
-        this.commands.put(Command.GAME_RESULT, new GameResultHandler(mapper));
-        this.commands.put(Command.GAME_CANCELLED, new GameCancelledHandler(mapper));
+        this.commands.put(Command.USER_LIST_RESP, new UserListRespHandler(codecs, userDirectory));
+        this.commands.put(Command.PRIVATE_MSG, new PrivateMessageHandler(codecs));
+        this.commands.put(Command.PRIVATE_MSG_RESP, new PrivateMsgRespHandler(codecs));
+        this.commands.put(Command.GAME_START_RESP, new GameStartRespHandler(codecs));
+        this.commands.put(Command.GAME_INVITATION, new GameInviteHandler(codecs));
+        this.commands.put(Command.GAME_NOTIFICATION, new GameNotificationHandler(codecs));
+        this.commands.put(Command.GAME_MOVE_RESP, new GameMoveRespHandler(codecs));
+        this.commands.put(Command.GAME_RESULT, new GameResultHandler(codecs));
+        this.commands.put(Command.GAME_CANCELLED, new GameCancelledHandler(codecs));
+        this.commands.put(Command.GAME_QUEUE_RESP, new GameQueueRespHandler(codecs));
+        this.commands.put(Command.TOURNAMENT_SIGNUP_RESP, new TournamentSignupRespHandler(codecs));
+        this.commands.put(Command.TOURNAMENT_UPDATE, new TournamentUpdateHandler(codecs));
+        this.commands.put(Command.LEADERBOARD_RESP, new LeaderboardRespHandler(codecs));
         this.commands.put(Command.FILE_TRANSFER_REQ, this::receiveFileTransferRequest);
-        this.commands.put(Command.FILE_TRANSFER_RESP, new FileTransferRespHandler(mapper, this));
-        this.commands.put(Command.FILE_TRANSFER_ACCEPT_RESP, new FileTransferAcceptRespHandler(mapper));
-        this.commands.put(Command.FILE_TRANSFER_REJECT_RESP, new FileTransferRejectRespHandler(mapper));
+        this.commands.put(Command.FILE_TRANSFER_RESP, new FileTransferRespHandler(codecs, this));
+        this.commands.put(Command.FILE_TRANSFER_ACCEPT_RESP, new FileTransferAcceptRespHandler(codecs));
+        this.commands.put(Command.FILE_TRANSFER_REJECT_RESP, new FileTransferRejectRespHandler(codecs));
         this.commands.put(Command.FILE_TRANSFER_INIT, this::handleFileTransferInit);
 
     }
@@ -169,6 +212,9 @@ public class Client {
         System.out.println("6. Send file transfer request");
         System.out.println("7. Accept file transfer");
         System.out.println("8. Reject file transfer ");
+        System.out.println("9. Play Rock/Paper/Scissors with the next free user");
+        System.out.println("10. Sign up for the Rock/Paper/Scissors tournament");
+        System.out.println("11. Show the Rock/Paper/Scissors leaderboard");
         System.out.println("0. Logout");
 
 
@@ -189,7 +235,7 @@ public class Client {
 
                 }
                 Enter payload = new Enter(username);
-                String serializedPayload = mapper.writeValueAsString(payload);
+                String serializedPayload = codecs.writeValueAsString(payload);
 
                 Message loginMessage = new Message(Command.ENTER.getCommand(), serializedPayload);
                 String serializedLoginMessage = messageHandler.serialize(loginMessage);
@@ -210,6 +256,7 @@ public class Client {
 
                     if (responsePayload.contains("\"status\":\"OK\"")) {
                         isLoggedIn = true;
+                        userDirectory.setOwnUsername(username);
                     }
 
                 }
@@ -260,18 +307,27 @@ public class Client {
                     case 8:
                         handleFileTransferRejection();
                         break;
+                    case 9:
+                        joinGameQueue();
+                        break;
+                    case 10:
+                        signUpForTournament();
+                        break;
+                    case 11:
+                        requestLeaderboard();
+                        break;
                     case 0:
 
                         leftChat();
                         break;
                     default:
-                        System.out.println("Invalid choice. Please select option from the menu (0-5):");
+                        System.out.println("Invalid choice. Please select option from the menu (0-11):");
                 }
 
             } catch (IOException e) {
                 System.err.println("Error reading input: " + e.getMessage());
             } catch (NumberFormatException e) {
-                System.out.println("Invalid input. Please enter a valid number (0-5):");
+                System.out.println("Invalid input. Please enter a valid number (0-11):");
             }
 
         }
@@ -280,7 +336,8 @@ public class Client {
     public void requestListOfUsers() {
         try {
 
-            Message userListReqMessage = new Message(Command.USER_LIST_REQ.getCommand(), null);
+            String serializedPayload = codecs.writeValueAsString(new UserListReq(userDirectory.getVersion()));
+            Message userListReqMessage = new Message(Command.USER_LIST_REQ.getCommand(), serializedPayload);
             String serializedUserListReqMessage = messageHandler.serialize(userListReqMessage);
             serverWriter.println(serializedUserListReqMessage);
 
@@ -290,6 +347,33 @@ public class Client {
         }
     }
 
+    private void joinGameQueue() {
+        try {
+            Message gameQueueReqMessage = new Message(Command.GAME_QUEUE_REQ.getCommand(), null);
+            serverWriter.println(messageHandler.serialize(gameQueueReqMessage));
+        } catch (IOException e) {
+            System.err.println("Error during sending game queue request: " + e.getMessage());
+        }
+    }
+
+    private void signUpForTournament() {
+        try {
+            Message tournamentSignupReqMessage = new Message(Command.TOURNAMENT_SIGNUP_REQ.getCommand(), null);
+            serverWriter.println(messageHandler.serialize(tournamentSignupReqMessage));
+        } catch (IOException e) {
+            System.err.println("Error during sending tournament signup request: " + e.getMessage());
+        }
+    }
+
+    private void requestLeaderboard() {
+        try {
+            Message leaderboardReqMessage = new Message(Command.LEADERBOARD_REQ.getCommand(), null);
+            serverWriter.println(messageHandler.serialize(leaderboardReqMessage));
+        } catch (IOException e) {
+            System.err.println("Error during sending leaderboard request: " + e.getMessage());
+        }
+    }
+
     public void sendPrivateMessage() {
         try {
             String recipient = "";
@@ -314,7 +398,7 @@ public class Client {
                 }
             }
             PrivateMessageReq privateMessageReq = new PrivateMessageReq(recipient, message);
-            String payload = mapper.writeValueAsString(privateMessageReq);
+            String payload = codecs.writeValueAsString(privateMessageReq);
 
             Message privateMessage = new Message(Command.PRIVATE_MSG_REQ.getCommand(), payload);
             String serializedPrivateMessageRequest = messageHandler.serialize(privateMessage);
@@ -343,7 +427,7 @@ public class Client {
             }
 
             BroadcastReq broadcastReq = new BroadcastReq(message);
-            String payload = mapper.writeValueAsString(broadcastReq);
+            String payload = codecs.writeValueAsString(broadcastReq);
             Message broadcastMessage = new Message(Command.BROADCAST_REQ.getCommand(), payload);
             String serializedBroadcast = messageHandler.serialize(broadcastMessage);
 
@@ -397,7 +481,7 @@ public class Client {
             }
 
             GameStartReq gameStartReq = new GameStartReq(opponent);
-            String payload = mapper.writeValueAsString(gameStartReq);
+            String payload = codecs.writeValueAsString(gameStartReq);
             Message gameStartReqMessage = new Message(Command.GAME_START_REQ.getCommand(), payload);
             String serializedGameStartReq = messageHandler.serialize(gameStartReqMessage);
 
@@ -434,7 +518,7 @@ public class Client {
         try {
             String moveCode = (move != null) ? move.getCode() : null;
             GameMove gameMovePayload = new GameMove(moveCode);
-            String payload = mapper.writeValueAsString(gameMovePayload);
+            String payload = codecs.writeValueAsString(gameMovePayload);
             Message gameMoveMessage = new Message(Command.GAME_MOVE.getCommand(), payload);
             String serializedGameMoveMessage = messageHandler.serialize(gameMoveMessage);
             serverWriter.println(serializedGameMoveMessage);
@@ -447,11 +531,14 @@ public class Client {
 
     private void sendFileTransferRequest() {
         try {
-            String receiver = "";
-            while (receiver.isEmpty()) {
-                System.out.println("Please enter the username of the user you want send file to:");
-                receiver = reader.readLine().trim();
-                if (receiver.isEmpty()) {
+            List<String> receivers = List.of();
+            while (receivers.isEmpty()) {
+                System.out.println("Please enter the username of the user you want send file to (separate several users with commas):");
+                receivers = Arrays.stream(reader.readLine().split(","))
+                        .map(String::trim)
+                        .filter(username -> !username.isEmpty())
+                        .toList();
+                if (receivers.isEmpty()) {
                     System.out.println("Username of receiver user cannot be empty. Please try again.");
                 }
             }
@@ -468,53 +555,44 @@ public class Client {
 
             File file = new File(filePath);
             long fileSize = file.length();
-            String fileHash = calculateSHA256Hash(filePath);
+            String fileHash = checksums.checksumOf(Path.of(filePath), sendChecksumAlgorithm);
             // Get filename from the File object
             String fileName = file.getName();
 
 
-            FileTransferReq fileTransferReq = new FileTransferReq(receiver, fileName, fileSize, fileHash);
-            String payload = mapper.writeValueAsString(fileTransferReq);
+            String algorithm = FileDigest.SHA_256.equals(sendChecksumAlgorithm) ? null : sendChecksumAlgorithm;
+            // a file for several users is uploaded once and stored on the server, not streamed to each of them
+            FileTransferReq fileTransferReq = receivers.size() == 1
+                    ? new FileTransferReq(receivers.get(0), fileName, fileSize, fileHash,
+                    transferStreams > 1 ? transferStreams : null, algorithm, null,
+                    compress ? ChunkCompression.DEFLATE : null)
+                    : new FileTransferReq(null, fileName, fileSize, fileHash, null, algorithm, receivers, null);
+            String payload = codecs.writeValueAsString(fileTransferReq);
             Message fileTransferRequestMessage = new Message(Command.FILE_TRANSFER_REQ.getCommand(), payload);
             String serializedMessage = messageHandler.serialize(fileTransferRequestMessage);
             serverWriter.println(serializedMessage);
 
 
-        } catch (IOException | NoSuchAlgorithmException e) {
+        } catch (IOException e) {
             System.err.println("Error during sending file transfer request:" + e.getMessage());
         }
 
     }
 
-    public static String calculateSHA256Hash(String filePath) throws NoSuchAlgorithmException, IOException {
-
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        try (FileInputStream fis = new FileInputStream(filePath)) {
-            byte[] buffer = new byte[1024];
-            int n;
-            while ((n = fis.read(buffer)) != -1) {
-                digest.update(buffer, 0, n);
-            }
-        }
-        byte[] hashBytes = digest.digest();
-        StringBuilder sb = new StringBuilder();
-        for (byte b : hashBytes) {
-            sb.append(String.format("%02x", b));
-        }
-        return sb.toString();
-
-    }
-
     private void receiveFileTransferRequest(String payload) {
         try {
-            FileTransferReq request = mapper.readValue(payload, FileTransferReq.class);
+            FileTransferReq request = codecs.readValue(payload, FileTransferReq.class);
             String sender = request.receiverOrSender();
             String fileName = request.filename();
             long fileSize = request.fileSize();
             String checksum = request.checksum();
             System.out.println(sender + " wants to send you the file \"" + fileName + "\" with a size of " + fileSize + " bytes.");
             this.checksum = checksum;
+            this.checksumAlgorithm = request.checksumAlgorithm();
             this.fileName = fileName;
+            this.fileSize = fileSize;
+            this.proposedStreams = request.streams();
+            this.proposedCompression = request.compression();
             System.out.println("To accept, select option 7 from the menu; to reject, select option 8 from the menu.");
 
 
@@ -540,8 +618,11 @@ public class Client {
                 }
             }
 
-            FileTransferAccept fileTransferAccept = new FileTransferAccept(sender);
-            String serializedPayload = mapper.writeValueAsString(fileTransferAccept);
+            // both sides have to be able to use the streams, the server may still lower their number
+            int streams = Math.min(proposedStreams == null ? 1 : proposedStreams, transferStreams);
+            String compression = compress && ChunkCompression.DEFLATE.equals(proposedCompression) ? ChunkCompression.DEFLATE : null;
+            FileTransferAccept fileTransferAccept = new FileTransferAccept(sender, streams > 1 ? streams : null, compression);
+            String serializedPayload = codecs.writeValueAsString(fileTransferAccept);
             Message fileTransferAcceptMessage = new Message(Command.FILE_TRANSFER_ACCEPT.getCommand(), serializedPayload);
             String serializedMessage = messageHandler.serialize(fileTransferAcceptMessage);
             serverWriter.println(serializedMessage);
@@ -564,7 +645,7 @@ public class Client {
             }
 
             FileTransferReject fileTransferReject = new FileTransferReject(sender);
-            String serializedPayload = mapper.writeValueAsString(fileTransferReject);
+            String serializedPayload = codecs.writeValueAsString(fileTransferReject);
             Message fileTransferRejectMessage = new Message(Command.FILE_TRANSFER_REJECT.getCommand(), serializedPayload);
             String serializedMessage = messageHandler.serialize(fileTransferRejectMessage);
             serverWriter.println(serializedMessage);
@@ -577,20 +658,34 @@ public class Client {
 
     private void handleFileTransferInit(String payload) {
         String uuid = "";
+        int chunkSize = 0;
+        int streams = 1;
+        boolean spooled = false;
+        boolean compressed = false;
         try {
-            FileTransferInit fileTransferInit = mapper.readValue(payload, FileTransferInit.class);
+            FileTransferInit fileTransferInit = codecs.readValue(payload, FileTransferInit.class);
             uuid = fileTransferInit.uuid();
+            if (fileTransferInit.chunkSize() != null) {
+                chunkSize = fileTransferInit.chunkSize();
+            }
+            if (fileTransferInit.streams() != null) {
+                streams = fileTransferInit.streams();
+            }
+            spooled = Boolean.TRUE.equals(fileTransferInit.spooled());
+            compressed = ChunkCompression.DEFLATE.equals(fileTransferInit.compression());
 
         } catch (JsonProcessingException e) {
             System.err.println("Failed to process the file transfer init: " + e.getMessage());
         }
 
         if (!filePath.isEmpty()) {
-            ClientFileSender sender = new ClientFileSender(filePath, uuid, HOST, FILE_TRANSFER_PORT);
-            new Thread(sender).start();
+            ClientFileSender sender = new ClientFileSender(filePath, uuid, HOST, FILE_TRANSFER_PORT, chunkSize, streams,
+                    transferExecutor, spooled, compressed);
+            transferExecutor.execute(sender);
         } else {
-            ClientFileReceiver receiver = new ClientFileReceiver(checksum, uuid, fileName, HOST, FILE_TRANSFER_PORT);
-            new Thread(receiver).start();
+            ClientFileReceiver receiver = new ClientFileReceiver(checksum, checksumAlgorithm, uuid, fileName, fileSize, HOST, FILE_TRANSFER_PORT,
+                    chunkSize, streams, transferExecutor, spooled, compressed);
+            transferExecutor.execute(receiver);
 
         }
 
@@ -1,19 +1,55 @@
 package client;
 
+import shared.utility.FileDigest;
+
 import java.io.*;
 import java.net.Socket;
-import java.security.NoSuchAlgorithmException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 public class ClientFileReceiver implements Runnable {
     private final String uuid;
     private final String host;
     private final int port;
     private final String checksum;
+    // how the sender computed the checksum, see FileChecksums
+    private final String checksumAlgorithm;
     private final String fileName;
+    private final long fileSize;
+    // 0 when the file is streamed in one piece
+    private final int chunkSize;
+    // parallel connections of a chunked transfer, each receiving its own range of chunks
+    private final int streams;
+    private final ExecutorService executor;
+    // downloaded from the server's spool instead of relayed from the sender
+    private final boolean spooled;
+    // chunks may be deflated, see ChunkCompression
+    private final boolean compressed;
 
 
-    public ClientFileReceiver(String checksum, String uuid, String fileName, String host, int port) {
+    public ClientFileReceiver(String checksum, String checksumAlgorithm, String uuid, String fileName, long fileSize,
+                              String host, int port, int chunkSize, int streams, ExecutorService executor,
+                              boolean spooled, boolean compressed) {
+        this.spooled = spooled;
+        this.compressed = compressed;
+        this.checksumAlgorithm = checksumAlgorithm;
         this.uuid = uuid;
+        this.fileSize = fileSize;
+        this.chunkSize = chunkSize;
+        this.streams = streams;
+        this.executor = executor;
         this.host = host;
         this.port = port;
         this.fileName = fileName;
@@ -24,6 +60,14 @@ public class ClientFileReceiver implements Runnable {
 
     @Override
     public void run() {
+        if (spooled) {
+            download();
+            return;
+        }
+        if (chunkSize > 0) {
+            receiveChunks();
+            return;
+        }
         try {
             Socket socket = new Socket(host, port);
 
@@ -35,12 +79,20 @@ public class ClientFileReceiver implements Runnable {
             String downloadDirectory = "downloadedFiles";
             String fullPath = downloadDirectory + File.separator + fileName;
 
-            InputStream inputStream = socket.getInputStream();
-            OutputStream fileOutputStream = new FileOutputStream(fullPath);
-
-            inputStream.transferTo(fileOutputStream);
-
-            validateChecksum(fullPath);
+            ReadableByteChannel in = Channels.newChannel(socket.getInputStream());
+            // the file is hashed while it is written, it is not read again to validate it
+            try (DigestingChannel file = new DigestingChannel(FileChannel.open(Path.of(fullPath), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), FileDigest.of(checksumAlgorithm))) {
+                ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+                while (in.read(buffer) >= 0) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        file.write(buffer);
+                    }
+                    buffer.clear();
+                }
+                validateChecksum(file.checksum());
+            }
             socket.close();
 
 
@@ -52,20 +104,205 @@ public class ClientFileReceiver implements Runnable {
 
     }
 
-    public void validateChecksum(String receivedFilePath) {
+    /**
+     * Downloads the file from the spool of the server into {@code <name>.part}. When the connection drops, it
+     * reconnects and asks for the bytes after those it has.
+     */
+    private void download() {
+        Path target = Path.of("downloadedFiles", fileName);
+        Path part = Path.of("downloadedFiles", fileName + ".part");
         try {
+            Files.createDirectories(part.getParent());
+        } catch (IOException e) {
+            System.out.println("An error occurred during file transfer: " + e.getMessage());
+            return;
+        }
+        for (int attempt = 1; attempt <= FileChunks.MAX_ATTEMPTS; attempt++) {
+            String receivedChecksum = null;
+            try (Socket socket = new Socket(host, port);
+                 FileChannel file = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                         StandardOpenOption.WRITE)) {
+                long offset = Math.min(file.size(), fileSize);
+                file.truncate(offset);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                FileChunks.writeHeader(out, uuid, 'R', 0, 1);
+                out.writeLong(offset);
+                out.flush();
 
-            String generatedChecksum = Client.calculateSHA256Hash(receivedFilePath);
+                FileDigest digest = FileDigest.of(checksumAlgorithm);
+                hashPrefix(file, offset, digest);
+                file.position(offset);
+                DigestingChannel written = new DigestingChannel(file, digest);
+                ReadableByteChannel in = Channels.newChannel(socket.getInputStream());
+                ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+                while (in.read(buffer) >= 0) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        written.write(buffer);
+                    }
+                    buffer.clear();
+                }
+                if (file.size() == fileSize) {
+                    receivedChecksum = written.checksum();
+                }
+            } catch (IOException e) {
+                // reconnects below
+            }
+            if (receivedChecksum != null) {
+                try {
+                    Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException e) {
+                    System.out.println("An error occurred during file transfer: " + e.getMessage());
+                    return;
+                }
+                validateChecksum(receivedChecksum);
+                return;
+            }
+            System.out.println("The file transfer connection was lost, reconnecting (attempt " + attempt + " of " + FileChunks.MAX_ATTEMPTS + ").");
+            FileChunks.sleepBeforeRetry();
+        }
+        System.out.println("An error occurred during file transfer: the download could not be resumed. Its progress is kept in downloadedFiles.");
+    }
 
+    /**
+     * Hashes the bytes a previous attempt downloaded already.
+     */
+    private static void hashPrefix(FileChannel file, long length, FileDigest digest) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        long position = 0;
+        while (position < length) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), length - position));
+            int read = file.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            buffer.flip();
+            digest.update(buffer);
+            position += read;
+        }
+    }
 
-            if (generatedChecksum.equals(checksum)) {
-                System.out.println("Checksum validation of received file is successful. The file downloaded successfully and stored in downloadedFiles directory.");
+    /**
+     * Receives the file in chunks, each stream its own range of them, keeping the chunks that arrived intact in the
+     * download directory. The file is complete and validated once all streams are done.
+     */
+    private void receiveChunks() {
+        String fullPath = "downloadedFiles" + File.separator + fileName;
+        try (TransferProgress progress = TransferProgress.open(new File(fullPath), fileSize, chunkSize, checksum, checksumAlgorithm)) {
+            if (progress.firstMissing() > 0) {
+                System.out.println("Resuming download of " + fileName + " at chunk " + progress.firstMissing() + " of " + progress.getChunkCount() + ".");
+            }
+            List<Future<Boolean>> ranges = new ArrayList<>();
+            // the first range is received on this thread
+            for (int stream = 1; stream < streams; stream++) {
+                int current = stream;
+                ranges.add(executor.submit(() -> receiveRange(current, progress)));
+            }
+            boolean complete = receiveRange(0, progress);
+            for (Future<Boolean> range : ranges) {
+                try {
+                    complete &= range.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    complete = false;
+                } catch (ExecutionException e) {
+                    complete = false;
+                }
+            }
 
+            if (complete) {
+                String receivedChecksum = progress.checksum();
+                progress.complete();
+                validateChecksum(receivedChecksum);
             } else {
-                System.out.println("Checksum validation failed. The file might be corrupted during the transmission.");
+                System.out.println("An error occurred during file transfer: the download could not be resumed. Its progress is kept in downloadedFiles.");
+            }
+        } catch (IOException e) {
+            System.out.println("An error occurred during file transfer: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Receives the range of chunks of a stream. When the connection drops, it reconnects and asks for the chunks of
+     * the range that are still missing.
+     *
+     * @return true once every chunk of the range arrived.
+     */
+    private boolean receiveRange(int stream, TransferProgress progress) {
+        ChunkCompression compression = compressed ? new ChunkCompression() : null;
+        try {
+            return receiveRange(stream, progress, compression);
+        } finally {
+            if (compression != null) {
+                compression.end();
             }
-        } catch (NoSuchAlgorithmException | IOException e) {
-            System.err.println("Error while validating checksum: " + e.getMessage());
+        }
+    }
+
+    private boolean receiveRange(int stream, TransferProgress progress, ChunkCompression compression) {
+        int rangeStart = FileChunks.rangeStart(progress.getChunkCount(), streams, stream);
+        int rangeEnd = FileChunks.rangeStart(progress.getChunkCount(), streams, stream + 1);
+        for (int attempt = 1; attempt <= FileChunks.MAX_ATTEMPTS; attempt++) {
+            // the receiver closes first once it has every chunk, the sender waits for that
+            try (Socket socket = new Socket(host, port)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+                FileChunks.writeHeader(out, uuid, 'R', stream, streams);
+                FileChunks.writeMissing(out, progress.missing(rangeStart, rangeEnd), rangeEnd);
+                out.flush();
+
+                if (receiveRounds(in, out, progress, rangeStart, rangeEnd, compression)) {
+                    return true;
+                }
+            } catch (IOException e) {
+                System.out.println("The file transfer connection was lost, reconnecting (attempt " + attempt + " of " + FileChunks.MAX_ATTEMPTS + ").");
+            }
+            FileChunks.sleepBeforeRetry();
+        }
+        return false;
+    }
+
+    /**
+     * @return true once every chunk of the range arrived.
+     */
+    private boolean receiveRounds(DataInputStream in, DataOutputStream out, TransferProgress progress,
+                                  int rangeStart, int rangeEnd, ChunkCompression compression) throws IOException {
+        if (progress.firstMissing(rangeStart, rangeEnd) == rangeEnd) {
+            return true;
+        }
+        byte[] chunk = new byte[chunkSize];
+        MessageDigest digest = FileChunks.newDigest();
+        while (true) {
+            int index = in.readInt();
+            if (index == FileChunks.END_OF_ROUND) {
+                // chunks that failed their hash are still missing and are sent again, and only those
+                List<FileChunks.Run> missing = progress.missing(rangeStart, rangeEnd);
+                FileChunks.writeMissing(out, missing, rangeEnd);
+                out.flush();
+                if (missing.isEmpty()) {
+                    return true;
+                }
+                continue;
+            }
+            if (index < rangeStart || index >= rangeEnd) {
+                throw new IOException("Chunk " + index + " is not in the range " + rangeStart + " to " + rangeEnd);
+            }
+            int length = FileChunks.readChunk(in, chunk, digest, compression);
+            if (length >= 0) {
+                progress.write(index, chunk, length);
+            }
+        }
+    }
+
+    /**
+     * Compares the checksum of the received bytes, computed while they were written, with the one the sender sent.
+     */
+    public void validateChecksum(String receivedChecksum) {
+        if (receivedChecksum.equals(checksum)) {
+            System.out.println("Checksum validation of received file is successful. The file downloaded successfully and stored in downloadedFiles directory.");
+
+        } else {
+            System.out.println("Checksum validation failed. The file might be corrupted during the transmission.");
         }
     }
 
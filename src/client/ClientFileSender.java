@@ -2,22 +2,53 @@ package client;
 
 import java.io.*;
 import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 public class ClientFileSender implements Runnable {
     private final String filePath;
     private final String uuid;
     private final String host;
     private final int port;
+    // 0 when the file is streamed in one piece
+    private final int chunkSize;
+    // parallel connections of a chunked transfer, each sending its own range of chunks
+    private final int streams;
+    private final ExecutorService executor;
+    // uploaded to the server's spool instead of relayed to the receiver
+    private final boolean spooled;
+    // chunks are deflated while that pays off, see ChunkCompression
+    private final boolean compressed;
 
-    public ClientFileSender(String filePath, String uuid, String host, int port) {
+    public ClientFileSender(String filePath, String uuid, String host, int port, int chunkSize, int streams,
+                            ExecutorService executor, boolean spooled, boolean compressed) {
+        this.spooled = spooled;
+        this.compressed = compressed;
         this.filePath = filePath;
         this.uuid = uuid;
         this.host = host;
         this.port = port;
+        this.chunkSize = chunkSize;
+        this.streams = streams;
+        this.executor = executor;
     }
 
     @Override
     public void run() {
+        if (spooled) {
+            upload();
+            return;
+        }
+        if (chunkSize > 0) {
+            sendChunks();
+            return;
+        }
         try {
             Socket socket = new Socket(host, port);
             InputStream inputStream = new FileInputStream(filePath);
@@ -34,4 +65,132 @@ public class ClientFileSender implements Runnable {
             System.out.println("An error occurred during file transfer: " + e.getMessage());
         }
     }
+
+    /**
+     * Uploads the file to the spool of the server, starting at the byte the server asks for, so an upload that
+     * was interrupted continues where it stopped, and a file the server has already is not sent at all.
+     */
+    private void upload() {
+        for (int attempt = 1; attempt <= FileChunks.MAX_ATTEMPTS; attempt++) {
+            try (Socket socket = new Socket(host, port);
+                 InputStream file = Files.newInputStream(Path.of(filePath))) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                FileChunks.writeHeader(out, uuid, 'S', 0, 1);
+                out.flush();
+
+                long offset = in.readLong();
+                if (offset == new File(filePath).length()) {
+                    System.out.println("The server has this file already, it is not uploaded again.");
+                    return;
+                }
+                file.skipNBytes(offset);
+                file.transferTo(out);
+                out.flush();
+                socket.shutdownOutput();
+
+                int stored = in.read();
+                if (stored == 1) {
+                    System.out.println("File is uploaded.");
+                    return;
+                }
+                if (stored == 0) {
+                    System.out.println("An error occurred during file transfer: the server rejected the upload, it does not match its checksum.");
+                    return;
+                }
+                System.out.println("The file transfer connection was lost, reconnecting (attempt " + attempt + " of " + FileChunks.MAX_ATTEMPTS + ").");
+            } catch (IOException e) {
+                System.out.println("The file transfer connection was lost, reconnecting (attempt " + attempt + " of " + FileChunks.MAX_ATTEMPTS + ").");
+            }
+            FileChunks.sleepBeforeRetry();
+        }
+        System.out.println("An error occurred during file transfer: the upload could not be resumed.");
+    }
+
+    /**
+     * Sends the file in chunks, each stream its own range of them, and waits for all streams.
+     */
+    private void sendChunks() {
+        int chunkCount = FileChunks.chunkCount(new File(filePath).length(), chunkSize);
+        List<Future<Boolean>> ranges = new ArrayList<>();
+        // the first range is sent on this thread
+        for (int stream = 1; stream < streams; stream++) {
+            int current = stream;
+            ranges.add(executor.submit(() -> sendRange(current, chunkCount)));
+        }
+        boolean sent = sendRange(0, chunkCount);
+        for (Future<Boolean> range : ranges) {
+            try {
+                sent &= range.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                sent = false;
+            } catch (ExecutionException e) {
+                sent = false;
+            }
+        }
+
+        if (sent) {
+            System.out.println("File is uploaded.");
+        } else {
+            System.out.println("An error occurred during file transfer: the upload could not be resumed.");
+        }
+    }
+
+    /**
+     * Sends the chunks of the range of a stream that the receiver asks for. When the connection drops, it reconnects
+     * and sends what the receiver is still missing.
+     *
+     * @return true once the receiver has every chunk of the range.
+     */
+    private boolean sendRange(int stream, int chunkCount) {
+        ChunkCompression compression = compressed ? new ChunkCompression() : null;
+        try {
+            return sendRange(stream, chunkCount, compression);
+        } finally {
+            if (compression != null) {
+                compression.end();
+            }
+        }
+    }
+
+    private boolean sendRange(int stream, int chunkCount, ChunkCompression compression) {
+        int rangeStart = FileChunks.rangeStart(chunkCount, streams, stream);
+        int rangeEnd = FileChunks.rangeStart(chunkCount, streams, stream + 1);
+        for (int attempt = 1; attempt <= FileChunks.MAX_ATTEMPTS; attempt++) {
+            try (Socket socket = new Socket(host, port);
+                 RandomAccessFile file = new RandomAccessFile(filePath, "r")) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                FileChunks.writeHeader(out, uuid, 'S', stream, streams);
+                out.flush();
+
+                long fileSize = file.length();
+                byte[] chunk = new byte[chunkSize];
+                MessageDigest digest = FileChunks.newDigest();
+
+                List<FileChunks.Run> missing;
+                while (!(missing = FileChunks.readMissing(in, rangeStart, rangeEnd)).isEmpty()) {
+                    for (FileChunks.Run run : missing) {
+                        for (int index = run.first(); index < run.end(); index++) {
+                            int length = FileChunks.chunkLength(fileSize, chunkSize, index);
+                            file.seek((long) index * chunkSize);
+                            file.readFully(chunk, 0, length);
+                            FileChunks.writeChunk(out, index, chunk, length, digest, compression);
+                        }
+                    }
+                    out.writeInt(FileChunks.END_OF_ROUND);
+                    out.flush();
+                }
+                // closing only after the receiver did tells the file transfer server the transfer completed
+                in.read();
+                return true;
+
+            } catch (IOException e) {
+                System.out.println("The file transfer connection was lost, reconnecting (attempt " + attempt + " of " + FileChunks.MAX_ATTEMPTS + ").");
+            }
+            FileChunks.sleepBeforeRetry();
+        }
+        return false;
+    }
 }
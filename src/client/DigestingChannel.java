@@ -0,0 +1,49 @@
+package client;
+
+import shared.utility.FileDigest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Hashes the bytes written through it, so a download is hashed while it is written instead of read back afterwards.
+ * Only the bytes the underlying channel accepted are hashed.
+ */
+public class DigestingChannel implements WritableByteChannel {
+
+    private final WritableByteChannel channel;
+    private final FileDigest digest;
+
+    public DigestingChannel(WritableByteChannel channel, FileDigest digest) {
+        this.channel = channel;
+        this.digest = digest;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int start = src.position();
+        int written = channel.write(src);
+        if (written > 0) {
+            digest.update(src.duplicate().position(start).limit(start + written));
+        }
+        return written;
+    }
+
+    /**
+     * @return the checksum of everything written as hex.
+     */
+    public String checksum() {
+        return digest.checksum();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,102 @@
+package client;
+
+import shared.utility.FileDigest;
+import shared.utility.TreeChecksum;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Checksums of files, as sent in FILE_TRANSFER_REQ, with the algorithms of {@link FileDigest}; a
+ * {@link TreeChecksum} is computed on all cores. Checksums are cached by path, size and modification
+ * time, so sending the same file again does not read it again; a file that changed is hashed anew.
+ */
+public class FileChecksums {
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final int MAX_CACHED = 64;
+
+    private final ForkJoinPool pool;
+    private final ReentrantLock lock = new ReentrantLock();
+    // least recently used first
+    private final Map<Key, Cached> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Cached> eldest) {
+            return size() > MAX_CACHED;
+        }
+    };
+
+
+    public FileChecksums() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool the pool tree checksums are computed on.
+     */
+    public FileChecksums(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @return the checksum of the file with the given algorithm, from the cache if the file did not change since it
+     * was hashed.
+     */
+    public String checksumOf(Path file, String algorithm) throws IOException {
+        Key key = new Key(file.toAbsolutePath().normalize(), algorithm);
+        BasicFileAttributes attributes = Files.readAttributes(key.file, BasicFileAttributes.class);
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+
+        lock.lock();
+        try {
+            Cached cached = cache.get(key);
+            if (cached != null && cached.size == size && cached.modified == modified) {
+                return cached.checksum;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // hashed without the lock, so a large file does not hold up other files
+        String checksum = FileDigest.SHA_256_TREE.equals(algorithm) ? TreeChecksum.of(key.file, pool) : sha256(key.file);
+        lock.lock();
+        try {
+            cache.put(key, new Cached(size, modified, checksum));
+        } finally {
+            lock.unlock();
+        }
+        return checksum;
+    }
+
+    /**
+     * Hashes the file without caching, reading it in large blocks.
+     */
+    public static String sha256(Path file) throws IOException {
+        MessageDigest digest = FileChunks.newDigest();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (channel.read(buffer) >= 0) {
+                digest.update(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+        }
+        return FileDigest.toHex(digest.digest());
+    }
+
+    private record Key(Path file, String algorithm) {
+    }
+
+    private record Cached(long size, long modified, String checksum) {
+    }
+}
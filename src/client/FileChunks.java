@@ -0,0 +1,165 @@
+package client;
+
+import shared.utility.FileDigest;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The wire format of chunked file transfers, shared by {@link ClientFileSender} and {@link ClientFileReceiver}.
+ * <p>
+ * The receiver starts by sending the chunks it is missing, as runs of consecutive chunks: the index of the first chunk
+ * of a run and the index after its last chunk, as ints, followed by the chunk count. The sender then sends the chunks
+ * of those runs, each as its index, its length, the SHA-256 hash of its bytes and the bytes, followed by
+ * {@link #END_OF_ROUND}. The receiver answers with the runs it is still missing, so only chunks that failed their
+ * hash are sent again, and with no runs, just the chunk count, once it has them all. The receiver then closes the
+ * connection, and the sender closes it after seeing that. Closing in this order is how the file transfer server
+ * tells a completed transfer from an interrupted one.
+ * <p>
+ * A file sent over several streams is split into ranges of consecutive chunks, one per stream. Each stream connects
+ * with the index of its stream after its role, and runs the exchange above for its own range only: the receiver
+ * sends the runs missing in the range, followed by the end of the range.
+ * <p>
+ * In a compressed transfer, the hash of a chunk is followed by the number of bytes that follow: the length of the
+ * chunk if it is sent as it is, or fewer if it is deflated, see {@link ChunkCompression}. The hash is that of the
+ * chunk as it is in the file.
+ */
+public class FileChunks {
+
+    public static final int END_OF_ROUND = -1;
+    public static final int HASH_LENGTH = 32;
+    // attempts to reconnect after the connection of a chunked transfer dropped
+    public static final int MAX_ATTEMPTS = 5;
+    public static final int RETRY_DELAY_MS = 2_000;
+
+    public static int chunkCount(long fileSize, int chunkSize) {
+        return (int) ((fileSize + chunkSize - 1) / chunkSize);
+    }
+
+    public static int chunkLength(long fileSize, int chunkSize, int index) {
+        return (int) Math.min(chunkSize, fileSize - (long) index * chunkSize);
+    }
+
+    /**
+     * @return the first chunk of the range sent over the given stream; the range ends where that of the next stream starts.
+     */
+    public static int rangeStart(int chunkCount, int streams, int stream) {
+        return (int) ((long) stream * chunkCount / streams);
+    }
+
+    /**
+     * Sends what the file transfer server needs to pair a connection: the session, the role and, when the file is
+     * sent over several streams, the stream.
+     */
+    public static void writeHeader(OutputStream out, String uuid, char role, int stream, int streams) throws IOException {
+        out.write(uuid.getBytes());
+        out.write(role);
+        if (streams > 1) {
+            out.write(stream);
+        }
+    }
+
+    /**
+     * Sends the runs of chunks the receiver is missing, followed by the end of the range.
+     */
+    public static void writeMissing(DataOutputStream out, List<Run> missing, int rangeEnd) throws IOException {
+        for (Run run : missing) {
+            out.writeInt(run.first());
+            out.writeInt(run.end());
+        }
+        out.writeInt(rangeEnd);
+    }
+
+    /**
+     * @return the runs of chunks the receiver is missing, empty once it has every chunk of the range.
+     */
+    public static List<Run> readMissing(DataInputStream in, int rangeStart, int rangeEnd) throws IOException {
+        List<Run> missing = new ArrayList<>();
+        int previousEnd = rangeStart;
+        int first;
+        while ((first = in.readInt()) != rangeEnd) {
+            int end = in.readInt();
+            if (first < previousEnd || end <= first || end > rangeEnd) {
+                throw new IOException("Invalid missing chunks " + first + " to " + end + " of the range " + rangeStart + " to " + rangeEnd);
+            }
+            missing.add(new Run(first, end));
+            previousEnd = end;
+        }
+        return missing;
+    }
+
+    public static MessageDigest newDigest() {
+        return FileDigest.newSha256();
+    }
+
+    /**
+     * @param compression the compression of a compressed transfer, null otherwise.
+     */
+    public static void writeChunk(DataOutputStream out, int index, byte[] data, int length, MessageDigest digest,
+                                  ChunkCompression compression) throws IOException {
+        digest.update(data, 0, length);
+        out.writeInt(index);
+        out.writeInt(length);
+        out.write(digest.digest());
+        if (compression == null) {
+            out.write(data, 0, length);
+            return;
+        }
+        int compressed = compression.deflate(data, length);
+        if (compressed < 0) {
+            out.writeInt(length);
+            out.write(data, 0, length);
+        } else {
+            out.writeInt(compressed);
+            out.write(compression.buffer(), 0, compressed);
+        }
+    }
+
+    /**
+     * Reads the bytes of a chunk whose index was read already, and decompresses them in a compressed transfer.
+     *
+     * @param compression the compression of a compressed transfer, null otherwise.
+     * @return the length of the chunk, or -1 if its bytes do not match its hash.
+     */
+    public static int readChunk(DataInputStream in, byte[] data, MessageDigest digest, ChunkCompression compression)
+            throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > data.length) {
+            throw new IOException("Invalid chunk length " + length);
+        }
+        byte[] hash = new byte[HASH_LENGTH];
+        in.readFully(hash);
+        int sent = compression == null ? length : in.readInt();
+        if (sent < 0 || sent > length) {
+            throw new IOException("Invalid compressed chunk length " + sent);
+        }
+        if (sent == length) {
+            in.readFully(data, 0, length);
+        } else {
+            byte[] compressed = compression.buffer(sent);
+            in.readFully(compressed, 0, sent);
+            compression.inflate(compressed, sent, data, length);
+        }
+        digest.update(data, 0, length);
+        return MessageDigest.isEqual(hash, digest.digest()) ? length : -1;
+    }
+
+    /**
+     * Consecutive chunks, from the first up to but not including the end.
+     */
+    public record Run(int first, int end) {
+    }
+
+    static void sleepBeforeRetry() {
+        try {
+            Thread.sleep(RETRY_DELAY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
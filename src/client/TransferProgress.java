@@ -0,0 +1,268 @@
+package client;
+
+import shared.utility.FileDigest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The chunks of a download that arrived intact. The file is written to {@code <name>.part}, and a bitmap of the
+ * received chunks is kept next to it in {@code <name>.progress}, so a transfer that is interrupted, even by a restart
+ * of the client, continues with the missing chunks instead of starting over.
+ * <p>
+ * The progress file starts with the size, chunk size and checksum of the file; a partial download of a different
+ * file with the same name is discarded.
+ * <p>
+ * Chunks can be written by several streams at once: the part file is allocated at its full size up front and every
+ * chunk is written at its own position, so only the bitmap is guarded by a lock.
+ * <p>
+ * The checksum of the file is computed while it arrives: chunks that complete the received prefix of the file are
+ * hashed from memory, and only chunks that arrived ahead of it are read back, while they are likely still cached.
+ */
+public class TransferProgress implements AutoCloseable {
+
+    private final File partFile;
+    private final File progressFile;
+    private final File targetFile;
+    private final RandomAccessFile data;
+    private final FileChannel dataChannel;
+    private final RandomAccessFile progress;
+    private final long fileSize;
+    private final int chunkSize;
+    private final int chunkCount;
+    private final byte[] bitmap;
+    private final long bitmapOffset;
+    private final ReentrantLock lock = new ReentrantLock();
+    // no chunk before this index is missing
+    private int firstMissing;
+    // the checksum of the chunks before this index, which were all received
+    private final FileDigest fileDigest;
+    private int hashed;
+    private ByteBuffer readBack;
+
+
+    private TransferProgress(File targetFile, long fileSize, int chunkSize, String checksum, String checksumAlgorithm) throws IOException {
+        this.targetFile = targetFile;
+        this.fileDigest = FileDigest.of(checksumAlgorithm);
+        this.partFile = new File(targetFile.getPath() + ".part");
+        this.progressFile = new File(targetFile.getPath() + ".progress");
+        this.fileSize = fileSize;
+        this.chunkSize = chunkSize;
+        this.chunkCount = FileChunks.chunkCount(fileSize, chunkSize);
+        this.bitmap = new byte[(chunkCount + 7) / 8];
+
+        boolean resume = partFile.exists() && matches(fileSize, chunkSize, checksum);
+        this.data = new RandomAccessFile(partFile, "rw");
+        this.dataChannel = data.getChannel();
+        this.progress = new RandomAccessFile(progressFile, "rw");
+        if (resume) {
+            progress.readLong();
+            progress.readInt();
+            progress.readUTF();
+            bitmapOffset = progress.getFilePointer();
+            progress.readFully(bitmap);
+        } else {
+            data.setLength(0);
+            data.setLength(fileSize);
+            progress.setLength(0);
+            progress.writeLong(fileSize);
+            progress.writeInt(chunkSize);
+            progress.writeUTF(checksum);
+            bitmapOffset = progress.getFilePointer();
+            progress.write(bitmap);
+        }
+        advanceFirstMissing();
+    }
+
+    /**
+     * Opens the progress of downloading the file into the target, continuing a previous partial download if there is one.
+     */
+    public static TransferProgress open(File targetFile, long fileSize, int chunkSize, String checksum,
+                                        String checksumAlgorithm) throws IOException {
+        Files.createDirectories(targetFile.getAbsoluteFile().getParentFile().toPath());
+        return new TransferProgress(targetFile, fileSize, chunkSize, checksum, checksumAlgorithm);
+    }
+
+    private boolean matches(long fileSize, int chunkSize, String checksum) {
+        if (!progressFile.exists()) {
+            return false;
+        }
+        try (RandomAccessFile existing = new RandomAccessFile(progressFile, "r")) {
+            return existing.readLong() == fileSize
+                    && existing.readInt() == chunkSize
+                    && existing.readUTF().equals(checksum)
+                    && existing.length() - existing.getFilePointer() == bitmap.length;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public boolean isReceived(int index) {
+        lock.lock();
+        try {
+            return received(index);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean received(int index) {
+        return (bitmap[index >> 3] & (1 << (index & 7))) != 0;
+    }
+
+    /**
+     * @return the index of the first chunk that did not arrive yet, or the chunk count if the file is complete.
+     */
+    public int firstMissing() {
+        lock.lock();
+        try {
+            return firstMissing;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the index of the first chunk in the range that did not arrive yet, or the end of the range if it is complete.
+     */
+    public int firstMissing(int from, int to) {
+        lock.lock();
+        try {
+            int index = Math.max(from, firstMissing);
+            while (index < to && received(index)) {
+                index++;
+            }
+            return Math.min(index, to);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the runs of chunks in the range that did not arrive yet, empty if the range is complete.
+     */
+    public List<FileChunks.Run> missing(int from, int to) {
+        List<FileChunks.Run> missing = new ArrayList<>();
+        lock.lock();
+        try {
+            int index = Math.max(from, firstMissing);
+            while (index < to) {
+                if (received(index)) {
+                    index++;
+                    continue;
+                }
+                int first = index;
+                while (index < to && !received(index)) {
+                    index++;
+                }
+                missing.add(new FileChunks.Run(first, index));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return missing;
+    }
+
+    /**
+     * Writes a verified chunk to the partial file and records it as received.
+     */
+    public void write(int index, byte[] chunk, int length) throws IOException {
+        if (index < 0 || index >= chunkCount || length != FileChunks.chunkLength(fileSize, chunkSize, index)) {
+            throw new IOException("Unexpected chunk " + index + " with length " + length);
+        }
+        if (isReceived(index)) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(chunk, 0, length);
+        long position = (long) index * chunkSize;
+        while (buffer.hasRemaining()) {
+            position += dataChannel.write(buffer, position);
+        }
+        // the data goes first, so a chunk is never marked without its bytes
+        lock.lock();
+        try {
+            bitmap[index >> 3] |= (byte) (1 << (index & 7));
+            progress.seek(bitmapOffset + (index >> 3));
+            progress.write(bitmap[index >> 3]);
+            advanceFirstMissing();
+            if (index == hashed) {
+                fileDigest.update(chunk, 0, length);
+                hashed++;
+                hashReceived();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void advanceFirstMissing() {
+        while (firstMissing < chunkCount && received(firstMissing)) {
+            firstMissing++;
+        }
+    }
+
+    /**
+     * Hashes the chunks that were received after the prefix hashed so far, reading them from the partial file.
+     */
+    private void hashReceived() throws IOException {
+        while (hashed < chunkCount && received(hashed)) {
+            if (readBack == null) {
+                readBack = ByteBuffer.allocate(chunkSize);
+            }
+            readBack.clear().limit(FileChunks.chunkLength(fileSize, chunkSize, hashed));
+            long position = (long) hashed * chunkSize;
+            while (readBack.hasRemaining()) {
+                int read = dataChannel.read(readBack, position);
+                if (read < 0) {
+                    throw new IOException("The partial file ends before chunk " + hashed);
+                }
+                position += read;
+            }
+            fileDigest.update(readBack.array(), 0, readBack.limit());
+            hashed++;
+        }
+    }
+
+    /**
+     * @return the checksum of the complete file as hex.
+     */
+    public String checksum() throws IOException {
+        lock.lock();
+        try {
+            hashReceived();
+            if (hashed < chunkCount) {
+                throw new IOException("Chunk " + hashed + " is missing");
+            }
+            return fileDigest.checksum();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves the completed file to its target and removes the progress file.
+     */
+    public void complete() throws IOException {
+        close();
+        Files.move(partFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.delete(progressFile.toPath());
+    }
+
+    @Override
+    public void close() throws IOException {
+        data.close();
+        progress.close();
+    }
+}
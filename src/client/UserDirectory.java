@@ -0,0 +1,81 @@
+package client;
+
+import shared.messages.UserListResp;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The logged-in users as this client knows them, and the version of the user list they are from. The server only
+ * sends what changed since that version, or all users if this client is too far behind.
+ */
+public class UserDirectory {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // guarded by the lock
+    private final Set<String> users = new LinkedHashSet<>();
+    private long version;
+    private String ownUsername;
+
+    public void setOwnUsername(String ownUsername) {
+        lock.lock();
+        try {
+            this.ownUsername = ownUsername;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the version of the user list this client knows, 0 if it knows none.
+     */
+    public long getVersion() {
+        lock.lock();
+        try {
+            return version;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Applies a user list response, either all users or what changed since the known version.
+     */
+    public void apply(UserListResp userListResp) {
+        lock.lock();
+        try {
+            if (userListResp.users() != null) {
+                users.clear();
+                users.addAll(userListResp.users());
+            }
+            if (userListResp.left() != null) {
+                userListResp.left().forEach(users::remove);
+            }
+            if (userListResp.joined() != null) {
+                users.addAll(userListResp.joined());
+            }
+            if (userListResp.version() != null) {
+                version = userListResp.version();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the other logged-in users.
+     */
+    public List<String> getOtherUsers() {
+        lock.lock();
+        try {
+            List<String> otherUsers = new ArrayList<>(users);
+            otherUsers.remove(ownUsername);
+            return otherUsers;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package client.handlers;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 import shared.messages.Broadcast;
 
 
@@ -8,15 +8,15 @@ import java.io.IOException;
 import java.util.function.Consumer;
 
 public class BroadcastHandler implements Consumer<String> {
-    private  final ObjectMapper mapper;
+    private  final MessageCodecs codecs;
 
-    public BroadcastHandler(ObjectMapper mapper) {
-        this.mapper = mapper;
+    public BroadcastHandler(MessageCodecs codecs) {
+        this.codecs = codecs;
     }
     @Override
     public void accept(String payload) {
         try{
-        Broadcast broadcastMessage = mapper.readValue(payload, Broadcast.class);
+        Broadcast broadcastMessage = codecs.readValue(payload, Broadcast.class);
         String username= broadcastMessage.username();
         String message= broadcastMessage.message();
         System.out.println(username+" says "+message);
@@ -3,23 +3,23 @@ package client.handlers;
 import shared.utility.Code;
 import shared.utility.ErrorHandler;
 import shared.utility.Status;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 import shared.messages.BroadcastResp;
 
 import java.io.IOException;
 import java.util.function.Consumer;
 
 public class BroadcastRespHandler implements Consumer<String> {
-   private final  ObjectMapper mapper;
+   private final  MessageCodecs codecs;
 
-    public BroadcastRespHandler(ObjectMapper mapper) {
-        this.mapper = mapper;
+    public BroadcastRespHandler(MessageCodecs codecs) {
+        this.codecs = codecs;
     }
     @Override
     public void accept(String payload) {
         try {
             // Deserialize the payload into a BroadcastResp object
-            BroadcastResp broadcastResp = mapper.readValue(payload, BroadcastResp.class);
+            BroadcastResp broadcastResp = codecs.readValue(payload, BroadcastResp.class);
 
             // Retrieve the status and handle accordingly
             Status status = Status.valueOf(broadcastResp.status().toUpperCase());
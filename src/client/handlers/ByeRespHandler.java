@@ -1,18 +1,18 @@
 package client.handlers;
 
 import shared.utility.Status;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 import shared.messages.ByeResp;
 
 import java.io.IOException;
 import java.util.function.Consumer;
 
 public class ByeRespHandler implements Consumer<String> {
-    private final ObjectMapper mapper;
+    private final MessageCodecs codecs;
     private final Runnable onClose;
 
-    public ByeRespHandler(ObjectMapper mapper, Runnable onClose) {
-        this.mapper = mapper;
+    public ByeRespHandler(MessageCodecs codecs, Runnable onClose) {
+        this.codecs = codecs;
         this.onClose = onClose;
     }
 
@@ -20,7 +20,7 @@ public class ByeRespHandler implements Consumer<String> {
     public void accept(String payload) {
 
         try {
-            ByeResp byeResp = mapper.readValue(payload, ByeResp.class);
+            ByeResp byeResp = codecs.readValue(payload, ByeResp.class);
 
             Status status = Status.valueOf(byeResp.status().toUpperCase());
             if (status == Status.OK) {
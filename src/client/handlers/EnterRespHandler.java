@@ -3,7 +3,7 @@ package client.handlers;
 import shared.utility.Code;
 import shared.utility.ErrorHandler;
 import shared.utility.Status;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 
 import shared.messages.EnterResp;
 
@@ -11,11 +11,11 @@ import java.io.IOException;
 import java.util.function.Consumer;
 
 public class EnterRespHandler implements Consumer<String> {
-    private final ObjectMapper mapper;
+    private final MessageCodecs codecs;
 
 
-    public EnterRespHandler(ObjectMapper mapper) {
-        this.mapper = mapper;
+    public EnterRespHandler(MessageCodecs codecs) {
+        this.codecs = codecs;
 
     }
 
@@ -23,7 +23,7 @@ public class EnterRespHandler implements Consumer<String> {
     public void accept(String payload) {
         try {
 
-            EnterResp enterResp = mapper.readValue(payload, EnterResp.class);
+            EnterResp enterResp = codecs.readValue(payload, EnterResp.class);
 
 
             Status status = Status.valueOf(enterResp.status().toUpperCase());
@@ -1,7 +1,7 @@
 package client.handlers;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 import shared.messages.FileTransferAcceptResp;
 import shared.messages.FileTransferResp;
 import shared.utility.Code;
@@ -11,17 +11,17 @@ import shared.utility.Status;
 import java.util.function.Consumer;
 
 public class FileTransferAcceptRespHandler implements Consumer<String> {
-    private final ObjectMapper mapper;
+    private final MessageCodecs codecs;
 
-    public FileTransferAcceptRespHandler(ObjectMapper mapper) {
-        this.mapper = mapper;
+    public FileTransferAcceptRespHandler(MessageCodecs codecs) {
+        this.codecs = codecs;
     }
 
 
     @Override
     public void accept(String payload) {
         try {
-            FileTransferAcceptResp fileTransferAcceptResp = mapper.readValue(payload, FileTransferAcceptResp.class);
+            FileTransferAcceptResp fileTransferAcceptResp = codecs.readValue(payload, FileTransferAcceptResp.class);
             Status status = Status.valueOf(fileTransferAcceptResp.status().toUpperCase());
 
             if (status == Status.OK) {
@@ -1,7 +1,7 @@
 package client.handlers;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 import shared.messages.FileTransferAcceptResp;
 import shared.messages.FileTransferRejectResp;
 import shared.utility.Code;
@@ -12,16 +12,16 @@ import java.util.function.Consumer;
 
 public class FileTransferRejectRespHandler implements Consumer<String> {
 
-    private final ObjectMapper mapper;
+    private final MessageCodecs codecs;
 
-    public FileTransferRejectRespHandler(ObjectMapper mapper) {
-       this.mapper = mapper;
+    public FileTransferRejectRespHandler(MessageCodecs codecs) {
+       this.codecs = codecs;
     }
 
     @Override
     public void accept(String payload) {
         try {
-            FileTransferRejectResp fileTransferRejectResp = mapper.readValue(payload, FileTransferRejectResp.class);
+            FileTransferRejectResp fileTransferRejectResp = codecs.readValue(payload, FileTransferRejectResp.class);
             Status status = Status.valueOf(fileTransferRejectResp.status().toUpperCase());
 
             if (status == Status.OK) {
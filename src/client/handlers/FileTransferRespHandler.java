@@ -2,7 +2,7 @@ package client.handlers;
 
 import client.Client;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 import shared.messages.FileTransferResp;
 import shared.utility.Code;
 import shared.utility.ErrorHandler;
@@ -11,18 +11,18 @@ import shared.utility.Status;
 import java.util.function.Consumer;
 
 public class FileTransferRespHandler implements Consumer<String> {
-    private final ObjectMapper mapper;
+    private final MessageCodecs codecs;
     private final Client client;
 
-    public FileTransferRespHandler(ObjectMapper mapper, Client client) {
-        this.mapper = mapper;
+    public FileTransferRespHandler(MessageCodecs codecs, Client client) {
+        this.codecs = codecs;
         this.client = client;
     }
 
     @Override
     public void accept(String payload) {
         try {
-            FileTransferResp fileTransferResp = mapper.readValue(payload, FileTransferResp.class);
+            FileTransferResp fileTransferResp = codecs.readValue(payload, FileTransferResp.class);
             Status status = Status.valueOf(fileTransferResp.status().toUpperCase());
             if (status == Status.OK) {
                 System.out.println("File transfer was accepted by receiver and will start.");
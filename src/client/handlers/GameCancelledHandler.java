@@ -1,6 +1,6 @@
 package client.handlers;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 import shared.messages.GameCancelled;
 import shared.utility.Code;
 import shared.utility.ErrorHandler;
@@ -9,16 +9,16 @@ import java.io.IOException;
 import java.util.function.Consumer;
 
 public class GameCancelledHandler implements Consumer<String> {
-    private final ObjectMapper mapper;
+    private final MessageCodecs codecs;
 
-    public GameCancelledHandler(ObjectMapper mapper) {
-        this.mapper = mapper;
+    public GameCancelledHandler(MessageCodecs codecs) {
+        this.codecs = codecs;
     }
 
     @Override
     public void accept(String payload) {
         try{
-            GameCancelled gameCancelled = mapper.readValue(payload, GameCancelled.class);
+            GameCancelled gameCancelled = codecs.readValue(payload, GameCancelled.class);
             int errorCode = gameCancelled.errorCode();
             Code code = Code.fromCode(errorCode);
             System.out.println("Your game was cancelled for the reason below. Please start a new game if you would like to play.");
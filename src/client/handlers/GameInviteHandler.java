@@ -1,22 +1,22 @@
 package client.handlers;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 import shared.messages.GameInvite;
 import java.io.IOException;
 import java.util.function.Consumer;
 
 public class GameInviteHandler implements Consumer<String> {
-    private final ObjectMapper mapper;
+    private final MessageCodecs codecs;
 
-    public GameInviteHandler(ObjectMapper mapper) {
-        this.mapper = mapper;
+    public GameInviteHandler(MessageCodecs codecs) {
+        this.codecs = codecs;
     }
 
     @Override
     public void accept(String payload) {
         try {
 
-            GameInvite gameInvite = mapper.readValue(payload, GameInvite.class);
+            GameInvite gameInvite = codecs.readValue(payload, GameInvite.class);
             String initiator = gameInvite.initiator();
             System.out.println("You was invited to Rock/Paper/Scissors game by " + initiator);
 
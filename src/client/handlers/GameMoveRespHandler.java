@@ -1,6 +1,6 @@
 package client.handlers;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 import shared.messages.GameMoveResp;
 import shared.utility.Code;
 import shared.utility.ErrorHandler;
@@ -9,16 +9,16 @@ import shared.utility.Status;
 import java.util.function.Consumer;
 
 public class GameMoveRespHandler implements Consumer<String> {
-    private final ObjectMapper mapper;
+    private final MessageCodecs codecs;
 
-    public GameMoveRespHandler(ObjectMapper mapper) {
-        this.mapper = mapper;
+    public GameMoveRespHandler(MessageCodecs codecs) {
+        this.codecs = codecs;
     }
 
     @Override
     public void accept(String payload) {
         try {
-            GameMoveResp gameMoveResponse = mapper.readValue(payload, GameMoveResp.class);
+            GameMoveResp gameMoveResponse = codecs.readValue(payload, GameMoveResp.class);
             Status status = Status.valueOf(gameMoveResponse.status().toUpperCase());
             switch (status) {
                 case OK:
@@ -1,6 +1,6 @@
 package client.handlers;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 import shared.messages.GameNotification;
 
 import java.io.BufferedReader;
@@ -8,18 +8,18 @@ import java.io.IOException;
 import java.util.function.Consumer;
 
 public class GameNotificationHandler implements Consumer<String> {
-    private final ObjectMapper mapper;
+    private final MessageCodecs codecs;
 
 
-    public GameNotificationHandler(ObjectMapper mapper) {
-        this.mapper = mapper;
+    public GameNotificationHandler(MessageCodecs codecs) {
+        this.codecs = codecs;
 
     }
 
     @Override
     public void accept(String payload) {
         try {
-            GameNotification gameNotification = mapper.readValue(payload, GameNotification.class);
+            GameNotification gameNotification = codecs.readValue(payload, GameNotification.class);
             String initiator = gameNotification.initiator();
             String opponent = gameNotification.opponent();
             System.out.println("Game started between " + initiator + " and " + opponent);
@@ -0,0 +1,43 @@
+package client.handlers;
+
+import shared.utility.MessageCodecs;
+import shared.messages.GameQueueResp;
+import shared.utility.Code;
+import shared.utility.ErrorHandler;
+import shared.utility.Status;
+
+import java.util.function.Consumer;
+
+public class GameQueueRespHandler implements Consumer<String> {
+    private final MessageCodecs codecs;
+
+    public GameQueueRespHandler(MessageCodecs codecs) {
+        this.codecs = codecs;
+    }
+
+    @Override
+    public void accept(String payload) {
+        try {
+            GameQueueResp gameQueueResp = codecs.readValue(payload, GameQueueResp.class);
+            Status status = Status.valueOf(gameQueueResp.status().toUpperCase());
+            switch (status) {
+                case OK:
+                    System.out.println("You are waiting for an opponent. The game starts as soon as one is found.");
+                    break;
+
+                case ERROR:
+                    int errorCode = gameQueueResp.code();
+                    Code code = Code.fromCode(errorCode);
+
+                    if (code != null) {
+                        ErrorHandler.handleResponseErrors(code);
+                    } else {
+                        ErrorHandler.handleUnknownErrorCode(errorCode);
+                    }
+                    break;
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to process game queue response: " + e.getMessage());
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package client.handlers;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 import shared.messages.GameResult;
 import shared.utility.GameMoves;
 
@@ -9,16 +9,16 @@ import java.util.function.Consumer;
 
 public class GameResultHandler implements Consumer<String> {
 
-    private final ObjectMapper mapper;
+    private final MessageCodecs codecs;
 
-    public GameResultHandler(ObjectMapper mapper) {
-        this.mapper = mapper;
+    public GameResultHandler(MessageCodecs codecs) {
+        this.codecs = codecs;
     }
 
     @Override
     public void accept(String payload) {
         try {
-            GameResult gameResult = mapper.readValue(payload, GameResult.class);
+            GameResult gameResult = codecs.readValue(payload, GameResult.class);
             String winner = gameResult.winner();
             String initiatorMove = gameResult.initiatorMove();
             String opponentMove = gameResult.opponentMove();
@@ -1,6 +1,6 @@
 package client.handlers;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 import shared.messages.EnterResp;
 import shared.messages.GameStartResp;
 import shared.utility.Code;
@@ -12,10 +12,10 @@ import java.util.function.Consumer;
 
 public class GameStartRespHandler implements Consumer<String> {
 
-    private final ObjectMapper mapper;
+    private final MessageCodecs codecs;
 
-    public GameStartRespHandler(ObjectMapper mapper) {
-        this.mapper = mapper;
+    public GameStartRespHandler(MessageCodecs codecs) {
+        this.codecs = codecs;
 
     }
 
@@ -23,7 +23,7 @@ public class GameStartRespHandler implements Consumer<String> {
     public void accept(String payload) {
         try {
 
-            GameStartResp gameStartResp = mapper.readValue(payload, GameStartResp.class);
+            GameStartResp gameStartResp = codecs.readValue(payload, GameStartResp.class);
 
 
             Status status = Status.valueOf(gameStartResp.status().toUpperCase());
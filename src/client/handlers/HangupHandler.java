@@ -2,19 +2,19 @@ package client.handlers;
 
 import shared.utility.Code;
 import shared.utility.ErrorHandler;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 import shared.messages.Hangup;
 
 import java.io.IOException;
 import java.util.function.Consumer;
 
 public class HangupHandler implements Consumer<String> {
-    private final ObjectMapper mapper;
+    private final MessageCodecs codecs;
     private final Runnable closeConnection;
 
 
-    public HangupHandler(ObjectMapper mapper, Runnable closeConnection) {
-        this.mapper = mapper;
+    public HangupHandler(MessageCodecs codecs, Runnable closeConnection) {
+        this.codecs = codecs;
         this.closeConnection = closeConnection;
     }
 
@@ -22,7 +22,7 @@ public class HangupHandler implements Consumer<String> {
     public void accept(String payload) {
         try {
 
-            Hangup hangupMessage = mapper.readValue(payload, Hangup.class);
+            Hangup hangupMessage = codecs.readValue(payload, Hangup.class);
 
             int errorCode = hangupMessage.reasonCode();
             Code code = Code.fromCode(errorCode);
@@ -1,22 +1,22 @@
 package client.handlers;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 import shared.messages.Joined;
 
 import java.io.IOException;
 import java.util.function.Consumer;
 
 public class JoinedHandler implements Consumer<String> {
-    private final ObjectMapper mapper;
+    private final MessageCodecs codecs;
 
-    public JoinedHandler(ObjectMapper mapper) {
-        this.mapper = mapper;
+    public JoinedHandler(MessageCodecs codecs) {
+        this.codecs = codecs;
     }
     @Override
     public void accept(String payload) {
         try {
 
-            Joined joined = mapper.readValue(payload, Joined.class);
+            Joined joined = codecs.readValue(payload, Joined.class);
 
             // Print the message
             System.out.println("User joined: " + joined.username());
@@ -0,0 +1,57 @@
+package client.handlers;
+
+import shared.messages.LeaderboardEntry;
+import shared.messages.LeaderboardResp;
+import shared.utility.Code;
+import shared.utility.ErrorHandler;
+import shared.utility.MessageCodecs;
+import shared.utility.Status;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+public class LeaderboardRespHandler implements Consumer<String> {
+    private final MessageCodecs codecs;
+
+    public LeaderboardRespHandler(MessageCodecs codecs) {
+        this.codecs = codecs;
+    }
+
+    @Override
+    public void accept(String payload) {
+        try {
+            LeaderboardResp leaderboardResp = codecs.readValue(payload, LeaderboardResp.class);
+            Status status = Status.valueOf(leaderboardResp.status().toUpperCase());
+            switch (status) {
+                case OK:
+                    printLeaderboard(leaderboardResp.players());
+                    break;
+
+                case ERROR:
+                    int errorCode = leaderboardResp.code();
+                    Code code = Code.fromCode(errorCode);
+
+                    if (code != null) {
+                        ErrorHandler.handleResponseErrors(code);
+                    } else {
+                        ErrorHandler.handleUnknownErrorCode(errorCode);
+                    }
+                    break;
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to process leaderboard response: " + e.getMessage());
+        }
+    }
+
+    private void printLeaderboard(List<LeaderboardEntry> players) {
+        if (players.isEmpty()) {
+            System.out.println("Nobody has finished a Rock/Paper/Scissors game yet.");
+            return;
+        }
+        System.out.println("Rock/Paper/Scissors leaderboard (wins/losses/draws):");
+        for (int i = 0; i < players.size(); i++) {
+            LeaderboardEntry entry = players.get(i);
+            System.out.println((i + 1) + ". " + entry.username() + " " + entry.wins() + "/" + entry.losses() + "/" + entry.draws());
+        }
+    }
+}
@@ -1,22 +1,22 @@
 package client.handlers;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 import shared.messages.Left;
 
 import java.io.IOException;
 import java.util.function.Consumer;
 
 public class LeftHandler implements Consumer<String> {
-    private final ObjectMapper mapper;
+    private final MessageCodecs codecs;
 
-    public LeftHandler(ObjectMapper mapper) {
-        this.mapper = mapper;
+    public LeftHandler(MessageCodecs codecs) {
+        this.codecs = codecs;
     }
     @Override
     public void accept(String payload) {
         try {
 
-            Left left = mapper.readValue(payload, Left.class);
+            Left left = codecs.readValue(payload, Left.class);
 
             // Print the message
             System.out.println("User left: " + left.username());
@@ -4,26 +4,26 @@ package client.handlers;
 
 import shared.utility.Code;
 import shared.utility.ErrorHandler;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 import shared.messages.PongError;
 
 import java.io.IOException;
 import java.util.function.Consumer;
 
 public class PongErrorHandler implements Consumer<String> {
-    private final ObjectMapper mapper;
+    private final MessageCodecs codecs;
 
 
 
-    public PongErrorHandler(ObjectMapper mapper) {
-        this.mapper = mapper;
+    public PongErrorHandler(MessageCodecs codecs) {
+        this.codecs = codecs;
 
     }
     @Override
     public void accept(String payload) {
         try {
 
-            PongError pongErrorMessage = mapper.readValue(payload, PongError.class);
+            PongError pongErrorMessage = codecs.readValue(payload, PongError.class);
 
             int errorCode = pongErrorMessage.code();
             Code code = Code.fromCode(errorCode);
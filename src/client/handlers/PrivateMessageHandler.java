@@ -1,6 +1,6 @@
 package client.handlers;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 import shared.messages.Broadcast;
 import shared.messages.PrivateMessage;
 
@@ -9,16 +9,16 @@ import java.util.function.Consumer;
 
 public class PrivateMessageHandler implements Consumer<String> {
 
-    private final ObjectMapper mapper;
+    private final MessageCodecs codecs;
 
-    public PrivateMessageHandler(ObjectMapper mapper) {
-        this.mapper = mapper;
+    public PrivateMessageHandler(MessageCodecs codecs) {
+        this.codecs = codecs;
     }
 
     @Override
     public void accept(String payload) {
         try {
-            PrivateMessage privateMessage = mapper.readValue(payload, PrivateMessage.class);
+            PrivateMessage privateMessage = codecs.readValue(payload, PrivateMessage.class);
             String username = privateMessage.sender();
             String message = privateMessage.message();
             System.out.println(username + " says to you: " + message);
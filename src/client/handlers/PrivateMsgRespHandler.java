@@ -1,6 +1,6 @@
 package client.handlers;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 import shared.messages.EnterResp;
 import shared.messages.PrivateMessageResp;
 import shared.utility.Code;
@@ -11,16 +11,16 @@ import java.io.IOException;
 import java.util.function.Consumer;
 
 public class PrivateMsgRespHandler implements Consumer<String> {
-    private final ObjectMapper mapper;
+    private final MessageCodecs codecs;
 
-    public PrivateMsgRespHandler(ObjectMapper mapper) {
-        this.mapper = mapper;
+    public PrivateMsgRespHandler(MessageCodecs codecs) {
+        this.codecs = codecs;
     }
     @Override
     public void accept(String payload) {
         try {
 
-            PrivateMessageResp privateMsgResp = mapper.readValue(payload, PrivateMessageResp.class);
+            PrivateMessageResp privateMsgResp = codecs.readValue(payload, PrivateMessageResp.class);
 
 
             Status status = Status.valueOf(privateMsgResp.status().toUpperCase());
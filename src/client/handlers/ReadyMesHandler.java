@@ -1,17 +1,17 @@
 package client.handlers;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 import shared.messages.Ready;
 
 import java.io.IOException;
 import java.util.function.Consumer;
 
 public class ReadyMesHandler implements Consumer<String> {
-     private final ObjectMapper mapper;
+     private final MessageCodecs codecs;
     private final Runnable closeRunnable;
 
-    public ReadyMesHandler( ObjectMapper mapper, Runnable closeRunnable ) {
-        this.mapper = mapper;
+    public ReadyMesHandler( MessageCodecs codecs, Runnable closeRunnable ) {
+        this.codecs = codecs;
        this.closeRunnable = closeRunnable;
     }
     @Override
@@ -20,7 +20,7 @@ public class ReadyMesHandler implements Consumer<String> {
 
 
 
-            Ready readyMessage = mapper.readValue(payload, Ready.class);
+            Ready readyMessage = codecs.readValue(payload, Ready.class);
 
 
             System.out.println("Successfully connected to server, version: " + readyMessage.version());
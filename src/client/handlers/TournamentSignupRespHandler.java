@@ -0,0 +1,43 @@
+package client.handlers;
+
+import shared.utility.MessageCodecs;
+import shared.messages.TournamentSignupResp;
+import shared.utility.Code;
+import shared.utility.ErrorHandler;
+import shared.utility.Status;
+
+import java.util.function.Consumer;
+
+public class TournamentSignupRespHandler implements Consumer<String> {
+    private final MessageCodecs codecs;
+
+    public TournamentSignupRespHandler(MessageCodecs codecs) {
+        this.codecs = codecs;
+    }
+
+    @Override
+    public void accept(String payload) {
+        try {
+            TournamentSignupResp tournamentSignupResp = codecs.readValue(payload, TournamentSignupResp.class);
+            Status status = Status.valueOf(tournamentSignupResp.status().toUpperCase());
+            switch (status) {
+                case OK:
+                    System.out.println("You are signed up for the tournament. It starts once the signup closes.");
+                    break;
+
+                case ERROR:
+                    int errorCode = tournamentSignupResp.code();
+                    Code code = Code.fromCode(errorCode);
+
+                    if (code != null) {
+                        ErrorHandler.handleResponseErrors(code);
+                    } else {
+                        ErrorHandler.handleUnknownErrorCode(errorCode);
+                    }
+                    break;
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to process tournament signup response: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package client.handlers;
+
+import shared.utility.MessageCodecs;
+import shared.messages.TournamentUpdate;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class TournamentUpdateHandler implements Consumer<String> {
+    private final MessageCodecs codecs;
+
+    public TournamentUpdateHandler(MessageCodecs codecs) {
+        this.codecs = codecs;
+    }
+
+    @Override
+    public void accept(String payload) {
+        try {
+            TournamentUpdate update = codecs.readValue(payload, TournamentUpdate.class);
+            if (update.champion() != null) {
+                System.out.println("The tournament is over, " + update.champion() + " is the champion!");
+            } else if (update.players() != null) {
+                List<String> players = update.players();
+                System.out.println("Round " + update.round() + " of the tournament starts with " + players.size() + " players:");
+                for (int i = 0; i + 1 < players.size(); i += 2) {
+                    System.out.println("  " + players.get(i) + " vs " + players.get(i + 1));
+                }
+                if (players.size() % 2 == 1) {
+                    System.out.println("  " + players.get(players.size() - 1) + " advances without playing");
+                }
+            } else if (update.loser() != null) {
+                System.out.println("Round " + update.round() + ": " + update.winner() + " beat " + update.loser());
+            }
+        } catch (IOException e) {
+            System.out.println("Failed to process tournament update message:" + e.getMessage());
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package client.handlers;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import shared.messages.EnterResp;
+import client.UserDirectory;
+import shared.utility.MessageCodecs;
 import shared.messages.UserListResp;
 import shared.utility.Code;
 import shared.utility.ErrorHandler;
@@ -13,10 +13,12 @@ import java.util.function.Consumer;
 
 public class UserListRespHandler implements Consumer<String> {
 
-    private final ObjectMapper mapper;
+    private final MessageCodecs codecs;
+    private final UserDirectory userDirectory;
 
-    public UserListRespHandler(ObjectMapper mapper) {
-        this.mapper = mapper;
+    public UserListRespHandler(MessageCodecs codecs, UserDirectory userDirectory) {
+        this.codecs = codecs;
+        this.userDirectory = userDirectory;
     }
 
 
@@ -24,14 +26,15 @@ public class UserListRespHandler implements Consumer<String> {
     public void accept(String payload) {
         try {
 
-            UserListResp userListResp = mapper.readValue(payload, UserListResp.class);
+            UserListResp userListResp = codecs.readValue(payload, UserListResp.class);
 
 
             Status status = Status.valueOf(userListResp.status().toUpperCase());
 
             switch (status) {
                 case OK:
-                    printUserList(userListResp.users());
+                    userDirectory.apply(userListResp);
+                    printUserList(userDirectory.getOtherUsers());
                     break;
 
 
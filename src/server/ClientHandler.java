@@ -2,39 +2,55 @@ package server;
 
 import shared.utility.model.Message;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 import server.handlers.*;
 import shared.messages.*;
+import shared.utility.Code;
 import shared.utility.Command;
 import shared.utility.GameMoves;
 import shared.utility.MessageHandler;
-import shared.utility.Status;
 
 import java.io.*;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 public class ClientHandler implements Runnable {
 
     // client socket and server instance
     private final Socket clientSocket;
+    // set when the client is served by a NioEventLoop instead of its own thread
+    private final NioConnection connection;
 
     private PrintWriter writer;
-    private BufferedReader reader;
+    // frames waiting for this client; drained by the event loop in NIO mode, by the outbound writer otherwise
+    private OutboundQueue outboundQueue;
+    private OutboundWriter outboundWriter;
 
     private String username;
     private final Server server;
     private final MessageHandler messageHandler;
-    private final ObjectMapper mapper = new ObjectMapper();
+    private final MessageCodecs codecs = MessageCodecs.shared();
     private final Map<Command, Consumer<String>> commands = new HashMap<>();
     private PongManager pongManager;
+    // how long a slow client gets to read its HANGUP before the socket is closed anyway
+    private static final int SLOW_CONSUMER_CLOSE_DELAY_MS = 5_000;
 
 
     public ClientHandler(Socket clientSocket, Server server, String serverVersion) {
+        this(clientSocket, null, server, serverVersion);
+    }
+
+    public ClientHandler(NioConnection connection, Server server, String serverVersion) {
+        this(connection.getChannel().socket(), connection, server, serverVersion);
+    }
+
+    private ClientHandler(Socket clientSocket, NioConnection connection, Server server, String serverVersion) {
         this.clientSocket = clientSocket;
+        this.connection = connection;
         this.server = server;
         this.messageHandler = new MessageHandler();
 
@@ -43,7 +59,7 @@ public class ClientHandler implements Runnable {
 
             putCommandsForMessagesFromServerIntoMap();
             sendReadyMessage(serverVersion);
-            this.pongManager = new PongManager(this, mapper, writer, messageHandler);
+            this.pongManager = new PongManager(this, server.getTimer());
 
         } else {
             System.err.println("Failed to set up streams for client: " + clientSocket.getInetAddress());
@@ -54,132 +70,143 @@ public class ClientHandler implements Runnable {
 
     private void putCommandsForMessagesFromServerIntoMap() {
 
-        this.commands.put(Command.ENTER, new EnterHandler(mapper, this, writer, messageHandler, this::handleParseError));
+        this.commands.put(Command.ENTER, new EnterHandler(codecs, this, this::handleParseError));
         this.commands.put(Command.BYE, payload -> logoutUser());
-        this.commands.put(Command.BROADCAST_REQ, new BroadcastReqHandler(mapper, this, writer, messageHandler, this::handleParseError));
-        this.commands.put(Command.USER_LIST_REQ, new UserListReqHandler(mapper, this, writer, messageHandler));
-        this.commands.put(Command.PRIVATE_MSG_REQ, new PrivateMsgReqHandler(mapper, this, writer, messageHandler, this::handleParseError));
-        this.commands.put(Command.GAME_START_REQ, new GameStartReqHandler(this, mapper, writer, messageHandler, this::handleParseError));
-        this.commands.put(Command.GAME_MOVE, new GameMoveHandler(mapper, this, writer, messageHandler, this::handleParseError));
-        this.commands.put(Command.FILE_TRANSFER_REQ, new FileTransferReqHandler(this, mapper, writer, messageHandler, this::handleParseError));
-        this.commands.put(Command.FILE_TRANSFER_ACCEPT, new FileTransferAcceptHandler(mapper, this, writer, messageHandler, this::handleParseError));
-        this.commands.put(Command.FILE_TRANSFER_REJECT, new FileTransferRejectHandler(mapper, this, writer, messageHandler, this::handleParseError));
+        this.commands.put(Command.BROADCAST_REQ, new BroadcastReqHandler(codecs, this, this::handleParseError));
+        this.commands.put(Command.USER_LIST_REQ, new UserListReqHandler(codecs, this, this::handleParseError));
+        this.commands.put(Command.PRIVATE_MSG_REQ, new PrivateMsgReqHandler(codecs, this, this::handleParseError));
+        this.commands.put(Command.GAME_START_REQ, new GameStartReqHandler(this, codecs, writer, messageHandler, this::handleParseError));
+        this.commands.put(Command.GAME_MOVE, new GameMoveHandler(codecs, this, this::handleParseError));
+        this.commands.put(Command.GAME_QUEUE_REQ, new GameQueueReqHandler(this));
+        this.commands.put(Command.TOURNAMENT_SIGNUP_REQ, new TournamentSignupReqHandler(this));
+        this.commands.put(Command.LEADERBOARD_REQ, new LeaderboardReqHandler(codecs, this, this::handleParseError));
+        this.commands.put(Command.FILE_TRANSFER_REQ, new FileTransferReqHandler(this, codecs, this::handleParseError));
+        this.commands.put(Command.FILE_TRANSFER_ACCEPT, new FileTransferAcceptHandler(codecs, this, this::handleParseError));
+        this.commands.put(Command.FILE_TRANSFER_REJECT, new FileTransferRejectHandler(codecs, this, this::handleParseError));
 
     }
 
+    /**
+     * Sends the other logged-in users, for clients that do not keep track of the user list version.
+     */
     public void sendListOfUsersToUser() {
-
-        ArrayList<String> users = new ArrayList<>(server.getLoggedInUsers().keySet());
-
+        List<String> users = new ArrayList<>(server.getPresence().getUsers());
         users.remove(this.username);
         try {
-
-
-            UserListResp userListRespMessage = UserListResp.success(users);
-            String serializedPayload = mapper.writeValueAsString(userListRespMessage);
-
-
+            String serializedPayload = codecs.writeValueAsString(UserListResp.success(users));
             Message userListSuccessMessage = new Message(Command.USER_LIST_RESP.getCommand(), serializedPayload);
-            String serializedMessage = messageHandler.serialize(userListSuccessMessage);
-
-            writer.println(serializedMessage);
-
-
+            send(Frames.encode(messageHandler.serialize(userListSuccessMessage)));
         } catch (IOException e) {
            System.err.println("Error serializing user list response: " + e.getMessage());
         }
+    }
 
-
+    /**
+     * Sends the users who joined and left since the given version of the user list, or all users if the client is
+     * too far behind.
+     */
+    public void sendUserListChanges(long knownVersion) {
+        send(server.getPresence().changesSince(knownVersion));
     }
 
 
     public void sendPrivateMessage(String sender, String recipient, String message) {
-        try {
-
-
-            PrivateMessageResp privateMessageRespMessage = PrivateMessageResp.success();
-            String serializedPayload = mapper.writeValueAsString(privateMessageRespMessage);
-            Message privateMsgSuccessMessage = new Message(Command.PRIVATE_MSG_RESP.getCommand(), serializedPayload);
-            String serializedMessage = messageHandler.serialize(privateMsgSuccessMessage);
-            writer.println(serializedMessage);
-
-            server.sendPrivateMessageToSpecificUser(sender, recipient, message);
-
-
-        } catch (IOException e) {
-           System.err.println("Error serializing private message response: " + e.getMessage());
-        }
+        send(ResponseFrames.success(Command.PRIVATE_MSG_RESP));
 
+        server.sendPrivateMessageToSpecificUser(sender, recipient, message);
     }
 
     public PrintWriter getWriter() {
         return writer;
     }
 
+    /**
+     * Queues an already encoded frame for this client without blocking the calling thread.
+     */
+    public void send(byte[] frame) {
+        outboundQueue.offer(frame);
+    }
+
+    /**
+     * Queues a control frame, like PING or HANGUP, that is written without waiting to be coalesced with other frames.
+     */
+    public void sendUrgent(byte[] frame) {
+        outboundQueue.offerUrgent(frame);
+    }
+
     @Override
     public void run() {
         try {
-            String input;
-            while ((input = reader.readLine()) != null) {
-                processMessage(input);
+            LineFramer lineFramer = new LineFramer(this::processMessage);
+            InputStream inputStream = clientSocket.getInputStream();
+            while (lineFramer.readFrom(inputStream) != -1) {
+                // every complete line has been processed by the framer
             }
-            close();
-
-            server.removeUser(username, clientSocket);
+            connectionClosed();
 
         } catch (IOException e) {
 
-            close();
+            connectionClosed();
         }
     }
 
-
-    private void processMessage(String input) {
-        try {
-            Message clientMessage = messageHandler.deserialize(input);
-            String header = "";
-            String payload = "";
-            if (clientMessage != null) {
-                header = clientMessage.getHeader();
-                payload = clientMessage.getPayload();
-
-                if (!header.equals(Command.PONG.getCommand()) &&
-                        !header.equals(Command.BYE.getCommand()) &&
-                        !header.equals(Command.USER_LIST_REQ.getCommand())) {
-                    // If the payload is empty, set it to "{}"
-                    if (payload.isEmpty()) {
-                        payload = "{}";
-                    }
-                }
+    /**
+     * Called once the client has closed its side of the connection, or the connection broke.
+     */
+    void connectionClosed() {
+        close();
+        if (pongManager != null) {
+            pongManager.stopPingProcess();
+        }
+        if (username != null) {
+            server.removeUser(username, clientSocket);
+            // a game of a client that dropped without BYE would otherwise wait for its move timeout
+            server.handleGameDisconnection(this, username);
+        }
+    }
 
 
-            }
+    /**
+     * Parses one received line in place: the header is resolved from the raw bytes, only the payload is decoded.
+     */
+    void processMessage(byte[] line, int start, int end) {
+        int headerEnd = start;
+        while (headerEnd < end && line[headerEnd] != ' ') {
+            headerEnd++;
+        }
+        Command command = Command.fromBytes(line, start, headerEnd);
+        if (command == null) {
+            handleUnknownCommand();
+            return;
+        }
 
-            Command command = Command.getCommandFromString(header);
-            if (command == null) {
-                handleUnknownCommand();
-                return;
-            }
+        if (command == Command.PONG) {
+            pongManager.processPongCommand();
+            return;
+        }
 
-            if (command == Command.PONG) {
-                pongManager.processPongCommand();
-                return;
+        String payload = headerEnd < end ? new String(line, headerEnd + 1, end - headerEnd - 1, StandardCharsets.UTF_8) : "";
+        if (command != Command.BYE && command != Command.USER_LIST_REQ && command != Command.GAME_QUEUE_REQ
+                && command != Command.TOURNAMENT_SIGNUP_REQ) {
+            // If the payload is empty, set it to "{}"
+            if (payload.isEmpty()) {
+                payload = "{}";
             }
-
-
-            this.commands.get(command).accept(payload);
-
-        } catch (JsonProcessingException e) {
-            handleParseError();
         }
+
+        this.commands.get(command).accept(payload);
     }
 
     private boolean setup() {
         try {
-            InputStream inputStream = clientSocket.getInputStream();
-            OutputStream outputStream = clientSocket.getOutputStream();
-            reader = new BufferedReader(new InputStreamReader(inputStream));
-            writer = new PrintWriter(outputStream, true);
+            if (connection != null) {
+                outboundQueue = connection.getOutboundQueue();
+            } else {
+                outboundWriter = new OutboundWriter(clientSocket, server.getWriterExecutor(), server.getFlushScheduler(), server.getConfig());
+                outboundQueue = outboundWriter.getQueue();
+            }
+            outboundQueue.setOverflowHandler(this::disconnectSlowConsumer);
+            writer = new PrintWriter(new FrameOutputStream(outboundQueue), true, StandardCharsets.UTF_8);
             return true;
         } catch (IOException e) {
             System.err.println("Unable to establish the client connection: " + e.getMessage());
@@ -191,7 +218,7 @@ public class ClientHandler implements Runnable {
         try {
             // Create the payload
             Ready readyPayload = new Ready(serverVersion);
-            String serializedPayload = mapper.writeValueAsString(readyPayload);
+            String serializedPayload = codecs.writeValueAsString(readyPayload);
 
             // Create the full READY message
             Message readyMessage = new Message(Command.READY.getCommand(), serializedPayload);
@@ -217,60 +244,36 @@ public class ClientHandler implements Runnable {
 
 
     public void loginUser(String username) {
-        try {
-            this.username = username;
-
-
-            EnterResp successLoginPayload = EnterResp.success();
-            String serializedPayload = mapper.writeValueAsString(successLoginPayload);
+        this.username = username;
 
-            // Create the full READY message
-            Message loginSuccessMessage = new Message(Command.ENTER_RESP.getCommand(), serializedPayload);
-            String serializedMessage = messageHandler.serialize(loginSuccessMessage);
-
-            writer.println(serializedMessage);
-
-            server.addNewUser(this.username, this);
-            server.sendJoinedMessageToAllUsers(username);
+        send(ResponseFrames.success(Command.ENTER_RESP));
 
+        server.addNewUser(this.username, this);
+        server.sendJoinedMessageToAllUsers(username);
 
-            pongManager.startPingProcess();
-
-
-        } catch (IOException e) {
-            System.err.println("Error logging in: " + e.getMessage());
-        }
 
+        pongManager.startPingProcess();
     }
 
 
     private void logoutUser() {
-        try {
-            ByeResp byeResp = new ByeResp(Status.OK.getStatus());
-            String payload = mapper.writeValueAsString(byeResp);
-            Message byeResponseMessage = new Message(Command.BYE_RESP.getCommand(), payload);
-            String serializedMessage = messageHandler.serialize(byeResponseMessage);
-            writer.println(serializedMessage);
-            writer.flush();
-
-
-            pongManager.stopPingProcess();
-            server.removeUser(this.username, this.clientSocket);
-            server.sendLeftMessageToAllUsers(this.username);
-            server.handleGameDisconnection(this, username);
-        } catch (JsonProcessingException e) {
-            System.err.println("Error sending bye response message: " + e.getMessage());
-        }
+        send(ResponseFrames.success(Command.BYE_RESP));
 
+        pongManager.stopPingProcess();
+        server.removeUser(this.username, this.clientSocket);
+        server.sendLeftMessageToAllUsers(this.username);
+        server.handleGameDisconnection(this, username);
     }
 
 
     private void close() {
         try {
 
-            if (reader != null) reader.close();
             if (writer != null) writer.close();
-            if (clientSocket != null) clientSocket.close();
+            // the socket, and with it the input stream, is closed once the queued frames are written
+            if (connection != null) connection.close();
+            else if (outboundWriter != null) outboundWriter.close();
+            else if (clientSocket != null) clientSocket.close();
 
         } catch (IOException e) {
             System.err.println("Error closing resources: " + e.getMessage());
@@ -282,69 +285,69 @@ public class ClientHandler implements Runnable {
         try {
             pongManager.stopPingProcess();
             server.removeUser(username, clientSocket);
+            // a game of a client that dropped without BYE would otherwise wait for its move timeout
+            server.handleGameDisconnection(this, username);
             close();
         } catch (Exception e) {
             System.err.println("Error handling disconnection for client: " + username);
         }
     }
 
-    private void handleUnknownCommand() {
-        try {
-            Message unknownCommandMessage = new Message(Command.UNKNOWN_COMMAND.getCommand(), null);
-            String serializedMessage = messageHandler.serialize(unknownCommandMessage);
-            writer.println(serializedMessage);
-
-        } catch (JsonProcessingException e) {
-            System.err.println("Error sending message about unknown command: " + e.getMessage());
+    /**
+     * Called when this client's outbound queue overflowed: the client gets a HANGUP and is disconnected.
+     */
+    private void disconnectSlowConsumer() {
+        outboundQueue.offerFinal(ResponseFrames.error(Command.HANGUP, Code.SLOW_CONSUMER));
+        System.err.println("Client " + username + " does not read its messages fast enough. Disconnecting...");
+        if (pongManager != null) {
+            pongManager.stopPingProcess();
         }
-
-
+        if (username != null) {
+            server.removeUser(username, clientSocket);
+            server.handleGameDisconnection(this, username);
+        }
+        close();
+        server.getTimer().schedule(this::closeSocket, SLOW_CONSUMER_CLOSE_DELAY_MS, TimeUnit.MILLISECONDS);
     }
 
-    private void handleParseError() {
+    private void closeSocket() {
         try {
-
-            Message parseErrorMessage = new Message(Command.PARSE_ERROR.getCommand(), null);
-            String serializedMessage = messageHandler.serialize(parseErrorMessage);
-
-            writer.println(serializedMessage);
-            System.err.println("Sent PARSE_ERROR to client: " + username);
-
-        } catch (JsonProcessingException e) {
-            System.err.println("Error sending PARSE_ERROR to client: " + e.getMessage());
+            clientSocket.close();
+        } catch (IOException e) {
+            System.err.println("Error closing client socket: " + e.getMessage());
         }
     }
 
-    public void broadcastMessage(String username, String message) {
-        try {
-
-            BroadcastResp successBroadcastResponsePayload = BroadcastResp.success();
-            String serializedPayload = mapper.writeValueAsString(successBroadcastResponsePayload);
+    public OutboundQueue getOutboundQueue() {
+        return outboundQueue;
+    }
 
+    private void handleUnknownCommand() {
+        send(ResponseFrames.withoutPayload(Command.UNKNOWN_COMMAND));
+    }
 
-            Message broadcastSuccessMessage = new Message(Command.BROADCAST_RESP.getCommand(), serializedPayload);
-            String serializedMessage = messageHandler.serialize(broadcastSuccessMessage);
-            writer.println(serializedMessage);
+    private void handleParseError() {
+        send(ResponseFrames.withoutPayload(Command.PARSE_ERROR));
+        System.err.println("Sent PARSE_ERROR to client: " + username);
+    }
 
-            server.sendBroadcastMessageToAllUsers(username, message);
+    public void broadcastMessage(String username, String message) {
+        send(ResponseFrames.success(Command.BROADCAST_RESP));
 
-        } catch (JsonProcessingException e) {
-            System.err.println("Error sending message about broadcast response: " + e.getMessage());
-        }
+        server.sendBroadcastMessageToAllUsers(username, message);
     }
 
-    public void sentSuccessGameStartResponse(String opponent) {
-        try {
-            GameStartResp successGameStartResponsePayload = GameStartResp.success();
-            String serializedPayload = mapper.writeValueAsString(successGameStartResponsePayload);
-            Message gameStartSuccessMessage = new Message(Command.GAME_START_RESP.getCommand(), serializedPayload);
-            String serializedMessage = messageHandler.serialize(gameStartSuccessMessage);
-            writer.println(serializedMessage);
-            server.sendGameInvite(opponent, this.username);
-
-        } catch (JsonProcessingException e) {
-            System.out.println("Error during sending game start response: " + e.getMessage());
+    /**
+     * @return false if the game was not started, because one of the players started another one just now.
+     */
+    public boolean startGameAndSendSuccessResponse(String opponent) {
+        Game game = server.startGame(this, opponent);
+        if (game == null) {
+            return false;
         }
+        send(ResponseFrames.success(Command.GAME_START_RESP));
+        server.sendGameInvite(game);
+        return true;
     }
 
 
@@ -356,72 +359,77 @@ public class ClientHandler implements Runnable {
         return pongManager;
     }
 
-    public List<String> getGamePlayers() {
-        return server.checkIfGameActiveAndGetPlayers();
+    /**
+     * @return false if the user is waiting for an opponent already.
+     */
+    public boolean joinGameQueueAndSendSuccessResponse() {
+        return server.joinGameQueue(this, () -> send(ResponseFrames.success(Command.GAME_QUEUE_RESP)));
     }
 
-    public boolean checkIfGameActive() {
-        return server.isGameActive();
+    /**
+     * @return null if the user signed up for the tournament, otherwise the reason why not.
+     */
+    public Code signUpForTournament() {
+        return server.signUpForTournament(this);
     }
 
-    public boolean checkIfClientGameParticipant() {
-        return server.isGameParticipant(this);
+    public void sendLeaderboard(int count) {
+        try {
+            String serializedPayload = codecs.writeValueAsString(LeaderboardResp.success(server.getLeaderboard(count)));
+            Message leaderboardMessage = new Message(Command.LEADERBOARD_RESP.getCommand(), serializedPayload);
+            send(Frames.encode(messageHandler.serialize(leaderboardMessage)));
+        } catch (IOException e) {
+            System.err.println("Error serializing leaderboard response: " + e.getMessage());
+        }
     }
 
-    public boolean isMoveAlreadySubmitted() {
-        return server.hasMoveBeenSubmitted(this);
+    public List<String> getGamePlayers(String opponent) {
+        return server.getGamePlayers(username, opponent);
     }
 
-    public void sendMoveResponseAndSubmitMove(GameMoves move) {
-        try {
-            // Notify the player about successful move submission
-            GameMoveResp successResponse = GameMoveResp.success();
-            String serializedPayload = mapper.writeValueAsString(successResponse);
-            Message successMessage = new Message(Command.GAME_MOVE_RESP.getCommand(), serializedPayload);
-            String serializedMessage = messageHandler.serialize(successMessage);
-            writer.println(serializedMessage);
-
-            // Submit the move to the server
-            server.submitMove(this, move);
-
-        } catch (Exception e) {
-            System.err.println("Error processing move submission: " + e.getMessage());
-        }
+    public boolean checkIfGameActive() {
+        return server.isGameActive();
     }
 
-    public void sendFileTransferRequestToReceiver(String receiver, String filename, long fileSize, String checksum) {
-        server.sendFileTransferRequest(username, receiver, filename, fileSize, checksum);
+    public Game getGame() {
+        return server.getGame(this);
     }
 
-    public void handleSuccessfulFileTransferAccept(String sender) {
-        try {
-            FileTransferAcceptResp successResponse = FileTransferAcceptResp.success();
-            String serializedPayload = mapper.writeValueAsString(successResponse);
-            Message fileTransferSuccessAcceptmessage = new Message(Command.FILE_TRANSFER_ACCEPT_RESP.getCommand(), serializedPayload);
-            String serializedMessage = messageHandler.serialize(fileTransferSuccessAcceptmessage);
-            writer.println(serializedMessage);
-            server.sendFileTransferConfirmation(sender, this.username);
+    public void sendMoveResponseAndSubmitMove(Game game, GameMoves move) {
+        // Notify the player about successful move submission
+        send(ResponseFrames.success(Command.GAME_MOVE_RESP));
 
-        } catch (JsonProcessingException e) {
-            System.err.println("Error sending file transfer successful accept response: " + e.getMessage());
-        }
+        // Submit the move to the game
+        server.submitMove(game, this, move);
+    }
 
+    public void sendFileTransferRequestToReceiver(String receiver, String filename, long fileSize, String checksum,
+                                                  Integer streams, String checksumAlgorithm, String compression) {
+        server.sendFileTransferRequest(username, receiver, filename, fileSize, checksum, streams, checksumAlgorithm,
+                compression);
     }
 
-    public void handleSuccessfulFileTransferReject(String sender) {
-        try {
-            FileTransferRejectResp successResponse = FileTransferRejectResp.success();
-            String serializedPayload = mapper.writeValueAsString(successResponse);
-            Message fileTransferSuccessRejectmessage = new Message(Command.FILE_TRANSFER_REJECT_RESP.getCommand(), serializedPayload);
-            String serializedMessage = messageHandler.serialize(fileTransferSuccessRejectmessage);
-            writer.println(serializedMessage);
-            server.sendFileTransferRejection(sender);
+    public boolean sendFileFanOutRequestToReceivers(List<String> receivers, String filename, long fileSize,
+                                                    String checksum, String checksumAlgorithm) {
+        return server.sendFileFanOutRequest(username, receivers, filename, fileSize, checksum, checksumAlgorithm);
+    }
 
-        } catch (JsonProcessingException e) {
-            System.err.println("Error sending file transfer successful reject response: " + e.getMessage());
+    public void handleSuccessfulFileTransferAccept(String sender, int streams, String compression) {
+        if (server.acceptFileFanOut(sender, this)) {
+            return;
         }
+        FileTransferInit fileTransferInit = server.openFileTransferSession(sender, this.username, streams, compression);
+        if (fileTransferInit == null) {
+            send(ResponseFrames.error(Command.FILE_TRANSFER_ACCEPT_RESP, Code.TOO_MANY_PENDING_TRANSFERS));
+            return;
+        }
+        send(ResponseFrames.success(Command.FILE_TRANSFER_ACCEPT_RESP));
+        server.sendFileTransferConfirmation(sender, this.username, fileTransferInit);
+    }
 
-
+    public void handleSuccessfulFileTransferReject(String sender) {
+        send(ResponseFrames.success(Command.FILE_TRANSFER_REJECT_RESP));
+        server.sendFileTransferRejection(sender, this.username);
     }
 
 
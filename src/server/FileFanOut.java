@@ -0,0 +1,122 @@
+package server;
+
+import shared.messages.FileTransferReq;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A file one sender offered to several receivers at once. The sender uploads it into the spool once, when the first
+ * receiver accepts, and every receiver that accepts downloads it from there. The upload keeps the file stored until
+ * every receiver answered, so receivers that accept late do not need another upload.
+ */
+public class FileFanOut {
+
+    private final FileTransferReq request;
+    private final FileSpool spool;
+    private final ReentrantLock lock = new ReentrantLock();
+    // guarded by the lock
+    private final Set<String> waiting;
+    private final List<UUID> downloads = new ArrayList<>();
+    private UUID upload;
+    private boolean accepted;
+
+    /**
+     * @param request the request as the receivers get it.
+     */
+    public FileFanOut(FileTransferReq request, List<String> receivers, FileSpool spool) {
+        this.request = request;
+        this.spool = spool;
+        this.waiting = new LinkedHashSet<>(receivers);
+    }
+
+    public FileTransferReq getRequest() {
+        return request;
+    }
+
+    /**
+     * Opens the download of a receiver that accepted.
+     *
+     * @return the UUID the receiver connects with, or null if the file cannot be spooled.
+     */
+    public UUID openDownload() {
+        UUID download = spool.openDownload(request.checksum(), request.checksumAlgorithm(), request.fileSize());
+        if (download != null) {
+            lock.lock();
+            try {
+                downloads.add(download);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return download;
+    }
+
+    /**
+     * Records that the receiver accepted, and opens the upload unless it is open already. An upload that expired
+     * before the receiver accepted is opened again; the sender does not send a file that is still stored.
+     *
+     * @return the UUID the sender connects with, or null if the sender uploads already.
+     */
+    public UUID accept(String receiver) {
+        lock.lock();
+        try {
+            accepted = true;
+            UUID opened = null;
+            if (upload == null || !spool.isOpen(upload)) {
+                upload = spool.openUpload(request.checksum(), request.checksumAlgorithm(), request.fileSize());
+                opened = upload;
+            }
+            answered(receiver);
+            return opened;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records that the receiver rejected the file or left.
+     *
+     * @return true if every receiver rejected the file.
+     */
+    public boolean reject(String receiver) {
+        lock.lock();
+        try {
+            answered(receiver);
+            return waiting.isEmpty() && !accepted;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ends the offer because the sender left: receivers that did not answer yet cannot accept anymore, and unless the
+     * file is stored or being uploaded already, the upload and the downloads are ended.
+     */
+    public void senderLeft() {
+        lock.lock();
+        try {
+            waiting.clear();
+            if (upload != null) {
+                spool.close(upload);
+                spool.abandon(upload);
+            }
+            for (UUID download : downloads) {
+                spool.abandon(download);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void answered(String receiver) {
+        waiting.remove(receiver);
+        if (waiting.isEmpty() && upload != null) {
+            spool.close(upload);
+        }
+    }
+}
@@ -0,0 +1,674 @@
+package server;
+
+import shared.utility.FileDigest;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Store-and-forward for file transfers. The sender uploads the file into a local store addressed by its checksum,
+ * and the receiver downloads it from there at its own pace, while the upload is still running or later, within the
+ * retention time. A file that is stored already is not uploaded again, so sending the same file to many users
+ * uploads it once.
+ * <p>
+ * Uploads are verified against their checksum before they are stored, so the checksum of a stored file can be
+ * trusted. Stored files that no transfer uses are removed, least recently used first, when the store grows beyond
+ * its limit.
+ * <p>
+ * The sender connects with the UUID and {@code S}, and the server answers with the number of bytes it has already,
+ * as a long. The sender sends the rest of the file, and the server answers with 1 once the file is stored, or 0 if it
+ * did not match its checksum. The receiver connects with the UUID, {@code R} and the number of bytes it has
+ * already, as a long, and the server sends the rest of the file and closes the connection.
+ * <p>
+ * A file offered to several receivers is uploaded with one ticket of its own and downloaded with one ticket per
+ * receiver, so every receiver reads the stored bytes at its own pace.
+ * <p>
+ * The retention time of a transfer does not run while a connection uses it, so a slow download is not cut off. It
+ * starts again when the last connection of the transfer goes away.
+ */
+public class FileSpool {
+
+    private static final Pattern CHECKSUM = Pattern.compile("[0-9a-f]{64}");
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final String PART_SUFFIX = ".part";
+    // how often a download that caught up with its upload checks whether it is still wanted
+    private static final long FOLLOW_WAIT_MS = 1_000;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final int retentionMs;
+    private final int headerTimeoutMs;
+    private final HashedWheelTimer timer;
+    // removes stored files as soon as no transfer uses them
+    private final boolean temporary;
+    private final Map<UUID, Ticket> tickets = new ConcurrentHashMap<>();
+    // guards the entries and the stored bytes
+    private final ReentrantLock lock = new ReentrantLock();
+    // least recently used first
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long storedBytes;
+
+
+    private FileSpool(Path directory, HashedWheelTimer timer, ServerConfig config, boolean temporary) {
+        this.directory = directory;
+        this.timer = timer;
+        this.temporary = temporary;
+        this.maxBytes = config.getSpoolMaxBytes();
+        this.retentionMs = config.getSpoolRetentionMs();
+        this.headerTimeoutMs = config.getTransferPairingTimeoutMs();
+    }
+
+    /**
+     * Opens the store in the spool directory, keeping the files stored by a previous run and removing their
+     * unfinished uploads.
+     *
+     * @return the spool, or null if spooling is off or the directory cannot be used.
+     */
+    public static FileSpool open(HashedWheelTimer timer, ServerConfig config) {
+        Path directory = config.getSpoolDirectory();
+        if (directory == null) {
+            return null;
+        }
+        FileSpool spool = new FileSpool(directory, timer, config, false);
+        try {
+            for (String algorithm : new String[]{FileDigest.SHA_256, FileDigest.SHA_256_TREE}) {
+                spool.load(algorithm);
+            }
+        } catch (IOException e) {
+            System.err.println("Spooling is off, the spool directory cannot be used: " + e.getMessage());
+            return null;
+        }
+        System.out.println("Spooling " + spool.entries.size() + " stored files in " + directory.toAbsolutePath());
+        return spool;
+    }
+
+    /**
+     * Opens a store in a new temporary directory, which keeps files only while transfers use them.
+     *
+     * @return the spool, or null if the directory cannot be created.
+     */
+    public static FileSpool temporary(HashedWheelTimer timer, ServerConfig config) {
+        try {
+            Path directory = Files.createTempDirectory("spool");
+            FileSpool spool = new FileSpool(directory, timer, config, true);
+            directory.toFile().deleteOnExit();
+            for (String algorithm : new String[]{FileDigest.SHA_256, FileDigest.SHA_256_TREE}) {
+                spool.load(algorithm);
+                // deleted before the directory, files left in it are not
+                directory.resolve(algorithm.toLowerCase(Locale.ROOT)).toFile().deleteOnExit();
+            }
+            return spool;
+        } catch (IOException e) {
+            System.err.println("Error creating a temporary spool directory: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void load(String algorithm) throws IOException {
+        Path algorithmDirectory = directory.resolve(algorithm.toLowerCase(Locale.ROOT));
+        Files.createDirectories(algorithmDirectory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(algorithmDirectory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(PART_SUFFIX)) {
+                    Files.delete(file);
+                } else if (CHECKSUM.matcher(name).matches()) {
+                    Entry entry = new Entry(algorithmDirectory, algorithm, name, Files.size(file));
+                    entry.written = entry.size;
+                    entry.complete = true;
+                    entries.put(entry.key, entry);
+                    storedBytes += entry.size;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if a file with this checksum and size can be stored.
+     */
+    public boolean accepts(String checksum, String algorithm, long size) {
+        return checksum != null && CHECKSUM.matcher(checksum).matches() && FileDigest.isKnown(algorithm)
+                && size >= 0 && size <= maxBytes;
+    }
+
+    /**
+     * Opens a transfer of the file with the given checksum, which the sender uploads unless it is stored already.
+     *
+     * @return the UUID both parties connect with, or null if the file cannot be spooled and has to be relayed.
+     */
+    public UUID open(String checksum, String algorithm, long size) {
+        return open(checksum, algorithm, size, true, true);
+    }
+
+    /**
+     * Opens the upload of a file for several receivers. It keeps the file stored until the upload is done and
+     * {@link #close(UUID)} was called, so receivers that accept later find the file.
+     *
+     * @return the UUID the sender connects with, or null if the file cannot be spooled.
+     */
+    public UUID openUpload(String checksum, String algorithm, long size) {
+        return open(checksum, algorithm, size, true, false);
+    }
+
+    /**
+     * Opens the download of a file that is uploaded with {@link #openUpload}.
+     *
+     * @return the UUID the receiver connects with, or null if the file cannot be spooled.
+     */
+    public UUID openDownload(String checksum, String algorithm, long size) {
+        return open(checksum, algorithm, size, false, true);
+    }
+
+    private UUID open(String checksum, String algorithm, long size, boolean sender, boolean receiver) {
+        if (!accepts(checksum, algorithm, size)) {
+            return null;
+        }
+        String knownAlgorithm = algorithm == null ? FileDigest.SHA_256 : algorithm;
+        Entry entry;
+        lock.lock();
+        try {
+            String key = knownAlgorithm + "/" + checksum;
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(directory.resolve(knownAlgorithm.toLowerCase(Locale.ROOT)), knownAlgorithm, checksum, size);
+                entries.put(key, entry);
+            } else if (entry.size != size) {
+                // one of the two offers has a wrong checksum
+                return null;
+            }
+            entry.tickets++;
+        } finally {
+            lock.unlock();
+        }
+
+        Ticket ticket = new Ticket(UUID.randomUUID(), entry, sender, receiver);
+        // a side that does not connect with this ticket is done already, except the receivers of an upload
+        ticket.uploaded = !sender;
+        lock.lock();
+        try {
+            scheduleRelease(ticket);
+        } finally {
+            lock.unlock();
+        }
+        tickets.put(ticket.id, ticket);
+        return ticket.id;
+    }
+
+    /**
+     * @return true until the transfer is done or expired.
+     */
+    public boolean isOpen(UUID id) {
+        return tickets.containsKey(id);
+    }
+
+    /**
+     * Records that no more receivers download the file of an upload, so it is released once it is uploaded.
+     */
+    public void close(UUID id) {
+        Ticket ticket = tickets.get(id);
+        if (ticket != null) {
+            finish(ticket, false);
+        }
+    }
+
+    /**
+     * Ends a transfer whose sender left before uploading the file, instead of keeping it until its retention time is
+     * over. Transfers of a file that is stored or being uploaded go on.
+     */
+    public void abandon(UUID id) {
+        Ticket ticket = tickets.get(id);
+        if (ticket != null && !ticket.entry.isComplete() && !ticket.entry.isUploading()) {
+            release(ticket);
+        }
+    }
+
+    /**
+     * Serves the connection if it belongs to a spooled transfer, on the calling thread.
+     *
+     * @return false if the UUID is not that of a spooled transfer.
+     */
+    public boolean serve(UUID id, byte role, Socket socket) {
+        Ticket ticket = tickets.get(id);
+        if (ticket == null) {
+            return false;
+        }
+        attach(ticket);
+        try (socket) {
+            if (role == FileTransferSession.SENDER && ticket.sender) {
+                upload(ticket, socket);
+            } else if (role != FileTransferSession.SENDER && ticket.receiver) {
+                download(ticket, socket);
+            }
+        } catch (IOException e) {
+            System.out.println("Spooled file transfer " + id + " interrupted: " + e.getMessage());
+        } finally {
+            detach(ticket);
+        }
+        return true;
+    }
+
+    /**
+     * Stops the retention time of the transfer while a connection uses it.
+     */
+    private void attach(Ticket ticket) {
+        lock.lock();
+        try {
+            if (ticket.connections++ == 0) {
+                ticket.deadline.cancel();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts the retention time of the transfer again once no connection uses it, unless it ended meanwhile.
+     */
+    private void detach(Ticket ticket) {
+        lock.lock();
+        try {
+            if (--ticket.connections == 0 && tickets.get(ticket.id) == ticket) {
+                scheduleRelease(ticket);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // called with the lock held
+    private void scheduleRelease(Ticket ticket) {
+        ticket.deadline = timer.schedule(() -> release(ticket), retentionMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void upload(Ticket ticket, Socket socket) throws IOException {
+        Entry entry = ticket.entry;
+        boolean complete;
+        long offset;
+        entry.lock.lock();
+        try {
+            // the same file is uploaded for another transfer; this one continues where it stopped
+            while (entry.uploading) {
+                if (!tickets.containsKey(ticket.id)) {
+                    return;
+                }
+                entry.progress.await(FOLLOW_WAIT_MS, TimeUnit.MILLISECONDS);
+            }
+            complete = entry.complete;
+            offset = entry.written;
+            entry.uploading = !complete;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            entry.lock.unlock();
+        }
+
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        out.writeLong(offset);
+        out.flush();
+        if (complete) {
+            finish(ticket, true);
+            return;
+        }
+
+        boolean stored = false;
+        try {
+            stored = receive(entry, socket.getChannel(), offset);
+        } finally {
+            entry.lock.lock();
+            try {
+                entry.uploading = false;
+                entry.progress.signalAll();
+            } finally {
+                entry.lock.unlock();
+            }
+            if (!stored) {
+                discardIfUnused(entry);
+            }
+        }
+        if (stored) {
+            stored(entry);
+        }
+        out.write(stored ? 1 : 0);
+        out.flush();
+        if (stored) {
+            finish(ticket, true);
+        }
+    }
+
+    /**
+     * Appends the rest of the upload to the partial file, hashing it on the way, and stores the file once it is
+     * complete and matches its checksum.
+     *
+     * @return true if the file was stored.
+     */
+    private boolean receive(Entry entry, SocketChannel in, long offset) throws IOException {
+        FileDigest digest = FileDigest.of(entry.algorithm);
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long position = 0;
+        try (FileChannel part = FileChannel.open(entry.part, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // the bytes stored by an earlier attempt are hashed from the partial file
+            while (position < offset) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), offset - position));
+                int read = part.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("The partial file is shorter than " + offset + " bytes");
+                }
+                buffer.flip();
+                digest.update(buffer);
+                position += read;
+            }
+            part.truncate(offset);
+
+            while (position < entry.size) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), entry.size - position));
+                if (in.read(buffer) < 0) {
+                    return false;
+                }
+                buffer.flip();
+                digest.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    position += part.write(buffer, position);
+                }
+                entry.advance(position);
+            }
+        }
+
+        if (!digest.checksum().equals(entry.checksum)) {
+            System.out.println("Spooled upload of " + entry.key + " does not match its checksum, it is discarded.");
+            entry.lock.lock();
+            try {
+                Files.deleteIfExists(entry.part);
+                entry.written = 0;
+                entry.failures++;
+            } finally {
+                entry.lock.unlock();
+            }
+            return false;
+        }
+        entry.lock.lock();
+        try {
+            Files.move(entry.part, entry.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            entry.complete = true;
+        } finally {
+            entry.lock.unlock();
+        }
+        return true;
+    }
+
+    private void stored(Entry entry) {
+        lock.lock();
+        try {
+            storedBytes += entry.size;
+            evict();
+        } finally {
+            lock.unlock();
+        }
+        System.out.println("Spooled " + entry.key + " (" + entry.size + " bytes).");
+    }
+
+    private void download(Ticket ticket, Socket socket) throws IOException {
+        Entry entry = ticket.entry;
+        socket.setSoTimeout(headerTimeoutMs);
+        long position = new DataInputStream(socket.getInputStream()).readLong();
+        socket.setSoTimeout(0);
+        if (position < 0 || position > entry.size) {
+            return;
+        }
+
+        SocketChannel out = socket.getChannel();
+        FileChannel file = null;
+        int failures = entry.failures;
+        try {
+            while (position < entry.size) {
+                long available = entry.awaitWritten(position, failures);
+                if (available < 0 || !tickets.containsKey(ticket.id)) {
+                    // the upload failed its checksum, or the transfer expired
+                    return;
+                }
+                if (available == position) {
+                    continue;
+                }
+                if (file == null) {
+                    file = entry.openForReading();
+                }
+                // sent by the kernel from the page cache, without copying the bytes through the heap
+                while (position < available) {
+                    position += file.transferTo(position, available - position, out);
+                }
+            }
+        } finally {
+            if (file != null) {
+                file.close();
+            }
+        }
+        finish(ticket, false);
+    }
+
+    /**
+     * Records that one side of a transfer is done, and ends the transfer once both are.
+     */
+    private void finish(Ticket ticket, boolean sender) {
+        lock.lock();
+        try {
+            if (sender) {
+                ticket.uploaded = true;
+            } else {
+                ticket.downloaded = true;
+            }
+            if (!ticket.uploaded || !ticket.downloaded) {
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        release(ticket);
+    }
+
+    /**
+     * Ends a transfer once both sides are done, or when its retention time is over.
+     */
+    private void release(Ticket ticket) {
+        if (!tickets.remove(ticket.id, ticket)) {
+            return;
+        }
+        lock.lock();
+        try {
+            ticket.deadline.cancel();
+            ticket.entry.tickets--;
+            evict();
+        } finally {
+            lock.unlock();
+        }
+        discardIfUnused(ticket.entry);
+    }
+
+    /**
+     * Removes an unfinished upload that no transfer uses anymore.
+     */
+    private void discardIfUnused(Entry entry) {
+        lock.lock();
+        try {
+            if (entry.tickets == 0 && !entry.isComplete() && !entry.isUploading() && entries.get(entry.key) == entry) {
+                entries.remove(entry.key);
+                Files.deleteIfExists(entry.part);
+            }
+        } catch (IOException e) {
+            System.err.println("Error removing spooled upload: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evict() {
+        Iterator<Entry> leastRecentlyUsed = entries.values().iterator();
+        while ((temporary || storedBytes > maxBytes) && leastRecentlyUsed.hasNext()) {
+            Entry entry = leastRecentlyUsed.next();
+            if (entry.tickets > 0 || !entry.isComplete()) {
+                continue;
+            }
+            leastRecentlyUsed.remove();
+            storedBytes -= entry.size;
+            try {
+                Files.deleteIfExists(entry.file);
+            } catch (IOException e) {
+                System.err.println("Error removing spooled file: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return the number of stored files and unfinished uploads.
+     */
+    public int entries() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getStoredBytes() {
+        lock.lock();
+        try {
+            return storedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Ticket {
+        private final UUID id;
+        private final Entry entry;
+        // the sides that connect with the ticket
+        private final boolean sender;
+        private final boolean receiver;
+        // guarded by the lock of the spool
+        private HashedWheelTimer.Timeout deadline;
+        // connections using the ticket; its deadline is only pending while there are none
+        private int connections;
+        private boolean uploaded;
+        private boolean downloaded;
+
+        private Ticket(UUID id, Entry entry, boolean sender, boolean receiver) {
+            this.id = id;
+            this.entry = entry;
+            this.sender = sender;
+            this.receiver = receiver;
+        }
+    }
+
+    /**
+     * A file in the store, or being uploaded into it.
+     */
+    private static final class Entry {
+        private final String key;
+        private final String algorithm;
+        private final String checksum;
+        private final long size;
+        private final Path file;
+        private final Path part;
+        // guards the upload state below, downloads wait on the condition for more bytes
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition progress = lock.newCondition();
+        private long written;
+        private boolean complete;
+        private boolean uploading;
+        // uploads that did not match the checksum, so downloads of a discarded upload stop
+        private int failures;
+        // transfers using the entry, guarded by the lock of the spool
+        private int tickets;
+
+        private Entry(Path algorithmDirectory, String algorithm, String checksum, long size) {
+            this.key = algorithm + "/" + checksum;
+            this.algorithm = algorithm;
+            this.checksum = checksum;
+            this.size = size;
+            this.file = algorithmDirectory.resolve(checksum);
+            this.part = algorithmDirectory.resolve(checksum + PART_SUFFIX);
+        }
+
+        private void advance(long position) {
+            lock.lock();
+            try {
+                written = position;
+                progress.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Waits a while for bytes beyond the position to be uploaded.
+         *
+         * @return the number of bytes that can be read, or -1 if the upload the download started with was discarded.
+         */
+        private long awaitWritten(long position, int failuresBefore) {
+            lock.lock();
+            try {
+                if (written <= position && failures == failuresBefore) {
+                    progress.await(FOLLOW_WAIT_MS, TimeUnit.MILLISECONDS);
+                }
+                return failures == failuresBefore ? written : -1;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Opens the stored file, or the partial file while it is uploaded; the open channel keeps reading the same
+         * bytes after the partial file is moved into place.
+         */
+        private FileChannel openForReading() throws IOException {
+            lock.lock();
+            try {
+                return FileChannel.open(complete ? file : part, StandardOpenOption.READ);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean isComplete() {
+            lock.lock();
+            try {
+                return complete;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean isUploading() {
+            lock.lock();
+            try {
+                return uploading;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
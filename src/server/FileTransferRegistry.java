@@ -0,0 +1,155 @@
+package server;
+
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The rendezvous point of file transfers. A session is opened when the receiver accepts a file, and the sender and
+ * receiver then connect to the file transfer server with its UUID. Connections of any number of transfers attach
+ * concurrently; the one that completes the pair of a stream relays that stream, and the session is removed once
+ * all its streams are paired.
+ * <p>
+ * A session that is not paired within the pairing timeout expires and its waiting connection is closed, so a party
+ * that never connects does not keep the other one's socket open. Each sender can have a limited number of sessions
+ * waiting at the same time.
+ * <p>
+ * A stream of a chunked transfer whose connection drops is reopened, with a new deadline if the session was removed
+ * already, so both parties can reconnect and resume it.
+ */
+public class FileTransferRegistry {
+
+    private final Map<UUID, FileTransferSession> sessions = new ConcurrentHashMap<>();
+    // pending sessions per sender, only changed while holding ownerLock
+    private final Map<String, Integer> pendingByOwner = new HashMap<>();
+    private final ReentrantLock ownerLock = new ReentrantLock();
+    private final HashedWheelTimer timer;
+    private final int pairingTimeoutMs;
+    private final int maxPendingPerUser;
+    private final int chunkSize;
+    private final int maxStreams;
+
+
+    public FileTransferRegistry(HashedWheelTimer timer, ServerConfig config) {
+        this.timer = timer;
+        this.pairingTimeoutMs = config.getTransferPairingTimeoutMs();
+        this.maxPendingPerUser = config.getMaxPendingTransfers();
+        this.chunkSize = config.getTransferChunkSize();
+        this.maxStreams = config.getMaxTransferStreams();
+    }
+
+    /**
+     * Opens a session for a file sent by the owner and starts its pairing deadline. The session is chunked
+     * unless chunked transfers are disabled; only chunked files are sent over more than one stream.
+     *
+     * @param streams the number of parallel streams the clients asked for, limited by the server.
+     * @return the session, or null if the owner already has the maximum number of pending sessions.
+     */
+    public FileTransferSession open(String owner, int streams) {
+        ownerLock.lock();
+        try {
+            int pending = pendingByOwner.getOrDefault(owner, 0);
+            if (pending >= maxPendingPerUser) {
+                return null;
+            }
+            pendingByOwner.put(owner, pending + 1);
+        } finally {
+            ownerLock.unlock();
+        }
+
+        int allowedStreams = chunkSize > 0 ? Math.max(1, Math.min(streams, maxStreams)) : 1;
+        FileTransferSession session = new FileTransferSession(UUID.randomUUID(), owner, chunkSize, allowedStreams);
+        startPairing(session);
+        return session;
+    }
+
+    /**
+     * Makes a stream of a resumable session available again after its connection dropped. A session that has to
+     * wait for connections again counts as pending for its owner, even if that exceeds the limit, since the transfer
+     * was already allowed.
+     */
+    void reopen(FileTransferSession session, int stream) {
+        if (!session.reopen(stream)) {
+            return;
+        }
+        ownerLock.lock();
+        try {
+            pendingByOwner.merge(session.getOwner(), 1, Integer::sum);
+        } finally {
+            ownerLock.unlock();
+        }
+        startPairing(session);
+        System.out.println("File transfer " + session.getId() + " was interrupted, waiting for both parties to reconnect.");
+    }
+
+    private void startPairing(FileTransferSession session) {
+        session.setDeadline(timer.schedule(() -> expire(session), pairingTimeoutMs, TimeUnit.MILLISECONDS));
+        sessions.put(session.getId(), session);
+    }
+
+    /**
+     * Attaches a connection to its session. Connections for unknown or expired sessions, or for a role that is
+     * already taken, are closed.
+     *
+     * @return the session if this connection completed the pair of its stream and has to relay it, null otherwise.
+     */
+    public FileTransferSession attach(UUID id, byte role, int stream, Socket socket) {
+        FileTransferSession session = sessions.get(id);
+        FileTransferSession.Attach result = session == null
+                ? FileTransferSession.Attach.REJECTED
+                : session.attach(role, stream, socket);
+
+        switch (result) {
+            case PAIRED:
+                return session;
+            case ALL_PAIRED:
+                session.getDeadline().cancel();
+                remove(session);
+                return session;
+            case WAITING:
+                return null;
+            default:
+                System.out.println("Rejected file transfer connection for session " + id);
+                FileTransferSession.closeQuietly(socket);
+                return null;
+        }
+    }
+
+    private void expire(FileTransferSession session) {
+        if (session.expire()) {
+            remove(session);
+            System.out.println("File transfer " + session.getId() + " expired before both parties connected.");
+        }
+    }
+
+    private void remove(FileTransferSession session) {
+        if (!sessions.remove(session.getId(), session)) {
+            return;
+        }
+        ownerLock.lock();
+        try {
+            pendingByOwner.computeIfPresent(session.getOwner(), (owner, pending) -> pending > 1 ? pending - 1 : null);
+        } finally {
+            ownerLock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of streams of the session, or 0 if there is no such session waiting for connections.
+     */
+    public int streamsOf(UUID id) {
+        FileTransferSession session = sessions.get(id);
+        return session == null ? 0 : session.getStreams();
+    }
+
+    /**
+     * @return the number of sessions waiting for their sender or receiver.
+     */
+    public int pendingSessions() {
+        return sessions.size();
+    }
+}
@@ -0,0 +1,353 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single selector thread that pumps the bytes of many paired file transfers from the sender's channel to the
+ * receiver's channel, through one large direct buffer per transfer. A transfer only waits for whichever side is
+ * slower: it stops reading while the receiver's socket is full and stops writing while the sender has nothing to send.
+ * The few bytes the receiver sends back, such as the next chunk it needs, are relayed to the sender the same way.
+ * <p>
+ * The bytes of the file are metered by the {@link RelayScheduler}. A transfer without tokens stops reading from the
+ * sender and is pumped again once the scheduler has tokens for it.
+ * <p>
+ * A resumable session whose connection drops is reopened in the registry, so both parties can connect again.
+ * <p>
+ * Like {@link NioEventLoop}, other threads only hand work to the loop through its task queue.
+ */
+public class FileTransferRelay implements Runnable {
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+    // the receiver only sends a few bytes back to the sender
+    private static final int REPLY_BUFFER_SIZE = 4 * 1024;
+    // read and write rounds per transfer before the loop moves on, so one fast transfer cannot starve the others
+    private static final int MAX_ROUNDS = 16;
+
+    private final Selector selector;
+    private final FileTransferRegistry registry;
+    private final RelayScheduler scheduler;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    // transfers waiting for tokens, in the order they ran out, only touched by the relay thread
+    private final ArrayDeque<Transfer> throttled = new ArrayDeque<>();
+    // direct buffers of finished transfers, only touched by the relay thread
+    private final ArrayDeque<ByteBuffer> freeBuffers = new ArrayDeque<>();
+    private volatile boolean running = true;
+    private volatile int activeTransfers;
+    private volatile long relayedBytes;
+
+
+    public FileTransferRelay(FileTransferRegistry registry, RelayScheduler scheduler) throws IOException {
+        this.selector = Selector.open();
+        this.registry = registry;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Relays a paired stream of a session and closes both its connections when the sender is done.
+     */
+    public void relay(FileTransferSession session, int stream) {
+        tasks.add(() -> start(session, stream));
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                long waitMs = throttledWaitMs();
+                if (waitMs > 0) {
+                    selector.select(waitMs);
+                } else if (waitMs == 0) {
+                    selector.selectNow();
+                } else {
+                    selector.select();
+                }
+                runTasks();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid()) {
+                        pump((Transfer) key.attachment(), false);
+                    }
+                }
+                resumeThrottled();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) {
+                System.err.println("File transfer relay stopped unexpectedly: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return the milliseconds until the first throttled transfer gets tokens, 0 if one has them now, and -1 if no
+     * transfer is throttled.
+     */
+    private long throttledWaitMs() {
+        long waitNanos = -1;
+        for (Transfer transfer : throttled) {
+            long nanos = scheduler.nanosUntilAvailable(transfer.share);
+            waitNanos = waitNanos < 0 ? nanos : Math.min(waitNanos, nanos);
+        }
+        return waitNanos <= 0 ? waitNanos : Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+    }
+
+    /**
+     * Pumps the throttled transfers that can get tokens again, those that waited longest first.
+     */
+    private void resumeThrottled() {
+        for (int i = throttled.size(); i > 0; i--) {
+            Transfer transfer = throttled.poll();
+            if (transfer.finished) {
+                continue;
+            }
+            if (!transfer.file.throttled) {
+                // got tokens when the selector pumped it meanwhile
+                transfer.queued = false;
+                transfer.share.resumed();
+                continue;
+            }
+            if (scheduler.nanosUntilAvailable(transfer.share) > 0) {
+                throttled.add(transfer);
+                continue;
+            }
+            transfer.queued = false;
+            transfer.share.resumed();
+            pump(transfer, true);
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private void start(FileTransferSession session, int stream) {
+        SocketChannel sender = session.getSender(stream).getChannel();
+        SocketChannel receiver = session.getReceiver(stream).getChannel();
+        try {
+            sender.configureBlocking(false);
+            receiver.configureBlocking(false);
+            ByteBuffer buffer = freeBuffers.isEmpty() ? ByteBuffer.allocateDirect(BUFFER_SIZE) : freeBuffers.poll();
+            RelayScheduler.Share share = scheduler.open(session, stream);
+            Transfer transfer = new Transfer(session, stream, share,
+                    new Pipe(sender, receiver, buffer, share),
+                    new Pipe(receiver, sender, ByteBuffer.allocateDirect(REPLY_BUFFER_SIZE), null));
+            transfer.senderKey = sender.register(selector, SelectionKey.OP_READ, transfer);
+            transfer.receiverKey = receiver.register(selector, SelectionKey.OP_READ, transfer);
+            activeTransfers++;
+            // the sender usually sent the first bytes together with its header
+            pump(transfer, false);
+        } catch (IOException e) {
+            System.err.println("Unable to start relaying file transfer " + session.getId() + ": " + e.getMessage());
+            close(sender);
+            close(receiver);
+        }
+    }
+
+    /**
+     * @param resumed true if the transfer has its turn after waiting for tokens; otherwise it waits behind the
+     *                transfers that do, if any.
+     */
+    private void pump(Transfer transfer, boolean resumed) {
+        try {
+            transfer.file.mayRead = resumed || throttled.isEmpty();
+            transfer.file.pump();
+            if (transfer.file.endOfStream && transfer.file.drained) {
+                finish(transfer, false);
+                return;
+            }
+            transfer.replies.pump();
+            if (transfer.replies.endOfStream && transfer.replies.drained && !transfer.replies.forwardedEndOfStream) {
+                transfer.replies.to.shutdownOutput();
+                transfer.replies.forwardedEndOfStream = true;
+            }
+
+            transfer.senderKey.interestOps(transfer.file.readOps() | transfer.replies.writeOps());
+            transfer.receiverKey.interestOps(transfer.replies.readOps() | transfer.file.writeOps());
+            if (transfer.file.throttled && !transfer.queued) {
+                transfer.queued = true;
+                transfer.share.throttled();
+                throttled.add(transfer);
+            }
+        } catch (IOException e) {
+            System.err.println("File transfer interrupted: " + e.getMessage());
+            finish(transfer, true);
+        }
+    }
+
+    private void finish(Transfer transfer, boolean failed) {
+        transfer.finished = true;
+        scheduler.close(transfer.share);
+        transfer.senderKey.cancel();
+        transfer.receiverKey.cancel();
+        close(transfer.file.from);
+        close(transfer.file.to);
+        transfer.file.buffer.clear();
+        freeBuffers.add(transfer.file.buffer);
+        activeTransfers--;
+
+        // both sides closing their end is how a chunked transfer completes, anything else may be resumed
+        boolean completed = !failed && transfer.replies.endOfStream;
+        if (transfer.session.isResumable() && !completed) {
+            registry.reopen(transfer.session, transfer.stream);
+        }
+    }
+
+    private static void close(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing file transfer channel: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the number of transfers being relayed; approximate when read from another thread.
+     */
+    public int getActiveTransfers() {
+        return activeTransfers;
+    }
+
+    /**
+     * @return the number of bytes relayed so far; approximate when read from another thread.
+     */
+    public long getRelayedBytes() {
+        return relayedBytes;
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            selector.close();
+        } catch (IOException e) {
+            System.err.println("Error closing selector: " + e.getMessage());
+        }
+    }
+
+    private static class Transfer {
+        private final FileTransferSession session;
+        private final int stream;
+        private final RelayScheduler.Share share;
+        // the file from the sender to the receiver
+        private final Pipe file;
+        // what the receiver reports back to the sender, like the chunks it is missing
+        private final Pipe replies;
+        private SelectionKey senderKey;
+        private SelectionKey receiverKey;
+        // in the queue of throttled transfers
+        private boolean queued;
+        private boolean finished;
+
+        private Transfer(FileTransferSession session, int stream, RelayScheduler.Share share, Pipe file, Pipe replies) {
+            this.session = session;
+            this.stream = stream;
+            this.share = share;
+            this.file = file;
+            this.replies = replies;
+        }
+    }
+
+    /**
+     * One direction of a transfer. Bytes read from one channel are held in the buffer until the other channel
+     * took them; while it does not, nothing more is read.
+     */
+    private class Pipe {
+        private final SocketChannel from;
+        private final SocketChannel to;
+        // holds bytes read but not written yet, in fill mode between pumps
+        private final ByteBuffer buffer;
+        // meters what is read, null if the direction is not metered
+        private final RelayScheduler.Share share;
+        private boolean endOfStream;
+        // out of tokens, so nothing is read until the scheduler has more
+        private boolean throttled;
+        // false while metered transfers wait for tokens and this one did not wait its turn yet
+        private boolean mayRead = true;
+        private boolean forwardedEndOfStream;
+        private boolean drained = true;
+        private boolean waitingForData = true;
+
+        private Pipe(SocketChannel from, SocketChannel to, ByteBuffer buffer, RelayScheduler.Share share) {
+            this.from = from;
+            this.to = to;
+            this.buffer = buffer;
+            this.share = share;
+        }
+
+        private void pump() throws IOException {
+            throttled = false;
+            for (int round = 0; round < MAX_ROUNDS; round++) {
+                int read = 0;
+                if (!endOfStream && buffer.hasRemaining()) {
+                    read = share == null ? from.read(buffer) : readGranted();
+                    if (read < 0) {
+                        endOfStream = true;
+                    }
+                }
+
+                buffer.flip();
+                relayedBytes += to.write(buffer);
+                drained = !buffer.hasRemaining();
+                buffer.compact();
+
+                // a limited transfer takes one grant per turn, so the others get theirs in between
+                if (share != null && read > 0 && scheduler.isLimited()) {
+                    waitingForData = drained;
+                    return;
+                }
+
+                // wait until the other side takes more, or has more to give
+                if (!drained || endOfStream || read == 0) {
+                    waitingForData = drained;
+                    return;
+                }
+            }
+            // more is ready, the selector reports it again after the other transfers had their turn
+            waitingForData = true;
+        }
+
+        /**
+         * Reads as many bytes as the scheduler grants.
+         */
+        private int readGranted() throws IOException {
+            long granted = mayRead ? scheduler.acquire(share, buffer.remaining()) : 0;
+            if (granted == 0) {
+                throttled = true;
+                return 0;
+            }
+            int limit = buffer.limit();
+            buffer.limit(buffer.position() + (int) granted);
+            int read;
+            try {
+                read = from.read(buffer);
+            } finally {
+                buffer.limit(limit);
+            }
+            scheduler.relayed(share, granted, Math.max(read, 0));
+            return read;
+        }
+
+        private int readOps() {
+            return waitingForData && !endOfStream && !throttled ? SelectionKey.OP_READ : 0;
+        }
+
+        private int writeOps() {
+            return drained ? 0 : SelectionKey.OP_WRITE;
+        }
+    }
+}
@@ -1,30 +1,59 @@
 package server;
 
 import java.io.*;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.HashMap;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FileTransferServer implements Runnable {
+    // the text form of the session UUID followed by the role byte
+    private static final int UUID_LENGTH = 36;
+    private static final int HEADER_LENGTH = UUID_LENGTH + 1;
+
     private final int port;
+    private final ExecutorService connectionExecutor;
+    private final FileTransferRegistry registry;
+    // null when files are only relayed
+    private final FileSpool spool;
+    private final int headerTimeoutMs;
+    private final FileTransferRelay[] relays;
+    private final RelayScheduler scheduler;
+    private final AtomicInteger nextRelay = new AtomicInteger();
     private ServerSocket fileTransferSocket;
     private boolean running = true;
 
-    private final HashMap<String, FileTransferSession> fileTransfers = new HashMap<>();
-
 
-    public FileTransferServer(int port) {
+    public FileTransferServer(int port, ExecutorService connectionExecutor, FileTransferRegistry registry,
+                              FileSpool spool, ServerConfig config) {
         this.port = port;
+        this.connectionExecutor = connectionExecutor;
+        this.registry = registry;
+        this.spool = spool;
+        this.headerTimeoutMs = config.getTransferPairingTimeoutMs();
+        this.relays = new FileTransferRelay[config.getRelayThreads()];
+        this.scheduler = new RelayScheduler(config);
     }
 
     @Override
     public void run() {
         try {
-            fileTransferSocket = new ServerSocket(port);
+            // accepted through a channel, so paired connections can be handed to a relay
+            ServerSocketChannel serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port));
+            fileTransferSocket = serverChannel.socket();
+            for (int i = 0; i < relays.length; i++) {
+                relays[i] = new FileTransferRelay(registry, scheduler);
+                new Thread(relays[i], "file-transfer-relay-" + i).start();
+            }
             System.out.println("File server on port " + port);
             while (running) {
-                Socket fileTransferClient = fileTransferSocket.accept();
-                new Thread(() -> this.handleConnection(fileTransferClient)).start();
+                Socket fileTransferClient = serverChannel.accept().socket();
+                connectionExecutor.execute(() -> this.handleConnection(fileTransferClient));
             }
 
 
@@ -35,58 +64,78 @@ public class FileTransferServer implements Runnable {
         }
     }
 
+    public RelayScheduler getScheduler() {
+        return scheduler;
+    }
+
     public ServerSocket getFileTransferSocket() {
         return fileTransferSocket;
     }
 
     public void setRunning(boolean running) {
         this.running = running;
+        if (!running) {
+            for (FileTransferRelay relay : relays) {
+                if (relay != null) {
+                    relay.stop();
+                }
+            }
+        }
     }
 
     private void handleConnection(Socket socket) {
         try {
             InputStream inputStream = socket.getInputStream();
-            OutputStream outputStream = socket.getOutputStream();
-
-            byte[] uuidBytes = inputStream.readNBytes(36);
-            byte role = inputStream.readNBytes(1)[0];
-
-            String uuid = new String(uuidBytes);
 
-
-            if (!fileTransfers.containsKey(uuid)) {
-                fileTransfers.put(uuid, new FileTransferSession());
+            // a connection that never sends its header must not hold a thread forever
+            socket.setSoTimeout(headerTimeoutMs);
+            byte[] header = inputStream.readNBytes(HEADER_LENGTH);
+            socket.setSoTimeout(0);
+            if (header.length < HEADER_LENGTH) {
+                System.out.println("File transfer connection closed before sending its header.");
+                socket.close();
+                return;
             }
 
-            if (role == 'S') {
-                fileTransfers.get(uuid).setSender(inputStream);
-            } else if (role == 'R') {
-                fileTransfers.get(uuid).setReceiver(outputStream);
-            } else {
-                System.out.println("Invalid role: " + role);
+            UUID uuid = parseUuid(header);
+            byte role = header[UUID_LENGTH];
+            if (uuid == null || (role != FileTransferSession.SENDER && role != FileTransferSession.RECEIVER)) {
+                System.out.println("Invalid file transfer header.");
+                socket.close();
                 return;
             }
 
-
-            System.out.println(fileTransfers.get(uuid).getSender());
-            System.out.println(fileTransfers.get(uuid).getReceiver());
-
-            if (fileTransfers.get(uuid).getSender() == null || fileTransfers.get(uuid).getReceiver() == null) {
-                System.out.println("Waiting for other party to join.");
+            if (spool != null && spool.serve(uuid, role, socket)) {
                 return;
             }
 
+            // a file sent over several streams has the index of the stream after the role
+            int stream = 0;
+            if (registry.streamsOf(uuid) > 1) {
+                socket.setSoTimeout(headerTimeoutMs);
+                stream = inputStream.read();
+                socket.setSoTimeout(0);
+            }
 
-            fileTransfers.get(uuid).getSender().transferTo(fileTransfers.get(uuid).getReceiver());
-
-
-            fileTransfers.get(uuid).getSender().close();
-            fileTransfers.get(uuid).getReceiver().close();
-            fileTransfers.remove(uuid);
+            FileTransferSession session = registry.attach(uuid, role, stream, socket);
+            if (session == null) {
+                // waiting for the other party, or rejected and already closed
+                return;
+            }
 
+            relays[Math.floorMod(nextRelay.getAndIncrement(), relays.length)].relay(session, stream);
 
         } catch (IOException e) {
             System.err.println("Error occurred during establishing connection:"  + e.getMessage());
+            FileTransferSession.closeQuietly(socket);
+        }
+    }
+
+    private static UUID parseUuid(byte[] header) {
+        try {
+            return UUID.fromString(new String(header, 0, UUID_LENGTH, StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            return null;
         }
     }
 }
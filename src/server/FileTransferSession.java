@@ -1,36 +1,180 @@
 package server;
 
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * One file transfer waiting for its sender and receiver to connect to the file transfer server.
+ * A file can be sent over several parallel streams, each with its own sender and receiver connection.
+ * The connection that completes the pair of a stream claims that stream and relays it; once claimed or expired,
+ * no other connection can join it. A chunked transfer is resumable: a stream whose connection drops is reopened
+ * for both parties.
+ */
 public class FileTransferSession {
-    private InputStream sender;
-    private OutputStream receiver;
 
-   public FileTransferSession() {
+    public static final byte SENDER = 'S';
+    public static final byte RECEIVER = 'R';
 
-   }
+    private final UUID id;
+    private final String owner;
+    // 0 when the file is streamed in one piece
+    private final int chunkSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Socket[] senders;
+    private final Socket[] receivers;
+    private final boolean[] paired;
+    // streams still waiting for their sender or receiver
+    private int unpaired;
+    // set once the pairing deadline passed with streams still unpaired
+    private boolean expired;
+    private HashedWheelTimer.Timeout deadline;
 
-    public InputStream getSender() {
-        return sender;
+
+    public FileTransferSession(UUID id, String owner, int chunkSize, int streams) {
+        this.id = id;
+        this.owner = owner;
+        this.chunkSize = chunkSize;
+        this.senders = new Socket[streams];
+        this.receivers = new Socket[streams];
+        this.paired = new boolean[streams];
+        this.unpaired = streams;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    /**
+     * @return the username of the sender, whose pending transfers are capped.
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public boolean isResumable() {
+        return chunkSize > 0;
     }
 
-    public OutputStream getReceiver() {
-        return receiver;
+    public int getStreams() {
+        return senders.length;
+    }
 
+    public Socket getSender(int stream) {
+        return senders[stream];
     }
 
-    public void setSender(InputStream sender) {
-        this.sender = sender;
+    public Socket getReceiver(int stream) {
+        return receivers[stream];
+    }
 
+    void setDeadline(HashedWheelTimer.Timeout deadline) {
+        this.deadline = deadline;
     }
 
+    HashedWheelTimer.Timeout getDeadline() {
+        return deadline;
+    }
 
+    /**
+     * Attaches a connection in the given role to one of the streams.
+     *
+     * @return the result of the attempt; {@link Attach#PAIRED} or {@link Attach#ALL_PAIRED} is returned to exactly
+     * one caller per stream.
+     */
+    Attach attach(byte role, int stream, Socket socket) {
+        lock.lock();
+        try {
+            if (expired || stream < 0 || stream >= paired.length || paired[stream]) {
+                return Attach.REJECTED;
+            }
+            if (role == SENDER && senders[stream] == null) {
+                senders[stream] = socket;
+            } else if (role == RECEIVER && receivers[stream] == null) {
+                receivers[stream] = socket;
+            } else {
+                return Attach.REJECTED;
+            }
+            if (senders[stream] == null || receivers[stream] == null) {
+                return Attach.WAITING;
+            }
+            paired[stream] = true;
+            unpaired--;
+            return unpaired == 0 ? Attach.ALL_PAIRED : Attach.PAIRED;
+        } finally {
+            lock.unlock();
+        }
+    }
 
-    public void setReceiver(OutputStream receiver) {
-        this.receiver = receiver;
+    /**
+     * Ends a session whose streams were not all paired in time and closes the connections that are waiting.
+     * Streams that are paired already keep relaying.
+     *
+     * @return false if all streams were paired meanwhile.
+     */
+    boolean expire() {
+        lock.lock();
+        try {
+            if (unpaired == 0) {
+                return false;
+            }
+            expired = true;
+            for (int stream = 0; stream < paired.length; stream++) {
+                if (!paired[stream]) {
+                    closeQuietly(senders[stream]);
+                    closeQuietly(receivers[stream]);
+                }
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
 
+    /**
+     * Lets both parties attach to the stream again after its relay ended early.
+     *
+     * @return true if the other streams were all paired, so the session has to wait for connections again;
+     * false if it still waits anyway, or expired and cannot be resumed.
+     */
+    boolean reopen(int stream) {
+        lock.lock();
+        try {
+            if (expired || !paired[stream]) {
+                return false;
+            }
+            senders[stream] = null;
+            receivers[stream] = null;
+            paired[stream] = false;
+            unpaired++;
+            return unpaired == 1;
+        } finally {
+            lock.unlock();
+        }
     }
 
+    static void closeQuietly(Socket socket) {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            System.err.println("Error closing file transfer socket: " + e.getMessage());
+        }
+    }
 
+    enum Attach {
+        // the role is taken or the session is over, the connection is not part of it
+        REJECTED,
+        WAITING,
+        // the stream is complete, other streams are still waiting
+        PAIRED,
+        ALL_PAIRED
+    }
 }
@@ -0,0 +1,42 @@
+package server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+
+/**
+ * Stream behind the {@link java.io.PrintWriter} of a {@link ClientHandler}. The bytes written between two
+ * flushes form one frame, which is handed to the client's {@link OutboundQueue}.
+ */
+public class FrameOutputStream extends OutputStream {
+
+    private final OutboundQueue queue;
+    private final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+
+
+    public FrameOutputStream(OutboundQueue queue) {
+        this.queue = queue;
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        frame.write(b);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        frame.write(b, off, len);
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (frame.size() > 0) {
+            queue.offer(frame.toByteArray());
+            frame.reset();
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+}
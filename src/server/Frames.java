@@ -0,0 +1,18 @@
+package server;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encoding of protocol lines into the bytes that are queued for the clients.
+ */
+public class Frames {
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /**
+     * Encodes a serialized message into a frame, including the line terminator {@link java.io.PrintWriter#println()} would add.
+     */
+    public static byte[] encode(String serializedMessage) {
+        return (serializedMessage + LINE_SEPARATOR).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,129 @@
+package server;
+
+import shared.utility.GameMoves;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * One Rock/Paper/Scissors match between two players, independent of all other matches. Each player makes one move;
+ * the game is finished exactly once, by the second move, the move timeout or a disconnection, whichever comes first.
+ */
+public class Game {
+
+    private final ClientHandler initiator;
+    private final ClientHandler opponent;
+    private final AtomicReference<GameMoves> initiatorMove = new AtomicReference<>();
+    private final AtomicReference<GameMoves> opponentMove = new AtomicReference<>();
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private volatile HashedWheelTimer.Timeout moveTimeout;
+    // told the winner once the game is over, null if nobody waits for it
+    private final Consumer<String> outcomeListener;
+
+    /**
+     * @param outcomeListener called once the game is over, with the username of the winner, or null if nobody won:
+     *                        on a draw, or when neither player moved in time. May be null.
+     */
+    Game(ClientHandler initiator, ClientHandler opponent, Consumer<String> outcomeListener) {
+        this.initiator = initiator;
+        this.opponent = opponent;
+        this.outcomeListener = outcomeListener;
+    }
+
+    public ClientHandler getInitiator() {
+        return initiator;
+    }
+
+    public ClientHandler getOpponent() {
+        return opponent;
+    }
+
+    public boolean isPlayer(ClientHandler player) {
+        return player == initiator || player == opponent;
+    }
+
+    /**
+     * @return the other player of the game, null if the given one does not play in it.
+     */
+    public ClientHandler getOtherPlayer(ClientHandler player) {
+        if (player == initiator) {
+            return opponent;
+        }
+        return player == opponent ? initiator : null;
+    }
+
+    public boolean hasMoved(ClientHandler player) {
+        AtomicReference<GameMoves> move = moveOf(player);
+        return move != null && move.get() != null;
+    }
+
+    /**
+     * @return false if the player made a move already, or does not play in this game.
+     */
+    public boolean submitMove(ClientHandler player, GameMoves move) {
+        AtomicReference<GameMoves> playerMove = moveOf(player);
+        return playerMove != null && playerMove.compareAndSet(null, move);
+    }
+
+    public boolean bothMoved() {
+        return initiatorMove.get() != null && opponentMove.get() != null;
+    }
+
+    public GameMoves getInitiatorMove() {
+        return initiatorMove.get();
+    }
+
+    public GameMoves getOpponentMove() {
+        return opponentMove.get();
+    }
+
+    /**
+     * @return the username of the winner, null on a draw. Only meaningful once both players moved.
+     */
+    public String getWinner() {
+        GameMoves a = initiatorMove.get();
+        GameMoves b = opponentMove.get();
+        if (a == b) {
+            return null;
+        }
+        boolean initiatorWins = (a == GameMoves.R && b == GameMoves.S) ||
+                (a == GameMoves.S && b == GameMoves.P) ||
+                (a == GameMoves.P && b == GameMoves.R);
+        return initiatorWins ? initiator.getUsername() : opponent.getUsername();
+    }
+
+    /**
+     * Tells the outcome listener, if any, who won the finished game.
+     */
+    void reportOutcome(String winner) {
+        if (outcomeListener != null) {
+            outcomeListener.accept(winner);
+        }
+    }
+
+    void setMoveTimeout(HashedWheelTimer.Timeout moveTimeout) {
+        this.moveTimeout = moveTimeout;
+    }
+
+    /**
+     * @return true for the one caller that finishes the game, false for everyone after it.
+     */
+    boolean finish() {
+        if (!finished.compareAndSet(false, true)) {
+            return false;
+        }
+        HashedWheelTimer.Timeout timeout = moveTimeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        return true;
+    }
+
+    private AtomicReference<GameMoves> moveOf(ClientHandler player) {
+        if (player == initiator) {
+            return initiatorMove;
+        }
+        return player == opponent ? opponentMove : null;
+    }
+}
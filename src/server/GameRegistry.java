@@ -0,0 +1,71 @@
+package server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * The games being played, indexed by the username of both players, so a player's game is found in one lookup and
+ * any number of games run side by side. A user plays in at most one game at a time.
+ */
+public class GameRegistry {
+
+    private final Map<String, Game> gamesByPlayer = new ConcurrentHashMap<>();
+
+    /**
+     * Starts a game if neither player is in one.
+     *
+     * @return the new game, or null if one of the players plays already.
+     */
+    public Game start(ClientHandler initiator, ClientHandler opponent) {
+        return start(initiator, opponent, null);
+    }
+
+    /**
+     * Starts a game if neither player is in one.
+     *
+     * @param outcomeListener told the winner once the game is over, see {@link Game#Game}.
+     * @return the new game, or null if one of the players plays already.
+     */
+    public Game start(ClientHandler initiator, ClientHandler opponent, Consumer<String> outcomeListener) {
+        String initiatorName = initiator.getUsername();
+        String opponentName = opponent.getUsername();
+        if (initiatorName.equals(opponentName)) {
+            return null;
+        }
+        Game game = new Game(initiator, opponent, outcomeListener);
+        if (gamesByPlayer.putIfAbsent(initiatorName, game) != null) {
+            return null;
+        }
+        if (gamesByPlayer.putIfAbsent(opponentName, game) != null) {
+            gamesByPlayer.remove(initiatorName, game);
+            return null;
+        }
+        return game;
+    }
+
+    /**
+     * @return the game the user plays in, null if none.
+     */
+    public Game getGame(String username) {
+        return username == null ? null : gamesByPlayer.get(username);
+    }
+
+    /**
+     * Finishes the game and removes it, so both players can start a new one.
+     *
+     * @return true for the one caller that finishes the game, false if it was finished already.
+     */
+    public boolean finish(Game game) {
+        if (!game.finish()) {
+            return false;
+        }
+        gamesByPlayer.remove(game.getInitiator().getUsername(), game);
+        gamesByPlayer.remove(game.getOpponent().getUsername(), game);
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return gamesByPlayer.isEmpty();
+    }
+}
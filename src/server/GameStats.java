@@ -0,0 +1,268 @@
+package server;
+
+import shared.messages.LeaderboardEntry;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Wins, losses and draws of every user who finished a game, and the leaderboard ranking them. The counters are
+ * {@link LongAdder}s, so games finishing at the same time do not contend on them; the ranking is a skip list that
+ * is updated with every result, so the top of the leaderboard is read without looking at every user.
+ * <p>
+ * With a stats file, the counters of the users whose results changed are appended to it periodically, a line per
+ * user, and read back when the server starts; the last line of a user counts. Once most lines are outdated, the
+ * file is rewritten with one line per user. The timer only schedules the snapshots, the file is written on the
+ * executor.
+ */
+public class GameStats {
+
+    // most wins first, then fewest losses, then most draws
+    private static final Comparator<Rank> RANKING = Comparator.comparingLong(Rank::wins).reversed()
+            .thenComparingLong(Rank::losses)
+            .thenComparing(Comparator.comparingLong(Rank::draws).reversed())
+            .thenComparing(Rank::username);
+
+    private final Map<String, PlayerStats> players = new ConcurrentHashMap<>();
+    private final NavigableSet<Rank> ranking = new ConcurrentSkipListSet<>(RANKING);
+    // users whose counters changed since the last snapshot
+    private final Set<String> changed = ConcurrentHashMap.newKeySet();
+
+    // null when the stats are only kept in memory
+    private final Path file;
+    private final HashedWheelTimer timer;
+    private final Executor executor;
+    private final long snapshotMs;
+    private final ReentrantLock fileLock = new ReentrantLock();
+    // guarded by the file lock
+    private long linesInFile;
+
+
+    private GameStats(Path file, HashedWheelTimer timer, Executor executor, long snapshotMs) {
+        this.file = file;
+        this.timer = timer;
+        this.executor = executor;
+        this.snapshotMs = snapshotMs;
+    }
+
+    /**
+     * Loads the stats from the stats file, if there is one, and snapshots them periodically from now on.
+     *
+     * @param executor writes the snapshots to the stats file.
+     */
+    public static GameStats open(HashedWheelTimer timer, Executor executor, ServerConfig config) {
+        Path file = config.getStatsFile();
+        GameStats stats = new GameStats(file, timer, executor, config.getStatsSnapshotMs());
+        if (file == null) {
+            return stats;
+        }
+        try {
+            stats.load();
+            System.out.println("Loaded the game stats of " + stats.players.size() + " users from " + file.toAbsolutePath());
+        } catch (IOException e) {
+            // snapshots of the stats of this run would overwrite the stats of the file once it is rewritten
+            System.err.println("Game stats are only kept in memory, the stats file cannot be read: " + e.getMessage());
+            return new GameStats(null, timer, executor, config.getStatsSnapshotMs());
+        }
+        stats.scheduleSnapshot();
+        return stats;
+    }
+
+    public void recordWin(String winner, String loser) {
+        PlayerStats winnerStats = stats(winner);
+        winnerStats.wins.increment();
+        PlayerStats loserStats = stats(loser);
+        loserStats.losses.increment();
+        rerank(winnerStats);
+        rerank(loserStats);
+    }
+
+    public void recordDraw(String playerA, String playerB) {
+        PlayerStats statsA = stats(playerA);
+        statsA.draws.increment();
+        PlayerStats statsB = stats(playerB);
+        statsB.draws.increment();
+        rerank(statsA);
+        rerank(statsB);
+    }
+
+    /**
+     * @return the best users, at most the given number.
+     */
+    public List<LeaderboardEntry> getLeaderboard(int count) {
+        List<LeaderboardEntry> leaderboard = new ArrayList<>(Math.min(count, 100));
+        // the iteration may see a user that moves down the ranking meanwhile at its old and its new place
+        Set<String> listed = new HashSet<>();
+        for (Rank rank : ranking) {
+            if (leaderboard.size() == count) {
+                break;
+            }
+            if (listed.add(rank.username())) {
+                leaderboard.add(new LeaderboardEntry(rank.username(), rank.wins(), rank.losses(), rank.draws()));
+            }
+        }
+        return leaderboard;
+    }
+
+    private PlayerStats stats(String username) {
+        return players.computeIfAbsent(username, PlayerStats::new);
+    }
+
+    /**
+     * Moves the user to the place in the ranking its counters are at now. A result recorded meanwhile by another
+     * thread is picked up by whichever of both reranks last.
+     */
+    private void rerank(PlayerStats stats) {
+        stats.lock.lock();
+        try {
+            Rank rank = new Rank(stats.username, stats.wins.sum(), stats.losses.sum(), stats.draws.sum());
+            if (rank.equals(stats.rank)) {
+                return;
+            }
+            if (stats.rank != null) {
+                ranking.remove(stats.rank);
+            }
+            ranking.add(rank);
+            stats.rank = rank;
+        } finally {
+            stats.lock.unlock();
+        }
+        changed.add(stats.username);
+    }
+
+    private void scheduleSnapshot() {
+        // the next snapshot is scheduled once this one is written, so they never overlap
+        timer.schedule(() -> executor.execute(() -> {
+            snapshot();
+            scheduleSnapshot();
+        }), snapshotMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Appends the counters of the users whose results changed since the last snapshot to the stats file.
+     */
+    public void snapshot() {
+        if (file == null || changed.isEmpty()) {
+            return;
+        }
+        fileLock.lock();
+        try {
+            if (linesInFile > 2L * players.size() + 1024) {
+                rewrite();
+                return;
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (String username : changed) {
+                    // removed before its counters are read, so a result recorded meanwhile marks it again
+                    changed.remove(username);
+                    writeLine(writer, players.get(username));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing the game stats: " + e.getMessage());
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    // called with the file lock held
+    private void rewrite() throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        changed.clear();
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            linesInFile = 0;
+            for (PlayerStats stats : players.values()) {
+                writeLine(writer, stats);
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // called with the file lock held
+    private void writeLine(BufferedWriter writer, PlayerStats stats) throws IOException {
+        writer.write(stats.username + " " + stats.wins.sum() + " " + stats.losses.sum() + " " + stats.draws.sum());
+        writer.newLine();
+        linesInFile++;
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        fileLock.lock();
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                linesInFile++;
+                String[] fields = line.split(" ");
+                PlayerStats stats = fields.length == 4 ? parse(fields) : null;
+                if (stats == null) {
+                    // e.g. the end of a line that was cut off when the server stopped
+                    System.err.println("Skipping invalid line of the stats file: " + line);
+                    continue;
+                }
+                PlayerStats previous = players.put(stats.username, stats);
+                if (previous != null) {
+                    ranking.remove(previous.rank);
+                }
+                rerank(stats);
+            }
+            changed.clear();
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    /**
+     * @return the stats of the fields of a line, or null if a counter is not a number.
+     */
+    private static PlayerStats parse(String[] fields) {
+        try {
+            long wins = Long.parseLong(fields[1]);
+            long losses = Long.parseLong(fields[2]);
+            long draws = Long.parseLong(fields[3]);
+            PlayerStats stats = new PlayerStats(fields[0]);
+            stats.wins.add(wins);
+            stats.losses.add(losses);
+            stats.draws.add(draws);
+            return stats;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static final class PlayerStats {
+        private final String username;
+        private final LongAdder wins = new LongAdder();
+        private final LongAdder losses = new LongAdder();
+        private final LongAdder draws = new LongAdder();
+        private final ReentrantLock lock = new ReentrantLock();
+        // where the user is in the ranking, guarded by the lock
+        private Rank rank;
+
+        private PlayerStats(String username) {
+            this.username = username;
+        }
+    }
+
+    private record Rank(String username, long wins, long losses, long draws) {
+    }
+}
@@ -0,0 +1,242 @@
+package server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One timer thread for all delayed work of the server (pings, pong timeouts, move timeouts).
+ * Timeouts are kept in a ring of buckets, one bucket per tick, so scheduling and cancelling cost O(1)
+ * no matter how many timeouts are pending. The price is precision: a task runs up to one tick late.
+ * <p>
+ * Tasks run on the timer thread and must not block. Anything slow should be handed to an executor.
+ */
+public class HashedWheelTimer {
+
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final Thread worker;
+    private final long startTime;
+    private volatile boolean running = true;
+    private long tick;
+
+
+    /**
+     * @param tickDuration the length of one tick, also the worst case delay of a task.
+     * @param unit         the unit of the tick duration.
+     * @param ticksPerWheel the number of buckets, rounded up to a power of two.
+     */
+    public HashedWheelTimer(long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        this.tickNanos = unit.toNanos(tickDuration);
+        int size = Integer.highestOneBit(Math.max(ticksPerWheel, 2) - 1) << 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.startTime = System.nanoTime();
+        this.worker = new Thread(this::run, "chat-timer");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public HashedWheelTimer() {
+        this(100, TimeUnit.MILLISECONDS, 512);
+    }
+
+    /**
+     * Runs the task once after the given delay.
+     *
+     * @return a handle to cancel the task before it runs.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        long deadline = System.nanoTime() - startTime + unit.toNanos(delay);
+        Timeout timeout = new Timeout(task, deadline);
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * @return the number of pending timeouts; approximate while the timer is ticking.
+     */
+    public int pendingTimeouts() {
+        int pending = 0;
+        for (Bucket bucket : wheel) {
+            pending += bucket.size;
+        }
+        return pending + scheduled.size();
+    }
+
+    public void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        while (running) {
+            if (waitForNextTick() < 0) {
+                break;
+            }
+            removeCancelled();
+            transferScheduled();
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    private long waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long now = System.nanoTime() - startTime;
+            long sleepMillis = (deadline - now + 999_999) / 1_000_000;
+            if (sleepMillis <= 0) {
+                return now;
+            }
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    return -1;
+                }
+            }
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferScheduled() {
+        // bounded, so a flood of new timeouts cannot starve the tick
+        for (int i = 0; i < 100_000; i++) {
+            Timeout timeout = scheduled.poll();
+            if (timeout == null) {
+                break;
+            }
+            if (timeout.state.get() != PENDING) {
+                continue;
+            }
+            long ticks = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (ticks - tick) / wheel.length;
+            // a deadline that has already passed goes into the current bucket
+            long targetTick = Math.max(ticks, tick);
+            wheel[(int) (targetTick & mask)].add(timeout);
+        }
+    }
+
+    /**
+     * A scheduled task. Cancelling only flips its state, the timer thread unlinks it on its next tick.
+     */
+    public final class Timeout {
+
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout next;
+        private Timeout prev;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * @return true if the task was cancelled before it ran.
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) {
+                return false;
+            }
+            cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(PENDING, EXPIRED)) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.println("Error while running timer task: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * A doubly linked list of timeouts, only touched by the timer thread.
+     */
+    private static final class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+        private int size;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+            size++;
+        }
+
+        void expire() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.next = null;
+            timeout.prev = null;
+            timeout.bucket = null;
+            size--;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Splits the bytes received from a client into lines, in one reusable window. Complete lines are handed to the
+ * listener as a slice of the window, so nothing is copied or decoded before the line is parsed.
+ * <p>
+ * Lines end like they do for {@link java.io.BufferedReader#readLine()}: with LF, CR or CRLF.
+ * A line may arrive in any number of reads.
+ */
+public class LineFramer {
+
+    /**
+     * Receives a complete line without its terminator. The slice is only valid during the call.
+     */
+    public interface LineListener {
+        void onLine(byte[] window, int start, int end);
+    }
+
+    private static final int INITIAL_WINDOW_SIZE = 1024;
+
+    private final LineListener listener;
+    private byte[] window = new byte[INITIAL_WINDOW_SIZE];
+    private int length;
+    // the previous read ended with CR, so an LF at the start of the next one belongs to the same terminator
+    private boolean skipLineFeed;
+
+
+    public LineFramer(LineListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Frames the bytes remaining in the buffer.
+     */
+    public void feed(ByteBuffer buffer) {
+        int received = buffer.remaining();
+        ensureCapacity(received);
+        buffer.get(window, length, received);
+        scan(received);
+    }
+
+    /**
+     * Reads once from the stream straight into the window and frames what arrived.
+     *
+     * @return the number of bytes read, or -1 at the end of the stream.
+     */
+    public int readFrom(InputStream inputStream) throws IOException {
+        ensureCapacity(INITIAL_WINDOW_SIZE);
+        int received = inputStream.read(window, length, window.length - length);
+        if (received > 0) {
+            scan(received);
+        }
+        return received;
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (window.length - length < bytes) {
+            window = Arrays.copyOf(window, Math.max(window.length * 2, length + bytes));
+        }
+    }
+
+    private void scan(int received) {
+        int from = length;
+        length += received;
+        int lineStart = 0;
+
+        if (skipLineFeed && from < length) {
+            skipLineFeed = false;
+            if (window[from] == '\n') {
+                // drop the LF by moving the unfinished line, which is empty here, past it
+                lineStart = ++from;
+            }
+        }
+
+        for (int i = from; i < length; i++) {
+            byte b = window[i];
+            if (b != '\n' && b != '\r') {
+                continue;
+            }
+            listener.onLine(window, lineStart, i);
+            if (b == '\r') {
+                if (i + 1 == length) {
+                    skipLineFeed = true;
+                } else if (window[i + 1] == '\n') {
+                    i++;
+                }
+            }
+            lineStart = i + 1;
+        }
+
+        // keep only the unfinished line, at the start of the window
+        if (lineStart > 0) {
+            length -= lineStart;
+            System.arraycopy(window, lineStart, window, 0, length);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package server;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Pairs users who want to play with anyone. Joining only enqueues the user; a pairing task on the timer drains the
+ * joins in batches and starts a game for every two users in the order they joined, so a join never waits for the
+ * pairing and a user waits for at most a couple of timer ticks once someone else is waiting too.
+ */
+public class Matchmaker {
+
+    private static final long PAIRING_INTERVAL_MS = 100;
+    // joins taken per pairing, so one pairing stays short however many users join at once
+    private static final int MAX_BATCH = 4096;
+    // the queue times the percentiles are taken of, those of the most recent pairings
+    private static final int QUEUE_TIME_SAMPLES = 4096;
+
+    private final HashedWheelTimer timer;
+    private final GameRegistry gameRegistry;
+    // the handler of every logged-in user, by username
+    private final Map<String, ClientHandler> loggedInClients;
+    private final Consumer<Game> gameStarted;
+    // the users waiting, by username; an entry that is no longer in here is skipped by the pairing
+    private final Map<String, Entry> queued = new ConcurrentHashMap<>();
+    private final Queue<Entry> joins = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean pairingScheduled = new AtomicBoolean();
+    // only touched by the pairing task
+    private ArrayDeque<Entry> waiting = new ArrayDeque<>();
+
+    private final ReentrantLock samplesLock = new ReentrantLock();
+    // guarded by the samples lock, in nanoseconds
+    private final long[] queueTimes = new long[QUEUE_TIME_SAMPLES];
+    private long pairedPlayers;
+
+
+    /**
+     * @param loggedInClients the handler of every logged-in user, by username; a user whose handler is not in it
+     *                        anymore is not paired.
+     * @param gameStarted     called on the timer thread with every game the matchmaker started.
+     */
+    public Matchmaker(HashedWheelTimer timer, GameRegistry gameRegistry, Map<String, ClientHandler> loggedInClients,
+                      Consumer<Game> gameStarted) {
+        this.timer = timer;
+        this.gameRegistry = gameRegistry;
+        this.loggedInClients = loggedInClients;
+        this.gameStarted = gameStarted;
+    }
+
+    /**
+     * Queues the user for the next pairing.
+     *
+     * @param onQueued called once the user is queued, before the user can be paired.
+     * @return false if the user is waiting already.
+     */
+    public boolean join(ClientHandler player, Runnable onQueued) {
+        Entry entry = new Entry(player, System.nanoTime());
+        if (queued.putIfAbsent(player.getUsername(), entry) != null) {
+            return false;
+        }
+        onQueued.run();
+        joins.add(entry);
+        schedulePairing();
+        return true;
+    }
+
+    /**
+     * Takes the user out of the queue, if waiting.
+     */
+    public void leave(ClientHandler player) {
+        String username = player.getUsername();
+        if (username != null) {
+            queued.computeIfPresent(username, (name, entry) -> entry.player == player ? null : entry);
+        }
+    }
+
+    public int getWaiting() {
+        return queued.size();
+    }
+
+    private void schedulePairing() {
+        if (pairingScheduled.compareAndSet(false, true)) {
+            timer.schedule(this::pair, PAIRING_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void pair() {
+        for (int i = 0; i < MAX_BATCH; i++) {
+            Entry entry = joins.poll();
+            if (entry == null) {
+                break;
+            }
+            waiting.add(entry);
+        }
+
+        ArrayDeque<Entry> unpaired = new ArrayDeque<>();
+        List<Long> pairedQueueTimes = new ArrayList<>();
+        long now = System.nanoTime();
+        Entry first = null;
+        for (Entry entry : waiting) {
+            if (!isWaiting(entry)) {
+                continue;
+            }
+            if (first == null) {
+                first = entry;
+                continue;
+            }
+            Game game = startGame(first, entry);
+            if (game != null) {
+                pairedQueueTimes.add(now - first.joinedAt);
+                pairedQueueTimes.add(now - entry.joinedAt);
+                gameStarted.accept(game);
+            } else {
+                // one of them started a game of their own meanwhile, the next pairing drops that one
+                unpaired.add(first);
+                unpaired.add(entry);
+            }
+            first = null;
+        }
+        if (first != null) {
+            unpaired.add(first);
+        }
+        waiting = unpaired;
+        recordQueueTimes(pairedQueueTimes);
+
+        pairingScheduled.set(false);
+        if (!joins.isEmpty() || waiting.size() > 1) {
+            schedulePairing();
+        }
+    }
+
+    private boolean isWaiting(Entry entry) {
+        String username = entry.player.getUsername();
+        if (queued.get(username) != entry) {
+            // left the queue, or logged out
+            return false;
+        }
+        if (loggedInClients.get(username) != entry.player) {
+            // disconnected without leaving the queue, a game with it would only end at the move timeout
+            queued.remove(username, entry);
+            return false;
+        }
+        if (gameRegistry.getGame(username) != null) {
+            // started a game with GAME_START_REQ, or was invited to one
+            queued.remove(username, entry);
+            return false;
+        }
+        return true;
+    }
+
+    private Game startGame(Entry initiator, Entry opponent) {
+        String initiatorName = initiator.player.getUsername();
+        String opponentName = opponent.player.getUsername();
+        Game game = gameRegistry.start(initiator.player, opponent.player);
+        if (game != null) {
+            queued.remove(initiatorName, initiator);
+            queued.remove(opponentName, opponent);
+        }
+        return game;
+    }
+
+    private void recordQueueTimes(List<Long> pairedQueueTimes) {
+        if (pairedQueueTimes.isEmpty()) {
+            return;
+        }
+        samplesLock.lock();
+        try {
+            for (long queueTime : pairedQueueTimes) {
+                queueTimes[(int) (pairedPlayers++ % QUEUE_TIME_SAMPLES)] = queueTime;
+            }
+        } finally {
+            samplesLock.unlock();
+        }
+    }
+
+    /**
+     * @param percentiles between 0 and 100.
+     * @return the queue times in milliseconds at the given percentiles, of the most recently paired users; empty if
+     * nobody was paired yet.
+     */
+    public long[] getQueueTimePercentiles(double... percentiles) {
+        long[] sorted;
+        samplesLock.lock();
+        try {
+            sorted = Arrays.copyOf(queueTimes, (int) Math.min(pairedPlayers, QUEUE_TIME_SAMPLES));
+        } finally {
+            samplesLock.unlock();
+        }
+        if (sorted.length == 0) {
+            return new long[0];
+        }
+        Arrays.sort(sorted);
+        long[] values = new long[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            int index = (int) Math.ceil(percentiles[i] / 100 * sorted.length) - 1;
+            values[i] = TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, Math.min(index, sorted.length - 1))]);
+        }
+        return values;
+    }
+
+    public long getPairedPlayers() {
+        samplesLock.lock();
+        try {
+            return pairedPlayers;
+        } finally {
+            samplesLock.unlock();
+        }
+    }
+
+    private static final class Entry {
+        private final ClientHandler player;
+        private final long joinedAt;
+
+        private Entry(ClientHandler player, long joinedAt) {
+            this.player = player;
+            this.joinedAt = joinedAt;
+        }
+    }
+}
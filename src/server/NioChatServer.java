@@ -0,0 +1,67 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Non-blocking variant of the chat port. Accepted channels are spread round-robin over a small, fixed set of
+ * {@link NioEventLoop}s instead of getting a thread each.
+ */
+public class NioChatServer implements Runnable {
+
+    private final int port;
+    private final Server server;
+    private final String serverVersion;
+    private final NioEventLoop[] eventLoops;
+    private ServerSocketChannel serverChannel;
+    private volatile boolean running = true;
+
+
+    public NioChatServer(int port, Server server, String serverVersion, int eventLoopCount) {
+        this.port = port;
+        this.server = server;
+        this.serverVersion = serverVersion;
+        this.eventLoops = new NioEventLoop[eventLoopCount];
+    }
+
+    @Override
+    public void run() {
+        try {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port));
+
+            for (int i = 0; i < eventLoops.length; i++) {
+                eventLoops[i] = new NioEventLoop(server, serverVersion);
+                new Thread(eventLoops[i], "chat-event-loop-" + i).start();
+            }
+            System.out.println("Server started on port " + port + " with " + eventLoops.length + " event loops");
+
+            int next = 0;
+            while (running) {
+                SocketChannel channel = serverChannel.accept();
+                System.out.println("New client connected: " + channel.socket().getInetAddress());
+                eventLoops[next].register(channel);
+                next = (next + 1) % eventLoops.length;
+            }
+
+        } catch (IOException e) {
+            if (running) {
+                System.err.println("Error accepting client connection: " + e.getMessage());
+            }
+        }
+    }
+
+    public void stop() throws IOException {
+        running = false;
+        for (NioEventLoop eventLoop : eventLoops) {
+            if (eventLoop != null) {
+                eventLoop.stop();
+            }
+        }
+        if (serverChannel != null) {
+            serverChannel.close();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * State of a single client connection served by a {@link NioEventLoop}: the channel, the bytes of the
+ * line that is still being received and the frames waiting to be written.
+ */
+public class NioConnection {
+
+    private static final int MAX_BATCH_FRAMES = 64;
+
+    private final SocketChannel channel;
+    private final NioEventLoop eventLoop;
+    private final OutboundQueue outboundQueue;
+    private final AtomicBoolean writeRequested = new AtomicBoolean();
+    private final ScheduledExecutorService flushScheduler;
+    private final int flushBytes;
+    private final int flushDelayMs;
+    // frames taken from the queue and written with one gathering write; [batchStart, batchEnd) is still pending
+    private final ByteBuffer[] batch = new ByteBuffer[MAX_BATCH_FRAMES];
+    private final List<byte[]> drained = new ArrayList<>();
+    private int batchStart;
+    private int batchEnd;
+
+    private SelectionKey selectionKey;
+    private ClientHandler clientHandler;
+    private LineFramer lineFramer;
+    private volatile boolean closeRequested;
+
+
+    /**
+     * @param flushScheduler delays writes when a flush delay is configured, may be null otherwise.
+     */
+    public NioConnection(SocketChannel channel, NioEventLoop eventLoop, ScheduledExecutorService flushScheduler, ServerConfig config) {
+        this.channel = channel;
+        this.eventLoop = eventLoop;
+        this.flushScheduler = flushScheduler;
+        this.flushBytes = config.getFlushBytes();
+        this.flushDelayMs = flushScheduler == null ? 0 : config.getFlushDelayMs();
+        this.outboundQueue = new OutboundQueue(this::requestWrite, config);
+    }
+
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    public OutboundQueue getOutboundQueue() {
+        return outboundQueue;
+    }
+
+    void attach(SelectionKey selectionKey, ClientHandler clientHandler) {
+        this.selectionKey = selectionKey;
+        this.clientHandler = clientHandler;
+        this.lineFramer = new LineFramer(clientHandler::processMessage);
+    }
+
+    /**
+     * Passes every complete line of the freshly read bytes to the client handler.
+     */
+    void onBytesRead(ByteBuffer buffer) {
+        lineFramer.feed(buffer);
+    }
+
+    /**
+     * Called by the event loop when the peer closed the connection.
+     */
+    void onEndOfStream() {
+        clientHandler.connectionClosed();
+    }
+
+    /**
+     * Writes as much of the queued data as the socket accepts without blocking.
+     *
+     * @return true if the write queue has been drained completely.
+     */
+    boolean writePending() throws IOException {
+        writeRequested.set(false);
+        while (true) {
+            if (batchStart == batchEnd && !fillBatch()) {
+                return true;
+            }
+            channel.write(batch, batchStart, batchEnd - batchStart);
+            while (batchStart < batchEnd && !batch[batchStart].hasRemaining()) {
+                batch[batchStart++] = null;
+            }
+            if (batchStart < batchEnd) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Takes up to {@link ServerConfig#getFlushBytes()} bytes of queued frames for the next gathering write.
+     *
+     * @return false if the queue is empty.
+     */
+    private boolean fillBatch() {
+        batchStart = 0;
+        batchEnd = 0;
+        outboundQueue.drainTo(drained, MAX_BATCH_FRAMES, flushBytes);
+        for (byte[] frame : drained) {
+            batch[batchEnd++] = ByteBuffer.wrap(frame);
+        }
+        drained.clear();
+        return batchEnd > 0;
+    }
+
+    boolean isCloseRequested() {
+        return closeRequested;
+    }
+
+    SelectionKey getSelectionKey() {
+        return selectionKey;
+    }
+
+    /**
+     * Asks the event loop to drain the queue, unless a request is already pending.
+     */
+    private void requestWrite(boolean urgent) {
+        if (writeRequested.compareAndSet(false, true)) {
+            if (urgent || flushDelayMs == 0) {
+                eventLoop.requestWrite(this);
+            } else {
+                flushScheduler.schedule(() -> eventLoop.requestWrite(this), flushDelayMs, TimeUnit.MILLISECONDS);
+            }
+        } else if (urgent) {
+            // a delayed write may be pending, flushing twice does no harm
+            eventLoop.requestWrite(this);
+        }
+    }
+
+    /**
+     * Closes the connection once all queued frames have been written, so a final message like HANGUP still reaches the client.
+     */
+    public void close() {
+        closeRequested = true;
+        eventLoop.requestWrite(this);
+    }
+
+    void closeNow() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing client channel: " + e.getMessage());
+        }
+    }
+
+}
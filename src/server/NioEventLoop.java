@@ -0,0 +1,151 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A single selector thread that owns reading, line framing and writing for many client connections.
+ * Other threads never touch the selector directly, they hand work to the loop through the task queue.
+ */
+public class NioEventLoop implements Runnable {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final Selector selector;
+    private final Server server;
+    private final String serverVersion;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private volatile boolean running = true;
+
+
+    public NioEventLoop(Server server, String serverVersion) throws IOException {
+        this.selector = Selector.open();
+        this.server = server;
+        this.serverVersion = serverVersion;
+    }
+
+    /**
+     * Hands a freshly accepted channel to this loop. The client handler is created on the loop thread.
+     */
+    public void register(SocketChannel channel) {
+        execute(() -> {
+            try {
+                channel.configureBlocking(false);
+                NioConnection connection = new NioConnection(channel, this, server.getFlushScheduler(), server.getConfig());
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ, connection);
+                ClientHandler clientHandler = new ClientHandler(connection, server, serverVersion);
+                connection.attach(key, clientHandler);
+                server.addClient(channel.socket(), clientHandler);
+            } catch (IOException e) {
+                System.err.println("Unable to register client channel: " + e.getMessage());
+            }
+        });
+    }
+
+    void requestWrite(NioConnection connection) {
+        execute(() -> flush(connection));
+    }
+
+    private void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                runTasks();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    NioConnection connection = (NioConnection) key.attachment();
+
+                    if (key.isValid() && key.isReadable()) {
+                        read(connection);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        flush(connection);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) {
+                System.err.println("Event loop stopped unexpectedly: " + e.getMessage());
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.println("Error while running event loop task: " + e.getMessage());
+            }
+        }
+    }
+
+    private void read(NioConnection connection) {
+        try {
+            readBuffer.clear();
+            int read = connection.getChannel().read(readBuffer);
+            if (read == -1) {
+                disconnect(connection);
+                return;
+            }
+            readBuffer.flip();
+            connection.onBytesRead(readBuffer);
+        } catch (IOException e) {
+            disconnect(connection);
+        } catch (RuntimeException e) {
+            System.err.println("Error processing message from client: " + e.getMessage());
+        }
+    }
+
+    private void flush(NioConnection connection) {
+        SelectionKey key = connection.getSelectionKey();
+        if (key == null || !key.isValid()) {
+            return;
+        }
+        try {
+            if (connection.writePending()) {
+                if (connection.isCloseRequested()) {
+                    connection.closeNow();
+                } else {
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            } else {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        } catch (IOException e) {
+            disconnect(connection);
+        }
+    }
+
+    private void disconnect(NioConnection connection) {
+        connection.closeNow();
+        connection.onEndOfStream();
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            selector.close();
+        } catch (IOException e) {
+            System.err.println("Error closing selector: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package server;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Frames waiting to be written to one client. Any thread may offer a frame, the owner of the connection
+ * (an {@link OutboundWriter} or a {@link NioEventLoop}) is signalled and drains the queue in order.
+ * Frames are shared, immutable byte arrays, so a broadcast is encoded once and queued for every recipient.
+ * <p>
+ * The queue is bounded in messages and bytes. When a frame does not fit, the {@link OverflowPolicy} decides
+ * whether old frames are dropped, merged, or the client is disconnected.
+ */
+public class OutboundQueue {
+
+    /**
+     * Tells the owner of the connection that frames are waiting. Urgent frames, like PING and HANGUP,
+     * should be written right away instead of waiting for more frames to coalesce with.
+     */
+    public interface DrainSignal {
+        void framesQueued(boolean urgent);
+    }
+
+    private final Deque<byte[]> frames = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final DrainSignal drainSignal;
+    private final int maxMessages;
+    private final long maxBytes;
+    private final OverflowPolicy overflowPolicy;
+    private Runnable overflowHandler = () -> { };
+
+    private long queuedBytes;
+    private int peakDepth;
+    private long droppedFrames;
+    private boolean disconnecting;
+
+
+    public OutboundQueue(DrainSignal drainSignal, int maxMessages, long maxBytes, OverflowPolicy overflowPolicy) {
+        this.drainSignal = drainSignal;
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public OutboundQueue(DrainSignal drainSignal, ServerConfig config) {
+        this(drainSignal, config.getOutboundMaxMessages(), config.getOutboundMaxBytes(), config.getOverflowPolicy());
+    }
+
+    /**
+     * Sets the action run when the overflow policy cannot make room and the client has to be disconnected.
+     * It runs on the thread that offered the frame, after the queue has been emptied. Only
+     * {@link #offerFinal(byte[])} queues frames from then on.
+     */
+    public void setOverflowHandler(Runnable overflowHandler) {
+        this.overflowHandler = overflowHandler;
+    }
+
+    public void offer(byte[] frame) {
+        offer(frame, false);
+    }
+
+    /**
+     * Queues a control frame that must not wait for coalescing, within the same limits as {@link #offer(byte[])}.
+     */
+    public void offerUrgent(byte[] frame) {
+        offer(frame, true);
+    }
+
+    private void offer(byte[] frame, boolean urgent) {
+        boolean queued = false;
+        boolean overflowed = false;
+        lock.lock();
+        try {
+            if (disconnecting) {
+                // the client is being disconnected, nothing is queued after its HANGUP
+                droppedFrames++;
+            } else if (fits(frame) || makeRoom(frame)) {
+                frames.add(frame);
+                queuedBytes += frame.length;
+                peakDepth = Math.max(peakDepth, frames.size());
+                queued = true;
+            } else {
+                overflowed = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (overflowed) {
+            overflowHandler.run();
+        } else if (queued) {
+            drainSignal.framesQueued(urgent);
+        }
+    }
+
+    private boolean fits(byte[] frame) {
+        return frames.size() + 1 <= maxMessages && queuedBytes + frame.length <= maxBytes;
+    }
+
+    /**
+     * Applies the overflow policy while holding the lock.
+     *
+     * @return true if the new frame can be queued, false if the client has to be disconnected.
+     */
+    private boolean makeRoom(byte[] frame) {
+        switch (overflowPolicy) {
+            case DROP_OLDEST:
+                while (!frames.isEmpty() && !fits(frame)) {
+                    queuedBytes -= frames.poll().length;
+                    droppedFrames++;
+                }
+                if (fits(frame)) {
+                    return true;
+                }
+                break;
+            case COALESCE:
+                if (queuedBytes + frame.length <= maxBytes) {
+                    coalesce();
+                    return true;
+                }
+                break;
+            default:
+                break;
+        }
+        droppedFrames += frames.size() + 1;
+        frames.clear();
+        queuedBytes = 0;
+        disconnecting = true;
+        return false;
+    }
+
+    private void coalesce() {
+        byte[] merged = new byte[(int) queuedBytes];
+        int offset = 0;
+        for (byte[] queued : frames) {
+            System.arraycopy(queued, 0, merged, offset, queued.length);
+            offset += queued.length;
+        }
+        frames.clear();
+        frames.add(merged);
+    }
+
+    /**
+     * Queues the last frame for a client that is being disconnected, ignoring the limits.
+     */
+    public void offerFinal(byte[] frame) {
+        lock.lock();
+        try {
+            frames.add(frame);
+            queuedBytes += frame.length;
+        } finally {
+            lock.unlock();
+        }
+        drainSignal.framesQueued(true);
+    }
+
+    public byte[] poll() {
+        lock.lock();
+        try {
+            byte[] frame = frames.poll();
+            if (frame != null) {
+                queuedBytes -= frame.length;
+            }
+            return frame;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves queued frames to the batch, in order, until it holds maxFrames frames or at least maxBytes bytes.
+     *
+     * @return the number of bytes moved.
+     */
+    public long drainTo(List<byte[]> batch, int maxFrames, long maxBytes) {
+        lock.lock();
+        try {
+            long drained = 0;
+            int count = 0;
+            byte[] frame;
+            while (count < maxFrames && drained < maxBytes && (frame = frames.poll()) != null) {
+                batch.add(frame);
+                drained += frame.length;
+                count++;
+            }
+            queuedBytes -= drained;
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return frames.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getDepth() {
+        lock.lock();
+        try {
+            return frames.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getQueuedBytes() {
+        lock.lock();
+        try {
+            return queuedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getPeakDepth() {
+        lock.lock();
+        try {
+            return peakDepth;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDroppedFrames() {
+        lock.lock();
+        try {
+            return droppedFrames;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
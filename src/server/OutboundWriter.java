@@ -0,0 +1,151 @@
+package server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Drains the {@link OutboundQueue} of a blocking socket on a writer thread, so the thread that queues a frame
+ * never waits for a slow receiver. At most one drain task per client runs at a time, which keeps frames in order.
+ * <p>
+ * Frames that are queued together are coalesced into a single write of up to {@link ServerConfig#getFlushBytes()}
+ * bytes. With a flush delay, the drain waits that long for more frames, unless an urgent frame arrives.
+ */
+public class OutboundWriter implements Runnable {
+
+    private static final int MAX_BATCH_FRAMES = 1024;
+
+    private final Socket socket;
+    private final OutputStream outputStream;
+    private final Executor writerExecutor;
+    private final ScheduledExecutorService flushScheduler;
+    private final int flushBytes;
+    private final int flushDelayMs;
+    private final OutboundQueue queue;
+    private final List<byte[]> batch = new ArrayList<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile ScheduledFuture<?> delayedDrain;
+    // an urgent frame was queued since the current drain started
+    private volatile boolean urgentQueued;
+    private volatile boolean closeRequested;
+
+    private long writes;
+    private long writtenFrames;
+
+
+    /**
+     * @param flushScheduler delays the drain when a flush delay is configured, may be null otherwise.
+     */
+    public OutboundWriter(Socket socket, Executor writerExecutor, ScheduledExecutorService flushScheduler, ServerConfig config) throws IOException {
+        this.socket = socket;
+        this.outputStream = socket.getOutputStream();
+        this.writerExecutor = writerExecutor;
+        this.flushScheduler = flushScheduler;
+        this.flushBytes = config.getFlushBytes();
+        this.flushDelayMs = flushScheduler == null ? 0 : config.getFlushDelayMs();
+        this.queue = new OutboundQueue(this::signal, config);
+    }
+
+    public OutboundQueue getQueue() {
+        return queue;
+    }
+
+    private void signal(boolean urgent) {
+        if (urgent) {
+            urgentQueued = true;
+        }
+        if (scheduled.compareAndSet(false, true)) {
+            if (urgent || flushDelayMs == 0 || closeRequested) {
+                writerExecutor.execute(this);
+            } else {
+                delayedDrain = flushScheduler.schedule(() -> writerExecutor.execute(this), flushDelayMs, TimeUnit.MILLISECONDS);
+            }
+        } else if (urgent) {
+            // a drain is waiting for more frames, the urgent frame should not wait with it
+            ScheduledFuture<?> delayed = delayedDrain;
+            if (delayed != null && delayed.cancel(false)) {
+                writerExecutor.execute(this);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        delayedDrain = null;
+        urgentQueued = false;
+        try {
+            while (queue.drainTo(batch, MAX_BATCH_FRAMES, flushBytes) > 0) {
+                write();
+            }
+            if (closeRequested) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            batch.clear();
+            closeSocket();
+        } finally {
+            scheduled.set(false);
+            if (!queue.isEmpty() || closeRequested && !socket.isClosed()) {
+                signal(urgentQueued);
+            }
+        }
+    }
+
+    /**
+     * Writes the batch with a single call, copying the frames into one array only if there is more than one.
+     */
+    private void write() throws IOException {
+        if (batch.size() == 1) {
+            outputStream.write(batch.get(0));
+        } else {
+            int length = 0;
+            for (byte[] frame : batch) {
+                length += frame.length;
+            }
+            byte[] coalesced = new byte[length];
+            int offset = 0;
+            for (byte[] frame : batch) {
+                System.arraycopy(frame, 0, coalesced, offset, frame.length);
+                offset += frame.length;
+            }
+            outputStream.write(coalesced);
+        }
+        writes++;
+        writtenFrames += batch.size();
+        batch.clear();
+    }
+
+    /**
+     * @return the number of write calls made on the socket; only read after the writer went idle.
+     */
+    public long getWrites() {
+        return writes;
+    }
+
+    public long getWrittenFrames() {
+        return writtenFrames;
+    }
+
+    /**
+     * Closes the socket once all queued frames have been written, so a final message like HANGUP still reaches the client.
+     */
+    public void close() {
+        closeRequested = true;
+        signal(true);
+    }
+
+    private void closeSocket() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            System.err.println("Error closing client socket: " + e.getMessage());
+        }
+    }
+}
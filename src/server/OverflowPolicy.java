@@ -0,0 +1,32 @@
+package server;
+
+/**
+ * What an {@link OutboundQueue} does when a client does not read its messages fast enough and the queue is full.
+ */
+public enum OverflowPolicy {
+    // Discard the oldest queued frames until the new frame fits
+    DROP_OLDEST("drop-oldest"),
+    // Merge all queued frames into a single frame, so only the byte limit still applies
+    COALESCE("coalesce"),
+    // Send HANGUP with code 7001 and close the connection
+    DISCONNECT("disconnect");
+
+    private final String option;
+
+    OverflowPolicy(String option) {
+        this.option = option;
+    }
+
+    public String getOption() {
+        return option;
+    }
+
+    public static OverflowPolicy fromOption(String option) {
+        for (OverflowPolicy policy : OverflowPolicy.values()) {
+            if (policy.option.equalsIgnoreCase(option)) {
+                return policy;
+            }
+        }
+        return null;
+    }
+}
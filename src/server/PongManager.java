@@ -1,37 +1,30 @@
 package server;
 
-import shared.utility.model.Message;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import shared.messages.Hangup;
-import shared.messages.PongError;
 import shared.utility.Code;
 import shared.utility.Command;
-import shared.utility.MessageHandler;
 
-import java.io.PrintWriter;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 
 public class PongManager {
 
     private static final int PING_INTERVAL = 10_000; // 10 seconds
     private static final int PING_TIMEOUT = 3_000;  // 3 seconds
-    private  Timer pingTimer;
-    private TimerTask pongTimeoutTask;
+    private final HashedWheelTimer timer;
+    private HashedWheelTimer.Timeout pingTimeout;
+    private HashedWheelTimer.Timeout pongTimeoutTask;
+    private boolean pinging;
     private volatile boolean pongReceived = true;
+    // a lock instead of synchronized so virtual threads do not pin their carrier while writing
+    private final ReentrantLock lock = new ReentrantLock();
     private final ClientHandler clientHandler;
-    private final ObjectMapper mapper;
-    private final PrintWriter writer;
-    private final MessageHandler messageHandler;
 
 
 
-    public PongManager(ClientHandler clientHandler, ObjectMapper mapper, PrintWriter writer, MessageHandler messageHandler) {
+    public PongManager(ClientHandler clientHandler, HashedWheelTimer timer) {
         this.clientHandler = clientHandler;
-        this.mapper = mapper;
-        this.writer = writer;
-        this.messageHandler = messageHandler;
+        this.timer = timer;
 
 
     }
@@ -40,27 +33,33 @@ public class PongManager {
      * Starts the periodic ping process to monitor client activity with 10-second interval.
      */
     public void startPingProcess() {
-        pingTimer = new Timer(true); // isDaemon set to true to perform ping pong mechanism as a background process
-        pingTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                sendPing();
-            }
-        }, PING_INTERVAL, PING_INTERVAL);
+        lock.lock();
+        try {
+            pinging = true;
+            scheduleNextPing();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void scheduleNextPing() {
+        pingTimeout = timer.schedule(this::sendPing, PING_INTERVAL, TimeUnit.MILLISECONDS);
     }
 
 
     /**
      * Sends a PING message to the client and schedules a timeout task to ensure a response.
      */
-    private  synchronized void  sendPing() {
-        pongReceived = false;
-
+    private void sendPing() {
+        lock.lock();
         try {
+            if (!pinging) {
+                return;
+            }
+            scheduleNextPing();
+            pongReceived = false;
 
-            Message pingMessage = new Message(Command.PING.getCommand(), null);
-            String serializedPing = messageHandler.serialize(pingMessage);
-            writer.println(serializedPing);
+            clientHandler.sendUrgent(ResponseFrames.withoutPayload(Command.PING));
             System.out.println("Sent PING to client: " + clientHandler.getUsername());
 
             schedulePongTimeout();
@@ -68,6 +67,8 @@ public class PongManager {
         } catch (Exception e) {
             System.err.println("Error sending PING to client: " + clientHandler.getUsername() );
 
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -75,23 +76,18 @@ public class PongManager {
      * Schedules a task to handle a timeout if the client does not respond with a PONG within the expected interval.
      */
 
-    private  synchronized void schedulePongTimeout() {
+    private void schedulePongTimeout() {
         if (pongTimeoutTask != null) {
             pongTimeoutTask.cancel();
         }
 
-        pongTimeoutTask = new TimerTask() {
-            @Override
-            public void run() {
-                if (!pongReceived) {
-                    System.err.println("Client " + clientHandler.getUsername() + " failed to respond to PING. Disconnecting...");
-                    sendHangup(Code.NO_PONG.getCode());
-                    clientHandler.handleDisconnection();
-                }
+        pongTimeoutTask = timer.schedule(() -> {
+            if (!pongReceived) {
+                System.err.println("Client " + clientHandler.getUsername() + " failed to respond to PING. Disconnecting...");
+                sendHangup(Code.NO_PONG);
+                clientHandler.handleDisconnection();
             }
-        };
-
-        new Timer(true).schedule(pongTimeoutTask, PING_TIMEOUT);
+        }, PING_TIMEOUT, TimeUnit.MILLISECONDS);
     }
 
 
@@ -101,12 +97,17 @@ public class PongManager {
      * If no timeout task is scheduled, a PONG_ERROR is sent.
      */
 
-    public synchronized void processPongCommand() {
-        if (!pongTimeoutTaskScheduled()) {
-            // Server did not expect a PONG
-            sendPongError();
-        } else {
-            handlePong();
+    public void processPongCommand() {
+        lock.lock();
+        try {
+            if (!pongTimeoutTaskScheduled()) {
+                // Server did not expect a PONG
+                sendPongError();
+            } else {
+                handlePong();
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -124,7 +125,7 @@ public class PongManager {
     /**
      * Handles a valid PONG response from the client, resetting the `pongReceived` flag.
      */
-    private synchronized void  handlePong() {
+    private void handlePong() {
         System.out.println("Received PONG from client: " + clientHandler.getUsername());
         pongReceived = true;
     }
@@ -137,16 +138,8 @@ public class PongManager {
      *
      * @param reasonCode The reason code for the disconnection.
      */
-    private void sendHangup(int reasonCode) {
-        try {
-            Hangup hangupPayload = new Hangup(reasonCode);
-            String payload = mapper.writeValueAsString(hangupPayload);
-            Message hangupMessage = new Message(Command.HANGUP.getCommand(), payload);
-            String serializedMessage = messageHandler.serialize(hangupMessage);
-            writer.println(serializedMessage);
-        } catch (Exception e) {
-            System.err.println("Error sending HANGUP to client: " + clientHandler.getUsername());
-        }
+    private void sendHangup(Code reasonCode) {
+        clientHandler.sendUrgent(ResponseFrames.error(Command.HANGUP, reasonCode));
     }
 
     /**
@@ -154,16 +147,8 @@ public class PongManager {
      */
 
     private void sendPongError() {
-        try {
-            PongError pongError = new PongError(Code.PONG_WITHOUT_PING.getCode());
-            String payload = mapper.writeValueAsString(pongError);
-            Message pongErrorMessage = new Message(Command.PONG_ERROR.getCommand(), payload);
-            String serializedMessage = messageHandler.serialize(pongErrorMessage);
-            writer.println(serializedMessage);
-            System.out.println("Sent PONG_ERROR to client: " + clientHandler.getUsername());
-        } catch (Exception e) {
-            System.err.println("Error sending PONG_ERROR to client: " + clientHandler.getUsername());
-        }
+        clientHandler.send(ResponseFrames.error(Command.PONG_ERROR, Code.PONG_WITHOUT_PING));
+        System.out.println("Sent PONG_ERROR to client: " + clientHandler.getUsername());
     }
 
 
@@ -171,14 +156,19 @@ public class PongManager {
      * Stops the ongoing ping process and cancels any active timeout tasks.
      */
     public void stopPingProcess() {
-        if (pingTimer != null) {
-            pingTimer.cancel();
-            pingTimer.purge();
-            pingTimer = null;
-        }
-        if (pongTimeoutTask != null) {
-            pongTimeoutTask.cancel();
-            pongTimeoutTask = null;
+        lock.lock();
+        try {
+            pinging = false;
+            if (pingTimeout != null) {
+                pingTimeout.cancel();
+                pingTimeout = null;
+            }
+            if (pongTimeoutTask != null) {
+                pongTimeoutTask.cancel();
+                pongTimeoutTask = null;
+            }
+        } finally {
+            lock.unlock();
         }
         System.out.println("Stopped ping process for client: " + clientHandler.getUsername());
     }
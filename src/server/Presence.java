@@ -0,0 +1,166 @@
+package server;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import shared.messages.UserListResp;
+import shared.utility.Command;
+import shared.utility.MessageCodecs;
+import shared.utility.MessageHandler;
+import shared.utility.model.Message;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The logged-in users under a version that grows by one with every user who joins or leaves. Clients that know the
+ * users at some version are sent only what changed since, as long as the changes are still kept; otherwise, and to
+ * clients that know nothing yet, all users are sent. That full list is encoded once per version and shared by all
+ * requests for it.
+ */
+public class Presence {
+
+    // changes kept for clients to catch up with; one that is further behind gets all users
+    static final int MAX_CHANGES = 4096;
+
+    private final MessageCodecs codecs = MessageCodecs.shared();
+    private final MessageHandler messageHandler = new MessageHandler();
+    private final ReentrantLock lock = new ReentrantLock();
+    // guarded by the lock
+    private final Set<String> users = new LinkedHashSet<>();
+    private long version;
+    // the user of the change that led to version v is at index v % MAX_CHANGES
+    private final String[] changedUsers = new String[MAX_CHANGES];
+    private final boolean[] joined = new boolean[MAX_CHANGES];
+
+    // only one thread at a time builds the full list, the others wait for it instead of building it too
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private volatile Snapshot snapshot = new Snapshot(0, List.of(), null);
+
+    public void join(String username) {
+        lock.lock();
+        try {
+            if (users.add(username)) {
+                record(username, true);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void leave(String username) {
+        lock.lock();
+        try {
+            if (users.remove(username)) {
+                record(username, false);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // called with the lock held
+    private void record(String username, boolean hasJoined) {
+        version++;
+        int index = (int) (version % MAX_CHANGES);
+        changedUsers[index] = username;
+        joined[index] = hasJoined;
+    }
+
+    public long getVersion() {
+        lock.lock();
+        try {
+            return version;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return all logged-in users, in the order they logged in.
+     */
+    public List<String> getUsers() {
+        return currentSnapshot().users;
+    }
+
+    /**
+     * @param knownVersion the version of the users the client knows, 0 if it knows none.
+     * @return the USER_LIST_RESP with the users who joined and left since that version, or with all users if the
+     * changes are not kept anymore or would be longer than the list of all users.
+     */
+    public byte[] changesSince(long knownVersion) {
+        UserListResp delta;
+        lock.lock();
+        try {
+            long changes = version - knownVersion;
+            if (knownVersion <= 0 || changes < 0 || changes >= MAX_CHANGES || changes > users.size()) {
+                delta = null;
+            } else {
+                delta = delta(knownVersion);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return delta == null ? currentSnapshot().frame : encode(delta);
+    }
+
+    // called with the lock held
+    private UserListResp delta(long knownVersion) {
+        // only the last change of a user counts
+        Map<String, Boolean> lastChanges = new LinkedHashMap<>();
+        for (long changeVersion = knownVersion + 1; changeVersion <= version; changeVersion++) {
+            int index = (int) (changeVersion % MAX_CHANGES);
+            lastChanges.remove(changedUsers[index]);
+            lastChanges.put(changedUsers[index], joined[index]);
+        }
+        List<String> joinedUsers = new ArrayList<>();
+        List<String> leftUsers = new ArrayList<>();
+        lastChanges.forEach((username, hasJoined) -> (hasJoined ? joinedUsers : leftUsers).add(username));
+        return UserListResp.delta(version, joinedUsers, leftUsers);
+    }
+
+    private Snapshot currentSnapshot() {
+        Snapshot current = snapshot;
+        if (current.version == getVersion() && current.frame != null) {
+            return current;
+        }
+        snapshotLock.lock();
+        try {
+            current = snapshot;
+            long snapshotVersion;
+            List<String> snapshotUsers;
+            lock.lock();
+            try {
+                if (current.version == version && current.frame != null) {
+                    return current;
+                }
+                snapshotVersion = version;
+                snapshotUsers = List.copyOf(users);
+            } finally {
+                lock.unlock();
+            }
+            // encoded without holding the lock, so users can join and leave meanwhile
+            current = new Snapshot(snapshotVersion, snapshotUsers,
+                    encode(UserListResp.snapshot(snapshotVersion, snapshotUsers)));
+            snapshot = current;
+            return current;
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    private byte[] encode(UserListResp userListResp) {
+        try {
+            String serializedPayload = codecs.writeValueAsString(userListResp);
+            return Frames.encode(messageHandler.serialize(new Message(Command.USER_LIST_RESP.getCommand(), serializedPayload)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to encode the user list", e);
+        }
+    }
+
+    private record Snapshot(long version, List<String> users, byte[] frame) {
+    }
+}
@@ -0,0 +1,224 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares the bandwidth of the file transfer relays between the transfers, with a token bucket for all of them and
+ * one per sending user. Every turn of a transfer takes at most its quantum of tokens, which is larger for transfers
+ * that relayed little so far, so short transfers finish fast while a large one is running; transfers whose buckets
+ * are empty wait until the buckets filled up again. Without limits, transfers are relayed as fast as they go.
+ * <p>
+ * The relays of all threads share the buckets. Replies of the receiver are not metered, they are only a few bytes.
+ */
+public class RelayScheduler {
+
+    // the tokens one turn of a transfer takes at most, times its weight
+    private static final long QUANTUM = 16 * 1024;
+    // bytes relayed before a transfer no longer counts as short, with the weight it has until then
+    private static final long[] SHORT_TRANSFER_BYTES = {1024 * 1024, 16 * 1024 * 1024, 128 * 1024 * 1024};
+    private static final int[] SHORT_TRANSFER_WEIGHTS = {8, 4, 2};
+    // the fewest tokens a turn takes, so a throttled transfer does not wake up for every few bytes
+    private static final long MIN_GRANT = 4 * 1024;
+
+    // null without a limit
+    private final TokenBucket global;
+    private final long userBytesPerSecond;
+    private final Map<String, UserShare> users = new ConcurrentHashMap<>();
+    private final Set<Share> shares = ConcurrentHashMap.newKeySet();
+
+
+    public RelayScheduler(ServerConfig config) {
+        long globalBytesPerSecond = config.getRelayMaxBytesPerSecond();
+        this.global = globalBytesPerSecond > 0 ? new TokenBucket(globalBytesPerSecond, burst(globalBytesPerSecond)) : null;
+        this.userBytesPerSecond = config.getRelayUserMaxBytesPerSecond();
+    }
+
+    private static long burst(long bytesPerSecond) {
+        // a tenth of a second, and at least what the largest quantum takes
+        return Math.max(bytesPerSecond / 10, QUANTUM * SHORT_TRANSFER_WEIGHTS[0]);
+    }
+
+    /**
+     * Registers a stream of a session that is relayed now.
+     */
+    public Share open(FileTransferSession session, int stream) {
+        UserShare user = null;
+        if (userBytesPerSecond > 0) {
+            user = users.compute(session.getOwner(), (owner, existing) -> {
+                UserShare share = existing != null ? existing
+                        : new UserShare(new TokenBucket(userBytesPerSecond, burst(userBytesPerSecond)));
+                share.transfers++;
+                return share;
+            });
+        }
+        Share share = new Share(session.getId(), stream, session.getOwner(), user);
+        shares.add(share);
+        return share;
+    }
+
+    public void close(Share share) {
+        shares.remove(share);
+        if (share.user != null) {
+            users.computeIfPresent(share.owner, (owner, user) -> --user.transfers == 0 ? null : user);
+        }
+    }
+
+    /**
+     * @return true if transfers are metered, false if they are relayed as fast as they go.
+     */
+    public boolean isLimited() {
+        return global != null || userBytesPerSecond > 0;
+    }
+
+    /**
+     * Takes the tokens for one turn of a transfer.
+     *
+     * @return the number of bytes the transfer may relay now, 0 if it has to wait.
+     */
+    public long acquire(Share share, long wanted) {
+        if (global == null && share.user == null) {
+            return wanted;
+        }
+        long granted = Math.min(wanted, QUANTUM * weight(share));
+        if (share.user != null) {
+            granted = share.user.bucket.take(granted, MIN_GRANT);
+        }
+        if (global != null && granted > 0) {
+            long fromGlobal = global.take(granted, MIN_GRANT);
+            if (share.user != null) {
+                share.user.bucket.refund(granted - fromGlobal);
+            }
+            granted = fromGlobal;
+        }
+        return granted;
+    }
+
+    /**
+     * Records the bytes relayed with tokens of {@link #acquire}, and puts back the tokens that were not used.
+     */
+    public void relayed(Share share, long granted, long relayed) {
+        share.bytes += relayed;
+        long unused = granted - relayed;
+        if (unused > 0 && (global != null || share.user != null)) {
+            if (share.user != null) {
+                share.user.bucket.refund(unused);
+            }
+            if (global != null) {
+                global.refund(unused);
+            }
+        }
+    }
+
+    /**
+     * @return the nanoseconds until a throttled transfer can take tokens again.
+     */
+    public long nanosUntilAvailable(Share share) {
+        long nanos = global != null ? global.nanosUntil(MIN_GRANT) : 0;
+        if (share.user != null) {
+            nanos = Math.max(nanos, share.user.bucket.nanosUntil(MIN_GRANT));
+        }
+        return nanos;
+    }
+
+    private static int weight(Share share) {
+        for (int i = 0; i < SHORT_TRANSFER_BYTES.length; i++) {
+            if (share.bytes < SHORT_TRANSFER_BYTES[i]) {
+                return SHORT_TRANSFER_WEIGHTS[i];
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * @return the transfers being relayed, those with the most bytes first.
+     */
+    public List<Share> getShares() {
+        List<Share> sorted = new ArrayList<>(shares);
+        sorted.sort(Comparator.comparingLong(Share::getBytes).reversed());
+        return sorted;
+    }
+
+    /**
+     * One stream of a session being relayed, and what it relayed so far.
+     */
+    public static final class Share {
+        private final UUID session;
+        private final int stream;
+        private final String owner;
+        // null without a limit per user
+        private final UserShare user;
+        private final long startedAt = System.nanoTime();
+        // written by the relay thread only
+        private volatile long bytes;
+        private volatile long throttledNanos;
+        private long throttledSince;
+
+        private Share(UUID session, int stream, String owner, UserShare user) {
+            this.session = session;
+            this.stream = stream;
+            this.owner = owner;
+            this.user = user;
+        }
+
+        void throttled() {
+            if (throttledSince == 0) {
+                throttledSince = System.nanoTime();
+            }
+        }
+
+        void resumed() {
+            if (throttledSince != 0) {
+                throttledNanos += System.nanoTime() - throttledSince;
+                throttledSince = 0;
+            }
+        }
+
+        public UUID getSession() {
+            return session;
+        }
+
+        public int getStream() {
+            return stream;
+        }
+
+        public String getOwner() {
+            return owner;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return the average rate since the transfer started, in bytes per second.
+         */
+        public long getBytesPerSecond() {
+            double seconds = (System.nanoTime() - startedAt) / 1e9;
+            return seconds > 0 ? (long) (bytes / seconds) : 0;
+        }
+
+        /**
+         * @return how long the transfer waited for tokens, in milliseconds.
+         */
+        public long getThrottledMs() {
+            return TimeUnit.NANOSECONDS.toMillis(throttledNanos);
+        }
+    }
+
+    private static final class UserShare {
+        private final TokenBucket bucket;
+        // guarded by the map of users
+        private int transfers;
+
+        private UserShare(TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package server;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import shared.messages.*;
+import shared.utility.Code;
+import shared.utility.Command;
+import shared.utility.MessageCodecs;
+import shared.utility.MessageHandler;
+import shared.utility.Status;
+import shared.utility.model.Message;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Frames of the responses whose bytes only depend on the command and the {@link Code}, such as
+ * {@code BROADCAST_RESP {"status":"OK"}}. They are encoded once when the class loads, for every command and code,
+ * so answering a request does not serialize anything.
+ */
+public class ResponseFrames {
+
+    private static final Map<Command, byte[]> SUCCESS = new EnumMap<>(Command.class);
+    // indexed by Code.ordinal()
+    private static final Map<Command, byte[][]> ERRORS = new EnumMap<>(Command.class);
+    private static final Map<Command, byte[]> WITHOUT_PAYLOAD = new EnumMap<>(Command.class);
+    private static final byte[] FILE_TRANSFER_REJECTED;
+
+    static {
+        success(Command.ENTER_RESP, EnterResp.success());
+        success(Command.BROADCAST_RESP, BroadcastResp.success());
+        success(Command.PRIVATE_MSG_RESP, PrivateMessageResp.success());
+        success(Command.GAME_START_RESP, GameStartResp.success());
+        success(Command.GAME_MOVE_RESP, GameMoveResp.success());
+        success(Command.GAME_QUEUE_RESP, GameQueueResp.success());
+        success(Command.TOURNAMENT_SIGNUP_RESP, TournamentSignupResp.success());
+        success(Command.FILE_TRANSFER_RESP, FileTransferResp.success());
+        success(Command.FILE_TRANSFER_ACCEPT_RESP, FileTransferAcceptResp.success());
+        success(Command.FILE_TRANSFER_REJECT_RESP, FileTransferRejectResp.success());
+        success(Command.BYE_RESP, new ByeResp(Status.OK.getStatus()));
+
+        errors(Command.ENTER_RESP, EnterResp::error);
+        errors(Command.BROADCAST_RESP, BroadcastResp::error);
+        errors(Command.PRIVATE_MSG_RESP, PrivateMessageResp::error);
+        errors(Command.USER_LIST_RESP, UserListResp::error);
+        errors(Command.GAME_START_RESP, GameStartResp::error);
+        errors(Command.GAME_MOVE_RESP, GameMoveResp::error);
+        errors(Command.GAME_QUEUE_RESP, GameQueueResp::error);
+        errors(Command.TOURNAMENT_SIGNUP_RESP, TournamentSignupResp::error);
+        errors(Command.LEADERBOARD_RESP, LeaderboardResp::error);
+        errors(Command.FILE_TRANSFER_RESP, FileTransferResp::errorWithCode);
+        errors(Command.FILE_TRANSFER_ACCEPT_RESP, FileTransferAcceptResp::error);
+        errors(Command.FILE_TRANSFER_REJECT_RESP, FileTransferRejectResp::error);
+        errors(Command.HANGUP, Hangup::new);
+        errors(Command.PONG_ERROR, PongError::new);
+
+        WITHOUT_PAYLOAD.put(Command.PING, encode(Command.PING, null));
+        WITHOUT_PAYLOAD.put(Command.UNKNOWN_COMMAND, encode(Command.UNKNOWN_COMMAND, null));
+        WITHOUT_PAYLOAD.put(Command.PARSE_ERROR, encode(Command.PARSE_ERROR, null));
+
+        FILE_TRANSFER_REJECTED = encode(Command.FILE_TRANSFER_RESP, FileTransferResp.error());
+    }
+
+    /**
+     * Does nothing but makes sure all frames have been encoded.
+     */
+    static void load() {
+    }
+
+    private static void success(Command command, Object payload) {
+        SUCCESS.put(command, encode(command, payload));
+    }
+
+    private static void errors(Command command, IntFunction<Object> payloadFactory) {
+        Code[] codes = Code.values();
+        byte[][] frames = new byte[codes.length][];
+        for (Code code : codes) {
+            frames[code.ordinal()] = encode(command, payloadFactory.apply(code.getCode()));
+        }
+        ERRORS.put(command, frames);
+    }
+
+    private static byte[] encode(Command command, Object payload) {
+        try {
+            String serializedPayload = payload == null ? null : MessageCodecs.shared().writeValueAsString(payload);
+            return Frames.encode(new MessageHandler().serialize(new Message(command.getCommand(), serializedPayload)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to encode constant response " + command.getCommand(), e);
+        }
+    }
+
+    /**
+     * @return the OK response for the command, e.g. {@code BROADCAST_RESP {"status":"OK"}}.
+     */
+    public static byte[] success(Command command) {
+        return require(SUCCESS.get(command), command);
+    }
+
+    /**
+     * @return the ERROR response for the command with the given code, e.g. {@code ENTER_RESP {"status":"ERROR","code":5000}},
+     * or the message carrying the code as its reason for {@code HANGUP} and {@code PONG_ERROR}.
+     */
+    public static byte[] error(Command command, Code code) {
+        byte[][] frames = ERRORS.get(command);
+        return require(frames == null ? null : frames[code.ordinal()], command);
+    }
+
+    /**
+     * @return a message without payload, like {@code PING}.
+     */
+    public static byte[] withoutPayload(Command command) {
+        return require(WITHOUT_PAYLOAD.get(command), command);
+    }
+
+    /**
+     * @return {@code FILE_TRANSFER_RESP {"status":"ERROR"}}, sent when the receiver rejected a file.
+     */
+    public static byte[] fileTransferRejected() {
+        return FILE_TRANSFER_REJECTED;
+    }
+
+    private static byte[] require(byte[] frame, Command command) {
+        if (frame == null) {
+            throw new IllegalArgumentException("No constant response for " + command.getCommand());
+        }
+        return frame;
+    }
+}
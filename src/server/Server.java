@@ -2,10 +2,11 @@ package server;
 
 import shared.utility.model.Message;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 import shared.messages.*;
 import shared.utility.Code;
 import shared.utility.Command;
+import shared.utility.ConnectionExecutors;
 import shared.utility.GameMoves;
 import shared.utility.MessageHandler;
 
@@ -14,6 +15,12 @@ import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 
 public class Server {
@@ -22,32 +29,75 @@ public class Server {
     private ServerSocket serverSocket;
    private final Map<Socket, ClientHandler> clients = new ConcurrentHashMap<>();
     private final Map<String, ClientHandler> loggedInClients = new ConcurrentHashMap<>();
+    // the logged-in users under a version, for clients that only ask for what changed
+    private final Presence presence = new Presence();
     private static final String SERVER_VERSION = "1.6.0";
-    private final ObjectMapper mapper = new ObjectMapper();
+    private final MessageCodecs codecs = MessageCodecs.shared();
     private final MessageHandler messageHandler = new MessageHandler();
 
 
 
-    private ClientHandler playerA;
-    private ClientHandler playerB;
-    private String moveA;
-    private String moveB;
-    private boolean gameActive = false;
-    private Timer moveTimeoutTimer; // Timer for move submission
-    private static final int MOVE_TIMEOUT_MS = 60 * 1000;
+    // every game runs on its own, any number of them side by side
+    private final GameRegistry gameRegistry = new GameRegistry();
+    private static final int MOVE_TIMEOUT_MS = 60 * 1000; // Timeout for move submission
 
 
     private boolean running = true;
 
     private FileTransferServer fileTransferServer;
+    private NioChatServer nioChatServer;
+    private final ServerConfig config;
+    private final ExecutorService connectionExecutor;
+    // shared by pings, pong timeouts and move timeouts of all clients; ticks every 10 ms, so a PING is sent at most
+    // a tick later than its interval
+    private final HashedWheelTimer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 1024);
+    // pairs the users who want to play with anyone
+    private final Matchmaker matchmaker = new Matchmaker(timer, gameRegistry, loggedInClients, this::startMatchedGame);
+    // the tournament users sign up for or play in; a new one opens once it is finished
+    private Tournament tournament;
+    private final ReentrantLock tournamentLock = new ReentrantLock();
+    private final Tournament.Arena tournamentArena = new TournamentArena();
+    // wins, losses and draws of the finished games, and the leaderboard
+    private final GameStats gameStats;
+    // delays socket writes so more frames can be coalesced; null when the flush delay is 0
+    private final ScheduledExecutorService flushScheduler;
+    private final FileTransferRegistry fileTransferRegistry;
+    // null when files are only relayed
+    private final FileSpool fileSpool;
+    // offers the receiver did not answer yet, keyed by sender and receiver; only kept when files are spooled
+    private final Map<String, FileTransferReq> pendingOffers = new ConcurrentHashMap<>();
+    // files offered to several receivers are always spooled, in a temporary store without a spool directory
+    private final FileSpool fanOutSpool;
+    // offers to several receivers, keyed by sender and receiver like the pending offers
+    private final Map<String, FileFanOut> fanOuts = new ConcurrentHashMap<>();
 
     public static void main(String[] args) {
-        Server server = new Server();
+        Server server = new Server(ServerConfig.fromArgs(args));
         new Thread(server::start).start();
         new Thread(server::startFileTransferServer).start();
     }
 
+    public Server() {
+        this(new ServerConfig());
+    }
+
+    public Server(ServerConfig config) {
+        this.config = config;
+        this.connectionExecutor = ConnectionExecutors.newExecutor(config.getMode() == ServerMode.VIRTUAL);
+        this.flushScheduler = config.getFlushDelayMs() > 0 ? newFlushScheduler() : null;
+        this.fileTransferRegistry = new FileTransferRegistry(timer, config);
+        this.fileSpool = FileSpool.open(timer, config);
+        this.fanOutSpool = fileSpool != null ? fileSpool : FileSpool.temporary(timer, config);
+        this.gameStats = GameStats.open(timer, connectionExecutor, config);
+        // encode the constant responses now instead of while the first client waits for its answer
+        ResponseFrames.load();
+    }
+
     public void start() {
+        if (config.getMode() == ServerMode.NIO) {
+            startNioServer();
+            return;
+        }
         try {
 
 
@@ -63,7 +113,7 @@ public class Server {
 
                 ClientHandler clientHandler = new ClientHandler(clientSocket, this, SERVER_VERSION);
                clients.put(clientSocket, clientHandler);
-                new Thread(clientHandler).start();
+                connectionExecutor.execute(clientHandler);
 
 
             }
@@ -77,8 +127,46 @@ public class Server {
     }
 
 
+    private void startNioServer() {
+        System.out.println("Type '0' to stop the server.");
+        new Thread(this::listenForStopCommand).start();
+
+        nioChatServer = new NioChatServer(SERVER_PORT, this, SERVER_VERSION, config.getEventLoops());
+        nioChatServer.run();
+    }
+
+    private static ScheduledExecutorService newFlushScheduler() {
+        // the timer wheel ticks every 10 ms, too coarse for flush delays of a few milliseconds
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    HashedWheelTimer getTimer() {
+        return timer;
+    }
+
+    ScheduledExecutorService getFlushScheduler() {
+        return flushScheduler;
+    }
+
+    ServerConfig getConfig() {
+        return config;
+    }
+
+    Executor getWriterExecutor() {
+        return connectionExecutor;
+    }
+
+    void addClient(Socket clientSocket, ClientHandler clientHandler) {
+        clients.put(clientSocket, clientHandler);
+    }
+
+
    public void startFileTransferServer(){
-        fileTransferServer = new FileTransferServer(FILE_TRANSFER_PORT);
+        fileTransferServer = new FileTransferServer(FILE_TRANSFER_PORT, connectionExecutor, fileTransferRegistry, fanOutSpool, config);
         new Thread(fileTransferServer).start();
     }
 
@@ -88,12 +176,32 @@ public class Server {
         return loggedInClients;
     }
 
+    Presence getPresence() {
+        return presence;
+    }
+
     public void addNewUser(String username, ClientHandler clientHandler) {
+        // joined before it is put, so a removal that finds the user always comes after it
+        presence.join(username);
         loggedInClients.put(username, clientHandler);
     }
 
     public void removeUser(String username, Socket clientSocket) {
-        loggedInClients.remove(username);
+        if (loggedInClients.remove(username) != null) {
+            presence.leave(username);
+        }
+        pendingOffers.keySet().removeIf(key -> key.startsWith(username + "\n") || key.endsWith("\n" + username));
+        fanOuts.entrySet().removeIf(offer -> {
+            if (offer.getKey().endsWith("\n" + username)) {
+                offer.getValue().reject(username);
+                return true;
+            }
+            if (offer.getKey().startsWith(username + "\n")) {
+                offer.getValue().senderLeft();
+                return true;
+            }
+            return false;
+        });
        // clients.remove(clientSocket);
         System.out.println("User removed: " + username);
     }
@@ -102,16 +210,12 @@ public class Server {
         try {
 
             Joined payload = new Joined(username);
-            String serializedPayload = mapper.writeValueAsString(payload);
+            String serializedPayload = codecs.writeValueAsString(payload);
             Message joinedMessage = new Message(Command.JOINED.getCommand(), serializedPayload);
             String serializedMessage = messageHandler.serialize(joinedMessage);
 
-            // Send the message to all clients
-            for (ClientHandler clientHandler : loggedInClients.values()) {
-                if (!username.equals(clientHandler.getUsername())) { // Skip the client that just joined
-                    clientHandler.getWriter().println(serializedMessage);
-                }
-            }
+            // Send the message to all clients, skipping the client that just joined
+            fanOut(Frames.encode(serializedMessage), username);
 
             System.out.println("Sent JOINED message to all clients: " + username);
 
@@ -131,15 +235,11 @@ public class Server {
         try {
 
             Left payload = new Left(username);
-            String serializedPayload = mapper.writeValueAsString(payload);
+            String serializedPayload = codecs.writeValueAsString(payload);
             Message leftMessage = new Message(Command.LEFT.getCommand(), serializedPayload);
             String serializedMessage = messageHandler.serialize(leftMessage);
 
-
-            for (ClientHandler clientHandler : loggedInClients.values()) {
-                clientHandler.getWriter().println(serializedMessage);
-
-            }
+            fanOut(Frames.encode(serializedMessage), null);
 
 
             System.out.println("Sent LEFT message to all clients: " + username);
@@ -153,16 +253,12 @@ public class Server {
         try {
 
             Broadcast payload = new Broadcast(username, message);
-            String serializedPayload = mapper.writeValueAsString(payload);
+            String serializedPayload = codecs.writeValueAsString(payload);
             Message broadcastMessage = new Message(Command.BROADCAST.getCommand(), serializedPayload);
             String serializedMessage = messageHandler.serialize(broadcastMessage);
 
-            // Send the message to all clients
-            for (ClientHandler clientHandler : loggedInClients.values()) {
-                if (!username.equals(clientHandler.getUsername())) { // Skip the client that just joined
-                    clientHandler.getWriter().println(serializedMessage);
-                }
-            }
+            // Send the message to all clients, skipping the sender
+            fanOut(Frames.encode(serializedMessage), username);
 
             System.out.println("Sent BROADCAST message to all clients: " + username);
 
@@ -172,11 +268,26 @@ public class Server {
 
     }
 
+    /**
+     * Queues one shared frame for every logged-in user. Only the queues are touched here, the writes happen on the
+     * recipients' writer threads or event loops, so a slow receiver does not hold up the others.
+     *
+     * @param frame        the encoded message.
+     * @param skipUsername user who must not receive the frame, or null.
+     */
+    private void fanOut(byte[] frame, String skipUsername) {
+        for (ClientHandler clientHandler : loggedInClients.values()) {
+            if (!clientHandler.getUsername().equals(skipUsername)) {
+                clientHandler.send(frame);
+            }
+        }
+    }
+
     public void sendPrivateMessageToSpecificUser(String sender, String recipient, String message) {
         try {
             ClientHandler recepinetClientHandler = loggedInClients.get(recipient);
             PrivateMessage privateMessage = new PrivateMessage(sender, message);
-            String serializedPayload = mapper.writeValueAsString(privateMessage);
+            String serializedPayload = codecs.writeValueAsString(privateMessage);
             Message privateMsgMessage = new Message(Command.PRIVATE_MSG.getCommand(), serializedPayload);
             String serializedMessage = messageHandler.serialize(privateMsgMessage);
             recepinetClientHandler.getWriter().println(serializedMessage);
@@ -200,10 +311,81 @@ public class Server {
                 stop();
                 break;
             }
+            if (input.equalsIgnoreCase("q")) {
+                printOutboundQueueStats();
+            }
+            if (input.equalsIgnoreCase("t")) {
+                printRelayStats();
+            }
+            if (input.equalsIgnoreCase("g")) {
+                printMatchmakingStats();
+            }
         }
         scanner.close();
     }
 
+    /**
+     * Prints the file transfers being relayed, those that relayed the most first.
+     */
+    private void printRelayStats() {
+        if (fileTransferServer == null) {
+            return;
+        }
+        List<RelayScheduler.Share> shares = fileTransferServer.getScheduler().getShares();
+        Map<String, Long> bytesPerSecondByUser = new TreeMap<>();
+        long totalBytesPerSecond = 0;
+        for (RelayScheduler.Share share : shares) {
+            bytesPerSecondByUser.merge(share.getOwner(), share.getBytesPerSecond(), Long::sum);
+            totalBytesPerSecond += share.getBytesPerSecond();
+        }
+        System.out.println("Relayed file transfers: " + shares.size() + " streams, " + totalBytesPerSecond + " bytes/s, "
+                + bytesPerSecondByUser);
+
+        for (RelayScheduler.Share share : shares.subList(0, Math.min(10, shares.size()))) {
+            System.out.println("  " + share.getOwner() + " " + share.getSession() + "/" + share.getStream() + ": "
+                    + share.getBytes() + " bytes, " + share.getBytesPerSecond() + " bytes/s, throttled "
+                    + share.getThrottledMs() + " ms");
+        }
+    }
+
+    /**
+     * Prints how many users wait for an opponent, and how long the recently paired ones waited.
+     */
+    private void printMatchmakingStats() {
+        long[] queueTimes = matchmaker.getQueueTimePercentiles(50, 90, 99, 100);
+        String percentiles = queueTimes.length == 0 ? "nobody paired yet"
+                : "queue time p50 " + queueTimes[0] + " ms, p90 " + queueTimes[1] + " ms, p99 " + queueTimes[2]
+                + " ms, max " + queueTimes[3] + " ms";
+        System.out.println("Matchmaking: " + matchmaker.getWaiting() + " waiting, " + matchmaker.getPairedPlayers()
+                + " paired, " + percentiles);
+    }
+
+    /**
+     * Prints the outbound queue depth of the logged-in users, deepest queues first.
+     */
+    private void printOutboundQueueStats() {
+        List<ClientHandler> handlers = new ArrayList<>(loggedInClients.values());
+        handlers.sort(Comparator.comparingInt((ClientHandler handler) -> handler.getOutboundQueue().getDepth()).reversed());
+
+        long totalFrames = 0;
+        long totalBytes = 0;
+        long totalDropped = 0;
+        for (ClientHandler handler : handlers) {
+            OutboundQueue queue = handler.getOutboundQueue();
+            totalFrames += queue.getDepth();
+            totalBytes += queue.getQueuedBytes();
+            totalDropped += queue.getDroppedFrames();
+        }
+        System.out.println("Outbound queues: " + handlers.size() + " users, " + totalFrames + " frames, "
+                + totalBytes + " bytes queued, " + totalDropped + " frames dropped");
+
+        for (ClientHandler handler : handlers.subList(0, Math.min(10, handlers.size()))) {
+            OutboundQueue queue = handler.getOutboundQueue();
+            System.out.println("  " + handler.getUsername() + ": depth " + queue.getDepth() + ", bytes " + queue.getQueuedBytes()
+                    + ", peak " + queue.getPeakDepth() + ", dropped " + queue.getDroppedFrames());
+        }
+    }
+
     private void stop() {
         try {
             running = false;
@@ -213,19 +395,20 @@ public class Server {
                 }
             }
 
-            if (moveTimeoutTimer != null) {
-                moveTimeoutTimer.cancel();
-                moveTimeoutTimer = null;
-            }
-
-            if (gameActive) {
-                resetGame();
+            timer.stop();
+            gameStats.snapshot();
+            if (flushScheduler != null) {
+                flushScheduler.shutdownNow();
             }
 
             if (serverSocket != null && !serverSocket.isClosed()) {
                 serverSocket.close();
                 System.out.println("Server socket closed.");
             }
+            if (nioChatServer != null) {
+                nioChatServer.stop();
+                System.out.println("Server channel closed.");
+            }
             fileTransferServer.setRunning(running);
             fileTransferServer.getFileTransferSocket().close();
 
@@ -237,34 +420,87 @@ public class Server {
     }
 
 
-    public synchronized void startGame(String initiator, String opponent) {
-        ClientHandler initiatorHandler = loggedInClients.get(initiator);
+    /**
+     * Starts a game of the initiator with the opponent, unless one of them plays already.
+     *
+     * @return the new game, or null if it was not started.
+     */
+    public Game startGame(ClientHandler initiator, String opponent) {
         ClientHandler opponentHandler = loggedInClients.get(opponent);
-        this.playerA = initiatorHandler;
-        this.playerB = opponentHandler;
-        this.gameActive = true;
-        notifyBothUsersAboutGame(opponent, initiator);
-        startMoveTimeout();
+        if (opponentHandler == null) {
+            return null;
+        }
+        Game game = gameRegistry.start(initiator, opponentHandler);
+        if (game != null) {
+            startMoveTimeout(game);
+        }
+        return game;
+    }
+
+    /**
+     * Queues the player for a game with the next user who wants to play with anyone.
+     *
+     * @param onQueued called once the player is queued, before the player can be paired.
+     * @return false if the player is waiting already.
+     */
+    public boolean joinGameQueue(ClientHandler player, Runnable onQueued) {
+        return matchmaker.join(player, onQueued);
+    }
+
+    /**
+     * Signs the player up for the tournament, and opens the signup of a new one if none is open or being played.
+     *
+     * @return null if the player signed up, otherwise the reason why not.
+     */
+    public Code signUpForTournament(ClientHandler player) {
+        Tournament current;
+        tournamentLock.lock();
+        try {
+            if (tournament == null || tournament.isFinished()) {
+                tournament = new Tournament((task, delayMs) -> timer.schedule(task, delayMs, TimeUnit.MILLISECONDS),
+                        tournamentArena, new Random(), config.getTournamentSignupMs());
+            }
+            current = tournament;
+        } finally {
+            tournamentLock.unlock();
+        }
+        return current.signUp(player.getUsername());
+    }
+
+    private void startMatchedGame(Game game) {
+        startMoveTimeout(game);
+        sendGameInvite(game);
     }
 
-    public synchronized List<String> checkIfGameActiveAndGetPlayers() {
-        if (!gameActive) {
+    private void startMoveTimeout(Game game) {
+        game.setMoveTimeout(timer.schedule(() -> cancelGameDueToTimeout(game), MOVE_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * @return the players of the game the initiator or the opponent plays in, empty if they are both free.
+     */
+    public List<String> getGamePlayers(String initiator, String opponent) {
+        Game game = gameRegistry.getGame(initiator);
+        if (game == null) {
+            game = gameRegistry.getGame(opponent);
+        }
+        if (game == null) {
             return Collections.emptyList();
         }
-        return Arrays.asList(playerA.getUsername(), playerB.getUsername());
+        return Arrays.asList(game.getInitiator().getUsername(), game.getOpponent().getUsername());
     }
 
-    public void sendGameInvite(String opponent, String initiator) {
+    public void sendGameInvite(Game game) {
         try {
-            ClientHandler opponentClientHandler = loggedInClients.get(opponent);
-            GameInvite gameInvite = new GameInvite(initiator);
-            String serializedPayload = mapper.writeValueAsString(gameInvite);
+            ClientHandler opponentClientHandler = game.getOpponent();
+            GameInvite gameInvite = new GameInvite(game.getInitiator().getUsername());
+            String serializedPayload = codecs.writeValueAsString(gameInvite);
             Message gameInviteMessage = new Message(Command.GAME_INVITATION.getCommand(), serializedPayload);
             String serializedMessage = messageHandler.serialize(gameInviteMessage);
             opponentClientHandler.getWriter().println(serializedMessage);
-            System.out.println("Sent game invite to: " + opponent);
+            System.out.println("Sent game invite to: " + opponentClientHandler.getUsername());
 
-            startGame(initiator, opponent);
+            notifyBothUsersAboutGame(game);
 
 
         } catch (IOException e) {
@@ -272,13 +508,13 @@ public class Server {
         }
     }
 
-    public void notifyBothUsersAboutGame(String opponent, String initiator) {
+    public void notifyBothUsersAboutGame(Game game) {
         try {
-            ClientHandler opponentClientHandler = loggedInClients.get(opponent);
-            ClientHandler initiatorClientHandler = loggedInClients.get(initiator);
+            ClientHandler opponentClientHandler = game.getOpponent();
+            ClientHandler initiatorClientHandler = game.getInitiator();
 
-            GameNotification gameNotification = new GameNotification(initiator, opponent);
-            String serializedPayload = mapper.writeValueAsString(gameNotification);
+            GameNotification gameNotification = new GameNotification(initiatorClientHandler.getUsername(), opponentClientHandler.getUsername());
+            String serializedPayload = codecs.writeValueAsString(gameNotification);
             Message gameNotificationMessage = new Message(Command.GAME_NOTIFICATION.getCommand(), serializedPayload);
             String serializedMessage = messageHandler.serialize(gameNotificationMessage);
             opponentClientHandler.getWriter().println(serializedMessage);
@@ -292,54 +528,40 @@ public class Server {
         }
     }
 
-
-    private synchronized void resetGame() {
-        playerA = null;
-        playerB = null;
-        moveA = null;
-        moveB = null;
-        gameActive = false;
-
-
+    /**
+     * @return true if any game is being played on the server.
+     */
+    public boolean isGameActive() {
+        return !gameRegistry.isEmpty();
     }
 
-    public synchronized boolean isGameActive() {
-        return gameActive;
+    /**
+     * @return the game the client plays in, null if none.
+     */
+    public Game getGame(ClientHandler participant) {
+        Game game = gameRegistry.getGame(participant.getUsername());
+        return game != null && game.isPlayer(participant) ? game : null;
     }
 
     // Handle user disconnection during an active game
-    public synchronized void handleGameDisconnection(ClientHandler disconnectedClient, String username) {
-        if (!gameActive) {
+    public void handleGameDisconnection(ClientHandler disconnectedClient, String username) {
+        matchmaker.leave(disconnectedClient);
+        Game game = getGame(disconnectedClient);
+        if (game == null || !gameRegistry.finish(game)) {
             return;
         }
+        System.out.println("Player " + username + " disconnected during the game.");
 
-
-        boolean isPlayerA = playerA == disconnectedClient;
-        boolean isPlayerB = playerB == disconnectedClient;
-
-        if (isPlayerA || isPlayerB) {
-            System.out.println("Player " + username + " disconnected during the game.");
-
-
-            ClientHandler remainingPlayer = isPlayerA ? playerB : playerA;
-
-
-            if (remainingPlayer != null) {
-                sendGameCancellation(remainingPlayer, Code.OPPONENT_DISCONNECTED.getCode()); // Opponent disconnected
-            }
-
-
-            resetGame();
-        }
-
-
+        ClientHandler remainingPlayer = game.getOtherPlayer(disconnectedClient);
+        sendGameCancellation(remainingPlayer, Code.OPPONENT_DISCONNECTED.getCode()); // Opponent disconnected
+        game.reportOutcome(remainingPlayer.getUsername());
     }
 
 
     public void sendGameCancellation(ClientHandler participant, int errorCode) {
         try {
             GameCancelled gameCancelledPayload = new GameCancelled(errorCode);
-            String serializedPayload = mapper.writeValueAsString(gameCancelledPayload);
+            String serializedPayload = codecs.writeValueAsString(gameCancelledPayload);
 
             Message cancellationMessage = new Message(Command.GAME_CANCELLED.getCommand(), serializedPayload);
             String serializedMessage = messageHandler.serialize(cancellationMessage);
@@ -351,103 +573,117 @@ public class Server {
         }
     }
 
-    public boolean isGameParticipant(ClientHandler participant) {
-
-        return participant == playerA || participant == playerB;
-    }
-
-    public synchronized boolean hasMoveBeenSubmitted(ClientHandler participant) {
-        if (participant == playerA) {
-            return moveA != null; // Check if player A has submitted a move
-        } else if (participant == playerB) {
-            return moveB != null; // Check if player B has submitted a move
+    public void submitMove(Game game, ClientHandler participant, GameMoves move) {
+        // the second move finishes the game, unless the move timeout or a disconnection did already
+        if (game.submitMove(participant, move) && game.bothMoved() && gameRegistry.finish(game)) {
+            sendGameResultMessage(game);
+            recordGameResult(game);
+            game.reportOutcome(game.getWinner());
         }
-        return false;
     }
 
-    public synchronized void submitMove(ClientHandler participant, GameMoves move) {
-
-        if (participant == playerA) {
-            moveA = move.getCode();
-        } else if (participant == playerB) {
-            moveB = move.getCode();
-        }
-
-
-        if (moveA != null && moveB != null) {
-            if (moveTimeoutTimer != null) {
-                moveTimeoutTimer.cancel();
-            }
-            determineWinner();
+    private void recordGameResult(Game game) {
+        String winner = game.getWinner();
+        String initiator = game.getInitiator().getUsername();
+        String opponent = game.getOpponent().getUsername();
+        if (winner == null) {
+            gameStats.recordDraw(initiator, opponent);
+        } else {
+            gameStats.recordWin(winner, winner.equals(initiator) ? opponent : initiator);
         }
     }
 
-    public void determineWinner() {
-        String winner = null;
-
-        if (!moveA.equals(moveB)) {
-            winner = (moveA.equals("R") && moveB.equals("S")) ||
-                    (moveA.equals("S") && moveB.equals("P")) ||
-                    (moveA.equals("P") && moveB.equals("R")) ? playerA.getUsername() : playerB.getUsername();
-        }
-
-        sendGameResultMessage(winner);
+    /**
+     * @return the users with the best game results, at most the given number.
+     */
+    public List<LeaderboardEntry> getLeaderboard(int count) {
+        return gameStats.getLeaderboard(count);
     }
 
-    public void sendGameResultMessage(String winner) {
+    public void sendGameResultMessage(Game game) {
         try {
-            GameResult gameResult = new GameResult(winner, moveA, moveB);
-            String serializedPayload = mapper.writeValueAsString(gameResult);
+            GameResult gameResult = new GameResult(game.getWinner(), game.getInitiatorMove().getCode(), game.getOpponentMove().getCode());
+            String serializedPayload = codecs.writeValueAsString(gameResult);
             Message gameResultMessage = new Message(Command.GAME_RESULT.getCommand(), serializedPayload);
             String serializedMessage = messageHandler.serialize(gameResultMessage);
-            playerA.getWriter().println(serializedMessage);
-            playerB.getWriter().println(serializedMessage);
-            resetGame();
+            game.getInitiator().getWriter().println(serializedMessage);
+            game.getOpponent().getWriter().println(serializedMessage);
         } catch (IOException e) {
             System.err.println("Error sending game result: " + e.getMessage());
         }
     }
 
-    private synchronized void startMoveTimeout() {
-        if (moveTimeoutTimer != null) {
-            moveTimeoutTimer.cancel();
+    private void cancelGameDueToTimeout(Game game) {
+        if (game.bothMoved() || !gameRegistry.finish(game)) {
+            return;
         }
+        sendGameCancellation(game.getInitiator(), Code.MOVES_OR_MOVE_NOT_SUBMITTED.getCode());
+        sendGameCancellation(game.getOpponent(), Code.MOVES_OR_MOVE_NOT_SUBMITTED.getCode());
+        // whoever moved in time wins
+        if (game.getInitiatorMove() != null) {
+            game.reportOutcome(game.getInitiator().getUsername());
+        } else if (game.getOpponentMove() != null) {
+            game.reportOutcome(game.getOpponent().getUsername());
+        } else {
+            game.reportOutcome(null);
+        }
+    }
 
-        moveTimeoutTimer = new Timer();
-        moveTimeoutTimer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                synchronized (Server.this) {
-                    if ((moveA == null || moveB == null) && gameActive) {
+    /**
+     * Plays the matches of tournaments as games of the game registry.
+     */
+    private final class TournamentArena implements Tournament.Arena {
 
-                        cancelGameDueToTimeout();
+        @Override
+        public boolean canPlay(String player) {
+            return loggedInClients.containsKey(player) && gameRegistry.getGame(player) == null;
+        }
+
+        @Override
+        public boolean startMatch(Tournament tournament, Tournament.Match match) {
+            ClientHandler playerA = loggedInClients.get(match.getPlayerA());
+            ClientHandler playerB = loggedInClients.get(match.getPlayerB());
+            if (playerA == null || playerB == null) {
+                return false;
+            }
+            Game game = gameRegistry.start(playerA, playerB, winner -> tournament.decide(match, winner));
+            if (game == null) {
+                return false;
+            }
+            startMoveTimeout(game);
+            sendGameInvite(game);
+            return true;
+        }
 
+        @Override
+        public void broadcast(List<String> players, TournamentUpdate update) {
+            try {
+                String serializedPayload = codecs.writeValueAsString(update);
+                Message updateMessage = new Message(Command.TOURNAMENT_UPDATE.getCommand(), serializedPayload);
+                // encoded once, the same frame is queued for every participant
+                byte[] frame = Frames.encode(messageHandler.serialize(updateMessage));
+                for (String player : players) {
+                    ClientHandler clientHandler = loggedInClients.get(player);
+                    if (clientHandler != null) {
+                        clientHandler.send(frame);
                     }
                 }
+            } catch (IOException e) {
+                System.err.println("Error sending tournament update: " + e.getMessage());
             }
-        }, MOVE_TIMEOUT_MS);
-    }
-
-    private synchronized void cancelGameDueToTimeout() {
-        if (!gameActive) return;
-
-
-        if (playerA != null) {
-            sendGameCancellation(playerA, Code.MOVES_OR_MOVE_NOT_SUBMITTED.getCode());
         }
-        if (playerB != null) {
-            sendGameCancellation(playerB, Code.MOVES_OR_MOVE_NOT_SUBMITTED.getCode());
-        }
-
-
-        resetGame();
     }
 
-    public void sendFileTransferRequest(String sender, String receiver, String filename, long fileSize, String checksum) {
+    public void sendFileTransferRequest(String sender, String receiver, String filename, long fileSize, String checksum,
+                                        Integer streams, String checksumAlgorithm, String compression) {
         try {
             ClientHandler receivingClient = loggedInClients.get(receiver);
-            FileTransferReq fileTransferReq = new FileTransferReq(sender, filename, fileSize, checksum);
-            String serializedPayload = mapper.writeValueAsString(fileTransferReq);
+            FileTransferReq fileTransferReq = new FileTransferReq(sender, filename, fileSize, checksum, streams, checksumAlgorithm, null, compression);
+            if (fileSpool != null) {
+                // the checksum the file is spooled under is the one the sender sent, not what the receiver says
+                pendingOffers.put(offerKey(sender, receiver), fileTransferReq);
+            }
+            String serializedPayload = codecs.writeValueAsString(fileTransferReq);
             Message fileTransferRequestMessage = new Message(Command.FILE_TRANSFER_REQ.getCommand(), serializedPayload);
             String serializedFileTransferRequestMessage = messageHandler.serialize(fileTransferRequestMessage);
             receivingClient.getWriter().println(serializedFileTransferRequestMessage);
@@ -456,43 +692,133 @@ public class Server {
         }
     }
 
-    public void sendFileTransferRejection(String sender) {
+    /**
+     * Offers a file to several receivers, which the sender uploads only once.
+     *
+     * @return false if the file cannot be spooled.
+     */
+    public boolean sendFileFanOutRequest(String sender, List<String> receivers, String filename, long fileSize,
+                                         String checksum, String checksumAlgorithm) {
+        if (fanOutSpool == null || !fanOutSpool.accepts(checksum, checksumAlgorithm, fileSize)) {
+            return false;
+        }
+        FileTransferReq fileTransferReq = new FileTransferReq(sender, filename, fileSize, checksum, null, checksumAlgorithm, null, null);
+        FileFanOut fanOut = new FileFanOut(fileTransferReq, receivers, fanOutSpool);
         try {
-            ClientHandler fileTransferInitiator = loggedInClients.get(sender);
-            FileTransferResp fileTransferResp = FileTransferResp.error();
-            String serializedPayload = mapper.writeValueAsString(fileTransferResp);
-            Message fileTransferResponseMessage = new Message(Command.FILE_TRANSFER_RESP.getCommand(), serializedPayload);
-            String serializedMessage = messageHandler.serialize(fileTransferResponseMessage);
-            fileTransferInitiator.getWriter().println(serializedMessage);
+            String serializedPayload = codecs.writeValueAsString(fileTransferReq);
+            Message fileTransferRequestMessage = new Message(Command.FILE_TRANSFER_REQ.getCommand(), serializedPayload);
+            String serializedFileTransferRequestMessage = messageHandler.serialize(fileTransferRequestMessage);
+            for (String receiver : receivers) {
+                ClientHandler receivingClient = loggedInClients.get(receiver);
+                if (receivingClient == null) {
+                    fanOut.reject(receiver);
+                    continue;
+                }
+                fanOuts.put(offerKey(sender, receiver), fanOut);
+                receivingClient.getWriter().println(serializedFileTransferRequestMessage);
+            }
+        } catch (IOException e) {
+            System.err.println("Error sending file transfer request: " + e.getMessage());
+        }
+        return true;
+    }
 
-        } catch (JsonProcessingException e) {
-            System.err.println("Error sending file transfer response about rejection: " + e.getMessage());
+    public void sendFileTransferRejection(String sender, String receiver) {
+        pendingOffers.remove(offerKey(sender, receiver));
+        FileFanOut fanOut = fanOuts.remove(offerKey(sender, receiver));
+        if (fanOut != null && !fanOut.reject(receiver)) {
+            // other receivers accepted or may still accept
+            return;
         }
+        ClientHandler fileTransferInitiator = loggedInClients.get(sender);
+        fileTransferInitiator.send(ResponseFrames.fileTransferRejected());
     }
 
-    public void sendFileTransferConfirmation(String sender, String receiver) {
-        try {
-            ClientHandler fileTransferInitiator = loggedInClients.get(sender);
-            FileTransferResp fileTransferResp = FileTransferResp.success();
-            String serializedPayload = mapper.writeValueAsString(fileTransferResp);
-            Message fileTransferResponseMessage = new Message(Command.FILE_TRANSFER_RESP.getCommand(), serializedPayload);
-            String serializedMessage = messageHandler.serialize(fileTransferResponseMessage);
-            fileTransferInitiator.getWriter().println(serializedMessage);
-            generateUUIDAndSendFileTransferInitMessage(sender, receiver);
+    /**
+     * Starts the download of a file the sender offered to several receivers, and its upload if the sender does not
+     * upload it already.
+     *
+     * @return false if the sender did not offer the receiver a file together with others.
+     */
+    public boolean acceptFileFanOut(String sender, ClientHandler receiver) {
+        FileFanOut fanOut = fanOuts.remove(offerKey(sender, receiver.getUsername()));
+        if (fanOut == null) {
+            return false;
+        }
+        UUID download = fanOut.openDownload();
+        if (download == null) {
+            fanOut.reject(receiver.getUsername());
+            receiver.send(ResponseFrames.error(Command.FILE_TRANSFER_ACCEPT_RESP, Code.FILE_NOT_SPOOLABLE));
+            return true;
+        }
+        receiver.send(ResponseFrames.success(Command.FILE_TRANSFER_ACCEPT_RESP));
+        UUID upload = fanOut.accept(receiver.getUsername());
 
-        } catch (JsonProcessingException e) {
-            System.err.println("Error sending file transfer response about acceptance: " + e.getMessage());
+        ClientHandler senderClient = loggedInClients.get(sender);
+        senderClient.send(ResponseFrames.success(Command.FILE_TRANSFER_RESP));
+        if (upload != null) {
+            sendFileTransferInitMessage(senderClient, new FileTransferInit(upload.toString(), null, null, true, null));
         }
+        sendFileTransferInitMessage(receiver, new FileTransferInit(download.toString(), null, null, true, null));
+        return true;
+    }
+
+    /**
+     * Opens the transfer the sender and receiver connect to once it starts. The file is spooled if spooling is on
+     * and the file can be stored, and relayed between both parties otherwise.
+     * If the sender has too many transfers waiting already, the sender is told so and null is returned.
+     *
+     * @param streams     the number of parallel connections both clients agreed to.
+     * @param compression the compression both clients agreed to, used for chunked transfers only.
+     * @return the init message both parties get.
+     */
+    public FileTransferInit openFileTransferSession(String sender, String receiver, int streams, String compression) {
+        FileTransferReq offer = pendingOffers.remove(offerKey(sender, receiver));
+        if (offer != null) {
+            UUID spooled = fileSpool.open(offer.checksum(), offer.checksumAlgorithm(), offer.fileSize());
+            if (spooled != null) {
+                return new FileTransferInit(spooled.toString(), null, null, true, null);
+            }
+        }
+
+        FileTransferSession session = fileTransferRegistry.open(sender, streams);
+        if (session == null) {
+            loggedInClients.get(sender).send(ResponseFrames.error(Command.FILE_TRANSFER_RESP, Code.TOO_MANY_PENDING_TRANSFERS));
+            return null;
+        }
+        return new FileTransferInit(session.getId().toString(),
+                session.isResumable() ? session.getChunkSize() : null,
+                session.getStreams() > 1 ? session.getStreams() : null,
+                null,
+                // compression is part of the chunk format
+                session.isResumable() ? compression : null);
+    }
 
+    private static String offerKey(String sender, String receiver) {
+        return sender + "\n" + receiver;
+    }
+
+    public void sendFileTransferConfirmation(String sender, String receiver, FileTransferInit fileTransferInit) {
+        ClientHandler fileTransferInitiator = loggedInClients.get(sender);
+        fileTransferInitiator.send(ResponseFrames.success(Command.FILE_TRANSFER_RESP));
+        sendFileTransferInitMessage(sender, receiver, fileTransferInit);
+    }
+
+    private void sendFileTransferInitMessage(ClientHandler client, FileTransferInit fileTransferInit) {
+        try {
+            String serializedPayload = codecs.writeValueAsString(fileTransferInit);
+            Message fileTransferInitMessage = new Message(Command.FILE_TRANSFER_INIT.getCommand(), serializedPayload);
+            client.getWriter().println(messageHandler.serialize(fileTransferInitMessage));
+        } catch (JsonProcessingException e) {
+            System.err.println("Error sending file transfer init message: " + e.getMessage());
+        }
     }
 
-    private void generateUUIDAndSendFileTransferInitMessage(String sender, String receiver) {
-        String sessionId = UUID.randomUUID().toString();
+    private void sendFileTransferInitMessage(String sender, String receiver, FileTransferInit fileTransferInit) {
         ClientHandler senderClient = loggedInClients.get(sender);
         ClientHandler receiverClient = loggedInClients.get(receiver);
         try {
-            FileTransferInit fileTransferInit = new FileTransferInit(sessionId);
-            String serializedPayload = mapper.writeValueAsString(fileTransferInit);
+            String serializedPayload = codecs.writeValueAsString(fileTransferInit);
             Message fileTransferInitMessage = new Message(Command.FILE_TRANSFER_INIT.getCommand(), serializedPayload);
             String serializedMessage = messageHandler.serialize(fileTransferInitMessage);
             senderClient.getWriter().println(serializedMessage);
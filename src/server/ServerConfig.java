@@ -0,0 +1,272 @@
+package server;
+
+import java.nio.file.Path;
+
+/**
+ * Startup options of the server, parsed from the command line arguments in the form {@code --name=value}.
+ */
+public class ServerConfig {
+
+    // the largest byte array the JVM reliably allocates
+    private static final long MAX_ARRAY_BYTES = Integer.MAX_VALUE - 8;
+
+    private ServerMode mode = ServerMode.THREAD;
+    private int eventLoops = Runtime.getRuntime().availableProcessors();
+    private int outboundMaxMessages = 10_000;
+    private long outboundMaxBytes = 8L * 1024 * 1024;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DISCONNECT;
+    private int flushBytes = 16 * 1024;
+    private int flushDelayMs = 0;
+    private int transferPairingTimeoutMs = 30_000;
+    private int maxPendingTransfers = 4;
+    private int relayThreads = 1;
+    private int transferChunkSize = 1024 * 1024;
+    private int maxTransferStreams = 4;
+    // null when files are relayed between connected parties only
+    private Path spoolDirectory;
+    private long spoolMaxBytes = 10L * 1024 * 1024 * 1024;
+    private int spoolRetentionMs = 60 * 60 * 1000;
+    // 0 for no limit
+    private long relayMaxBytesPerSecond = 0;
+    private long relayUserMaxBytesPerSecond = 0;
+    private int tournamentSignupMs = 30_000;
+    // null when the game stats are only kept in memory
+    private Path statsFile;
+    private int statsSnapshotMs = 60_000;
+
+
+    public static ServerConfig fromArgs(String[] args) {
+        ServerConfig config = new ServerConfig();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                System.err.println("Ignoring unknown argument: " + arg);
+                continue;
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            try {
+                config.apply(name, value);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Ignoring invalid value for " + name + ": " + value);
+            }
+        }
+        return config;
+    }
+
+    private void apply(String name, String value) {
+        switch (name) {
+            case "mode":
+                ServerMode parsedMode = ServerMode.fromOption(value);
+                if (parsedMode == null) {
+                    throw new IllegalArgumentException(value);
+                }
+                mode = parsedMode;
+                break;
+            case "event-loops":
+                eventLoops = positive(Integer.parseInt(value));
+                break;
+            case "outbound-max-messages":
+                outboundMaxMessages = positive(Integer.parseInt(value));
+                break;
+            case "outbound-max-bytes":
+                long maxBytes = positive(Long.parseLong(value));
+                // queued frames are merged into one array by the coalesce policy
+                if (maxBytes > MAX_ARRAY_BYTES) {
+                    throw new IllegalArgumentException(value);
+                }
+                outboundMaxBytes = maxBytes;
+                break;
+            case "outbound-overflow":
+                OverflowPolicy parsedPolicy = OverflowPolicy.fromOption(value);
+                if (parsedPolicy == null) {
+                    throw new IllegalArgumentException(value);
+                }
+                overflowPolicy = parsedPolicy;
+                break;
+            case "flush-bytes":
+                flushBytes = positive(Integer.parseInt(value));
+                break;
+            case "flush-delay-ms":
+                flushDelayMs = Integer.parseInt(value);
+                if (flushDelayMs < 0) {
+                    throw new IllegalArgumentException(value);
+                }
+                break;
+            case "transfer-pairing-timeout-ms":
+                transferPairingTimeoutMs = positive(Integer.parseInt(value));
+                break;
+            case "max-pending-transfers":
+                maxPendingTransfers = positive(Integer.parseInt(value));
+                break;
+            case "relay-threads":
+                relayThreads = positive(Integer.parseInt(value));
+                break;
+            case "transfer-chunk-size":
+                transferChunkSize = Integer.parseInt(value);
+                if (transferChunkSize < 0) {
+                    throw new IllegalArgumentException(value);
+                }
+                break;
+            case "max-transfer-streams":
+                maxTransferStreams = Math.min(positive(Integer.parseInt(value)), 255);
+                break;
+            case "spool-dir":
+                spoolDirectory = value.isEmpty() ? null : Path.of(value);
+                break;
+            case "spool-max-bytes":
+                spoolMaxBytes = positive(Long.parseLong(value));
+                break;
+            case "spool-retention-ms":
+                spoolRetentionMs = positive(Integer.parseInt(value));
+                break;
+            case "relay-max-bytes-per-second":
+                relayMaxBytesPerSecond = notNegative(Long.parseLong(value));
+                break;
+            case "relay-user-max-bytes-per-second":
+                relayUserMaxBytesPerSecond = notNegative(Long.parseLong(value));
+                break;
+            case "tournament-signup-ms":
+                tournamentSignupMs = positive(Integer.parseInt(value));
+                break;
+            case "stats-file":
+                statsFile = value.isEmpty() ? null : Path.of(value);
+                break;
+            case "stats-snapshot-ms":
+                statsSnapshotMs = positive(Integer.parseInt(value));
+                break;
+            default:
+                System.err.println("Ignoring unknown option: " + name);
+        }
+    }
+
+    private static int positive(int value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(String.valueOf(value));
+        }
+        return value;
+    }
+
+    private static long notNegative(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException(String.valueOf(value));
+        }
+        return value;
+    }
+
+    private static long positive(long value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(String.valueOf(value));
+        }
+        return value;
+    }
+
+    public ServerMode getMode() {
+        return mode;
+    }
+
+    public int getEventLoops() {
+        return eventLoops;
+    }
+
+    public int getOutboundMaxMessages() {
+        return outboundMaxMessages;
+    }
+
+    /**
+     * @return the most bytes queued for one client, at most {@code Integer.MAX_VALUE - 8}.
+     */
+    public long getOutboundMaxBytes() {
+        return outboundMaxBytes;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public int getFlushBytes() {
+        return flushBytes;
+    }
+
+    public int getFlushDelayMs() {
+        return flushDelayMs;
+    }
+
+    public int getTransferPairingTimeoutMs() {
+        return transferPairingTimeoutMs;
+    }
+
+    public int getMaxPendingTransfers() {
+        return maxPendingTransfers;
+    }
+
+    public int getRelayThreads() {
+        return relayThreads;
+    }
+
+    /**
+     * @return the chunk size of file transfers, or 0 if files are streamed in one piece.
+     */
+    public int getTransferChunkSize() {
+        return transferChunkSize;
+    }
+
+    /**
+     * @return the most parallel connections a chunked file transfer may use, at most 255.
+     */
+    public int getMaxTransferStreams() {
+        return maxTransferStreams;
+    }
+
+    /**
+     * @return the directory files are stored in before they are downloaded, or null if spooling is off.
+     */
+    public Path getSpoolDirectory() {
+        return spoolDirectory;
+    }
+
+    public long getSpoolMaxBytes() {
+        return spoolMaxBytes;
+    }
+
+    /**
+     * @return how long the sender and receiver of a spooled file get to upload and download it.
+     */
+    public int getSpoolRetentionMs() {
+        return spoolRetentionMs;
+    }
+
+    /**
+     * @return the bandwidth all file transfer relays share, in bytes per second, or 0 for no limit.
+     */
+    public long getRelayMaxBytesPerSecond() {
+        return relayMaxBytesPerSecond;
+    }
+
+    /**
+     * @return the bandwidth the relayed transfers of one sender share, in bytes per second, or 0 for no limit.
+     */
+    public long getRelayUserMaxBytesPerSecond() {
+        return relayUserMaxBytesPerSecond;
+    }
+
+    /**
+     * @return how long users can sign up for a tournament after the first one did.
+     */
+    public int getTournamentSignupMs() {
+        return tournamentSignupMs;
+    }
+
+    /**
+     * @return the file the game stats are kept in across restarts, or null if they are only kept in memory.
+     */
+    public Path getStatsFile() {
+        return statsFile;
+    }
+
+    /**
+     * @return how often the changed game stats are appended to the stats file.
+     */
+    public int getStatsSnapshotMs() {
+        return statsSnapshotMs;
+    }
+}
@@ -0,0 +1,29 @@
+package server;
+
+public enum ServerMode {
+    // One platform thread per connected client, blocking reads
+    THREAD("thread"),
+    // One virtual thread per connected client, blocking reads
+    VIRTUAL("virtual"),
+    // Selector based event loops, each serving many clients
+    NIO("nio");
+
+    private final String option;
+
+    ServerMode(String option) {
+        this.option = option;
+    }
+
+    public String getOption() {
+        return option;
+    }
+
+    public static ServerMode fromOption(String option) {
+        for (ServerMode mode : ServerMode.values()) {
+            if (mode.option.equalsIgnoreCase(option)) {
+                return mode;
+            }
+        }
+        return null;
+    }
+}
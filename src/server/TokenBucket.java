@@ -0,0 +1,92 @@
+package server;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tokens of one byte each, refilled at a fixed rate up to a burst size. Taking tokens never blocks: it takes what
+ * is there, and the caller asks when more will be.
+ */
+public class TokenBucket {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final long bytesPerSecond;
+    private final long capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    // guarded by the lock
+    private long tokens;
+    private long refilledAt;
+
+
+    public TokenBucket(long bytesPerSecond, long capacity) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.refilledAt = System.nanoTime();
+    }
+
+    /**
+     * @param minimum the fewest tokens worth taking; with fewer in the bucket, none are taken.
+     * @return the number of tokens taken, at most the wanted number.
+     */
+    public long take(long wanted, long minimum) {
+        lock.lock();
+        try {
+            refill();
+            long taken = Math.min(tokens, wanted);
+            if (taken < Math.min(minimum, wanted)) {
+                return 0;
+            }
+            tokens -= taken;
+            return taken;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Puts back tokens that were taken but not used.
+     */
+    public void refund(long unused) {
+        if (unused <= 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            tokens = Math.min(capacity, tokens + unused);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the nanoseconds until the given number of tokens is there, at most as many as fit; 0 if they are.
+     */
+    public long nanosUntil(long wanted) {
+        lock.lock();
+        try {
+            refill();
+            long missing = Math.min(wanted, capacity) - tokens;
+            return missing <= 0 ? 0 : missing * NANOS_PER_SECOND / bytesPerSecond + 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        long elapsed = now - refilledAt;
+        if (elapsed >= (capacity - tokens) * NANOS_PER_SECOND / bytesPerSecond) {
+            tokens = capacity;
+            refilledAt = now;
+            return;
+        }
+        long added = elapsed * bytesPerSecond / NANOS_PER_SECOND;
+        if (added > 0) {
+            tokens += added;
+            // the time of the tokens added, so fractions of a token are not lost
+            refilledAt += added * NANOS_PER_SECOND / bytesPerSecond;
+        }
+    }
+}
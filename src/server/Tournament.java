@@ -0,0 +1,274 @@
+package server;
+
+import shared.messages.TournamentUpdate;
+import shared.utility.Code;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A single-elimination Rock/Paper/Scissors tournament. Users sign up until the signup closes, then they are drawn
+ * into a bracket and every match of a round is played at the same time, as an ordinary game. Winners advance once
+ * the whole round is decided; with an odd number of players, the last one of a round advances without playing.
+ * Every change is sent to the participants as a small {@link TournamentUpdate}.
+ * <p>
+ * Rounds are started by tasks of the {@link Clock}, never on the thread that decided the last match, and the games
+ * themselves run through the {@link Arena}, so the tournament can be simulated on a virtual clock.
+ */
+public class Tournament {
+
+    // time for the players to see the results of a round before the next one starts
+    static final long ROUND_PAUSE_MS = 3000;
+    static final long REMATCH_DELAY_MS = 1000;
+    // replays of a match nobody won, by a draw or because neither player moved; then the first player advances
+    static final int MAX_REMATCHES = 3;
+
+    /**
+     * Runs tasks later.
+     */
+    public interface Clock {
+        void schedule(Runnable task, long delayMs);
+    }
+
+    /**
+     * Where the games of the tournament are played.
+     */
+    public interface Arena {
+
+        /**
+         * @return true if the user is logged in and not playing another game.
+         */
+        boolean canPlay(String player);
+
+        /**
+         * Starts a game of the match. Once it is over, the arena reports the winner with {@link Tournament#decide}.
+         *
+         * @return false if the game could not be started.
+         */
+        boolean startMatch(Tournament tournament, Match match);
+
+        /**
+         * Sends the update to the given users that are still logged in.
+         */
+        void broadcast(List<String> players, TournamentUpdate update);
+    }
+
+    private final Clock clock;
+    private final Arena arena;
+    private final Random random;
+    private final ReentrantLock lock = new ReentrantLock();
+    // guarded by the lock
+    private final Set<String> signups = new LinkedHashSet<>();
+    private List<String> participants;
+    private boolean finished;
+    private String champion;
+    private int round;
+    private String[] winners;
+    private int undecided;
+
+
+    /**
+     * Opens the signup, which closes after the given time.
+     */
+    public Tournament(Clock clock, Arena arena, Random random, long signupMs) {
+        this.clock = clock;
+        this.arena = arena;
+        this.random = random;
+        clock.schedule(this::start, signupMs);
+    }
+
+    /**
+     * @return null if the user signed up, otherwise the reason why not.
+     */
+    public Code signUp(String player) {
+        lock.lock();
+        try {
+            if (participants != null) {
+                return Code.TOURNAMENT_RUNNING;
+            }
+            return signups.add(player) ? null : Code.ALREADY_SIGNED_UP;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isFinished() {
+        lock.lock();
+        try {
+            return finished;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the winner of the tournament, null until it is finished.
+     */
+    public String getChampion() {
+        lock.lock();
+        try {
+            return champion;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the round being played, 0 while users sign up.
+     */
+    public int getRound() {
+        lock.lock();
+        try {
+            return round;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void start() {
+        lock.lock();
+        try {
+            participants = List.copyOf(signups);
+            List<String> bracket = new ArrayList<>(participants);
+            Collections.shuffle(bracket, random);
+            startRound(bracket);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // called with the lock held
+    private void startRound(List<String> players) {
+        if (players.size() <= 1) {
+            finished = true;
+            champion = players.isEmpty() ? null : players.get(0);
+            if (champion != null) {
+                arena.broadcast(participants, TournamentUpdate.finished(champion));
+            }
+            return;
+        }
+
+        round++;
+        arena.broadcast(participants, TournamentUpdate.roundStarted(round, players));
+        int matchCount = (players.size() + 1) / 2;
+        winners = new String[matchCount];
+        undecided = matchCount;
+        for (int i = 0; i < matchCount; i++) {
+            String playerA = players.get(2 * i);
+            if (2 * i + 1 == players.size()) {
+                advance(i, playerA, null);
+                continue;
+            }
+            play(new Match(round, i, playerA, players.get(2 * i + 1)));
+        }
+    }
+
+    // called with the lock held
+    private void play(Match match) {
+        boolean aCanPlay = arena.canPlay(match.playerA);
+        boolean bCanPlay = arena.canPlay(match.playerB);
+        if (!aCanPlay || !bCanPlay) {
+            // whoever is not there forfeits; if neither is, the first one advances
+            String winner = !aCanPlay && bCanPlay ? match.playerB : match.playerA;
+            advance(match.index, winner, match.other(winner));
+            return;
+        }
+        if (!arena.startMatch(this, match)) {
+            // one of them started a game of their own just now
+            decide(match, null);
+        }
+    }
+
+    /**
+     * Records the outcome of a game of the match.
+     *
+     * @param winner the username of the winner, null if nobody won; then the match is played again.
+     */
+    public void decide(Match match, String winner) {
+        lock.lock();
+        try {
+            if (match.round != round || winners[match.index] != null) {
+                return;
+            }
+            if (winner == null) {
+                if (match.rematches++ < MAX_REMATCHES) {
+                    clock.schedule(() -> replay(match), REMATCH_DELAY_MS);
+                    return;
+                }
+                winner = match.playerA;
+            }
+            advance(match.index, winner, match.other(winner));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void replay(Match match) {
+        lock.lock();
+        try {
+            if (match.round == round && winners[match.index] == null) {
+                play(match);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // called with the lock held
+    private void advance(int index, String winner, String loser) {
+        winners[index] = winner;
+        arena.broadcast(participants, TournamentUpdate.matchDecided(round, winner, loser));
+        if (--undecided == 0) {
+            List<String> nextRound = Arrays.asList(winners);
+            clock.schedule(() -> {
+                lock.lock();
+                try {
+                    startRound(nextRound);
+                } finally {
+                    lock.unlock();
+                }
+            }, ROUND_PAUSE_MS);
+        }
+    }
+
+    /**
+     * Two players of a round, until one of them won.
+     */
+    public static final class Match {
+        private final int round;
+        private final int index;
+        private final String playerA;
+        private final String playerB;
+        // guarded by the lock of the tournament
+        private int rematches;
+
+        private Match(int round, int index, String playerA, String playerB) {
+            this.round = round;
+            this.index = index;
+            this.playerA = playerA;
+            this.playerB = playerB;
+        }
+
+        public int getRound() {
+            return round;
+        }
+
+        public String getPlayerA() {
+            return playerA;
+        }
+
+        public String getPlayerB() {
+            return playerB;
+        }
+
+        private String other(String player) {
+            return player.equals(playerA) ? playerB : playerA;
+        }
+    }
+}
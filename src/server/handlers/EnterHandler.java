@@ -1,32 +1,25 @@
 package server.handlers;
 
-import shared.utility.model.Message;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 import server.ClientHandler;
+import server.ResponseFrames;
 import server.ParseErrorHandler;
 import shared.messages.Enter;
-import shared.messages.EnterResp;
 import shared.utility.Code;
 import shared.utility.Command;
-import shared.utility.MessageHandler;
 
-import java.io.PrintWriter;
 import java.util.function.Consumer;
 
 public class EnterHandler implements Consumer<String> {
-    private final ObjectMapper mapper;
+    private final MessageCodecs codecs;
     private final ClientHandler clientHandler;
-    private final PrintWriter writer;
-    private final MessageHandler messageHandler;
     private final ParseErrorHandler parseErrorHandler;
 
 
-    public EnterHandler(ObjectMapper mapper, ClientHandler clientHandler, PrintWriter writer, MessageHandler messageHandler, ParseErrorHandler parseErrorHandler) {
-        this.mapper = mapper;
+    public EnterHandler(MessageCodecs codecs, ClientHandler clientHandler, ParseErrorHandler parseErrorHandler) {
+        this.codecs = codecs;
         this.clientHandler = clientHandler;
-        this.writer = writer;
-        this.messageHandler = messageHandler;
         this.parseErrorHandler = parseErrorHandler;
 
 
@@ -35,7 +28,7 @@ public class EnterHandler implements Consumer<String> {
     @Override
     public void accept(String payload) {
         try {
-            Enter enterMessage = mapper.readValue(payload, Enter.class);
+            Enter enterMessage = codecs.readValue(payload, Enter.class);
             String username = enterMessage.username();
 
             if (clientHandler.getUsername() != null) {
@@ -72,16 +65,7 @@ public class EnterHandler implements Consumer<String> {
     }
 
     private void sendLoginErrorMessage(Code code) {
-        try {
-            EnterResp errorResponsePayLoad = EnterResp.error(code.getCode());
-            String serializedPayload = mapper.writeValueAsString(errorResponsePayLoad);
-            Message loginErrorMessage = new Message(Command.ENTER_RESP.getCommand(), serializedPayload);
-            String serializedMessage = messageHandler.serialize(loginErrorMessage);
-            writer.println(serializedMessage);
-            System.out.println(serializedMessage);
-        } catch (JsonProcessingException e) {
-            e.printStackTrace();
-        }
+        clientHandler.send(ResponseFrames.error(Command.ENTER_RESP, code));
     }
 
 
@@ -1,33 +1,26 @@
 package server.handlers;
 
-import shared.utility.model.Message;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 import server.ClientHandler;
+import server.ResponseFrames;
 import server.ParseErrorHandler;
 import shared.messages.FileTransferAccept;
-import shared.messages.FileTransferAcceptResp;
 import shared.utility.Code;
 import shared.utility.Command;
-import shared.utility.MessageHandler;
 
-import java.io.PrintWriter;
 import java.util.function.Consumer;
 
 public class FileTransferAcceptHandler implements Consumer<String> {
 
-    private final ObjectMapper mapper;
+    private final MessageCodecs codecs;
     private final ClientHandler clientHandler;
-    private final PrintWriter writer;
-    private final MessageHandler messageHandler;
     private final ParseErrorHandler parseErrorHandler;
 
 
-    public FileTransferAcceptHandler(ObjectMapper mapper, ClientHandler clientHandler, PrintWriter writer, MessageHandler messageHandler, ParseErrorHandler parseErrorHandler) {
-        this.mapper = mapper;
+    public FileTransferAcceptHandler(MessageCodecs codecs, ClientHandler clientHandler, ParseErrorHandler parseErrorHandler) {
+        this.codecs = codecs;
         this.clientHandler = clientHandler;
-        this.writer = writer;
-        this.messageHandler = messageHandler;
         this.parseErrorHandler = parseErrorHandler;
 
 
@@ -36,14 +29,16 @@ public class FileTransferAcceptHandler implements Consumer<String> {
     @Override
     public void accept(String payload) {
         try {
-            FileTransferAccept fileTransferAccept = mapper.readValue(payload, FileTransferAccept.class);
+            FileTransferAccept fileTransferAccept = codecs.readValue(payload, FileTransferAccept.class);
             String sender = fileTransferAccept.fileTransferInitiator();
             if (!clientHandler.checkIfClientExists(sender)) {
                 sendFileAcceptErrorMessage(Code.NOT_FOUND);
                 return;
 
             }
-            clientHandler.handleSuccessfulFileTransferAccept(sender);
+            Integer streams = fileTransferAccept.streams();
+            clientHandler.handleSuccessfulFileTransferAccept(sender, streams == null ? 1 : streams,
+                    fileTransferAccept.compression());
 
         } catch (JsonProcessingException e) {
             parseErrorHandler.handleParseError();
@@ -51,14 +46,6 @@ public class FileTransferAcceptHandler implements Consumer<String> {
     }
 
     private void sendFileAcceptErrorMessage(Code code) {
-        try {
-            FileTransferAcceptResp errorResponse = FileTransferAcceptResp.error(code.getCode());
-            String serializedPayload = mapper.writeValueAsString(errorResponse);
-            Message fileTransferAcceptErrormessage = new Message(Command.FILE_TRANSFER_ACCEPT_RESP.getCommand(), serializedPayload);
-            String serializedMessage = messageHandler.serialize(fileTransferAcceptErrormessage);
-            writer.println(serializedMessage);
-        } catch (JsonProcessingException e) {
-            System.err.println("Error serializing file transfer accept error message: " + e.getMessage());
-        }
+        clientHandler.send(ResponseFrames.error(Command.FILE_TRANSFER_ACCEPT_RESP, code));
     }
 }
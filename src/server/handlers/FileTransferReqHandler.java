@@ -1,39 +1,35 @@
 package server.handlers;
 
-import shared.utility.model.Message;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 import server.ClientHandler;
+import server.ResponseFrames;
 import server.ParseErrorHandler;
 import shared.messages.FileTransferReq;
-import shared.messages.FileTransferResp;
 import shared.utility.Code;
 import shared.utility.Command;
-import shared.utility.MessageHandler;
 
-import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.function.Consumer;
 
 public class FileTransferReqHandler implements Consumer<String> {
 
-    private final ObjectMapper mapper;
+    private final MessageCodecs codecs;
     private final ClientHandler clientHandler;
-    private final PrintWriter writer;
-    private final MessageHandler messageHandler;
     private final ParseErrorHandler parseErrorHandler;
 
-    public FileTransferReqHandler(ClientHandler clientHandler, ObjectMapper mapper, PrintWriter writer, MessageHandler messageHandler, ParseErrorHandler parseErrorHandler) {
+    public FileTransferReqHandler(ClientHandler clientHandler, MessageCodecs codecs, ParseErrorHandler parseErrorHandler) {
         this.clientHandler = clientHandler;
-        this.mapper = mapper;
-        this.writer = writer;
-        this.messageHandler = messageHandler;
+        this.codecs = codecs;
         this.parseErrorHandler = parseErrorHandler;
     }
 
     @Override
     public void accept(String payload) {
         try {
-            FileTransferReq fileTransferReq = mapper.readValue(payload, FileTransferReq.class);
+            FileTransferReq fileTransferReq = codecs.readValue(payload, FileTransferReq.class);
             String receiver = fileTransferReq.receiverOrSender();
             String filename = fileTransferReq.filename();
             String checksum = fileTransferReq.checksum();
@@ -45,6 +41,10 @@ public class FileTransferReqHandler implements Consumer<String> {
                 return;
             }
 
+            if (fileTransferReq.receivers() != null && !fileTransferReq.receivers().isEmpty()) {
+                offerToReceivers(fileTransferReq);
+                return;
+            }
 
             if (!clientHandler.checkIfClientExists(receiver)) {
                 sendFileTransferErrorResponse(Code.NOT_FOUND);
@@ -52,7 +52,8 @@ public class FileTransferReqHandler implements Consumer<String> {
 
             }
 
-            clientHandler.sendFileTransferRequestToReceiver(receiver, filename, fileSize, checksum);
+            clientHandler.sendFileTransferRequestToReceiver(receiver, filename, fileSize, checksum,
+                    fileTransferReq.streams(), fileTransferReq.checksumAlgorithm(), fileTransferReq.compression());
 
         } catch (JsonProcessingException e) {
             parseErrorHandler.handleParseError();
@@ -60,16 +61,21 @@ public class FileTransferReqHandler implements Consumer<String> {
 
     }
 
-    private void sendFileTransferErrorResponse(Code code) {
-        try {
-            FileTransferResp fileTransferResp = FileTransferResp.errorWithCode(code.getCode());
-            String serializedFileTransferResponseMessage = mapper.writeValueAsString(fileTransferResp);
-            Message fileTransferResponseMessage = new Message(Command.FILE_TRANSFER_RESP.getCommand(), serializedFileTransferResponseMessage);
-            String serializedMessage = messageHandler.serialize(fileTransferResponseMessage);
-            writer.println(serializedMessage);
-
-        } catch (JsonProcessingException e) {
-            System.err.println(e.getMessage());
+    private void offerToReceivers(FileTransferReq fileTransferReq) {
+        List<String> receivers = new ArrayList<>(new LinkedHashSet<>(fileTransferReq.receivers()));
+        for (String receiver : receivers) {
+            if (!clientHandler.checkIfClientExists(receiver)) {
+                sendFileTransferErrorResponse(Code.NOT_FOUND);
+                return;
+            }
+        }
+        if (!clientHandler.sendFileFanOutRequestToReceivers(receivers, fileTransferReq.filename(),
+                fileTransferReq.fileSize(), fileTransferReq.checksum(), fileTransferReq.checksumAlgorithm())) {
+            sendFileTransferErrorResponse(Code.FILE_NOT_SPOOLABLE);
         }
     }
+
+    private void sendFileTransferErrorResponse(Code code) {
+        clientHandler.send(ResponseFrames.error(Command.FILE_TRANSFER_RESP, code));
+    }
 }
@@ -1,31 +1,25 @@
 package server.handlers;
 
-import shared.utility.model.Message;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 import server.ClientHandler;
+import server.Game;
+import server.ResponseFrames;
 import server.ParseErrorHandler;
 import shared.messages.GameMove;
-import shared.messages.GameMoveResp;
 import shared.utility.Code;
 import shared.utility.Command;
 import shared.utility.GameMoves;
-import shared.utility.MessageHandler;
 
-import java.io.PrintWriter;
 import java.util.function.Consumer;
 
 public class GameMoveHandler implements Consumer<String> {
-    private final ObjectMapper mapper;
+    private final MessageCodecs codecs;
     private final ClientHandler clientHandler;
-    private final PrintWriter writer;
-    private final MessageHandler messageHandler;
     private final ParseErrorHandler parseErrorHandler;
 
-    public GameMoveHandler(ObjectMapper mapper, ClientHandler clientHandler, PrintWriter writer, MessageHandler messageHandler, ParseErrorHandler parseErrorHandler) {
-        this.mapper = mapper;
+    public GameMoveHandler(MessageCodecs codecs, ClientHandler clientHandler, ParseErrorHandler parseErrorHandler) {
+        this.codecs = codecs;
         this.clientHandler = clientHandler;
-        this.writer = writer;
-        this.messageHandler = messageHandler;
         this.parseErrorHandler = parseErrorHandler;
 
     }
@@ -33,25 +27,22 @@ public class GameMoveHandler implements Consumer<String> {
     @Override
     public void accept(String payload) {
         try {
-            GameMove gameMove = mapper.readValue(payload, GameMove.class);
+            GameMove gameMove = codecs.readValue(payload, GameMove.class);
             GameMoves move = GameMoves.fromCode(gameMove.moveCode());
             if (move == null) {
-                sendGameMoveErrorResponse(Code.INVALID_GAME_MOVE.getCode());
+                sendGameMoveErrorResponse(Code.INVALID_GAME_MOVE);
                 return;
             }
-            if (!clientHandler.checkIfGameActive()) {
-                sendGameMoveErrorResponse(Code.NO_ACTIVE_GAME.getCode());
+            Game game = clientHandler.getGame();
+            if (game == null) {
+                sendGameMoveErrorResponse(clientHandler.checkIfGameActive() ? Code.USER_NOT_PARTICIPANT : Code.NO_ACTIVE_GAME);
                 return;
             }
-            if (!clientHandler.checkIfClientGameParticipant()) {
-                sendGameMoveErrorResponse(Code.USER_NOT_PARTICIPANT.getCode());
+            if (game.hasMoved(clientHandler)) {
+                sendGameMoveErrorResponse(Code.MOVE_ALREADY_MADE);
                 return;
             }
-            if (clientHandler.isMoveAlreadySubmitted()) {
-                sendGameMoveErrorResponse(Code.MOVE_ALREADY_MADE.getCode());
-                return;
-            }
-            clientHandler.sendMoveResponseAndSubmitMove(move);
+            clientHandler.sendMoveResponseAndSubmitMove(game, move);
 
         } catch (Exception e) {
             parseErrorHandler.handleParseError();
@@ -60,14 +51,7 @@ public class GameMoveHandler implements Consumer<String> {
 
     }
 
-    private void sendGameMoveErrorResponse(int errorCode) {
-        try {
-            GameMoveResp errorResponse = GameMoveResp.error(errorCode);
-            String serializedPayload = mapper.writeValueAsString(errorResponse);
-            Message errorMessage = new Message(Command.GAME_MOVE_RESP.getCommand(), serializedPayload);
-            writer.println(messageHandler.serialize(errorMessage));
-        } catch (Exception e) {
-            System.err.println("Error sending error response: " + e.getMessage());
-        }
+    private void sendGameMoveErrorResponse(Code code) {
+        clientHandler.send(ResponseFrames.error(Command.GAME_MOVE_RESP, code));
     }
 }
@@ -0,0 +1,37 @@
+package server.handlers;
+
+import server.ClientHandler;
+import server.ResponseFrames;
+import shared.utility.Code;
+import shared.utility.Command;
+
+import java.util.function.Consumer;
+
+public class GameQueueReqHandler implements Consumer<String> {
+
+    private final ClientHandler clientHandler;
+
+
+    public GameQueueReqHandler(ClientHandler clientHandler) {
+        this.clientHandler = clientHandler;
+    }
+
+    @Override
+    public void accept(String payload) {
+        if (!clientHandler.checkIfClientExists(clientHandler.getUsername())) {
+            sendErrorResponse(Code.UNAUTHORIZED);
+            return;
+        }
+        if (clientHandler.getGame() != null) {
+            sendErrorResponse(Code.GAME_ALREADY_RUNNING);
+            return;
+        }
+        if (!clientHandler.joinGameQueueAndSendSuccessResponse()) {
+            sendErrorResponse(Code.ALREADY_QUEUED);
+        }
+    }
+
+    private void sendErrorResponse(Code code) {
+        clientHandler.send(ResponseFrames.error(Command.GAME_QUEUE_RESP, code));
+    }
+}
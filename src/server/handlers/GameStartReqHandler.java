@@ -2,8 +2,9 @@ package server.handlers;
 
 import shared.utility.model.Message;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 import server.ClientHandler;
+import server.ResponseFrames;
 import server.ParseErrorHandler;
 import shared.messages.GameStartReq;
 import shared.messages.GameStartResp;
@@ -16,17 +17,17 @@ import java.util.List;
 import java.util.function.Consumer;
 
 public class GameStartReqHandler implements Consumer<String> {
-    private final ObjectMapper mapper;
+    private final MessageCodecs codecs;
     private final ClientHandler clientHandler;
     private final PrintWriter writer;
     private final MessageHandler messageHandler;
     private final ParseErrorHandler parseErrorHandler;
 
-    public GameStartReqHandler(ClientHandler clientHandler, ObjectMapper mapper, PrintWriter writer, MessageHandler messageHandler, ParseErrorHandler parseErrorHandler) {
+    public GameStartReqHandler(ClientHandler clientHandler, MessageCodecs codecs, PrintWriter writer, MessageHandler messageHandler, ParseErrorHandler parseErrorHandler) {
         this.writer = writer;
         this.messageHandler = messageHandler;
         this.parseErrorHandler = parseErrorHandler;
-        this.mapper = mapper;
+        this.codecs = codecs;
         this.clientHandler = clientHandler;
 
 
@@ -35,7 +36,7 @@ public class GameStartReqHandler implements Consumer<String> {
     @Override
     public void accept(String payload) {
         try {
-            GameStartReq gameStartReq = mapper.readValue(payload, GameStartReq.class);
+            GameStartReq gameStartReq = codecs.readValue(payload, GameStartReq.class);
             String opponent = gameStartReq.opponent();
             String initiator = clientHandler.getUsername();
             if (!clientHandler.checkIfClientExists(initiator)) {
@@ -50,13 +51,16 @@ public class GameStartReqHandler implements Consumer<String> {
 
             }
 
-            List<String> players = clientHandler.getGamePlayers();
+            List<String> players = clientHandler.getGamePlayers(opponent);
             if (!players.isEmpty()) {
                 sendGameStartReqErrorMessageWithUsers(players.get(0), players.get(1));
                 return;
             }
 
-            clientHandler.sentSuccessGameStartResponse(opponent);
+            if (!clientHandler.startGameAndSendSuccessResponse(opponent)) {
+                // one of them started another game just now
+                sendGameStartReqErrorMessage(Code.GAME_ALREADY_RUNNING);
+            }
 
 
         } catch (JsonProcessingException e) {
@@ -65,26 +69,14 @@ public class GameStartReqHandler implements Consumer<String> {
     }
 
     private void sendGameStartReqErrorMessage(Code code) {
-        try {
-
-            GameStartResp errorResponse = GameStartResp.error(code.getCode());
-
-            String serializedPayload = mapper.writeValueAsString(errorResponse);
-            Message message = new Message(Command.GAME_START_RESP.getCommand(), serializedPayload);
-            String serializedMessage = messageHandler.serialize(message);
-            writer.println(serializedMessage);
-
-
-        } catch (JsonProcessingException e) {
-            e.printStackTrace();
-        }
+        clientHandler.send(ResponseFrames.error(Command.GAME_START_RESP, code));
     }
 
     private void sendGameStartReqErrorMessageWithUsers(String playerA, String playerB) {
         try {
             GameStartResp errorResponse = GameStartResp.errorWithUsers(Code.GAME_ALREADY_RUNNING.getCode(), playerA, playerB);
 
-            String serializedPayload = mapper.writeValueAsString(errorResponse);
+            String serializedPayload = codecs.writeValueAsString(errorResponse);
             Message message = new Message(Command.GAME_START_RESP.getCommand(), serializedPayload);
             String serializedMessage = messageHandler.serialize(message);
             writer.println(serializedMessage);
@@ -0,0 +1,43 @@
+package server.handlers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import server.ClientHandler;
+import server.ParseErrorHandler;
+import server.ResponseFrames;
+import shared.messages.LeaderboardReq;
+import shared.utility.Code;
+import shared.utility.Command;
+import shared.utility.MessageCodecs;
+
+import java.util.function.Consumer;
+
+public class LeaderboardReqHandler implements Consumer<String> {
+
+    private static final int DEFAULT_COUNT = 10;
+    private static final int MAX_COUNT = 100;
+
+    private final MessageCodecs codecs;
+    private final ClientHandler clientHandler;
+    private final ParseErrorHandler parseErrorHandler;
+
+    public LeaderboardReqHandler(MessageCodecs codecs, ClientHandler clientHandler, ParseErrorHandler parseErrorHandler) {
+        this.codecs = codecs;
+        this.clientHandler = clientHandler;
+        this.parseErrorHandler = parseErrorHandler;
+    }
+
+    @Override
+    public void accept(String payload) {
+        try {
+            LeaderboardReq leaderboardReq = codecs.readValue(payload, LeaderboardReq.class);
+            if (!clientHandler.checkIfClientExists(clientHandler.getUsername())) {
+                clientHandler.send(ResponseFrames.error(Command.LEADERBOARD_RESP, Code.UNAUTHORIZED));
+                return;
+            }
+            Integer count = leaderboardReq.count();
+            clientHandler.sendLeaderboard(count == null || count <= 0 ? DEFAULT_COUNT : Math.min(count, MAX_COUNT));
+        } catch (JsonProcessingException e) {
+            parseErrorHandler.handleParseError();
+        }
+    }
+}
@@ -1,31 +1,24 @@
 package server.handlers;
 
-import shared.utility.model.Message;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.utility.MessageCodecs;
 import server.ClientHandler;
+import server.ResponseFrames;
 import server.ParseErrorHandler;
 import shared.messages.PrivateMessageReq;
-import shared.messages.PrivateMessageResp;
 import shared.utility.Code;
 import shared.utility.Command;
-import shared.utility.MessageHandler;
 
-import java.io.PrintWriter;
 import java.util.function.Consumer;
 
 public class PrivateMsgReqHandler implements Consumer<String> {
-    private final ObjectMapper mapper;
+    private final MessageCodecs codecs;
     private final ClientHandler clientHandler;
-    private final PrintWriter writer;
-    private final MessageHandler messageHandler;
     private final ParseErrorHandler parseErrorHandler;
 
-    public PrivateMsgReqHandler(ObjectMapper mapper, ClientHandler clientHandler, PrintWriter writer, MessageHandler messageHandler, ParseErrorHandler parseErrorHandler) {
-        this.mapper = mapper;
+    public PrivateMsgReqHandler(MessageCodecs codecs, ClientHandler clientHandler, ParseErrorHandler parseErrorHandler) {
+        this.codecs = codecs;
         this.clientHandler = clientHandler;
-        this.writer = writer;
-        this.messageHandler = messageHandler;
         this.parseErrorHandler = parseErrorHandler;
 
     }
@@ -33,7 +26,7 @@ public class PrivateMsgReqHandler implements Consumer<String> {
     @Override
     public void accept(String payload) {
         try {
-            PrivateMessageReq privateMsgReqMessage = mapper.readValue(payload, PrivateMessageReq.class);
+            PrivateMessageReq privateMsgReqMessage = codecs.readValue(payload, PrivateMessageReq.class);
             String message = privateMsgReqMessage.message();
             String sender = clientHandler.getUsername();
             String recipient = privateMsgReqMessage.recipient();
@@ -60,16 +53,7 @@ public class PrivateMsgReqHandler implements Consumer<String> {
 
 
     private void sendPrivateMsgReqErrorMessage(Code code) {
-        try {
-            PrivateMessageResp errorResponsePayLoad = PrivateMessageResp.error(code.getCode());
-            String serializedPayload = mapper.writeValueAsString(errorResponsePayLoad);
-            Message privateMsgResponseErrorMessage = new Message(Command.PRIVATE_MSG_RESP.getCommand(), serializedPayload);
-            String serializedMessage = messageHandler.serialize(privateMsgResponseErrorMessage);
-            writer.println(serializedMessage);
-
-        } catch (JsonProcessingException e) {
-            e.printStackTrace();
-        }
+        clientHandler.send(ResponseFrames.error(Command.PRIVATE_MSG_RESP, code));
     }
 
 }
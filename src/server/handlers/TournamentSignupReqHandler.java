@@ -0,0 +1,36 @@
+package server.handlers;
+
+import server.ClientHandler;
+import server.ResponseFrames;
+import shared.utility.Code;
+import shared.utility.Command;
+
+import java.util.function.Consumer;
+
+public class TournamentSignupReqHandler implements Consumer<String> {
+
+    private final ClientHandler clientHandler;
+
+
+    public TournamentSignupReqHandler(ClientHandler clientHandler) {
+        this.clientHandler = clientHandler;
+    }
+
+    @Override
+    public void accept(String payload) {
+        if (!clientHandler.checkIfClientExists(clientHandler.getUsername())) {
+            sendErrorResponse(Code.UNAUTHORIZED);
+            return;
+        }
+        Code error = clientHandler.signUpForTournament();
+        if (error != null) {
+            sendErrorResponse(error);
+            return;
+        }
+        clientHandler.send(ResponseFrames.success(Command.TOURNAMENT_SIGNUP_RESP));
+    }
+
+    private void sendErrorResponse(Code code) {
+        clientHandler.send(ResponseFrames.error(Command.TOURNAMENT_SIGNUP_RESP, code));
+    }
+}
@@ -1,30 +1,27 @@
 package server.handlers;
 
-import shared.utility.model.Message;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import server.ClientHandler;
-import shared.messages.UserListResp;
+import server.ParseErrorHandler;
+import server.ResponseFrames;
+import shared.messages.UserListReq;
 import shared.utility.Code;
 import shared.utility.Command;
-import shared.utility.MessageHandler;
+import shared.utility.MessageCodecs;
 
-import java.io.PrintWriter;
 import java.util.function.Consumer;
 
 public class UserListReqHandler implements Consumer<String> {
 
-    private final ObjectMapper mapper;
+    private final MessageCodecs codecs;
     private final ClientHandler clientHandler;
-    private final PrintWriter writer;
-    private final MessageHandler messageHandler;
+    private final ParseErrorHandler parseErrorHandler;
 
 
-    public UserListReqHandler(ObjectMapper mapper, ClientHandler clientHandler, PrintWriter writer, MessageHandler messageHandler) {
+    public UserListReqHandler(MessageCodecs codecs, ClientHandler clientHandler, ParseErrorHandler parseErrorHandler) {
+        this.codecs = codecs;
         this.clientHandler = clientHandler;
-        this.writer = writer;
-        this.messageHandler = messageHandler;
-        this.mapper = mapper;
+        this.parseErrorHandler = parseErrorHandler;
     }
 
     @Override
@@ -40,30 +37,29 @@ public class UserListReqHandler implements Consumer<String> {
             return;
         }
 
+        if (payload.isEmpty()) {
+            clientHandler.sendListOfUsersToUser();
+            return;
+        }
 
-
-        clientHandler.sendListOfUsersToUser();
+        try {
+            UserListReq userListReq = codecs.readValue(payload, UserListReq.class);
+            if (userListReq.version() == null) {
+                clientHandler.sendListOfUsersToUser();
+                return;
+            }
+            clientHandler.sendUserListChanges(userListReq.version());
+        } catch (JsonProcessingException e) {
+            parseErrorHandler.handleParseError();
+        }
 
 
     }
 
 
     private void sendErrorResponse(Code code) {
-        try {
-            System.out.println("Sending error response");
-            // Create the error payload
-            UserListResp errorResponsePayload = UserListResp.error(code.getCode());
-            String serializedPayload = mapper.writeValueAsString(errorResponsePayload);
-
-            // Create the error message
-            Message userListResponseErrorMessage = new Message(Command.USER_LIST_RESP.getCommand(), serializedPayload);
-            String serializedMessage = messageHandler.serialize(userListResponseErrorMessage);
-
-            // Send the error message to the client
-            writer.println(serializedMessage);
-        } catch (JsonProcessingException e) {
-            e.printStackTrace();
-        }
+        System.out.println("Sending error response");
+        clientHandler.send(ResponseFrames.error(Command.USER_LIST_RESP, code));
     }
 }
 
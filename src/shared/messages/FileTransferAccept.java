@@ -1,4 +1,12 @@
 package shared.messages;
 
-public record FileTransferAccept(String fileTransferInitiator) {
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * @param streams the number of parallel connections the receiver agrees to, at most the number the sender asked for;
+ *                null for one.
+ * @param compression the compression the receiver agrees to, if the sender asked for it; null for none.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record FileTransferAccept(String fileTransferInitiator, Integer streams, String compression) {
 }
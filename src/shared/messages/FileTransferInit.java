@@ -1,4 +1,13 @@
 package shared.messages;
 
-public record FileTransferInit(String uuid) {
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * @param chunkSize the size of the chunks the file is sent in, or null if the file is streamed in one piece.
+ * @param streams   the number of parallel connections the file is sent over, null for one.
+ * @param spooled     true if the file is uploaded to the server and downloaded from there, null if it is relayed.
+ * @param compression the compression chunks may be sent with, null for none.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record FileTransferInit(String uuid, Integer chunkSize, Integer streams, Boolean spooled, String compression) {
 }
@@ -1,6 +1,17 @@
 package shared.messages;
 
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 
-public record FileTransferReq(String receiverOrSender, String filename, long fileSize, String checksum) {
+import java.util.List;
+
+/**
+ * @param streams           the number of parallel connections the sender would like to use, null for one.
+ * @param checksumAlgorithm how the checksum was computed, null for a SHA-256 of the whole file.
+ * @param receivers         the users a file is offered to at once, instead of the one in receiverOrSender.
+ * @param compression       the compression the sender would like to use, null for none.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record FileTransferReq(String receiverOrSender, String filename, long fileSize, String checksum, Integer streams,
+                              String checksumAlgorithm, List<String> receivers, String compression) {
 }
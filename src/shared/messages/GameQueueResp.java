@@ -0,0 +1,15 @@
+package shared.messages;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import shared.utility.Status;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record GameQueueResp(String status, Integer code) {
+    public static GameQueueResp success() {
+        return new GameQueueResp(Status.OK.getStatus(), null);
+    }
+
+    public static GameQueueResp error(int code) {
+        return new GameQueueResp(Status.ERROR.getStatus(), code);
+    }
+}
@@ -0,0 +1,4 @@
+package shared.messages;
+
+public record LeaderboardEntry(String username, long wins, long losses, long draws) {
+}
@@ -0,0 +1,7 @@
+package shared.messages;
+
+/**
+ * @param count how many users to list, the top 10 if null.
+ */
+public record LeaderboardReq(Integer count) {
+}
@@ -0,0 +1,21 @@
+package shared.messages;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import shared.utility.Status;
+
+import java.util.List;
+
+/**
+ * The users with the best game results, most wins first; on equal wins the one with fewer losses, then more draws.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record LeaderboardResp(String status, List<LeaderboardEntry> players, Integer code) {
+
+    public static LeaderboardResp success(List<LeaderboardEntry> players) {
+        return new LeaderboardResp(Status.OK.getStatus(), players, null);
+    }
+
+    public static LeaderboardResp error(int code) {
+        return new LeaderboardResp(Status.ERROR.getStatus(), null, code);
+    }
+}
@@ -0,0 +1,15 @@
+package shared.messages;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import shared.utility.Status;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TournamentSignupResp(String status, Integer code) {
+    public static TournamentSignupResp success() {
+        return new TournamentSignupResp(Status.OK.getStatus(), null);
+    }
+
+    public static TournamentSignupResp error(int code) {
+        return new TournamentSignupResp(Status.ERROR.getStatus(), code);
+    }
+}
@@ -0,0 +1,28 @@
+package shared.messages;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * What changed in the tournament: a round started with the players in bracket order, every two of them playing each
+ * other; a match of the round was decided; or the tournament has a champion.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TournamentUpdate(Integer round, List<String> players, String winner, String loser, String champion) {
+
+    public static TournamentUpdate roundStarted(int round, List<String> players) {
+        return new TournamentUpdate(round, players, null, null, null);
+    }
+
+    /**
+     * @param loser null if the winner had nobody to play in this round.
+     */
+    public static TournamentUpdate matchDecided(int round, String winner, String loser) {
+        return new TournamentUpdate(round, null, winner, loser, null);
+    }
+
+    public static TournamentUpdate finished(String champion) {
+        return new TournamentUpdate(null, null, null, null, champion);
+    }
+}
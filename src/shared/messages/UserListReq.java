@@ -0,0 +1,7 @@
+package shared.messages;
+
+/**
+ * @param version the version of the user list the client knows, 0 if it knows none.
+ */
+public record UserListReq(Long version) {
+}
@@ -5,16 +5,29 @@ import shared.utility.Status;
 
 import java.util.List;
 
+/**
+ * Either all logged-in users in {@code users}, or, with {@code joined} and {@code left}, what changed since the
+ * version the client asked with. {@code version} is only sent to clients that asked with a version.
+ */
 @JsonInclude(JsonInclude.Include.NON_NULL)
 
-public record UserListResp(String status, List<String> users, Integer code) {
+public record UserListResp(String status, Long version, List<String> users, List<String> joined, List<String> left,
+                           Integer code) {
 
     public static UserListResp success(List<String> users) {
-        return new UserListResp(Status.OK.getStatus(), users, null);
+        return new UserListResp(Status.OK.getStatus(), null, users, null, null, null);
+    }
+
+    public static UserListResp snapshot(long version, List<String> users) {
+        return new UserListResp(Status.OK.getStatus(), version, users, null, null, null);
+    }
+
+    public static UserListResp delta(long version, List<String> joined, List<String> left) {
+        return new UserListResp(Status.OK.getStatus(), version, null, joined, left, null);
     }
 
     // Factory method for an error response
     public static UserListResp error(int code) {
-        return new UserListResp(Status.ERROR.getStatus(), null, code);
+        return new UserListResp(Status.ERROR.getStatus(), null, null, null, null, code);
     }
 }
@@ -8,15 +8,21 @@ public enum Code {
     USER_ALREADY_LOGGED_IN(5002, "User is already logged in"),
     UNAUTHORIZED(6000, "User is not logged in"),
     NO_PONG(7000, "No activity from the user shown"),
+    SLOW_CONSUMER(7001, "Messages were not read fast enough"),
     PONG_WITHOUT_PING(8000, "Server registered failure during checking user activity"),
     NOT_FOUND(6004, "User is not found"),
-    GAME_ALREADY_RUNNING(9000, "A game is already running between two users"),
+    TOO_MANY_PENDING_TRANSFERS(6005, "Too many file transfers are waiting to start"),
+    FILE_NOT_SPOOLABLE(6006, "The file cannot be stored on the server for several receivers"),
+    GAME_ALREADY_RUNNING(9000, "The initiator or the opponent is already playing a game"),
     INVALID_GAME_MOVE(9001, "Invalid move (not 'rock', 'paper', or 'scissors')"),
     NO_ACTIVE_GAME(9002, "No active game on server, the move cannot be submitted."),
-    USER_NOT_PARTICIPANT(9003, "You are not a participant in the current game"),
+    USER_NOT_PARTICIPANT(9003, "You are not a participant in any running game"),
     MOVE_ALREADY_MADE(9004, "You have already made your move"),
     OPPONENT_DISCONNECTED(9005, "Opponent disconnected"),
-    MOVES_OR_MOVE_NOT_SUBMITTED(9006, "One or both players failed to submit their moves in time.");
+    MOVES_OR_MOVE_NOT_SUBMITTED(9006, "One or both players failed to submit their moves in time."),
+    ALREADY_QUEUED(9007, "You are already waiting for an opponent"),
+    TOURNAMENT_RUNNING(9008, "A tournament is being played, the signup is closed"),
+    ALREADY_SIGNED_UP(9009, "You have already signed up for the tournament");
 
 
 
@@ -1,5 +1,7 @@
 package shared.utility;
 
+import java.util.Arrays;
+
 public enum Command {
 
     // Connection Commands
@@ -49,6 +51,13 @@ public enum Command {
     GAME_MOVE_RESP("GAME_MOVE_RESP"),
     GAME_RESULT("GAME_RESULT"),
     GAME_CANCELLED("GAME_CANCELLED"),
+    GAME_QUEUE_REQ("GAME_QUEUE_REQ"),
+    GAME_QUEUE_RESP("GAME_QUEUE_RESP"),
+    TOURNAMENT_SIGNUP_REQ("TOURNAMENT_SIGNUP_REQ"),
+    TOURNAMENT_SIGNUP_RESP("TOURNAMENT_SIGNUP_RESP"),
+    TOURNAMENT_UPDATE("TOURNAMENT_UPDATE"),
+    LEADERBOARD_REQ("LEADERBOARD_REQ"),
+    LEADERBOARD_RESP("LEADERBOARD_RESP"),
 
     // file transfer commands
     FILE_TRANSFER_REQ("FILE_TRANSFER_REQ"),
@@ -62,6 +71,24 @@ public enum Command {
 
     private final String command;
 
+    // commands indexed by header length and upper-case first letter, so a lookup compares at most a couple of names
+    private static final Command[][][] COMMANDS_BY_LENGTH_AND_FIRST_LETTER;
+
+    static {
+        int maxLength = 0;
+        for (Command command : values()) {
+            maxLength = Math.max(maxLength, command.command.length());
+        }
+        COMMANDS_BY_LENGTH_AND_FIRST_LETTER = new Command[maxLength + 1][26][];
+        for (Command command : values()) {
+            Command[][] byFirstLetter = COMMANDS_BY_LENGTH_AND_FIRST_LETTER[command.command.length()];
+            int letter = command.command.charAt(0) - 'A';
+            Command[] candidates = byFirstLetter[letter] == null ? new Command[1] : Arrays.copyOf(byFirstLetter[letter], byFirstLetter[letter].length + 1);
+            candidates[candidates.length - 1] = command;
+            byFirstLetter[letter] = candidates;
+        }
+    }
+
     // Constructor
     Command(String command) {
         this.command = command;
@@ -74,15 +101,95 @@ public enum Command {
 
     // Method to get an enum from a string
     public static Command getCommandFromString(String commandStr) {
-        for (Command command : Command.values()) {
-            if (command.command.equalsIgnoreCase(commandStr)) {
-                return command;
+        if (commandStr == null) {
+            return null;
+        }
+        return fromChars(commandStr, 0, commandStr.length());
+    }
+
+    /**
+     * Looks up the command whose name equals, ignoring case, the characters between start and end,
+     * without copying them into a new string.
+     *
+     * @return the command, or null if the header is unknown.
+     */
+    public static Command fromChars(CharSequence chars, int start, int end) {
+        Command[] candidates = end > start ? candidates(end - start, chars.charAt(start)) : null;
+        if (candidates == null) {
+            return null;
+        }
+        for (Command candidate : candidates) {
+            if (regionMatchesIgnoreCase(candidate.command, chars, start)) {
+                return candidate;
             }
         }
         return null;
     }
 
+    /**
+     * Same as {@link #fromChars(CharSequence, int, int)} for a header in raw bytes. Command names are ASCII,
+     * so the bytes are compared without decoding them.
+     */
+    public static Command fromBytes(byte[] bytes, int start, int end) {
+        Command[] candidates = end > start ? candidates(end - start, (char) (bytes[start] & 0xFF)) : null;
+        if (candidates == null) {
+            return null;
+        }
+        for (Command candidate : candidates) {
+            if (regionMatchesIgnoreCase(candidate.command, bytes, start)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
 
-}
+    private static Command[] candidates(int length, char first) {
+        if (length >= COMMANDS_BY_LENGTH_AND_FIRST_LETTER.length) {
+            return null;
+        }
+        int letter = Character.toUpperCase(first) - 'A';
+        if (letter < 0 || letter >= 26) {
+            // same rule as String.equalsIgnoreCase for characters like the Kelvin sign
+            letter = Character.toUpperCase(Character.toLowerCase(first)) - 'A';
+            if (letter < 0 || letter >= 26) {
+                return null;
+            }
+        }
+        return COMMANDS_BY_LENGTH_AND_FIRST_LETTER[length][letter];
+    }
 
+    private static boolean regionMatchesIgnoreCase(String name, CharSequence chars, int start) {
+        for (int i = 0; i < name.length(); i++) {
+            if (!charEqualsIgnoreCase(name.charAt(i), chars.charAt(start + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
 
+    private static boolean regionMatchesIgnoreCase(String name, byte[] bytes, int start) {
+        for (int i = 0; i < name.length(); i++) {
+            int b = bytes[start + i];
+            if (b >= 'a' && b <= 'z') {
+                b -= 'a' - 'A';
+            }
+            if (name.charAt(i) != b) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean charEqualsIgnoreCase(char expected, char actual) {
+        if (expected == actual) {
+            return true;
+        }
+        if (actual < 128) {
+            return actual >= 'a' && actual <= 'z' && expected == actual - ('a' - 'A');
+        }
+        char upper = Character.toUpperCase(actual);
+        return expected == upper || Character.toLowerCase(expected) == Character.toLowerCase(upper);
+    }
+
+
+}
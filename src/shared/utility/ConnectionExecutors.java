@@ -0,0 +1,38 @@
+package shared.utility;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executors that run one task per connection. Virtual threads are looked up reflectively, so the code
+ * still compiles and runs on a JDK without them; in that case platform threads are used instead.
+ */
+public class ConnectionExecutors {
+
+    /**
+     * Creates an executor that starts a new virtual thread for every task.
+     *
+     * @return the virtual thread executor, or a platform thread executor if the running JDK has no virtual threads.
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Virtual threads are not available on this JDK, using platform threads instead.");
+            return newPlatformThreadExecutor();
+        }
+    }
+
+    /**
+     * Creates an executor that runs every task on a platform thread, reusing idle threads.
+     */
+    public static ExecutorService newPlatformThreadExecutor() {
+        return Executors.newCachedThreadPool();
+    }
+
+    public static ExecutorService newExecutor(boolean virtualThreads) {
+        return virtualThreads ? newVirtualThreadExecutor() : newPlatformThreadExecutor();
+    }
+}
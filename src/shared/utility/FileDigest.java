@@ -0,0 +1,126 @@
+package shared.utility;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * The checksum of a file as sent in FILE_TRANSFER_REQ, computed from its bytes in order: either one SHA-256 over
+ * the whole file, or the root of a {@link TreeChecksum}.
+ */
+public interface FileDigest {
+
+    String SHA_256 = "SHA-256";
+    String SHA_256_TREE = "SHA-256-TREE";
+
+    void update(byte[] bytes, int offset, int length);
+
+    void update(ByteBuffer bytes);
+
+    /**
+     * @return the checksum of all bytes as hex.
+     */
+    String checksum();
+
+    /**
+     * @param algorithm {@link #SHA_256_TREE}, or {@link #SHA_256} which is also used when it is null.
+     */
+    static FileDigest of(String algorithm) {
+        return SHA_256_TREE.equals(algorithm) ? new Tree() : new Sha256();
+    }
+
+    /**
+     * @return whether the algorithm is one of the above; null stands for {@link #SHA_256}.
+     */
+    static boolean isKnown(String algorithm) {
+        return algorithm == null || SHA_256.equals(algorithm) || SHA_256_TREE.equals(algorithm);
+    }
+
+    static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    static String toHex(byte[] hash) {
+        return HexFormat.of().formatHex(hash);
+    }
+
+    /**
+     * One SHA-256 over the whole file.
+     */
+    final class Sha256 implements FileDigest {
+        private final MessageDigest digest = newSha256();
+
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+            digest.update(bytes, offset, length);
+        }
+
+        @Override
+        public void update(ByteBuffer bytes) {
+            digest.update(bytes);
+        }
+
+        @Override
+        public String checksum() {
+            return toHex(digest.digest());
+        }
+    }
+
+    /**
+     * The root of a {@link TreeChecksum}, with the leaves hashed one after the other as the bytes come in.
+     */
+    final class Tree implements FileDigest {
+        private final MessageDigest leaf = newSha256();
+        private final List<byte[]> leaves = new ArrayList<>();
+        // bytes of the current leaf hashed so far
+        private int leafLength;
+
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+            while (length > 0) {
+                int take = Math.min(length, TreeChecksum.LEAF_SIZE - leafLength);
+                leaf.update(bytes, offset, take);
+                offset += take;
+                length -= take;
+                completeLeaf(take);
+            }
+        }
+
+        @Override
+        public void update(ByteBuffer bytes) {
+            while (bytes.hasRemaining()) {
+                int take = Math.min(bytes.remaining(), TreeChecksum.LEAF_SIZE - leafLength);
+                int limit = bytes.limit();
+                bytes.limit(bytes.position() + take);
+                leaf.update(bytes);
+                bytes.limit(limit);
+                completeLeaf(take);
+            }
+        }
+
+        private void completeLeaf(int hashed) {
+            leafLength += hashed;
+            if (leafLength == TreeChecksum.LEAF_SIZE) {
+                leaves.add(leaf.digest());
+                leafLength = 0;
+            }
+        }
+
+        @Override
+        public String checksum() {
+            // the last leaf may be shorter, and an empty file has one empty leaf
+            if (leafLength > 0 || leaves.isEmpty()) {
+                leaves.add(leaf.digest());
+                leafLength = 0;
+            }
+            return toHex(TreeChecksum.root(leaves));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package shared.utility;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import shared.messages.*;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads and writes the JSON payloads of the protocol. One instance is shared by all connections:
+ * it holds a single configured {@link ObjectMapper} and an {@link ObjectReader} and {@link ObjectWriter}
+ * per message record, which are immutable and therefore safe to use from any thread.
+ */
+public class MessageCodecs {
+
+    // every payload record of the protocol, their readers and writers are built up front
+    private static final Class<?>[] MESSAGE_TYPES = {
+            Broadcast.class, BroadcastReq.class, BroadcastResp.class, ByeResp.class,
+            Enter.class, EnterResp.class,
+            FileTransferAccept.class, FileTransferAcceptResp.class, FileTransferInit.class, FileTransferReject.class,
+            FileTransferRejectResp.class, FileTransferReq.class, FileTransferResp.class,
+            GameCancelled.class, GameInvite.class, GameMove.class, GameMoveResp.class, GameNotification.class,
+            GameQueueResp.class, GameResult.class, GameStartReq.class, GameStartResp.class,
+            Hangup.class, Joined.class, LeaderboardEntry.class, LeaderboardReq.class, LeaderboardResp.class, Left.class,
+            ParseError.class, Ping.class, Pong.class, PongError.class,
+            PrivateMessage.class, PrivateMessageReq.class, PrivateMessageResp.class, Ready.class,
+            TournamentSignupResp.class, TournamentUpdate.class, UserListReq.class, UserListResp.class
+    };
+
+    private static final MessageCodecs SHARED = new MessageCodecs();
+
+    private final ObjectMapper mapper;
+    private final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+    private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+
+    private MessageCodecs() {
+        mapper = new ObjectMapper()
+                // empty records like Ping are valid payloads
+                .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+        for (Class<?> type : MESSAGE_TYPES) {
+            readers.put(type, mapper.readerFor(type));
+            writers.put(type, mapper.writerFor(type));
+        }
+    }
+
+    public static MessageCodecs shared() {
+        return SHARED;
+    }
+
+    public <T> T readValue(String payload, Class<T> type) throws JsonProcessingException {
+        return readerFor(type).readValue(payload);
+    }
+
+    public <T> T readValue(byte[] payload, int offset, int length, Class<T> type) throws IOException {
+        return readerFor(type).readValue(payload, offset, length);
+    }
+
+    public String writeValueAsString(Object value) throws JsonProcessingException {
+        return writerFor(value.getClass()).writeValueAsString(value);
+    }
+
+    public byte[] writeValueAsBytes(Object value) throws JsonProcessingException {
+        return writerFor(value.getClass()).writeValueAsBytes(value);
+    }
+
+    public ObjectReader readerFor(Class<?> type) {
+        return readers.computeIfAbsent(type, mapper::readerFor);
+    }
+
+    public ObjectWriter writerFor(Class<?> type) {
+        return writers.computeIfAbsent(type, mapper::writerFor);
+    }
+}
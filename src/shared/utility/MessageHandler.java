@@ -23,11 +23,11 @@ public class MessageHandler {
 
     public Message deserialize(String rawMessage) throws JsonProcessingException {
 
-        String[] splits = rawMessage.split(" ", 2);
+        int headerEnd = rawMessage.indexOf(' ');
 
 
-        String header = splits[0]; // The first part is always the header
-        String jsonPayload = splits.length > 1 ? splits[1] : null; // The second part (if exists) is the payload
+        String header = headerEnd == -1 ? rawMessage : rawMessage.substring(0, headerEnd); // The first part is always the header
+        String jsonPayload = headerEnd == -1 ? null : rawMessage.substring(headerEnd + 1); // The second part (if exists) is the payload
 
         // Return a new Message object with the header and payload
         return new Message(header, jsonPayload);
@@ -0,0 +1,112 @@
+package shared.utility;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A Merkle tree checksum: the file is split into leaves of {@link #LEAF_SIZE} bytes, each hashed with SHA-256, and
+ * pairs of hashes are hashed together, prefixed with the byte 1, until one root is left. A hash without a pair moves
+ * up a level unchanged. The leaves are independent, so a file on disk is hashed on all cores; the same root can
+ * also be computed from the bytes in order, see {@link FileDigest.Tree}.
+ * <p>
+ * A file of at most one leaf has the SHA-256 of its bytes as root. With the default chunk size, the leaves are the
+ * hashes the chunks are sent with.
+ */
+public class TreeChecksum {
+
+    public static final int LEAF_SIZE = 1024 * 1024;
+    private static final byte NODE_PREFIX = 1;
+    // leaves hashed by one task, mapped as one region
+    private static final int LEAVES_PER_TASK = 8;
+
+    /**
+     * Hashes the leaves of the file on the pool, reading them through memory mapped regions.
+     *
+     * @return the root as hex.
+     */
+    public static String of(Path file, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int leafCount = (int) Math.max(1, (size + LEAF_SIZE - 1) / LEAF_SIZE);
+            byte[][] leaves = new byte[leafCount][];
+            try {
+                pool.invoke(new LeafHashes(channel, size, leaves, 0, leafCount));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return FileDigest.toHex(root(Arrays.asList(leaves)));
+        }
+    }
+
+    static byte[] root(List<byte[]> leaves) {
+        byte[][] level = leaves.toArray(new byte[0][]);
+        MessageDigest digest = FileDigest.newSha256();
+        int length = level.length;
+        while (length > 1) {
+            int next = 0;
+            for (int i = 0; i < length; i += 2) {
+                if (i + 1 == length) {
+                    level[next++] = level[i];
+                } else {
+                    digest.update(NODE_PREFIX);
+                    digest.update(level[i]);
+                    digest.update(level[i + 1]);
+                    level[next++] = digest.digest();
+                }
+            }
+            length = next;
+        }
+        return level[0];
+    }
+
+    private static class LeafHashes extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long size;
+        private final byte[][] leaves;
+        private final int from;
+        private final int to;
+
+        private LeafHashes(FileChannel channel, long size, byte[][] leaves, int from, int to) {
+            this.channel = channel;
+            this.size = size;
+            this.leaves = leaves;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAVES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new LeafHashes(channel, size, leaves, from, middle),
+                        new LeafHashes(channel, size, leaves, middle, to));
+                return;
+            }
+            long start = (long) from * LEAF_SIZE;
+            long end = Math.min((long) to * LEAF_SIZE, size);
+            MessageDigest digest = FileDigest.newSha256();
+            try {
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                for (int leaf = from; leaf < to; leaf++) {
+                    int offset = (leaf - from) * LEAF_SIZE;
+                    region.limit((int) Math.min(offset + (long) LEAF_SIZE, end - start)).position(offset);
+                    digest.update(region);
+                    leaves[leaf] = digest.digest();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package benchmarks;
+
+import client.FileChecksums;
+import shared.utility.FileDigest;
+import shared.utility.TreeChecksum;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Hashes a temporary file the way the client did before, with a 1 KB buffer and {@code String.format} per byte,
+ * and with {@link FileChecksums}: uncached with 1 MB reads, and cached as when the same file is sent again.
+ * {@code tree} is the {@link TreeChecksum} root on the common fork/join pool, {@code tree, in order} the same root
+ * computed from the bytes in order, as the receiver does while they arrive.
+ * The file is read once before measuring, so all variants read it from the page cache.
+ * <p>
+ * Run with {@code java -cp out:lib/* benchmarks.ChecksumBenchmark [megabytes]}.
+ */
+public class ChecksumBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 512;
+        Path file = Files.createTempFile("checksum", ".bin");
+        try {
+            byte[] block = new byte[1024 * 1024];
+            new Random(1).nextBytes(block);
+            try (OutputStream out = Files.newOutputStream(file)) {
+                for (int i = 0; i < megabytes; i++) {
+                    out.write(block);
+                }
+            }
+            FileChecksums checksums = new FileChecksums();
+            String expected = checksums.checksumOf(file, FileDigest.SHA_256);
+            String expectedTree = TreeChecksum.of(file, ForkJoinPool.commonPool());
+
+            for (int round = 0; round < 3; round++) {
+                measure("1 KB reads", megabytes, expected, () -> previousChecksum(file));
+                measure("1 MB reads", megabytes, expected, () -> FileChecksums.sha256(file));
+                measure("cached", megabytes, expected, () -> checksums.checksumOf(file, FileDigest.SHA_256));
+                measure("tree", megabytes, expectedTree, () -> TreeChecksum.of(file, ForkJoinPool.commonPool()));
+                measure("tree, in order", megabytes, expectedTree, () -> sequentialTree(file));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private interface Checksum {
+        String compute() throws Exception;
+    }
+
+    private static void measure(String name, int megabytes, String expected, Checksum checksum) throws Exception {
+        long start = System.nanoTime();
+        String actual = checksum.compute();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (!actual.equals(expected)) {
+            throw new IllegalStateException(name + " computed " + actual);
+        }
+        System.out.printf("%-15s %8.1f MB/s%n", name, megabytes / seconds);
+    }
+
+    private static String sequentialTree(Path file) throws IOException {
+        FileDigest digest = FileDigest.of(FileDigest.SHA_256_TREE);
+        // an odd buffer size, so leaves span reads
+        byte[] buffer = new byte[100_000];
+        try (FileInputStream in = new FileInputStream(file.toFile())) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return digest.checksum();
+    }
+
+    /**
+     * The checksum as the client computed it before.
+     */
+    private static String previousChecksum(Path file) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (FileInputStream fis = new FileInputStream(file.toFile())) {
+            byte[] buffer = new byte[1024];
+            int n;
+            while ((n = fis.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,113 @@
+package benchmarks;
+
+import server.OutboundWriter;
+import server.ServerConfig;
+import shared.messages.Broadcast;
+import shared.utility.Command;
+import shared.utility.MessageCodecs;
+import shared.utility.MessageHandler;
+import shared.utility.model.Message;
+
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends a broadcast storm to one client through an {@link OutboundWriter} and counts the socket writes it takes.
+ * Several senders queue BROADCAST frames concurrently, like users chatting in the same room.
+ * {@code --flush-bytes=1} writes every frame on its own, as the server did before frames were coalesced.
+ * <p>
+ * Every write is one system call; without TCP_NODELAY the kernel may still merge some of them into one packet,
+ * so the write count is an upper bound for the packets sent.
+ * <p>
+ * Run with {@code java -cp out:lib/* benchmarks.CoalescingBenchmark [senders] [broadcastsPerSender]}.
+ */
+public class CoalescingBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int senders = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int broadcasts = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+
+        String payload = MessageCodecs.shared().writeValueAsString(new Broadcast("user", "Hello everyone, how is it going?"));
+        byte[] frame = (new MessageHandler().serialize(new Message(Command.BROADCAST.getCommand(), payload)) + "\n")
+                .getBytes(StandardCharsets.UTF_8);
+
+        for (int round = 0; round < 3; round++) {
+            run("per frame", frame, senders, broadcasts, "--flush-bytes=1");
+            run("coalesced", frame, senders, broadcasts);
+            run("coalesced, 2 ms delay", frame, senders, broadcasts, "--flush-delay-ms=2");
+            System.out.println();
+        }
+    }
+
+    private static void run(String name, byte[] frame, int senders, int broadcasts, String... options) throws Exception {
+        String[] args = new String[options.length + 2];
+        args[0] = "--outbound-max-messages=" + senders * broadcasts;
+        args[1] = "--outbound-max-bytes=" + (long) senders * broadcasts * frame.length;
+        System.arraycopy(options, 0, args, 2, options.length);
+        ServerConfig config = ServerConfig.fromArgs(args);
+
+        ExecutorService writerExecutor = Executors.newCachedThreadPool();
+        ScheduledExecutorService flushScheduler = config.getFlushDelayMs() > 0 ? Executors.newSingleThreadScheduledExecutor() : null;
+        long expectedBytes = (long) senders * broadcasts * frame.length;
+
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             Socket client = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+             Socket accepted = serverSocket.accept()) {
+
+            Thread reader = new Thread(() -> drain(client, expectedBytes));
+            reader.start();
+
+            OutboundWriter writer = new OutboundWriter(accepted, writerExecutor, flushScheduler, config);
+            Thread[] threads = new Thread[senders];
+            long start = System.nanoTime();
+            for (int i = 0; i < senders; i++) {
+                threads[i] = new Thread(() -> {
+                    for (int j = 0; j < broadcasts; j++) {
+                        writer.getQueue().offer(frame);
+                    }
+                });
+                threads[i].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            reader.join();
+            long elapsed = System.nanoTime() - start;
+            // the last drain may still be counting its write
+            writerExecutor.shutdown();
+            writerExecutor.awaitTermination(1, TimeUnit.SECONDS);
+
+            long writes = writer.getWrites();
+            System.out.printf("%-22s %8d writes, %6.1f frames/write, %8.0f bytes/write, %6.0f ms%n",
+                    name, writes, writer.getWrittenFrames() / (double) writes, expectedBytes / (double) writes, elapsed / 1e6);
+        } finally {
+            writerExecutor.shutdownNow();
+            if (flushScheduler != null) {
+                flushScheduler.shutdownNow();
+            }
+        }
+    }
+
+    private static void drain(Socket client, long expectedBytes) {
+        byte[] buffer = new byte[64 * 1024];
+        long received = 0;
+        try (InputStream inputStream = client.getInputStream()) {
+            while (received < expectedBytes) {
+                int read = inputStream.read(buffer);
+                if (read < 0) {
+                    break;
+                }
+                received += read;
+            }
+        } catch (Exception e) {
+            System.err.println("Reader failed: " + e.getMessage());
+        }
+    }
+}
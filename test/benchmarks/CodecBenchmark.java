@@ -0,0 +1,109 @@
+package benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import shared.messages.Broadcast;
+import shared.messages.BroadcastReq;
+import shared.messages.BroadcastResp;
+import shared.messages.Enter;
+import shared.messages.EnterResp;
+import shared.utility.MessageCodecs;
+
+/**
+ * Compares a new {@link ObjectMapper} per connection, as every client handler used to create, with the shared
+ * {@link MessageCodecs}: the cost of a connection's first ENTER exchange, the heap kept per connection,
+ * and the steady-state cost of a broadcast request.
+ * <p>
+ * Run with {@code java -cp out:lib/* benchmarks.CodecBenchmark [connections] [messages]}.
+ */
+public class CodecBenchmark {
+
+    private static final String ENTER = "{\"username\":\"user\"}";
+    private static final String BROADCAST_REQ = "{\"message\":\"Hello everyone, how is it going?\"}";
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        int messages = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+
+        for (int round = 0; round < 3; round++) {
+            firstExchangePerConnectionMapper(connections);
+            firstExchangeSharedCodecs(connections);
+        }
+        retainedHeap(connections);
+        for (int round = 0; round < 3; round++) {
+            steadyState(messages);
+        }
+    }
+
+    private static void firstExchangePerConnectionMapper(int connections) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            ObjectMapper mapper = new ObjectMapper();
+            Enter enter = mapper.readValue(ENTER, Enter.class);
+            sink = mapper.writeValueAsString(EnterResp.success()) + enter.username();
+        }
+        System.out.printf("per-connection mapper: %.1f us per connection for the first ENTER%n",
+                (System.nanoTime() - start) / 1e3 / connections);
+    }
+
+    private static void firstExchangeSharedCodecs(int connections) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            MessageCodecs codecs = MessageCodecs.shared();
+            Enter enter = codecs.readValue(ENTER, Enter.class);
+            sink = codecs.writeValueAsString(EnterResp.success()) + enter.username();
+        }
+        System.out.printf("shared codecs:         %.1f us per connection for the first ENTER%n",
+                (System.nanoTime() - start) / 1e3 / connections);
+    }
+
+    /**
+     * Keeps one used mapper per connection alive and measures the heap they hold.
+     */
+    private static void retainedHeap(int connections) throws Exception {
+        Object[] mappers = new Object[connections];
+        long before = usedHeap();
+        for (int i = 0; i < connections; i++) {
+            ObjectMapper mapper = new ObjectMapper();
+            mapper.readValue(BROADCAST_REQ, BroadcastReq.class);
+            mapper.writeValueAsString(new Broadcast("user", "message"));
+            mappers[i] = mapper;
+        }
+        long after = usedHeap();
+        sink = mappers;
+        System.out.printf("per-connection mapper: %.1f KB retained per connection, shared codecs: 0 KB%n",
+                (after - before) / 1024.0 / connections);
+    }
+
+    private static void steadyState(int messages) throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        long start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            BroadcastReq request = mapper.readValue(BROADCAST_REQ, BroadcastReq.class);
+            sink = mapper.writeValueAsString(new Broadcast("user", request.message()));
+            sink = mapper.writeValueAsString(BroadcastResp.success());
+        }
+        long mapperDone = System.nanoTime();
+
+        MessageCodecs codecs = MessageCodecs.shared();
+        for (int i = 0; i < messages; i++) {
+            BroadcastReq request = codecs.readValue(BROADCAST_REQ, BroadcastReq.class);
+            sink = codecs.writeValueAsString(new Broadcast("user", request.message()));
+            sink = codecs.writeValueAsString(BroadcastResp.success());
+        }
+        long codecsDone = System.nanoTime();
+
+        System.out.printf("broadcast request: mapper %.0f ns/op, shared codecs %.0f ns/op%n",
+                (mapperDone - start) / (double) messages, (codecsDone - mapperDone) / (double) messages);
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
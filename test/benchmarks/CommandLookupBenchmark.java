@@ -0,0 +1,103 @@
+package benchmarks;
+
+import shared.utility.Command;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compares the old linear scan over all commands with the lookup table in {@link Command},
+ * for every header in upper, lower and mixed case plus a set of unknown headers.
+ * <p>
+ * Run with {@code java -cp out:lib/* benchmarks.CommandLookupBenchmark [iterations]}.
+ */
+public class CommandLookupBenchmark {
+
+    private static final String[] UNKNOWN_HEADERS = {
+            "", "X", "PINGS", "PIN", "HELLO", "GAME_MOVEX", "BROADCAST_RES", "FILE_TRANSFER_ACCEPT_RESPONSE", "ZZZ", "_ENTER", "\u00c9NTER", "\u212aILL"
+    };
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+
+        List<String> headers = new ArrayList<>();
+        for (Command command : Command.values()) {
+            headers.add(command.getCommand());
+            headers.add(command.getCommand().toLowerCase(Locale.ROOT));
+            headers.add(mixedCase(command.getCommand()));
+        }
+        headers.addAll(List.of(UNKNOWN_HEADERS));
+
+        // lines as they arrive, the header is followed by a payload
+        String[] lines = new String[headers.size()];
+        byte[][] lineBytes = new byte[headers.size()][];
+        int[] headerEnds = new int[headers.size()];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = headers.get(i) + " {\"message\":\"hello\"}";
+            lineBytes[i] = lines[i].getBytes(StandardCharsets.UTF_8);
+            headerEnds[i] = headers.get(i).length();
+            checkSameResult(headers.get(i), lines[i], lineBytes[i], headerEnds[i]);
+        }
+        System.out.println("Headers: " + lines.length + " (" + UNKNOWN_HEADERS.length + " unknown), results match");
+
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (int n = 0; n < iterations; n++) {
+                for (String line : lines) {
+                    sink = linearScan(line.split(" ", 2)[0]);
+                }
+            }
+            long linear = System.nanoTime();
+            for (int n = 0; n < iterations; n++) {
+                for (int i = 0; i < lines.length; i++) {
+                    sink = Command.fromChars(lines[i], 0, headerEnds[i]);
+                }
+            }
+            long chars = System.nanoTime();
+            for (int n = 0; n < iterations; n++) {
+                for (int i = 0; i < lines.length; i++) {
+                    sink = Command.fromBytes(lineBytes[i], 0, headerEnds[i]);
+                }
+            }
+            long bytes = System.nanoTime();
+
+            double lookups = (double) iterations * lines.length;
+            System.out.printf("round %d: split + linear scan %.1f ns/op, fromChars %.1f ns/op, fromBytes %.1f ns/op%n",
+                    round, (linear - start) / lookups, (chars - linear) / lookups, (bytes - chars) / lookups);
+        }
+    }
+
+    /**
+     * The lookup as it was before the table was added.
+     */
+    private static Command linearScan(String header) {
+        for (Command command : Command.values()) {
+            if (command.getCommand().equalsIgnoreCase(header)) {
+                return command;
+            }
+        }
+        return null;
+    }
+
+    private static void checkSameResult(String header, String line, byte[] lineBytes, int headerEnd) {
+        Command expected = linearScan(header);
+        if (Command.getCommandFromString(header) != expected
+                || Command.fromChars(line, 0, headerEnd) != expected
+                || (header.chars().allMatch(c -> c < 128) && Command.fromBytes(lineBytes, 0, headerEnd) != expected)) {
+            throw new IllegalStateException("Lookup differs from the linear scan for header: " + header);
+        }
+    }
+
+    private static String mixedCase(String name) {
+        StringBuilder builder = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            builder.append(i % 2 == 0 ? c : Character.toLowerCase(c));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,61 @@
+package benchmarks;
+
+import client.ChunkCompression;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Compresses 1 MB chunks of CSV-like text and of random bytes, as in a transfer that was already compressed, with
+ * {@link ChunkCompression}, and prints how fast that is, what share of the bytes is sent, and how long sending
+ * these 256 MB would take over links of different speeds on one stream, raw and compressed. Compression and sending
+ * overlap, so a compressed transfer takes as long as the slower of both.
+ * <p>
+ * Run with {@code java -cp out:lib/* benchmarks.CompressionBenchmark}.
+ */
+public class CompressionBenchmark {
+
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final int CHUNKS = 256;
+    private static final int[] LINK_MBIT_PER_SECOND = {10, 100, 1000};
+
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        StringBuilder csv = new StringBuilder();
+        while (csv.length() < CHUNK_SIZE) {
+            csv.append(random.nextInt(100_000)).append(",user").append(random.nextInt(500))
+                    .append(",2026-10-18T12:").append(random.nextInt(60)).append(",GET /files/").append(random.nextInt(1000))
+                    .append(",200\n");
+        }
+        byte[] text = new byte[CHUNK_SIZE];
+        System.arraycopy(csv.toString().getBytes(StandardCharsets.US_ASCII), 0, text, 0, CHUNK_SIZE);
+        byte[] compressed = new byte[CHUNK_SIZE];
+        random.nextBytes(compressed);
+
+        for (int round = 0; round < 3; round++) {
+            measure("csv", text);
+            measure("random", compressed);
+        }
+    }
+
+    private static void measure(String name, byte[] chunk) {
+        ChunkCompression compression = new ChunkCompression();
+        long sent = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < CHUNKS; i++) {
+            int length = compression.deflate(chunk, chunk.length);
+            sent += length < 0 ? chunk.length : length;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        compression.end();
+
+        long raw = (long) CHUNKS * CHUNK_SIZE;
+        StringBuilder line = new StringBuilder(String.format("%-7s %7.1f MB/s, %5.1f%% sent", name, CHUNKS / seconds, 100.0 * sent / raw));
+        for (int mbit : LINK_MBIT_PER_SECOND) {
+            double bytesPerSecond = mbit * 1e6 / 8;
+            line.append(String.format(", %d Mbit/s %.1f s -> %.1f s", mbit, raw / bytesPerSecond,
+                    Math.max(seconds, sent / bytesPerSecond)));
+        }
+        System.out.println(line);
+    }
+}
@@ -0,0 +1,184 @@
+package benchmarks;
+
+import server.FileTransferRegistry;
+import server.FileTransferServer;
+import server.FileTransferSession;
+import server.HashedWheelTimer;
+import server.ServerConfig;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Measures the file transfer relay over loopback: every session streams the given number of megabytes from a
+ * sender to a receiver through the relay, with 1 and with 50 sessions at the same time.
+ * {@code transferTo} is the previous relay, a blocking {@code InputStream.transferTo} on a thread per session;
+ * {@code relay} is the {@link FileTransferServer} with its selector based relay.
+ * <p>
+ * The CPU time is that of the whole process, so it includes the senders and receivers, which are the same
+ * for both relays.
+ * <p>
+ * Run with {@code java -cp out:lib/* benchmarks.RelayBenchmark [megabytesPerSession] [port]}.
+ */
+public class RelayBenchmark {
+
+    private static final int CLIENT_BUFFER_SIZE = 256 * 1024;
+    private static final int[] CONCURRENT_SESSIONS = {1, 50};
+
+    public static void main(String[] args) throws Exception {
+        long bytesPerSession = (args.length > 0 ? Long.parseLong(args[0]) : 1024) * 1024 * 1024;
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 13380;
+
+        ServerConfig config = ServerConfig.fromArgs(new String[]{
+                "--max-pending-transfers=" + CONCURRENT_SESSIONS[1],
+                // the benchmark streams raw bytes, sessions that end are not resumed
+                "--transfer-chunk-size=0"});
+        FileTransferRegistry registry = new FileTransferRegistry(new HashedWheelTimer(), config);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        FileTransferServer relayServer = new FileTransferServer(port, executor, registry, null, config);
+        new Thread(relayServer).start();
+
+        ServerSocket transferToServer = new ServerSocket(port + 1);
+
+        for (int round = 0; round < 2; round++) {
+            for (int sessions : CONCURRENT_SESSIONS) {
+                measure("transferTo", sessions, bytesPerSession, () -> transferToSession(transferToServer, bytesPerSession));
+                measure("relay", sessions, bytesPerSession, () -> relaySession(registry, port, bytesPerSession));
+            }
+        }
+
+        relayServer.setRunning(false);
+        relayServer.getFileTransferSocket().close();
+        transferToServer.close();
+        executor.shutdownNow();
+        System.exit(0);
+    }
+
+    private interface Session {
+        void run() throws Exception;
+    }
+
+    private static void measure(String name, int sessions, long bytesPerSession, Session session) throws Exception {
+        com.sun.management.OperatingSystemMXBean os =
+                (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        long cpuStart = os.getProcessCpuTime();
+        long start = System.nanoTime();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < sessions; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    session.run();
+                } catch (Exception e) {
+                    System.err.println("Session failed: " + e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double cpuSeconds = (os.getProcessCpuTime() - cpuStart) / 1e9;
+        double gigabytes = sessions * (double) bytesPerSession / (1 << 30);
+        System.out.printf("%-10s %2d sessions: %6.2f GB/s, %5.2f CPU seconds per GB%n",
+                name, sessions, gigabytes / seconds, cpuSeconds / gigabytes);
+    }
+
+    private static void relaySession(FileTransferRegistry registry, int port, long bytes) throws Exception {
+        FileTransferSession session = registry.open("benchmark", 1);
+        byte[] uuid = session.getId().toString().getBytes(StandardCharsets.US_ASCII);
+        try (SocketChannel receiver = connect(port, uuid, 'R');
+             SocketChannel sender = connect(port, uuid, 'S')) {
+            Thread sending = startSending(sender, bytes);
+            receive(receiver, bytes);
+            sending.join();
+        }
+    }
+
+    /**
+     * The relay as it was before: the receiver connects first, then the sender, and a thread per session copies
+     * the sender's stream into the receiver's stream.
+     */
+    private static void transferToSession(ServerSocket server, long bytes) throws Exception {
+        try (SocketChannel receiver = SocketChannel.open()) {
+            Socket receiverSide;
+            Socket senderSide;
+            SocketChannel sender;
+            // connect and accept both sides in one step, so concurrent sessions do not mix up their connections
+            synchronized (server) {
+                receiver.connect(new InetSocketAddress("127.0.0.1", server.getLocalPort()));
+                receiverSide = server.accept();
+                sender = SocketChannel.open(new InetSocketAddress("127.0.0.1", server.getLocalPort()));
+                senderSide = server.accept();
+            }
+            Thread relay = new Thread(() -> {
+                try (Socket from = senderSide; Socket to = receiverSide) {
+                    from.getInputStream().transferTo(to.getOutputStream());
+                } catch (IOException e) {
+                    System.err.println("Relay failed: " + e.getMessage());
+                }
+            });
+            relay.start();
+            try (sender) {
+                Thread sending = startSending(sender, bytes);
+                receive(receiver, bytes);
+                sending.join();
+            }
+            relay.join();
+        }
+    }
+
+    private static SocketChannel connect(int port, byte[] uuid, char role) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", port));
+        ByteBuffer header = ByteBuffer.allocate(uuid.length + 1);
+        header.put(uuid).put((byte) role).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        return channel;
+    }
+
+    private static Thread startSending(SocketChannel sender, long bytes) {
+        Thread thread = new Thread(() -> {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(CLIENT_BUFFER_SIZE);
+            long remaining = bytes;
+            try {
+                while (remaining > 0) {
+                    buffer.clear().limit((int) Math.min(buffer.capacity(), remaining));
+                    remaining -= sender.write(buffer);
+                }
+                sender.shutdownOutput();
+            } catch (IOException e) {
+                System.err.println("Sender failed: " + e.getMessage());
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void receive(SocketChannel receiver, long bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(CLIENT_BUFFER_SIZE);
+        long received = 0;
+        int read;
+        while ((read = receiver.read(buffer)) >= 0) {
+            received += read;
+            buffer.clear();
+        }
+        if (received != bytes) {
+            System.err.println("Received " + received + " of " + bytes + " bytes");
+        }
+    }
+}
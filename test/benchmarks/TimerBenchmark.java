@@ -0,0 +1,150 @@
+package benchmarks;
+
+import server.HashedWheelTimer;
+
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the timer overhead of the ping process for many sessions: every session keeps a pending ping,
+ * and every ping schedules a pong timeout that is cancelled again when the PONG arrives.
+ * <p>
+ * Run with {@code java -cp out:lib/* benchmarks.TimerBenchmark [sessions] [legacySessions]}.
+ * The old one-Timer-per-session approach is measured with fewer sessions, since it needs a thread per session.
+ */
+public class TimerBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int legacySessions = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+
+        System.out.println("Sessions: " + sessions);
+        benchmarkWheel(sessions);
+        benchmarkScheduledExecutor(sessions);
+        benchmarkTimerPerSession(legacySessions);
+        benchmarkWheelLateness(sessions);
+    }
+
+    private static void benchmarkWheel(int sessions) {
+        // ticks like the timer of the server
+        HashedWheelTimer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 1024);
+        HashedWheelTimer.Timeout[] pings = new HashedWheelTimer.Timeout[sessions];
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < sessions; i++) {
+                pings[i] = timer.schedule(TimerBenchmark::noop, 10, TimeUnit.SECONDS);
+            }
+            long scheduled = System.nanoTime();
+            for (int i = 0; i < sessions; i++) {
+                timer.schedule(TimerBenchmark::noop, 3, TimeUnit.SECONDS).cancel();
+            }
+            long pongs = System.nanoTime();
+            for (HashedWheelTimer.Timeout ping : pings) {
+                ping.cancel();
+            }
+            long cancelled = System.nanoTime();
+            report("wheel", round, sessions, start, scheduled, pongs, cancelled);
+        }
+        timer.stop();
+        System.out.println("wheel: 1 timer thread");
+    }
+
+    private static void benchmarkScheduledExecutor(int sessions) {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+        executor.setRemoveOnCancelPolicy(true);
+        ScheduledFuture<?>[] pings = new ScheduledFuture<?>[sessions];
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < sessions; i++) {
+                pings[i] = executor.schedule(TimerBenchmark::noop, 10, TimeUnit.SECONDS);
+            }
+            long scheduled = System.nanoTime();
+            for (int i = 0; i < sessions; i++) {
+                executor.schedule(TimerBenchmark::noop, 3, TimeUnit.SECONDS).cancel(false);
+            }
+            long pongs = System.nanoTime();
+            for (ScheduledFuture<?> ping : pings) {
+                ping.cancel(false);
+            }
+            long cancelled = System.nanoTime();
+            report("scheduled executor", round, sessions, start, scheduled, pongs, cancelled);
+        }
+        executor.shutdownNow();
+        System.out.println("scheduled executor: 1 timer thread");
+    }
+
+    private static void benchmarkTimerPerSession(int sessions) {
+        int threadsBefore = Thread.activeCount();
+        Timer[] timers = new Timer[sessions];
+        long start = System.nanoTime();
+        for (int i = 0; i < sessions; i++) {
+            timers[i] = new Timer(true);
+            timers[i].scheduleAtFixedRate(task(), 10_000, 10_000);
+        }
+        long scheduled = System.nanoTime();
+        for (int i = 0; i < sessions; i++) {
+            // the old code created a new Timer for every pong timeout
+            TimerTask pongTimeout = task();
+            new Timer(true).schedule(pongTimeout, 3_000);
+            pongTimeout.cancel();
+        }
+        long pongs = System.nanoTime();
+        int threads = Thread.activeCount() - threadsBefore;
+        for (Timer timer : timers) {
+            timer.cancel();
+        }
+        long cancelled = System.nanoTime();
+        report("timer per session", 0, sessions, start, scheduled, pongs, cancelled);
+        System.out.println("timer per session: " + threads + " timer threads alive after one ping round");
+    }
+
+    /**
+     * Schedules every session's pong timeout at once and measures how late they fire.
+     */
+    private static void benchmarkWheelLateness(int sessions) throws InterruptedException {
+        // ticks like the timer of the server
+        HashedWheelTimer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 1024);
+        CountDownLatch fired = new CountDownLatch(sessions);
+        AtomicLong totalLateness = new AtomicLong();
+        AtomicLong maxLateness = new AtomicLong();
+        for (int i = 0; i < sessions; i++) {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+            timer.schedule(() -> {
+                long lateness = System.nanoTime() - deadline;
+                totalLateness.addAndGet(lateness);
+                maxLateness.accumulateAndGet(lateness, Math::max);
+                fired.countDown();
+            }, 1, TimeUnit.SECONDS);
+        }
+        fired.await();
+        timer.stop();
+        System.out.printf("wheel lateness: mean %.1f ms, max %.1f ms%n",
+                totalLateness.get() / 1e6 / sessions, maxLateness.get() / 1e6);
+    }
+
+    private static void report(String name, int round, int sessions, long start, long scheduled, long pongs, long cancelled) {
+        System.out.printf("%s round %d: schedule %.0f ns/op, pong schedule+cancel %.0f ns/op, cancel %.0f ns/op%n",
+                name, round,
+                (scheduled - start) / (double) sessions,
+                (pongs - scheduled) / (double) sessions,
+                (cancelled - pongs) / (double) sessions);
+    }
+
+    private static TimerTask task() {
+        return new TimerTask() {
+            @Override
+            public void run() {
+            }
+        };
+    }
+
+    private static void noop() {
+    }
+}
@@ -0,0 +1,79 @@
+package benchmarks;
+
+import server.Presence;
+import shared.messages.UserListResp;
+import shared.utility.Command;
+import shared.utility.MessageCodecs;
+import shared.utility.MessageHandler;
+import shared.utility.model.Message;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares answering USER_LIST_REQ by copying and serializing all users, as every request did before, with the
+ * versioned user list of {@link Presence}: the changes since a recent version, or the full list encoded once per
+ * version.
+ * <p>
+ * Run with {@code java -cp out:lib/* benchmarks.UserListBenchmark [users] [requests]}.
+ */
+public class UserListBenchmark {
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws Exception {
+        int userCount = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+
+        Presence presence = new Presence();
+        List<String> users = new ArrayList<>();
+        for (int i = 0; i < userCount; i++) {
+            users.add("user" + i);
+            presence.join("user" + i);
+        }
+        MessageCodecs codecs = MessageCodecs.shared();
+        MessageHandler messageHandler = new MessageHandler();
+
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            long copyBytes = 0;
+            for (int n = 0; n < requests; n++) {
+                List<String> others = new ArrayList<>(users);
+                others.remove("user0");
+                String payload = codecs.writeValueAsString(UserListResp.success(others));
+                byte[] frame = (messageHandler.serialize(new Message(Command.USER_LIST_RESP.getCommand(), payload)) + "\n")
+                        .getBytes(StandardCharsets.UTF_8);
+                copyBytes += frame.length;
+                sink = frame;
+            }
+            long copied = System.nanoTime();
+
+            // a few users come and go between two requests of a client
+            long deltaBytes = 0;
+            for (int n = 0; n < requests; n++) {
+                long known = presence.getVersion();
+                presence.leave("user" + (n % userCount));
+                presence.join("user" + (n % userCount));
+                byte[] frame = presence.changesSince(known);
+                deltaBytes += frame.length;
+                sink = frame;
+            }
+            long deltas = System.nanoTime();
+
+            // many clients that know nothing yet ask for the same version
+            long snapshotBytes = 0;
+            for (int n = 0; n < requests; n++) {
+                byte[] frame = presence.changesSince(0);
+                snapshotBytes += frame.length;
+                sink = frame;
+            }
+            long snapshots = System.nanoTime();
+
+            System.out.printf("round %d: copy + serialize %.1f us/op %d bytes/op, changes %.1f us/op %d bytes/op, cached full list %.2f us/op %d bytes/op%n",
+                    round, (copied - start) / 1000.0 / requests, copyBytes / requests,
+                    (deltas - copied) / 1000.0 / requests, deltaBytes / requests,
+                    (snapshots - deltas) / 1000.0 / requests, snapshotBytes / requests);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package protocoltests;
+
+import client.ClientFileSender;
+import client.FileChunks;
+import client.TransferProgress;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs a chunked transfer of the client's sender against a receiver in the test, which flips a byte on the way.
+ * No server is needed.
+ */
+public class ChunkedTransferTests {
+
+    private static final int CHUNK_SIZE = 1024;
+    private static final int CHUNKS = 8;
+    private static final int CORRUPTED_CHUNK = 3;
+
+    @Test
+    void OnlyTheCorruptedChunkIsSentAgain(@TempDir Path directory) throws Exception {
+        byte[] content = new byte[CHUNK_SIZE * CHUNKS - 100];
+        new Random(1).nextBytes(content);
+        Path source = directory.resolve("source.bin");
+        Files.write(source, content);
+        String uuid = UUID.randomUUID().toString();
+
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            Thread sender = new Thread(new ClientFileSender(source.toString(), uuid, "localhost",
+                    serverSocket.getLocalPort(), CHUNK_SIZE, 1, null, false, false));
+            sender.start();
+
+            List<List<Integer>> rounds = new ArrayList<>();
+            try (Socket socket = serverSocket.accept();
+                 TransferProgress progress = TransferProgress.open(directory.resolve("target.bin").toFile(),
+                         content.length, CHUNK_SIZE, "unused", null)) {
+                socket.setSoTimeout(5_000);
+                // the byte flipped is in the data of the corrupted chunk the first time it is sent
+                long corruptedOffset = uuid.length() + 1 + (long) CORRUPTED_CHUNK * (8 + FileChunks.HASH_LENGTH + CHUNK_SIZE)
+                        + 8 + FileChunks.HASH_LENGTH;
+                DataInputStream in = new DataInputStream(new CorruptingInputStream(socket.getInputStream(), corruptedOffset));
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                in.readFully(new byte[uuid.length() + 1]);
+
+                FileChunks.writeMissing(out, progress.missing(0, CHUNKS), CHUNKS);
+                byte[] chunk = new byte[CHUNK_SIZE];
+                MessageDigest digest = FileChunks.newDigest();
+                List<Integer> round = new ArrayList<>();
+                while (true) {
+                    int index = in.readInt();
+                    if (index != FileChunks.END_OF_ROUND) {
+                        round.add(index);
+                        int length = FileChunks.readChunk(in, chunk, digest, null);
+                        if (length >= 0) {
+                            progress.write(index, chunk, length);
+                        }
+                        continue;
+                    }
+                    rounds.add(round);
+                    round = new ArrayList<>();
+                    List<FileChunks.Run> missing = progress.missing(0, CHUNKS);
+                    FileChunks.writeMissing(out, missing, CHUNKS);
+                    if (missing.isEmpty()) {
+                        break;
+                    }
+                }
+            }
+            sender.join(5_000);
+
+            assertEquals(List.of(List.of(0, 1, 2, 3, 4, 5, 6, 7), List.of(CORRUPTED_CHUNK)), rounds);
+            assertArrayEquals(content, Files.readAllBytes(directory.resolve("target.bin.part")));
+        }
+    }
+
+    /**
+     * Flips the byte at the given offset of the stream.
+     */
+    private static final class CorruptingInputStream extends FilterInputStream {
+
+        private final long corruptedOffset;
+        private long position;
+
+        private CorruptingInputStream(InputStream in, long corruptedOffset) {
+            super(in);
+            this.corruptedOffset = corruptedOffset;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read >= 0 && position++ == corruptedOffset) {
+                read ^= 0xFF;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0 && corruptedOffset >= position && corruptedOffset < position + read) {
+                b[off + (int) (corruptedOffset - position)] ^= (byte) 0xFF;
+            }
+            position += Math.max(read, 0);
+            return read;
+        }
+    }
+}
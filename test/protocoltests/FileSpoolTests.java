@@ -0,0 +1,76 @@
+package protocoltests;
+
+import org.junit.jupiter.api.Test;
+import server.FileSpool;
+import server.FileTransferSession;
+import server.HashedWheelTimer;
+import server.ServerConfig;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Serves spooled transfers straight from a spool, with connections of the test. No server is needed.
+ */
+public class FileSpoolTests {
+
+    private static final int RETENTION_MS = 300;
+
+    @Test
+    void DownloadThatOutlastsTheRetentionTimeIsNotCutOff() throws Exception {
+        byte[] content = new byte[1024 * 1024];
+        new Random(5).nextBytes(content);
+        String checksum = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        HashedWheelTimer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 64);
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverChannel.bind(new InetSocketAddress("localhost", 0));
+            FileSpool spool = FileSpool.temporary(timer,
+                    ServerConfig.fromArgs(new String[]{"--spool-retention-ms=" + RETENTION_MS}));
+            assertNotNull(spool);
+            UUID id = spool.open(checksum, null, content.length);
+
+            Socket sender = connect(serverChannel, spool, id, FileTransferSession.SENDER);
+            Socket receiver = connect(serverChannel, spool, id, FileTransferSession.RECEIVER);
+            new DataOutputStream(receiver.getOutputStream()).writeLong(0);
+
+            // the upload, which the download follows, takes about three times the retention time
+            DataInputStream senderIn = new DataInputStream(sender.getInputStream());
+            assertEquals(0, senderIn.readLong());
+            OutputStream senderOut = sender.getOutputStream();
+            int pieces = 16;
+            for (int piece = 0; piece < pieces; piece++) {
+                senderOut.write(content, piece * content.length / pieces, content.length / pieces);
+                senderOut.flush();
+                Thread.sleep(3L * RETENTION_MS / pieces);
+            }
+            assertEquals(1, senderIn.read());
+
+            receiver.setSoTimeout(5_000);
+            assertArrayEquals(content, receiver.getInputStream().readAllBytes());
+            sender.close();
+            receiver.close();
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * @return the test's side of a connection the spool serves on its own thread.
+     */
+    private static Socket connect(ServerSocketChannel serverChannel, FileSpool spool, UUID id, byte role) throws IOException {
+        Socket socket = new Socket("localhost", serverChannel.socket().getLocalPort());
+        SocketChannel accepted = serverChannel.accept();
+        new Thread(() -> spool.serve(id, role, accepted.socket())).start();
+        return socket;
+    }
+}
@@ -0,0 +1,324 @@
+package protocoltests;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import protocoltests.protocol.utils.Utils;
+import shared.messages.*;
+import shared.utility.Command;
+
+import java.io.*;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+import static java.time.Duration.ofMillis;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileTransferTests {
+    private final static Properties PROPS = new Properties();
+    private Socket socketSender, socketReceiver;
+    private BufferedReader inSender, inReceiver;
+    private PrintWriter outSender, outReceiver;
+
+    private final static int MAX_DELTA_ALLOWED_MS = 500;
+
+    @BeforeAll
+    static void setupAll() throws IOException {
+        InputStream in = FileTransferTests.class.getResourceAsStream("testconfig.properties");
+        PROPS.load(in);
+        in.close();
+    }
+
+    @BeforeEach
+    void setup() throws IOException {
+        socketSender = new Socket(PROPS.getProperty("host"), Integer.parseInt(PROPS.getProperty("port")));
+        inSender = new BufferedReader(new InputStreamReader(socketSender.getInputStream()));
+        outSender = new PrintWriter(socketSender.getOutputStream(), true);
+
+        socketReceiver = new Socket(PROPS.getProperty("host"), Integer.parseInt(PROPS.getProperty("port")));
+        inReceiver = new BufferedReader(new InputStreamReader(socketReceiver.getInputStream()));
+        outReceiver = new PrintWriter(socketReceiver.getOutputStream(), true);
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        socketSender.close();
+        socketReceiver.close();
+    }
+
+    @Test
+    void AcceptedFileTransferIsRelayedFromSenderToReceiver() throws IOException {
+        String uuid = acceptFileTransfer(null, null).uuid();
+        byte[] file = "The content of the file".getBytes(StandardCharsets.UTF_8);
+
+        try (Socket receiver = connectToFileTransferServer(uuid, 'R');
+             Socket sender = connectToFileTransferServer(uuid, 'S')) {
+            sender.getOutputStream().write(file);
+            sender.shutdownOutput();
+
+            byte[] received = assertTimeoutPreemptively(ofMillis(MAX_DELTA_ALLOWED_MS), () -> receiver.getInputStream().readAllBytes());
+            assertArrayEquals(file, received);
+        }
+    }
+
+    @Test
+    void SessionCanBePairedAgainAfterTheSenderConnectionIsReset() throws Exception {
+        String uuid = acceptFileTransfer(null, null).uuid();
+
+        try (Socket receiver = connectToFileTransferServer(uuid, 'R')) {
+            Socket sender = connectToFileTransferServer(uuid, 'S');
+            // the connection of the sender drops
+            sender.setSoLinger(true, 0);
+            sender.close();
+
+            // the server closes the receiver's connection too, without relaying anything
+            byte[] received = assertTimeoutPreemptively(ofMillis(MAX_DELTA_ALLOWED_MS), () -> receiver.getInputStream().readAllBytes());
+            assertEquals(0, received.length);
+        }
+
+        byte[] rest = "The rest of the file".getBytes(StandardCharsets.UTF_8);
+        try (Socket receiver = reconnectReceiver(uuid);
+             Socket sender = connectToFileTransferServer(uuid, 'S')) {
+            sender.getOutputStream().write(rest);
+            sender.shutdownOutput();
+
+            byte[] received = assertTimeoutPreemptively(ofMillis(MAX_DELTA_ALLOWED_MS), () -> receiver.getInputStream().readAllBytes());
+            assertArrayEquals(rest, received);
+        }
+    }
+
+    @Test
+    void StreamsOfAFileAreRelayedIndependently() throws IOException {
+        FileTransferInit init = acceptFileTransfer(2, null);
+        assertEquals(2, init.streams());
+        byte[] first = "The first half".getBytes(StandardCharsets.UTF_8);
+        byte[] second = "The second half".getBytes(StandardCharsets.UTF_8);
+
+        try (Socket receiver0 = connectToFileTransferServer(init.uuid(), 'R', 0);
+             Socket receiver1 = connectToFileTransferServer(init.uuid(), 'R', 1);
+             Socket sender1 = connectToFileTransferServer(init.uuid(), 'S', 1);
+             Socket sender0 = connectToFileTransferServer(init.uuid(), 'S', 0)) {
+            sender1.getOutputStream().write(second);
+            sender1.shutdownOutput();
+            byte[] received = assertTimeoutPreemptively(ofMillis(MAX_DELTA_ALLOWED_MS), () -> receiver1.getInputStream().readAllBytes());
+            assertArrayEquals(second, received);
+
+            sender0.getOutputStream().write(first);
+            sender0.shutdownOutput();
+            received = assertTimeoutPreemptively(ofMillis(MAX_DELTA_ALLOWED_MS), () -> receiver0.getInputStream().readAllBytes());
+            assertArrayEquals(first, received);
+        }
+    }
+
+    @Test
+    void CompressionBothUsersAgreeToIsAnnounced() throws IOException {
+        FileTransferInit init = acceptFileTransfer(null, "deflate");
+        assertEquals("deflate", init.compression());
+    }
+
+    @Test
+    void FileForSeveralReceiversIsUploadedOnce() throws Exception {
+        byte[] file = "The content of the file for everyone".getBytes(StandardCharsets.UTF_8);
+        String checksum = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(file));
+        try (Socket socketOther = new Socket(PROPS.getProperty("host"), Integer.parseInt(PROPS.getProperty("port")))) {
+            BufferedReader inOther = new BufferedReader(new InputStreamReader(socketOther.getInputStream()));
+            PrintWriter outOther = new PrintWriter(socketOther.getOutputStream(), true);
+            login();
+            receiveLineWithTimeout(inOther); // ready message
+            outOther.println(Utils.objectToMessage(new Enter("other")));
+            receiveLineWithTimeout(inOther); // enter response
+            receiveLineWithTimeout(inSender); // joined message received by sender
+            receiveLineWithTimeout(inReceiver); // joined message received by receiver
+
+            outSender.println(Utils.objectToMessage(new FileTransferReq(null, "file.txt", file.length, checksum, null, null,
+                    List.of("receiver", "other"), null)));
+            FileTransferReq fileTransferReq = Utils.messageToObject(receiveLineWithTimeout(inReceiver));
+            assertEquals("sender", fileTransferReq.receiverOrSender());
+            fileTransferReq = Utils.messageToObject(receiveLineWithTimeout(inOther));
+            assertEquals("sender", fileTransferReq.receiverOrSender());
+
+            outReceiver.println(Utils.objectToMessage(new FileTransferAccept("sender", null, null)));
+            FileTransferAcceptResp fileTransferAcceptResp = Utils.messageToObject(receiveLineWithTimeout(inReceiver));
+            assertEquals("OK", fileTransferAcceptResp.status());
+            FileTransferResp fileTransferResp = Utils.messageToObject(receiveLineWithTimeout(inSender));
+            assertEquals("OK", fileTransferResp.status());
+            FileTransferInit upload = Utils.messageToObject(receiveLineWithTimeout(inSender));
+            FileTransferInit download = Utils.messageToObject(receiveLineWithTimeout(inReceiver));
+            assertEquals(true, upload.spooled());
+            assertEquals(true, download.spooled());
+
+            try (Socket sender = connectToFileTransferServer(upload.uuid(), 'S')) {
+                DataInputStream in = new DataInputStream(sender.getInputStream());
+                assertEquals(0, in.readLong());
+                sender.getOutputStream().write(file);
+                sender.shutdownOutput();
+                assertEquals(1, assertTimeoutPreemptively(ofMillis(MAX_DELTA_ALLOWED_MS), () -> in.read()));
+            }
+            assertArrayEquals(file, download(download.uuid()));
+
+            // the file is stored, so the sender does not upload it again for a later receiver
+            outOther.println(Utils.objectToMessage(new FileTransferAccept("sender", null, null)));
+            fileTransferAcceptResp = Utils.messageToObject(receiveLineWithTimeout(inOther));
+            assertEquals("OK", fileTransferAcceptResp.status());
+            fileTransferResp = Utils.messageToObject(receiveLineWithTimeout(inSender));
+            assertEquals("OK", fileTransferResp.status());
+            FileTransferInit otherDownload = Utils.messageToObject(receiveLineWithTimeout(inOther));
+            assertArrayEquals(file, download(otherDownload.uuid()));
+        }
+    }
+
+    @Test
+    void FileForSeveralReceiversIsNoLongerOfferedOnceTheSenderLeaves() throws Exception {
+        byte[] file = "A file the sender never uploads".getBytes(StandardCharsets.UTF_8);
+        String checksum = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(file));
+        try (Socket socketOther = new Socket(PROPS.getProperty("host"), Integer.parseInt(PROPS.getProperty("port")))) {
+            BufferedReader inOther = new BufferedReader(new InputStreamReader(socketOther.getInputStream()));
+            PrintWriter outOther = new PrintWriter(socketOther.getOutputStream(), true);
+            login();
+            receiveLineWithTimeout(inOther); // ready message
+            outOther.println(Utils.objectToMessage(new Enter("other")));
+            receiveLineWithTimeout(inOther); // enter response
+            receiveLineWithTimeout(inSender); // joined message received by sender
+            receiveLineWithTimeout(inReceiver); // joined message received by receiver
+
+            outSender.println(Utils.objectToMessage(new FileTransferReq(null, "file.txt", file.length, checksum, null, null,
+                    List.of("receiver", "other"), null)));
+            receiveLineWithTimeout(inReceiver); // file transfer request
+            receiveLineWithTimeout(inOther); // file transfer request
+
+            outReceiver.println(Utils.objectToMessage(new FileTransferAccept("sender", null, null)));
+            receiveLineWithTimeout(inReceiver); // accept response
+            receiveLineWithTimeout(inSender); // file transfer response
+            FileTransferInit upload = Utils.messageToObject(receiveLineWithTimeout(inSender));
+            FileTransferInit download = Utils.messageToObject(receiveLineWithTimeout(inReceiver));
+
+            // the sender leaves before uploading, the other receiver did not answer yet
+            outSender.println(Command.BYE.getCommand());
+            receiveLineWithTimeout(inSender); // bye response
+            Left left = Utils.messageToObject(receiveLineWithTimeout(inReceiver));
+            assertEquals("sender", left.username());
+
+            // neither the upload nor the download waits for the rest of the retention time
+            for (String uuid : List.of(upload.uuid(), download.uuid())) {
+                try (Socket socket = connectToFileTransferServer(uuid, uuid.equals(upload.uuid()) ? 'S' : 'R')) {
+                    int read = assertTimeoutPreemptively(ofMillis(MAX_DELTA_ALLOWED_MS), () -> socket.getInputStream().read());
+                    assertEquals(-1, read);
+                }
+            }
+        }
+    }
+
+    @Test
+    void ConnectionWithUnknownSessionIsClosed() throws IOException {
+        try (Socket socket = connectToFileTransferServer(UUID.randomUUID().toString(), 'R')) {
+            int read = assertTimeoutPreemptively(ofMillis(MAX_DELTA_ALLOWED_MS), () -> socket.getInputStream().read());
+            assertEquals(-1, read);
+        }
+    }
+
+    /**
+     * Logs in both users and lets the receiver accept a file from the sender.
+     *
+     * @param streams     the parallel connections both users ask for, or null for one.
+     * @param compression the compression both users ask for, or null for none.
+     * @return the init message of the file transfer session.
+     */
+    private FileTransferInit acceptFileTransfer(Integer streams, String compression) throws JsonProcessingException {
+        login();
+
+        outSender.println(Utils.objectToMessage(new FileTransferReq("receiver", "file.txt", 23, "checksum", streams, null, null, compression)));
+        FileTransferReq fileTransferReq = Utils.messageToObject(receiveLineWithTimeout(inReceiver));
+        assertEquals("sender", fileTransferReq.receiverOrSender());
+        assertEquals(streams, fileTransferReq.streams());
+        assertEquals(compression, fileTransferReq.compression());
+
+        outReceiver.println(Utils.objectToMessage(new FileTransferAccept("sender", streams, compression)));
+        FileTransferAcceptResp fileTransferAcceptResp = Utils.messageToObject(receiveLineWithTimeout(inReceiver));
+        assertEquals("OK", fileTransferAcceptResp.status());
+
+        FileTransferResp fileTransferResp = Utils.messageToObject(receiveLineWithTimeout(inSender));
+        assertEquals("OK", fileTransferResp.status());
+
+        FileTransferInit senderInit = Utils.messageToObject(receiveLineWithTimeout(inSender));
+        FileTransferInit receiverInit = Utils.messageToObject(receiveLineWithTimeout(inReceiver));
+        assertEquals(senderInit.uuid(), receiverInit.uuid());
+        assertNotNull(senderInit.chunkSize());
+        assertEquals(senderInit.streams(), receiverInit.streams());
+        assertEquals(senderInit.compression(), receiverInit.compression());
+        return senderInit;
+    }
+
+    private void login() throws JsonProcessingException {
+        receiveLineWithTimeout(inSender); // ready message
+        outSender.println(Utils.objectToMessage(new Enter("sender")));
+        receiveLineWithTimeout(inSender); // enter response
+
+        receiveLineWithTimeout(inReceiver); // ready message
+        outReceiver.println(Utils.objectToMessage(new Enter("receiver")));
+        receiveLineWithTimeout(inReceiver); // enter response
+        receiveLineWithTimeout(inSender); // joined message received by sender
+    }
+
+    /**
+     * Downloads a spooled file from its start.
+     */
+    private byte[] download(String uuid) throws IOException {
+        try (Socket receiver = connectToFileTransferServer(uuid, 'R')) {
+            new DataOutputStream(receiver.getOutputStream()).writeLong(0);
+            return assertTimeoutPreemptively(ofMillis(MAX_DELTA_ALLOWED_MS), () -> receiver.getInputStream().readAllBytes());
+        }
+    }
+
+    /**
+     * Connects the receiver once the session waits for connections again. Until then, the server closes the
+     * connection right away; once attached, it waits for the sender without receiving anything.
+     */
+    private Socket reconnectReceiver(String uuid) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + MAX_DELTA_ALLOWED_MS * 1_000_000L;
+        while (true) {
+            Socket receiver = connectToFileTransferServer(uuid, 'R');
+            receiver.setSoTimeout(50);
+            try {
+                receiver.getInputStream().read();
+            } catch (SocketTimeoutException e) {
+                receiver.setSoTimeout(0);
+                return receiver;
+            }
+            receiver.close();
+            assertTrue(System.nanoTime() < deadline, "the session was not reopened in time");
+            Thread.sleep(10);
+        }
+    }
+
+    private Socket connectToFileTransferServer(String uuid, char role) throws IOException {
+        return connectToFileTransferServer(uuid, role, null);
+    }
+
+    private Socket connectToFileTransferServer(String uuid, char role, Integer stream) throws IOException {
+        Socket socket = new Socket(PROPS.getProperty("host"), Integer.parseInt(PROPS.getProperty("file_transfer_port")));
+        OutputStream outputStream = socket.getOutputStream();
+        outputStream.write(uuid.getBytes(StandardCharsets.US_ASCII));
+        outputStream.write(role);
+        if (stream != null) {
+            outputStream.write(stream);
+        }
+        outputStream.flush();
+        return socket;
+    }
+
+    private String receiveLineWithTimeout(BufferedReader reader) {
+        return assertTimeoutPreemptively(ofMillis(MAX_DELTA_ALLOWED_MS), reader::readLine);
+    }
+}
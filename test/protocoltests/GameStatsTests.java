@@ -0,0 +1,91 @@
+package protocoltests;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import server.GameStats;
+import server.HashedWheelTimer;
+import server.ServerConfig;
+import shared.messages.LeaderboardEntry;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Records game results straight into the stats, no server is needed.
+ */
+public class GameStatsTests {
+
+    private static final int USERS = 20;
+
+    @Test
+    void LeaderboardListsEveryUserOnceWhileResultsAreRecorded() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer();
+        try {
+            GameStats stats = GameStats.open(timer, Runnable::run, ServerConfig.fromArgs(new String[0]));
+            CountDownLatch done = new CountDownLatch(4);
+            List<Thread> recorders = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                Random random = new Random(t);
+                recorders.add(new Thread(() -> {
+                    // losses and draws move users down the ranking, past users the leaderboard has not reached yet
+                    for (int i = 0; i < 20_000; i++) {
+                        String a = "user" + random.nextInt(USERS);
+                        String b = "user" + random.nextInt(USERS);
+                        if (random.nextBoolean()) {
+                            stats.recordWin(a, b);
+                        } else {
+                            stats.recordDraw(a, b);
+                        }
+                    }
+                    done.countDown();
+                }));
+            }
+            recorders.forEach(Thread::start);
+
+            AtomicReference<List<LeaderboardEntry>> duplicates = new AtomicReference<>();
+            while (done.getCount() > 0 && duplicates.get() == null) {
+                List<LeaderboardEntry> leaderboard = stats.getLeaderboard(USERS);
+                Set<String> usernames = new HashSet<>();
+                for (LeaderboardEntry entry : leaderboard) {
+                    if (!usernames.add(entry.username())) {
+                        duplicates.set(leaderboard);
+                    }
+                }
+            }
+            for (Thread recorder : recorders) {
+                recorder.join();
+            }
+
+            assertNull(duplicates.get());
+            assertEquals(USERS, stats.getLeaderboard(USERS + 1).size());
+        } finally {
+            timer.stop();
+        }
+    }
+
+    @Test
+    void StatsFileWithAnUnparsableLineKeepsTheOtherUsers(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("stats.txt");
+        Files.writeString(file, "alice 3 1 0\nbob x 2 0\ncarol 1 0 2\n", StandardCharsets.UTF_8);
+        HashedWheelTimer timer = new HashedWheelTimer();
+        try {
+            GameStats stats = GameStats.open(timer, Runnable::run,
+                    ServerConfig.fromArgs(new String[]{"--stats-file=" + file}));
+            stats.recordWin("bob", "carol");
+            stats.snapshot();
+
+            List<LeaderboardEntry> leaderboard = stats.getLeaderboard(10);
+            assertEquals(List.of("alice", "bob", "carol"), leaderboard.stream().map(LeaderboardEntry::username).toList());
+            assertEquals(new LeaderboardEntry("carol", 1, 1, 2), leaderboard.get(2));
+            assertTrue(Files.readAllLines(file, StandardCharsets.UTF_8).contains("alice 3 1 0"));
+        } finally {
+            timer.stop();
+        }
+    }
+}
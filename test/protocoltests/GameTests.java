@@ -11,11 +11,16 @@ import shared.utility.Command;
 
 import java.io.*;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.List;
 import java.util.Properties;
 
 import static java.time.Duration.ofMillis;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class GameTests {
 
@@ -461,6 +466,192 @@ public class GameTests {
 
     }
 
+    @Test
+    void GamesBetweenDifferentPlayersRunAtTheSameTime() throws JsonProcessingException, IOException {
+        // login all four players
+        receiveLineWithTimeout(inPlayer1); // ready message
+        outPlayer1.println(Utils.objectToMessage(new Enter("player1")));
+        receiveLineWithTimeout(inPlayer1); // enter response
+
+        receiveLineWithTimeout(inPlayer2); // ready message
+        outPlayer2.println(Utils.objectToMessage(new Enter("player2")));
+        receiveLineWithTimeout(inPlayer2); // enter response
+        receiveLineWithTimeout(inPlayer1); // joined message processing
+
+        try (Socket socketPlayer3 = new Socket(PROPS.getProperty("host"), Integer.parseInt(PROPS.getProperty("port")));
+             Socket socketPlayer4 = new Socket(PROPS.getProperty("host"), Integer.parseInt(PROPS.getProperty("port")))) {
+            BufferedReader inPlayer3 = new BufferedReader(new InputStreamReader(socketPlayer3.getInputStream()));
+            PrintWriter outPlayer3 = new PrintWriter(socketPlayer3.getOutputStream(), true);
+            BufferedReader inPlayer4 = new BufferedReader(new InputStreamReader(socketPlayer4.getInputStream()));
+            PrintWriter outPlayer4 = new PrintWriter(socketPlayer4.getOutputStream(), true);
+
+            receiveLineWithTimeout(inPlayer3); // ready message
+            outPlayer3.println(Utils.objectToMessage(new Enter("player3")));
+            receiveLineWithTimeout(inPlayer3); // enter response
+            receiveLineWithTimeout(inPlayer1); // joined message processing
+            receiveLineWithTimeout(inPlayer2); // joined message processing
+
+            receiveLineWithTimeout(inPlayer4); // ready message
+            outPlayer4.println(Utils.objectToMessage(new Enter("player4")));
+            receiveLineWithTimeout(inPlayer4); // enter response
+            receiveLineWithTimeout(inPlayer1); // joined message processing
+            receiveLineWithTimeout(inPlayer2); // joined message processing
+            receiveLineWithTimeout(inPlayer3); // joined message processing
+
+            // player 1 plays player 2, and player 3 plays player 4 at the same time
+            outPlayer1.println(Utils.objectToMessage(new GameStartReq("player2")));
+            GameStartResp gameStartResponse1 = Utils.messageToObject(receiveLineWithTimeout(inPlayer1));
+            assertEquals("OK", gameStartResponse1.status());
+            receiveLineWithTimeout(inPlayer1); // game notification
+            receiveLineWithTimeout(inPlayer2); // game invitation
+            receiveLineWithTimeout(inPlayer2); // game notification
+
+            outPlayer3.println(Utils.objectToMessage(new GameStartReq("player4")));
+            GameStartResp gameStartResponse3 = Utils.messageToObject(receiveLineWithTimeout(inPlayer3));
+            assertEquals("OK", gameStartResponse3.status());
+            receiveLineWithTimeout(inPlayer3); // game notification
+            receiveLineWithTimeout(inPlayer4); // game invitation
+            receiveLineWithTimeout(inPlayer4); // game notification
+
+            // player 3 cannot play player 1, who is in a game already
+            outPlayer3.println(Utils.objectToMessage(new GameStartReq("player1")));
+            GameStartResp busyResponse = Utils.messageToObject(receiveLineWithTimeout(inPlayer3));
+            assertEquals("ERROR", busyResponse.status());
+            assertEquals(9000, busyResponse.code());
+
+            outPlayer3.println(Utils.objectToMessage(new GameMove("S")));
+            receiveLineWithTimeout(inPlayer3); // move response
+            outPlayer1.println(Utils.objectToMessage(new GameMove("R")));
+            receiveLineWithTimeout(inPlayer1); // move response
+            outPlayer4.println(Utils.objectToMessage(new GameMove("P")));
+            receiveLineWithTimeout(inPlayer4); // move response
+
+            GameResult gameResult3 = Utils.messageToObject(receiveLineWithTimeout(inPlayer3));
+            assertEquals("player3", gameResult3.winner());
+            GameResult gameResult4 = Utils.messageToObject(receiveLineWithTimeout(inPlayer4));
+            assertEquals("player3", gameResult4.winner());
+
+            outPlayer2.println(Utils.objectToMessage(new GameMove("R")));
+            receiveLineWithTimeout(inPlayer2); // move response
+
+            GameResult gameResult1 = Utils.messageToObject(receiveLineWithTimeout(inPlayer1));
+            assertNull(gameResult1.winner());
+            GameResult gameResult2 = Utils.messageToObject(receiveLineWithTimeout(inPlayer2));
+            assertNull(gameResult2.winner());
+        }
+    }
+
+    @Test
+    void PlayersInTheGameQueueArePairedInTheOrderTheyJoined() throws JsonProcessingException {
+        // login both players
+        receiveLineWithTimeout(inPlayer1); // ready message
+        outPlayer1.println(Utils.objectToMessage(new Enter("player1")));
+        receiveLineWithTimeout(inPlayer1); // enter response
+
+        receiveLineWithTimeout(inPlayer2); // ready message
+        outPlayer2.println(Utils.objectToMessage(new Enter("player2")));
+        receiveLineWithTimeout(inPlayer2); // enter response
+        receiveLineWithTimeout(inPlayer1); // joined message processing
+
+        outPlayer1.println(Command.GAME_QUEUE_REQ.getCommand());
+        GameQueueResp queueResponse1 = Utils.messageToObject(receiveLineWithTimeout(inPlayer1));
+        assertEquals("OK", queueResponse1.status());
+
+        // waiting already
+        outPlayer1.println(Command.GAME_QUEUE_REQ.getCommand());
+        GameQueueResp repeatedQueueResponse = Utils.messageToObject(receiveLineWithTimeout(inPlayer1));
+        assertEquals("ERROR", repeatedQueueResponse.status());
+        assertEquals(9007, repeatedQueueResponse.code());
+
+        outPlayer2.println(Command.GAME_QUEUE_REQ.getCommand());
+        GameQueueResp queueResponse2 = Utils.messageToObject(receiveLineWithTimeout(inPlayer2));
+        assertEquals("OK", queueResponse2.status());
+
+        // the one who waited longer starts the game
+        GameInvite gameInvite = Utils.messageToObject(receiveLineWithTimeout(inPlayer2));
+        assertEquals("player1", gameInvite.initiator());
+        GameNotification notification1 = Utils.messageToObject(receiveLineWithTimeout(inPlayer1));
+        assertEquals("player1", notification1.initiator());
+        assertEquals("player2", notification1.opponent());
+        GameNotification notification2 = Utils.messageToObject(receiveLineWithTimeout(inPlayer2));
+        assertEquals("player2", notification2.opponent());
+
+        outPlayer1.println(Utils.objectToMessage(new GameMove("P")));
+        receiveLineWithTimeout(inPlayer1); // move response
+        outPlayer2.println(Utils.objectToMessage(new GameMove("R")));
+        receiveLineWithTimeout(inPlayer2); // move response
+
+        GameResult gameResult1 = Utils.messageToObject(receiveLineWithTimeout(inPlayer1));
+        assertEquals("player1", gameResult1.winner());
+        GameResult gameResult2 = Utils.messageToObject(receiveLineWithTimeout(inPlayer2));
+        assertEquals("player1", gameResult2.winner());
+    }
+
+    @Test
+    void PlayerWhoClosedItsConnectionIsNotPairedFromTheGameQueue() throws JsonProcessingException, IOException {
+        receiveLineWithTimeout(inPlayer1); // ready message
+        outPlayer1.println(Utils.objectToMessage(new Enter("waiting")));
+        receiveLineWithTimeout(inPlayer1); // enter response
+
+        receiveLineWithTimeout(inPlayer2); // ready message
+        outPlayer2.println(Utils.objectToMessage(new Enter("ghost")));
+        receiveLineWithTimeout(inPlayer2); // enter response
+        receiveLineWithTimeout(inPlayer1); // joined message processing
+
+        outPlayer2.println(Command.GAME_QUEUE_REQ.getCommand());
+        GameQueueResp ghostQueueResponse = Utils.messageToObject(receiveLineWithTimeout(inPlayer2));
+        assertEquals("OK", ghostQueueResponse.status());
+        // goes away without BYE while waiting
+        socketPlayer2.close();
+
+        outPlayer1.println(Command.GAME_QUEUE_REQ.getCommand());
+        GameQueueResp queueResponse = Utils.messageToObject(receiveLineWithTimeout(inPlayer1));
+        assertEquals("OK", queueResponse.status());
+
+        // no invitation from the user who is gone, it stays waiting
+        socketPlayer1.setSoTimeout(MAX_DELTA_ALLOWED_MS);
+        assertThrows(SocketTimeoutException.class, inPlayer1::readLine);
+    }
+
+    @Test
+    void LeaderboardListsTheWinnerOfAFinishedGameInOrderOfWins() throws JsonProcessingException {
+        // login both players
+        receiveLineWithTimeout(inPlayer1); // ready message
+        outPlayer1.println(Utils.objectToMessage(new Enter("ranked1")));
+        receiveLineWithTimeout(inPlayer1); // enter response
+
+        receiveLineWithTimeout(inPlayer2); // ready message
+        outPlayer2.println(Utils.objectToMessage(new Enter("ranked2")));
+        receiveLineWithTimeout(inPlayer2); // enter response
+        receiveLineWithTimeout(inPlayer1); // joined message processing
+
+        outPlayer1.println(Utils.objectToMessage(new GameStartReq("ranked2")));
+        receiveLineWithTimeout(inPlayer1); // game start response
+        receiveLineWithTimeout(inPlayer2); // game invitation
+        receiveLineWithTimeout(inPlayer1); // game notification
+        receiveLineWithTimeout(inPlayer2); // game notification
+
+        outPlayer1.println(Utils.objectToMessage(new GameMove("S")));
+        receiveLineWithTimeout(inPlayer1); // move response
+        outPlayer2.println(Utils.objectToMessage(new GameMove("P")));
+        receiveLineWithTimeout(inPlayer2); // move response
+        receiveLineWithTimeout(inPlayer1); // game result
+        receiveLineWithTimeout(inPlayer2); // game result
+
+        outPlayer2.println(Utils.objectToMessage(new LeaderboardReq(100)));
+        LeaderboardResp leaderboardResp = Utils.messageToObject(receiveLineWithTimeout(inPlayer2));
+        assertEquals("OK", leaderboardResp.status());
+
+        List<LeaderboardEntry> players = leaderboardResp.players();
+        LeaderboardEntry winner = players.stream().filter(entry -> entry.username().equals("ranked1")).findFirst().orElseThrow();
+        LeaderboardEntry loser = players.stream().filter(entry -> entry.username().equals("ranked2")).findFirst().orElseThrow();
+        assertTrue(winner.wins() >= 1);
+        assertTrue(loser.losses() >= 1);
+        for (int i = 1; i < players.size(); i++) {
+            assertTrue(players.get(i - 1).wins() >= players.get(i).wins());
+        }
+    }
+
     @Test
     void MoveSubmissionByLoggedInUserAndNoInstantiatedGameOnServerReturnsError() throws JsonProcessingException {
         // login both players
@@ -546,6 +737,36 @@ public class GameTests {
         assertEquals(9005, cancellation.errorCode());
     }
 
+    @Test
+    void GameCancellationWhenPlayerClosesItsConnection() throws JsonProcessingException, IOException {
+        // login both players
+        receiveLineWithTimeout(inPlayer1); // ready message
+        outPlayer1.println(Utils.objectToMessage(new Enter("remaining")));
+        receiveLineWithTimeout(inPlayer1); // enter response
+
+        receiveLineWithTimeout(inPlayer2); // ready message
+        outPlayer2.println(Utils.objectToMessage(new Enter("dropped")));
+        receiveLineWithTimeout(inPlayer2); // enter response
+        receiveLineWithTimeout(inPlayer1); // joined message processing
+
+        outPlayer1.println(Utils.objectToMessage(new GameStartReq("dropped")));
+        receiveLineWithTimeout(inPlayer1); // game start response
+        receiveLineWithTimeout(inPlayer2); // game invitation
+        receiveLineWithTimeout(inPlayer1); // game notification
+        receiveLineWithTimeout(inPlayer2); // game notification
+
+        outPlayer1.println(Utils.objectToMessage(new GameMove("R")));
+        GameMoveResp moveResponse = Utils.messageToObject(receiveLineWithTimeout(inPlayer1));
+        assertEquals("OK", moveResponse.status());
+
+        // player 2 goes away without BYE
+        socketPlayer2.close();
+
+        // player 1 does not wait for the move timeout
+        GameCancelled cancellation = Utils.messageToObject(receiveLineWithTimeout(inPlayer1));
+        assertEquals(9005, cancellation.errorCode());
+    }
+
 
 
 
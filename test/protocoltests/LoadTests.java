@@ -0,0 +1,163 @@
+package protocoltests;
+
+import org.junit.jupiter.api.*;
+import protocoltests.protocol.utils.Utils;
+import shared.messages.Enter;
+import shared.messages.EnterResp;
+import shared.messages.UserListResp;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static java.time.Duration.ofMillis;
+import static java.time.Duration.ofMinutes;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Logs in a large number of idle clients (property {@code load_test_clients}) and checks that the server still
+ * serves a new client. The test is skipped unless the property is set, in {@code testconfig.properties} or as a
+ * system property. The idle clients are kept alive by one selector thread that answers every PING, so the
+ * test itself does not need a thread per connection. Run the server with {@code --mode=virtual} or {@code --mode=nio}
+ * and make sure the open file limit is high enough for both processes.
+ */
+class LoadTests {
+
+    private final static Properties PROPS = new Properties();
+
+    private final static int MAX_DELTA_ALLOWED_MS = 500;
+
+    private final List<SocketChannel> idleClients = new ArrayList<>();
+    private Selector selector;
+    private Thread drainThread;
+    private volatile boolean draining = true;
+
+    @BeforeAll
+    static void setupAll() throws IOException {
+        InputStream in = LoadTests.class.getResourceAsStream("testconfig.properties");
+        PROPS.load(in);
+        in.close();
+    }
+
+    @BeforeEach
+    void setup() throws IOException {
+        selector = Selector.open();
+    }
+
+    @AfterEach
+    void cleanup() throws IOException, InterruptedException {
+        draining = false;
+        selector.wakeup();
+        if (drainThread != null) {
+            drainThread.join();
+        }
+        for (SocketChannel client : idleClients) {
+            client.close();
+        }
+        selector.close();
+    }
+
+    @Test
+    void tc61ServerAcceptsNewClientWhileManyIdleClientsAreLoggedIn() throws IOException {
+        String configuredClients = System.getProperty("load_test_clients", PROPS.getProperty("load_test_clients"));
+        assumeTrue(configuredClients != null, "load_test_clients is not set, skipping the load test");
+        int clientCount = Integer.parseInt(configuredClients);
+        drainThread = new Thread(this::drainIdleClients);
+        drainThread.start();
+
+        assertTimeoutPreemptively(ofMinutes(10), () -> {
+            for (int i = 0; i < clientCount; i++) {
+                idleClients.add(loginIdleClient("load_" + i));
+            }
+        });
+
+        try (Socket probe = new Socket(PROPS.getProperty("host"), Integer.parseInt(PROPS.getProperty("port")))) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(probe.getInputStream()));
+            PrintWriter out = new PrintWriter(probe.getOutputStream(), true);
+
+            receiveLineWithTimeout(in); //ready msg
+            out.println(Utils.objectToMessage(new Enter("load_probe")));
+            EnterResp enterResp = Utils.messageToObject(receiveLineWithTimeout(in));
+            assertEquals("OK", enterResp.status());
+
+            out.println("USER_LIST_REQ");
+            String line = receiveLineWithTimeout(in);
+            while (!line.startsWith("USER_LIST_RESP")) {
+                line = receiveLineWithTimeout(in);
+            }
+            UserListResp userListResp = Utils.messageToObject(line);
+            assertEquals("OK", userListResp.status());
+            assertTrue(userListResp.users().size() >= clientCount);
+        }
+    }
+
+    private SocketChannel loginIdleClient(String username) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(PROPS.getProperty("host"), Integer.parseInt(PROPS.getProperty("port"))));
+        readFirstLine(channel); //ready msg
+        channel.write(ByteBuffer.wrap((Utils.objectToMessage(new Enter(username)) + "\n").getBytes(StandardCharsets.UTF_8)));
+        EnterResp enterResp = Utils.messageToObject(readFirstLine(channel));
+        assertEquals("OK", enterResp.status(), "login of " + username);
+
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ, new StringBuilder());
+        selector.wakeup();
+        return channel;
+    }
+
+    private String readFirstLine(SocketChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        StringBuilder line = new StringBuilder();
+        while (line.indexOf("\n") < 0) {
+            buffer.clear();
+            if (channel.read(buffer) == -1) {
+                throw new EOFException("Server closed the connection");
+            }
+            buffer.flip();
+            line.append(StandardCharsets.UTF_8.decode(buffer));
+        }
+        return line.substring(0, line.indexOf("\n")).strip();
+    }
+
+    private void drainIdleClients() {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        try {
+            while (draining) {
+                selector.select(100);
+                for (SelectionKey key : selector.selectedKeys()) {
+                    SocketChannel channel = (SocketChannel) key.channel();
+                    StringBuilder partialLine = (StringBuilder) key.attachment();
+                    buffer.clear();
+                    if (channel.read(buffer) == -1) {
+                        key.cancel();
+                        continue;
+                    }
+                    buffer.flip();
+                    partialLine.append(StandardCharsets.UTF_8.decode(buffer));
+                    int end;
+                    while ((end = partialLine.indexOf("\n")) >= 0) {
+                        if (partialLine.substring(0, end).strip().equals("PING")) {
+                            channel.write(ByteBuffer.wrap("PONG\n".getBytes(StandardCharsets.UTF_8)));
+                        }
+                        partialLine.delete(0, end + 1);
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (IOException e) {
+            System.err.println("Idle client drain stopped: " + e.getMessage());
+        }
+    }
+
+    private String receiveLineWithTimeout(BufferedReader reader) {
+        return assertTimeoutPreemptively(ofMillis(MAX_DELTA_ALLOWED_MS), reader::readLine);
+    }
+}
@@ -7,11 +7,13 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import protocoltests.protocol.utils.Utils;
 import shared.messages.Enter;
+import shared.messages.UserListReq;
 import shared.messages.UserListResp;
 import shared.utility.Command;
 
 import java.io.*;
 import java.net.Socket;
+import java.util.List;
 import java.util.Properties;
 
 import static java.time.Duration.ofMillis;
@@ -98,6 +100,49 @@ public class MultipleUserListTest {
         assertTrue(userListResp.users().contains("user3"));
     }
 
+    @Test
+    void UserListRequestWithVersionReturnsAllUsersAndThenOnlyTheChanges() throws IOException {
+        receiveLineWithTimeout(inUser1);
+        receiveLineWithTimeout(inUser2);
+        receiveLineWithTimeout(inUser3);
+
+        outUser1.println(Utils.objectToMessage(new Enter("user1")));
+        receiveLineWithTimeout(inUser1); // OK response
+        outUser2.println(Utils.objectToMessage(new Enter("user2")));
+        receiveLineWithTimeout(inUser2); // OK response
+        receiveLineWithTimeout(inUser1); // consume Joined message for user1
+
+        // without a known version, all users are sent, the requesting one included
+        outUser1.println(Utils.objectToMessage(new UserListReq(0L)));
+        UserListResp snapshot = Utils.messageToObject(receiveLineWithTimeout(inUser1));
+        assertEquals("OK", snapshot.status());
+        assertNotNull(snapshot.version());
+        assertTrue(snapshot.users().containsAll(List.of("user1", "user2")));
+
+        // nothing changed
+        outUser1.println(Utils.objectToMessage(new UserListReq(snapshot.version())));
+        UserListResp unchanged = Utils.messageToObject(receiveLineWithTimeout(inUser1));
+        assertEquals(snapshot.version(), unchanged.version());
+        assertNull(unchanged.users());
+        assertEquals(List.of(), unchanged.joined());
+        assertEquals(List.of(), unchanged.left());
+
+        outUser3.println(Utils.objectToMessage(new Enter("user3")));
+        receiveLineWithTimeout(inUser3); // OK response
+        receiveLineWithTimeout(inUser1); // consume Joined message for user1
+        receiveLineWithTimeout(inUser2); // consume Joined message for user2
+        outUser2.println(Command.BYE.getCommand());
+        receiveLineWithTimeout(inUser2); // BYE response
+        receiveLineWithTimeout(inUser1); // consume Left message for user1
+
+        outUser1.println(Utils.objectToMessage(new UserListReq(snapshot.version())));
+        UserListResp delta = Utils.messageToObject(receiveLineWithTimeout(inUser1));
+        assertEquals(snapshot.version() + 2, delta.version());
+        assertNull(delta.users());
+        assertEquals(List.of("user3"), delta.joined());
+        assertEquals(List.of("user2"), delta.left());
+    }
+
     private String receiveLineWithTimeout(BufferedReader reader) {
         return assertTimeoutPreemptively(ofMillis(MAX_DELTA_ALLOWED_MS), reader::readLine);
     }
@@ -0,0 +1,140 @@
+package protocoltests;
+
+import org.junit.jupiter.api.Test;
+import server.Tournament;
+import shared.messages.TournamentUpdate;
+import shared.utility.Code;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Plays whole tournaments on a virtual clock, with games that end after a random time within the move timeout.
+ * No server is needed.
+ */
+public class TournamentTests {
+
+    private static final long SIGNUP_MS = 30_000;
+    private static final long MOVE_TIMEOUT_MS = 60_000;
+
+    @Test
+    void TournamentOfHundredsOfPlayersRunsEveryMatchOfARoundAtOnceUntilOneChampionIsLeft() {
+        VirtualClock clock = new VirtualClock();
+        SimulatedArena arena = new SimulatedArena(clock, new Random(7));
+        Tournament tournament = new Tournament(clock, arena, new Random(7), SIGNUP_MS);
+
+        List<String> players = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            players.add("player" + i);
+            assertNull(tournament.signUp("player" + i));
+        }
+        assertEquals(Code.ALREADY_SIGNED_UP, tournament.signUp("player0"));
+
+        clock.runUntilIdle();
+
+        assertTrue(tournament.isFinished());
+        assertTrue(players.contains(tournament.getChampion()));
+        // 300 -> 150 -> 75 -> 38 -> 19 -> 10 -> 5 -> 3 -> 2 -> 1
+        assertEquals(9, tournament.getRound());
+        assertEquals(150, arena.maxConcurrentGames);
+        assertEquals(Code.TOURNAMENT_RUNNING, tournament.signUp("late"));
+
+        // everybody but the champion lost exactly once, and the champion was announced last
+        Map<String, Integer> losses = new HashMap<>();
+        for (TournamentUpdate update : arena.updates) {
+            if (update.loser() != null) {
+                losses.merge(update.loser(), 1, Integer::sum);
+            }
+        }
+        assertEquals(players.size() - 1, losses.size());
+        assertFalse(losses.containsKey(tournament.getChampion()));
+        assertTrue(losses.values().stream().allMatch(count -> count == 1));
+        assertEquals(tournament.getChampion(), arena.updates.get(arena.updates.size() - 1).champion());
+
+        // every round waits for its slowest match, but never for much more than the move timeout and the rematches
+        assertTrue(clock.now < SIGNUP_MS + 9 * (4 * MOVE_TIMEOUT_MS + 10_000), "took " + clock.now + " ms");
+    }
+
+    @Test
+    void PlayerWhoCannotPlayForfeitsTheMatch() {
+        VirtualClock clock = new VirtualClock();
+        SimulatedArena arena = new SimulatedArena(clock, new Random(1));
+        Tournament tournament = new Tournament(clock, arena, new Random(1), SIGNUP_MS);
+        tournament.signUp("present");
+        tournament.signUp("absent");
+        arena.absent.add("absent");
+
+        clock.runUntilIdle();
+
+        assertEquals("present", tournament.getChampion());
+        assertEquals(0, arena.maxConcurrentGames);
+    }
+
+    /**
+     * Runs the scheduled tasks in the order of their virtual time, on the calling thread.
+     */
+    private static final class VirtualClock implements Tournament.Clock {
+        private final PriorityQueue<long[]> order = new PriorityQueue<>(Comparator.<long[]>comparingLong(task -> task[0]).thenComparingLong(task -> task[1]));
+        private final Map<Long, Runnable> tasks = new HashMap<>();
+        private long now;
+        private long sequence;
+
+        @Override
+        public void schedule(Runnable task, long delayMs) {
+            long id = sequence++;
+            order.add(new long[]{now + delayMs, id});
+            tasks.put(id, task);
+        }
+
+        void runUntilIdle() {
+            while (!order.isEmpty()) {
+                long[] next = order.poll();
+                now = next[0];
+                tasks.remove(next[1]).run();
+            }
+        }
+    }
+
+    /**
+     * Plays every game on the virtual clock: it ends within the move timeout, with a random winner or a draw.
+     */
+    private static final class SimulatedArena implements Tournament.Arena {
+        private final VirtualClock clock;
+        private final Random random;
+        private final Set<String> playing = new HashSet<>();
+        private final Set<String> absent = new HashSet<>();
+        private final List<TournamentUpdate> updates = new ArrayList<>();
+        private int maxConcurrentGames;
+
+        SimulatedArena(VirtualClock clock, Random random) {
+            this.clock = clock;
+            this.random = random;
+        }
+
+        @Override
+        public boolean canPlay(String player) {
+            return !absent.contains(player) && !playing.contains(player);
+        }
+
+        @Override
+        public boolean startMatch(Tournament tournament, Tournament.Match match) {
+            playing.add(match.getPlayerA());
+            playing.add(match.getPlayerB());
+            maxConcurrentGames = Math.max(maxConcurrentGames, playing.size() / 2);
+            clock.schedule(() -> {
+                playing.remove(match.getPlayerA());
+                playing.remove(match.getPlayerB());
+                int outcome = random.nextInt(3);
+                String winner = outcome == 0 ? match.getPlayerA() : outcome == 1 ? match.getPlayerB() : null;
+                tournament.decide(match, winner);
+            }, 1 + random.nextInt((int) MOVE_TIMEOUT_MS));
+            return true;
+        }
+
+        @Override
+        public void broadcast(List<String> players, TournamentUpdate update) {
+            updates.add(update);
+        }
+    }
+}
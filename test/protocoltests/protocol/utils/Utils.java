@@ -23,6 +23,7 @@ public class Utils {
         objToNameMapping.put(PongError.class, "PONG_ERROR");
         objToNameMapping.put(Ready.class, "READY");
         objToNameMapping.put(Ping.class, "PING");
+        objToNameMapping.put(UserListReq.class, "USER_LIST_REQ");
         objToNameMapping.put(UserListResp.class, "USER_LIST_RESP");
         objToNameMapping.put(PrivateMessageReq.class, "PRIVATE_MSG_REQ");
         objToNameMapping.put(PrivateMessageResp.class, "PRIVATE_MSG_RESP");
@@ -35,7 +36,15 @@ public class Utils {
         objToNameMapping.put(GameMoveResp.class, "GAME_MOVE_RESP");
         objToNameMapping.put(GameResult.class, "GAME_RESULT");
         objToNameMapping.put(GameCancelled.class, "GAME_CANCELLED");
+        objToNameMapping.put(GameQueueResp.class, "GAME_QUEUE_RESP");
+        objToNameMapping.put(LeaderboardReq.class, "LEADERBOARD_REQ");
+        objToNameMapping.put(LeaderboardResp.class, "LEADERBOARD_RESP");
         objToNameMapping.put(Left.class, "LEFT");
+        objToNameMapping.put(FileTransferReq.class, "FILE_TRANSFER_REQ");
+        objToNameMapping.put(FileTransferResp.class, "FILE_TRANSFER_RESP");
+        objToNameMapping.put(FileTransferAccept.class, "FILE_TRANSFER_ACCEPT");
+        objToNameMapping.put(FileTransferAcceptResp.class, "FILE_TRANSFER_ACCEPT_RESP");
+        objToNameMapping.put(FileTransferInit.class, "FILE_TRANSFER_INIT");
     }
 
     public static String objectToMessage(Object object) throws JsonProcessingException {